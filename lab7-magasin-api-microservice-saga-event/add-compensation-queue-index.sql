@@ -0,0 +1,16 @@
+-- Database migration script for the persisted compensation delay queue
+-- Run this script after the initial database setup
+
+-- Connect to saga_db (the compensation_actions table itself is created by Hibernate on startup)
+\c saga_db;
+
+-- Partial index matching the claim query: only queued and running actions are indexed,
+-- in the order workers take them, so claiming stays an index range scan however many actions completed
+CREATE INDEX IF NOT EXISTS idx_compensation_actions_due ON compensation_actions(execute_after, priority)
+    WHERE status IN ('PENDING', 'IN_PROGRESS');
+
+CREATE INDEX IF NOT EXISTS idx_compensation_actions_saga_id ON compensation_actions(saga_id);
+
+-- Backs the claim query's check for an earlier unfinished action of the same saga
+CREATE INDEX IF NOT EXISTS idx_compensation_actions_saga_active ON compensation_actions(saga_id, priority)
+    WHERE status IN ('PENDING', 'IN_PROGRESS');
@@ -0,0 +1,25 @@
+-- Database migration script for the reserved and available stock counters of inventory items
+-- Run this script after the initial database setup, before starting the new inventory-service
+
+\c inventory_db;
+
+ALTER TABLE inventory_items ADD COLUMN IF NOT EXISTS stock_reserved INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE inventory_items ADD COLUMN IF NOT EXISTS stock_available INTEGER NOT NULL DEFAULT 0;
+
+-- Expired reservations no longer hold stock; the expiry sweep only releases what the counters reserved
+UPDATE stock_reservations SET status = 'RELEASED' WHERE status = 'ACTIVE' AND expires_at <= now();
+
+-- Backfill the counters from the active reservations that have not expired
+UPDATE inventory_items i
+SET stock_reserved = COALESCE((
+        SELECT SUM(r.quantity)
+        FROM stock_reservations r
+        WHERE r.product_id = CAST(i.id AS VARCHAR) AND r.status = 'ACTIVE'
+          AND (r.expires_at IS NULL OR r.expires_at > now())
+    ), 0);
+UPDATE inventory_items SET stock_available = stock_central - stock_reserved;
+
+-- Last line of defence against overselling: reservations are guarded updates on these counters
+ALTER TABLE inventory_items DROP CONSTRAINT IF EXISTS chk_inventory_items_stock_counters;
+ALTER TABLE inventory_items ADD CONSTRAINT chk_inventory_items_stock_counters
+    CHECK (stock_reserved >= 0 AND stock_available >= 0);
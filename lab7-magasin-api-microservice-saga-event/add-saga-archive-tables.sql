@@ -0,0 +1,17 @@
+-- Database migration script for the saga_executions hot/cold split
+-- Run this script after the initial database setup
+
+-- Connect to saga_db (saga_executions_archive and saga_execution_lines_archive are created by Hibernate on startup)
+\c saga_db;
+
+-- Partial index on active sagas: findActiveSagas, findLongRunningSagas and findTimedOutSagas only read
+-- in-flight work, so the index stays as small as the in-flight volume however many sagas completed
+CREATE INDEX IF NOT EXISTS idx_saga_executions_active_created_at ON saga_executions(created_at)
+    WHERE current_state NOT IN ('SALE_CONFIRMED', 'SALE_FAILED');
+
+-- Partial index matching the archiver's batch query: final sagas, oldest update first
+CREATE INDEX IF NOT EXISTS idx_saga_executions_final_updated_at ON saga_executions(updated_at)
+    WHERE current_state IN ('SALE_CONFIRMED', 'SALE_FAILED');
+
+CREATE INDEX IF NOT EXISTS idx_saga_executions_archive_customer_id ON saga_executions_archive(customer_id);
+CREATE INDEX IF NOT EXISTS idx_saga_execution_lines_archive_saga_id ON saga_execution_lines_archive(saga_id);
@@ -0,0 +1,9 @@
+-- Database migration script for the concurrent saga check
+-- Run this script after the initial database setup
+
+\c saga_db;
+
+-- Partial index: the concurrency check only looks at active sagas of one customer-product combination
+CREATE INDEX IF NOT EXISTS idx_saga_executions_active_customer_product
+    ON saga_executions(customer_id, product_id)
+    WHERE current_state NOT IN ('SALE_CONFIRMED', 'SALE_FAILED');
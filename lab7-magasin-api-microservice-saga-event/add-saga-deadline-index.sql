@@ -0,0 +1,10 @@
+-- Database migration script for saga step deadlines
+-- Run this script after the initial database setup
+
+-- Connect to saga_db and add the deadline column (also created by Hibernate on startup)
+\c saga_db;
+ALTER TABLE saga_executions ADD COLUMN IF NOT EXISTS deadline_at TIMESTAMP;
+
+-- Partial index: only active sagas have a deadline, so the index stays as small as the in-flight volume
+CREATE INDEX IF NOT EXISTS idx_saga_executions_deadline_at ON saga_executions(deadline_at)
+    WHERE deadline_at IS NOT NULL;
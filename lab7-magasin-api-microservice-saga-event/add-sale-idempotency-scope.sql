@@ -0,0 +1,15 @@
+-- Database migration script for idempotency keys scoped per customer and bound to a request hash
+-- Run this script after the initial database setup, while no sales are being accepted
+
+-- Connect to saga_db (Hibernate adds new columns on startup but never changes a primary key)
+\c saga_db;
+
+-- Existing mappings have no request hash to compare retries with; they live for saga.idempotency.ttl-hours only
+TRUNCATE sale_idempotency_keys;
+
+ALTER TABLE sale_idempotency_keys ADD COLUMN IF NOT EXISTS customer_id VARCHAR(100) NOT NULL;
+ALTER TABLE sale_idempotency_keys ADD COLUMN IF NOT EXISTS request_hash VARCHAR(64) NOT NULL;
+
+-- The claim's ON CONFLICT target: the same key chosen by two customers maps to two sagas
+ALTER TABLE sale_idempotency_keys DROP CONSTRAINT IF EXISTS sale_idempotency_keys_pkey;
+ALTER TABLE sale_idempotency_keys ADD PRIMARY KEY (customer_id, idempotency_key);
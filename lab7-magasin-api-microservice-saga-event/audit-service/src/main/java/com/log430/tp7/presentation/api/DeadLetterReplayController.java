@@ -0,0 +1,79 @@
+package com.log430.tp7.presentation.api;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.log430.tp7.event.DeadLetterReplayReport;
+import com.log430.tp7.event.DeadLetterReplayRequest;
+import com.log430.tp7.event.DeadLetterReplayService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+
+/**
+ * Admin REST controller for replaying the notification and audit dead letter queues.
+ * Replays run in the background; the returned report can be polled for progress.
+ */
+@RestController
+@RequestMapping("/api/audit/dlq")
+@Tag(name = "Dead Letter Replay", description = "Rate-limited reprocessing of dead-lettered events")
+public class DeadLetterReplayController {
+
+    private final DeadLetterReplayService replayService;
+
+    @Autowired
+    public DeadLetterReplayController(DeadLetterReplayService replayService) {
+        this.replayService = replayService;
+    }
+
+    @PostMapping("/replay")
+    @Operation(summary = "Start a DLQ replay",
+               description = "Sends matching dead-lettered events back to the queue they died in " +
+                             "at a bounded rate. Use fanOut to republish them to their original routing keys " +
+                             "instead, and dryRun to only count matching messages.")
+    public ResponseEntity<?> startReplay(@RequestBody DeadLetterReplayRequest request) {
+        try {
+            DeadLetterReplayReport report = replayService.startReplay(request);
+            return ResponseEntity.accepted().body(report);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/replay")
+    @Operation(summary = "List DLQ replays", description = "Lists recent replay runs with their progress")
+    public ResponseEntity<Collection<DeadLetterReplayReport>> getReplays() {
+        return ResponseEntity.ok(replayService.getReports());
+    }
+
+    @GetMapping("/replay/{replayId}")
+    @Operation(summary = "Get DLQ replay progress", description = "Retrieves the progress report of a replay run")
+    public ResponseEntity<DeadLetterReplayReport> getReplay(
+            @Parameter(description = "Replay ID")
+            @PathVariable String replayId) {
+        return replayService.getReport(replayId)
+                           .map(ResponseEntity::ok)
+                           .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/replay/{replayId}")
+    @Operation(summary = "Cancel a DLQ replay", description = "Stops a running replay after the current message")
+    public ResponseEntity<Void> cancelReplay(
+            @Parameter(description = "Replay ID")
+            @PathVariable String replayId) {
+        return replayService.cancelReplay(replayId)
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.notFound().build();
+    }
+}
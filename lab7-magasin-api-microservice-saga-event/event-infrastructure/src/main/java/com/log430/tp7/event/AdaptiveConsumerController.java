@@ -0,0 +1,247 @@
+package com.log430.tp7.event;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * AIMD controller for the consumer count and prefetch of each Rabbit listener container.
+ * Every interval it compares the processing latency measured by {@link ListenerLatencyTracker}
+ * with the target and reads the queue depth with a passive declare:
+ * - latency above target: multiplicative decrease (the downstream, usually the DB, is saturated),
+ *   restarting the consumers so the lower prefetch applies at once
+ * - backlog above threshold: additive increase, the higher prefetch applying to the consumers it adds
+ * - empty queue: consumers step back down towards the minimum
+ * Decisions are published as Micrometer gauges and counters.
+ */
+@Component
+@Profile("!" + InMemoryEventBusConfig.IN_MEMORY_BUS_PROFILE)
+@ConditionalOnProperty(name = "event.consumer.adaptive.enabled", havingValue = "true", matchIfMissing = true)
+public class AdaptiveConsumerController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConsumerController.class);
+
+    private final ObjectProvider<RabbitListenerEndpointRegistry> registryProvider;
+    private final ListenerLatencyTracker latencyTracker;
+    private final RabbitTemplate rabbitTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ControlState> states = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "adaptive-consumer-controller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${event.consumer.adaptive.interval-ms:5000}")
+    private long intervalMs;
+
+    @Value("${event.consumer.adaptive.min-consumers:1}")
+    private int minConsumers;
+
+    @Value("${event.consumer.adaptive.max-consumers:10}")
+    private int maxConsumers;
+
+    @Value("${event.consumer.adaptive.min-prefetch:1}")
+    private int minPrefetch;
+
+    @Value("${event.consumer.adaptive.max-prefetch:250}")
+    private int maxPrefetch;
+
+    @Value("${event.consumer.adaptive.initial-prefetch:50}")
+    private int initialPrefetch;
+
+    @Value("${event.consumer.adaptive.prefetch-step:10}")
+    private int prefetchStep;
+
+    @Value("${event.consumer.adaptive.target-latency-ms:200}")
+    private double targetLatencyMs;
+
+    @Value("${event.consumer.adaptive.backlog-threshold:100}")
+    private long backlogThreshold;
+
+    @Value("${event.consumer.adaptive.decrease-factor:0.5}")
+    private double decreaseFactor;
+
+    public AdaptiveConsumerController(ObjectProvider<RabbitListenerEndpointRegistry> registryProvider,
+                                      ListenerLatencyTracker latencyTracker,
+                                      RabbitTemplate rabbitTemplate,
+                                      ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.registryProvider = registryProvider;
+        this.latencyTracker = latencyTracker;
+        this.rabbitTemplate = rabbitTemplate;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::adjustAll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        logger.info("Adaptive consumer controller started: consumers [{}-{}], prefetch [{}-{}], " +
+                   "target latency {}ms, interval {}ms",
+                   minConsumers, maxConsumers, minPrefetch, maxPrefetch, targetLatencyMs, intervalMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Runs one control step on every running simple listener container.
+     */
+    void adjustAll() {
+        RabbitListenerEndpointRegistry registry = registryProvider.getIfAvailable();
+        if (registry == null) {
+            return;
+        }
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+            if (container instanceof SimpleMessageListenerContainer simple && simple.isRunning()) {
+                try {
+                    adjust(simple);
+                } catch (Exception e) {
+                    logger.warn("Adaptive consumer adjustment failed for {}: {}",
+                               simple.getListenerId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void adjust(SimpleMessageListenerContainer container) {
+        String[] queueNames = container.getQueueNames();
+        ControlState state = states.computeIfAbsent(container.getListenerId(),
+                id -> new ControlState(id, String.join(",", queueNames), initialConsumers(container)));
+
+        ListenerLatencyTracker.LatencySnapshot latency = latencyTracker.drain(queueNames);
+        long depth = queueDepth(queueNames);
+        state.averageLatencyMicros.set((long) (latency.averageMillis() * 1000));
+        state.queueDepth.set(depth);
+
+        int consumers = state.consumers.get();
+        int prefetch = state.prefetch.get();
+        String reason;
+        if (latency.count() > 0 && latency.averageMillis() > targetLatencyMs) {
+            consumers = Math.max(minConsumers, (int) Math.floor(consumers * decreaseFactor));
+            prefetch = Math.max(minPrefetch, (int) Math.floor(prefetch * decreaseFactor));
+            reason = "latency";
+        } else if (depth > backlogThreshold) {
+            consumers = Math.min(maxConsumers, consumers + 1);
+            prefetch = Math.min(maxPrefetch, prefetch + prefetchStep);
+            reason = "backlog";
+        } else if (depth == 0) {
+            consumers = Math.max(minConsumers, consumers - 1);
+            reason = "idle";
+        } else {
+            return;
+        }
+
+        if (consumers == state.consumers.get() && prefetch == state.prefetch.get()) {
+            return;
+        }
+        String direction = consumers > state.consumers.get() || prefetch > state.prefetch.get()
+                ? "increase" : "decrease";
+
+        // The prefetch is the basic.qos of each consumer channel, fixed when the consumer starts.
+        // A raise only reaches the consumers added from now on, which is enough to drain a backlog;
+        // a cut must reach the running consumers to shed in-flight messages, so only a cut restarts them
+        if (prefetch < state.prefetch.get()) {
+            container.stop();
+            container.setPrefetchCount(prefetch);
+            container.setConcurrentConsumers(consumers);
+            container.start();
+        } else {
+            if (prefetch != state.prefetch.get()) {
+                container.setPrefetchCount(prefetch);
+            }
+            // setConcurrentConsumers adds or removes consumers on a running container
+            container.setConcurrentConsumers(consumers);
+        }
+
+        logger.info("Adaptive consumer {} ({}): {} -> consumers {} -> {}, prefetch {} -> {} " +
+                   "(avg latency {}ms, depth {})",
+                   state.listenerId, state.queues, reason, state.consumers.get(), consumers,
+                   state.prefetch.get(), prefetch, String.format("%.1f", latency.averageMillis()), depth);
+
+        state.consumers.set(consumers);
+        state.prefetch.set(prefetch);
+        Counter.builder("event_consumer_adjustments_total")
+            .description("Number of adaptive consumer adjustments")
+            .tag("listener", state.listenerId)
+            .tag("direction", direction)
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+    }
+
+    private int initialConsumers(SimpleMessageListenerContainer container) {
+        // The listener may override the factory concurrency; start from what is actually running
+        int active = container.getActiveConsumerCount();
+        return active > 0 ? active : minConsumers;
+    }
+
+    private long queueDepth(String[] queueNames) {
+        Long depth = rabbitTemplate.execute(channel -> {
+            long total = 0;
+            for (String queueName : queueNames) {
+                total += channel.messageCount(queueName);
+            }
+            return total;
+        });
+        return depth != null ? depth : 0;
+    }
+
+    /**
+     * Current control values of one listener container, exposed as gauges.
+     */
+    private final class ControlState {
+        private final String listenerId;
+        private final String queues;
+        private final AtomicInteger consumers;
+        private final AtomicInteger prefetch = new AtomicInteger(initialPrefetch);
+        private final AtomicLong queueDepth = new AtomicLong();
+        private final AtomicLong averageLatencyMicros = new AtomicLong();
+
+        private ControlState(String listenerId, String queues, int initialConsumers) {
+            this.listenerId = listenerId;
+            this.queues = queues;
+            this.consumers = new AtomicInteger(initialConsumers);
+            Gauge.builder("event_consumer_concurrency", consumers, AtomicInteger::doubleValue)
+                .description("Consumer count chosen by the adaptive controller")
+                .tag("listener", listenerId).tag("queues", queues)
+                .register(meterRegistry);
+            Gauge.builder("event_consumer_prefetch", prefetch, AtomicInteger::doubleValue)
+                .description("Prefetch count chosen by the adaptive controller")
+                .tag("listener", listenerId).tag("queues", queues)
+                .register(meterRegistry);
+            Gauge.builder("event_consumer_queue_depth", queueDepth, AtomicLong::doubleValue)
+                .description("Ready messages observed by the adaptive controller")
+                .tag("listener", listenerId).tag("queues", queues)
+                .register(meterRegistry);
+            Gauge.builder("event_consumer_latency_avg_seconds", averageLatencyMicros, v -> v.get() / 1_000_000.0)
+                .description("Average processing latency over the last control interval")
+                .tag("listener", listenerId).tag("queues", queues)
+                .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.log430.tp7.event;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Progress report of a dead letter queue replay run.
+ * Counters are updated live while the replay is running so the report can be polled.
+ */
+public class DeadLetterReplayReport {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, CANCELLED, FAILED }
+
+    private final String replayId;
+    private final DeadLetterReplayRequest request;
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong republished = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong parked = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile Status status = Status.PENDING;
+    private volatile long queueDepthAtStart;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String errorMessage;
+    private volatile boolean cancelRequested;
+
+    public DeadLetterReplayReport(String replayId, DeadLetterReplayRequest request) {
+        this.replayId = replayId;
+        this.request = request;
+    }
+
+    void markRunning(long queueDepth) {
+        this.queueDepthAtStart = queueDepth;
+        this.startedAt = Instant.now();
+        this.status = Status.RUNNING;
+    }
+
+    void markFinished(Status finalStatus, String error) {
+        this.status = finalStatus;
+        this.errorMessage = error;
+        this.finishedAt = Instant.now();
+    }
+
+    void recordScanned() { scanned.incrementAndGet(); }
+    void recordMatched() { matched.incrementAndGet(); }
+    void recordRepublished() { republished.incrementAndGet(); }
+    void recordSkipped() { skipped.incrementAndGet(); }
+    void recordParked() { parked.incrementAndGet(); }
+    void recordFailed() { failed.incrementAndGet(); }
+    void recordBatch() { batches.incrementAndGet(); }
+
+    void requestCancel() { this.cancelRequested = true; }
+    boolean isCancelRequested() { return cancelRequested; }
+
+    @JsonProperty("replayId")
+    public String getReplayId() { return replayId; }
+
+    @JsonProperty("request")
+    public DeadLetterReplayRequest getRequest() { return request; }
+
+    @JsonProperty("status")
+    public Status getStatus() { return status; }
+
+    @JsonProperty("queueDepthAtStart")
+    public long getQueueDepthAtStart() { return queueDepthAtStart; }
+
+    @JsonProperty("scanned")
+    public long getScanned() { return scanned.get(); }
+
+    @JsonProperty("matched")
+    public long getMatched() { return matched.get(); }
+
+    @JsonProperty("republished")
+    public long getRepublished() { return republished.get(); }
+
+    @JsonProperty("skipped")
+    public long getSkipped() { return skipped.get(); }
+
+    @JsonProperty("parked")
+    public long getParked() { return parked.get(); }
+
+    @JsonProperty("failed")
+    public long getFailed() { return failed.get(); }
+
+    @JsonProperty("batches")
+    public long getBatches() { return batches.get(); }
+
+    @JsonProperty("startedAt")
+    public Instant getStartedAt() { return startedAt; }
+
+    @JsonProperty("finishedAt")
+    public Instant getFinishedAt() { return finishedAt; }
+
+    @JsonProperty("errorMessage")
+    public String getErrorMessage() { return errorMessage; }
+
+    /**
+     * Fraction of the messages present at start that have been scanned, between 0 and 1.
+     */
+    @JsonProperty("progress")
+    public double getProgress() {
+        if (status == Status.COMPLETED) {
+            return 1.0;
+        }
+        return queueDepthAtStart == 0 ? 0.0 : Math.min(1.0, (double) scanned.get() / queueDepthAtStart);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DeadLetterReplayReport{replayId='%s', status=%s, scanned=%d, matched=%d, " +
+                           "republished=%d, skipped=%d, parked=%d, failed=%d}",
+                           replayId, status, getScanned(), getMatched(), getRepublished(),
+                           getSkipped(), getParked(), getFailed());
+    }
+}
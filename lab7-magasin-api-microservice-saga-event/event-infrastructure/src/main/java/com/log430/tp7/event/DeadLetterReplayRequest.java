@@ -0,0 +1,109 @@
+package com.log430.tp7.event;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Parameters for a dead letter queue replay run.
+ * Null filters match everything; null tuning values fall back to the configured defaults.
+ * Messages go back to the queue they died in unless {@code fanOut} asks to republish them to their
+ * original exchange and routing key, which delivers them again to every bound queue.
+ */
+public class DeadLetterReplayRequest {
+
+    @JsonProperty("queue")
+    private String queue;
+
+    @JsonProperty("eventType")
+    private String eventType;
+
+    @JsonProperty("correlationId")
+    private String correlationId;
+
+    @JsonProperty("from")
+    private Instant from;
+
+    @JsonProperty("to")
+    private Instant to;
+
+    @JsonProperty("ratePerSecond")
+    private Double ratePerSecond;
+
+    @JsonProperty("batchSize")
+    private Integer batchSize;
+
+    @JsonProperty("maxMessages")
+    private Integer maxMessages;
+
+    @JsonProperty("dryRun")
+    private boolean dryRun;
+
+    @JsonProperty("fanOut")
+    private boolean fanOut;
+
+    public DeadLetterReplayRequest() {
+    }
+
+    public DeadLetterReplayRequest(String queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Checks whether a dead-lettered message matches the filters of this request.
+     */
+    public boolean matches(String messageEventType, String messageCorrelationId, Instant messageTimestamp) {
+        if (eventType != null && !eventType.equalsIgnoreCase(messageEventType)) {
+            return false;
+        }
+        if (correlationId != null && !correlationId.equals(messageCorrelationId)) {
+            return false;
+        }
+        if ((from != null || to != null) && messageTimestamp == null) {
+            return false;
+        }
+        if (from != null && messageTimestamp.isBefore(from)) {
+            return false;
+        }
+        return to == null || !messageTimestamp.isAfter(to);
+    }
+
+    // Getters and setters
+    public String getQueue() { return queue; }
+    public void setQueue(String queue) { this.queue = queue; }
+
+    public String getEventType() { return eventType; }
+    public void setEventType(String eventType) { this.eventType = eventType; }
+
+    public String getCorrelationId() { return correlationId; }
+    public void setCorrelationId(String correlationId) { this.correlationId = correlationId; }
+
+    public Instant getFrom() { return from; }
+    public void setFrom(Instant from) { this.from = from; }
+
+    public Instant getTo() { return to; }
+    public void setTo(Instant to) { this.to = to; }
+
+    public Double getRatePerSecond() { return ratePerSecond; }
+    public void setRatePerSecond(Double ratePerSecond) { this.ratePerSecond = ratePerSecond; }
+
+    public Integer getBatchSize() { return batchSize; }
+    public void setBatchSize(Integer batchSize) { this.batchSize = batchSize; }
+
+    public Integer getMaxMessages() { return maxMessages; }
+    public void setMaxMessages(Integer maxMessages) { this.maxMessages = maxMessages; }
+
+    public boolean isDryRun() { return dryRun; }
+    public void setDryRun(boolean dryRun) { this.dryRun = dryRun; }
+
+    public boolean isFanOut() { return fanOut; }
+    public void setFanOut(boolean fanOut) { this.fanOut = fanOut; }
+
+    @Override
+    public String toString() {
+        return String.format("DeadLetterReplayRequest{queue='%s', eventType='%s', correlationId='%s', " +
+                           "from=%s, to=%s, ratePerSecond=%s, batchSize=%s, maxMessages=%s, dryRun=%s, fanOut=%s}",
+                           queue, eventType, correlationId, from, to, ratePerSecond, batchSize,
+                           maxMessages, dryRun, fanOut);
+    }
+}
@@ -0,0 +1,339 @@
+package com.log430.tp7.event;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Drains the notification and audit dead letter queues back to the queues the messages died in.
+ * Messages are pulled one by one, filtered, paced by a token bucket and acknowledged only once
+ * republished; messages that are filtered out (or seen during a dry run) are requeued at the end
+ * of the run so each run scans the queue at most once. A message that has already been replayed
+ * {@code max-replays} times is moved to the parking lot queue instead of going round again.
+ */
+@Component
+public class DeadLetterReplayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadLetterReplayService.class);
+
+    private static final String X_DEATH_HEADER = "x-death";
+    private static final String REPLAY_ID_HEADER = "x-replay-id";
+    private static final String REPLAYED_AT_HEADER = "x-replayed-at";
+    private static final String REPLAY_COUNT_HEADER = "x-replay-count";
+    private static final String EVENT_TYPE_HEADER = "eventType";
+    private static final String CORRELATION_ID_HEADER = "correlationId";
+    private static final int MAX_RETAINED_REPORTS = 50;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final double defaultRatePerSecond;
+    private final int defaultBatchSize;
+    private final int defaultMaxMessages;
+    private final int maxReplays;
+    private final Map<String, DeadLetterReplayReport> reports = new ConcurrentHashMap<>();
+    private final ExecutorService replayExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dlq-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DeadLetterReplayService(RabbitTemplate rabbitTemplate,
+                                   @Value("${event.dlq.replay.rate-per-second:50}") double defaultRatePerSecond,
+                                   @Value("${event.dlq.replay.batch-size:100}") int defaultBatchSize,
+                                   @Value("${event.dlq.replay.max-messages:10000}") int defaultMaxMessages,
+                                   @Value("${event.dlq.replay.max-replays:3}") int maxReplays) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.defaultRatePerSecond = defaultRatePerSecond;
+        this.defaultBatchSize = defaultBatchSize;
+        this.defaultMaxMessages = defaultMaxMessages;
+        this.maxReplays = maxReplays;
+    }
+
+    /**
+     * Schedules a replay run in the background. Runs are executed one at a time so that
+     * concurrent requests cannot multiply the configured rate.
+     *
+     * @param request replay parameters
+     * @return the report of the scheduled run, updated as the run progresses
+     */
+    public DeadLetterReplayReport startReplay(DeadLetterReplayRequest request) {
+        DeadLetterReplayReport report = createReport(request);
+        replayExecutor.submit(() -> execute(report));
+        return report;
+    }
+
+    /**
+     * Runs a replay synchronously on the calling thread.
+     *
+     * @param request replay parameters
+     * @return the final report of the run
+     */
+    public DeadLetterReplayReport replay(DeadLetterReplayRequest request) {
+        DeadLetterReplayReport report = createReport(request);
+        execute(report);
+        return report;
+    }
+
+    public Optional<DeadLetterReplayReport> getReport(String replayId) {
+        return Optional.ofNullable(reports.get(replayId));
+    }
+
+    public Collection<DeadLetterReplayReport> getReports() {
+        return reports.values();
+    }
+
+    /**
+     * Requests cancellation of a run; it stops after the message currently being processed.
+     *
+     * @return true if the run exists and was not finished yet
+     */
+    public boolean cancelReplay(String replayId) {
+        DeadLetterReplayReport report = reports.get(replayId);
+        if (report == null || report.getFinishedAt() != null) {
+            return false;
+        }
+        report.requestCancel();
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reports.values().forEach(DeadLetterReplayReport::requestCancel);
+        replayExecutor.shutdown();
+    }
+
+    private DeadLetterReplayReport createReport(DeadLetterReplayRequest request) {
+        request.setQueue(resolveQueue(request.getQueue()));
+        if (request.getRatePerSecond() != null && request.getRatePerSecond() <= 0) {
+            throw new IllegalArgumentException("ratePerSecond must be positive");
+        }
+        if (request.getBatchSize() != null && request.getBatchSize() <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        if (request.getMaxMessages() != null && request.getMaxMessages() <= 0) {
+            throw new IllegalArgumentException("maxMessages must be positive");
+        }
+        evictFinishedReports();
+        DeadLetterReplayReport report = new DeadLetterReplayReport(UUID.randomUUID().toString(), request);
+        reports.put(report.getReplayId(), report);
+        return report;
+    }
+
+    private void execute(DeadLetterReplayReport report) {
+        DeadLetterReplayRequest request = report.getRequest();
+        logger.info("Starting DLQ replay {}: {}", report.getReplayId(), request);
+        try {
+            rabbitTemplate.execute(channel -> {
+                drain(channel, report);
+                return null;
+            });
+            report.markFinished(report.isCancelRequested()
+                    ? DeadLetterReplayReport.Status.CANCELLED
+                    : DeadLetterReplayReport.Status.COMPLETED, null);
+            logger.info("DLQ replay {} finished: {}", report.getReplayId(), report);
+        } catch (Exception e) {
+            report.markFinished(DeadLetterReplayReport.Status.FAILED, e.getMessage());
+            logger.error("DLQ replay {} failed: {}", report.getReplayId(), report, e);
+        }
+    }
+
+    private void drain(Channel channel, DeadLetterReplayReport report) throws IOException {
+        DeadLetterReplayRequest request = report.getRequest();
+        String queue = request.getQueue();
+        int batchSize = request.getBatchSize() != null ? request.getBatchSize() : defaultBatchSize;
+        int maxMessages = request.getMaxMessages() != null ? request.getMaxMessages() : defaultMaxMessages;
+        double rate = request.getRatePerSecond() != null ? request.getRatePerSecond() : defaultRatePerSecond;
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(rate, Math.max(1, Math.min(batchSize, (int) Math.ceil(rate))));
+
+        long queueDepth = channel.messageCount(queue);
+        long limit = Math.min(queueDepth, maxMessages);
+        report.markRunning(queueDepth);
+
+        // Messages not replayed stay unacknowledged until the end, so basicGet never returns them twice
+        List<Long> heldDeliveryTags = new ArrayList<>();
+        try {
+            while (report.getScanned() < limit && !report.isCancelRequested()) {
+                int inBatch = 0;
+                while (inBatch < batchSize && report.getScanned() < limit && !report.isCancelRequested()) {
+                    GetResponse response = channel.basicGet(queue, false);
+                    if (response == null) {
+                        limit = report.getScanned();
+                        break;
+                    }
+                    inBatch++;
+                    report.recordScanned();
+                    if (!processMessage(channel, response, report, rateLimiter)) {
+                        heldDeliveryTags.add(response.getEnvelope().getDeliveryTag());
+                    }
+                }
+                report.recordBatch();
+                logger.info("DLQ replay {} progress: {}/{} scanned, {} republished, {} skipped, {} failed",
+                           report.getReplayId(), report.getScanned(), limit, report.getRepublished(),
+                           report.getSkipped(), report.getFailed());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.requestCancel();
+        } finally {
+            for (Long deliveryTag : heldDeliveryTags) {
+                channel.basicNack(deliveryTag, false, true);
+            }
+        }
+    }
+
+    /**
+     * Replays a single message, or parks it once it has used up its replays.
+     *
+     * @return true if the message was republished or parked and acknowledged, false if it must be requeued
+     */
+    private boolean processMessage(Channel channel, GetResponse response, DeadLetterReplayReport report,
+                                   TokenBucketRateLimiter rateLimiter) throws IOException, InterruptedException {
+        DeadLetterReplayRequest request = report.getRequest();
+        AMQP.BasicProperties properties = response.getProps();
+        Map<String, Object> headers = properties.getHeaders() != null ? properties.getHeaders() : Map.of();
+        Map<String, Object> lastDeath = lastDeath(headers);
+
+        String eventType = asString(headers.get(EVENT_TYPE_HEADER));
+        String correlationId = properties.getCorrelationId() != null
+                ? properties.getCorrelationId()
+                : asString(headers.get(CORRELATION_ID_HEADER));
+        Instant timestamp = properties.getTimestamp() != null
+                ? properties.getTimestamp().toInstant()
+                : deathTime(lastDeath);
+
+        if (!request.matches(eventType, correlationId, timestamp)) {
+            report.recordSkipped();
+            return false;
+        }
+        report.recordMatched();
+        if (request.isDryRun()) {
+            return false;
+        }
+
+        int replayCount = replayCount(headers);
+        if (replayCount >= maxReplays) {
+            String parkingLot = parkingLot(request.getQueue());
+            channel.basicPublish("", parkingLot, properties, response.getBody());
+            channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+            report.recordParked();
+            logger.warn("DLQ replay {}: message {} (eventType={}) already replayed {} times, parked in {}",
+                       report.getReplayId(), properties.getMessageId(), eventType, replayCount, parkingLot);
+            return true;
+        }
+
+        // The default exchange delivers to the dead queue only; the original exchange fans out to every binding
+        String exchange;
+        String routingKey;
+        if (request.isFanOut()) {
+            exchange = lastDeath.containsKey("exchange")
+                    ? asString(lastDeath.get("exchange"))
+                    : RabbitMQEventConfig.BUSINESS_EVENTS_EXCHANGE;
+            routingKey = originalRoutingKey(lastDeath);
+        } else {
+            exchange = "";
+            routingKey = asString(lastDeath.get("queue"));
+        }
+        if (routingKey == null) {
+            logger.warn("DLQ replay {}: no original destination for message {}, leaving it in {}",
+                       report.getReplayId(), properties.getMessageId(), request.getQueue());
+            report.recordFailed();
+            return false;
+        }
+
+        rateLimiter.acquire();
+
+        Map<String, Object> replayHeaders = new HashMap<>(headers);
+        replayHeaders.put(REPLAY_ID_HEADER, report.getReplayId());
+        replayHeaders.put(REPLAYED_AT_HEADER, System.currentTimeMillis());
+        replayHeaders.put(REPLAY_COUNT_HEADER, replayCount + 1);
+        channel.basicPublish(exchange, routingKey, properties.builder().headers(replayHeaders).build(),
+                             response.getBody());
+        channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+        report.recordRepublished();
+
+        logger.debug("DLQ replay {}: republished message {} (eventType={}) to {}/{}",
+                    report.getReplayId(), properties.getMessageId(), eventType, exchange, routingKey);
+        return true;
+    }
+
+    private String resolveQueue(String queue) {
+        if (queue == null || queue.isBlank()) {
+            throw new IllegalArgumentException("queue is required (notification or audit)");
+        }
+        return switch (queue) {
+            case "notification", RabbitMQEventConfig.NOTIFICATION_DLQ -> RabbitMQEventConfig.NOTIFICATION_DLQ;
+            case "audit", RabbitMQEventConfig.AUDIT_DLQ -> RabbitMQEventConfig.AUDIT_DLQ;
+            default -> throw new IllegalArgumentException("Unsupported dead letter queue: " + queue);
+        };
+    }
+
+    private static String parkingLot(String deadLetterQueue) {
+        return RabbitMQEventConfig.AUDIT_DLQ.equals(deadLetterQueue)
+                ? RabbitMQEventConfig.AUDIT_PARKING_LOT
+                : RabbitMQEventConfig.NOTIFICATION_PARKING_LOT;
+    }
+
+    private void evictFinishedReports() {
+        if (reports.size() < MAX_RETAINED_REPORTS) {
+            return;
+        }
+        reports.values().stream()
+                .filter(r -> r.getFinishedAt() != null)
+                .min((a, b) -> a.getFinishedAt().compareTo(b.getFinishedAt()))
+                .ifPresent(r -> reports.remove(r.getReplayId()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> lastDeath(Map<String, Object> headers) {
+        Object deaths = headers.get(X_DEATH_HEADER);
+        if (deaths instanceof List<?> list && !list.isEmpty() && list.get(0) instanceof Map<?, ?> death) {
+            // RabbitMQ keeps the most recent death first
+            return (Map<String, Object>) death;
+        }
+        return Map.of();
+    }
+
+    private static int replayCount(Map<String, Object> headers) {
+        Object count = headers.get(REPLAY_COUNT_HEADER);
+        return count instanceof Number number ? number.intValue() : 0;
+    }
+
+    private static String originalRoutingKey(Map<String, Object> death) {
+        Object routingKeys = death.get("routing-keys");
+        if (routingKeys instanceof List<?> keys && !keys.isEmpty()) {
+            return asString(keys.get(0));
+        }
+        return null;
+    }
+
+    private static Instant deathTime(Map<String, Object> death) {
+        Object time = death.get("time");
+        return time instanceof Date date ? date.toInstant() : null;
+    }
+
+    private static String asString(Object value) {
+        // Header values arrive as LongString from the AMQP client
+        return value != null ? value.toString() : null;
+    }
+}
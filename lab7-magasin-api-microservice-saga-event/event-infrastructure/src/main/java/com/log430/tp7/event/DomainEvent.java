@@ -7,7 +7,6 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 
 import java.time.Instant;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Base class for all domain events in the system.
@@ -50,13 +49,13 @@ public abstract class DomainEvent {
     
     protected DomainEvent(String eventType, String aggregateId, String aggregateType, 
                          Integer version, String correlationId, String causationId) {
-        this.eventId = UUID.randomUUID().toString();
+        this.eventId = TimeOrderedUuidGenerator.nextString();
         this.eventType = eventType;
         this.aggregateId = aggregateId;
         this.aggregateType = aggregateType;
         this.timestamp = Instant.now();
         this.version = version;
-        this.correlationId = correlationId != null ? correlationId : UUID.randomUUID().toString();
+        this.correlationId = correlationId != null ? correlationId : TimeOrderedUuidGenerator.nextString();
         this.causationId = causationId;
         this.metadata = new EventMetadata();
     }
@@ -68,7 +67,7 @@ public abstract class DomainEvent {
     
     protected DomainEvent(String eventType, String aggregateId, String aggregateType, 
                          Integer version) {
-        this(eventType, aggregateId, aggregateType, version, UUID.randomUUID().toString(), null);
+        this(eventType, aggregateId, aggregateType, version, TimeOrderedUuidGenerator.nextString(), null);
     }
     
     // Getters
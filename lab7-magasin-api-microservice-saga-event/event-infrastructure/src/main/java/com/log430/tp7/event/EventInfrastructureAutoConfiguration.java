@@ -12,7 +12,7 @@ import org.springframework.context.annotation.Import;
 @AutoConfiguration
 @ConditionalOnProperty(name = "event.infrastructure.enabled", havingValue = "true", matchIfMissing = true)
 @ComponentScan(basePackages = "com.log430.tp7.event")
-@Import({RabbitMQEventConfig.class})
+@Import({RabbitMQEventConfig.class, InMemoryEventBusConfig.class})
 public class EventInfrastructureAutoConfiguration {
     
     // Configuration is handled by component scanning and imports
@@ -0,0 +1,386 @@
+package com.log430.tp7.event;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Exchange;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * In-process replacement for the RabbitMQ broker used by the {@code in-memory-bus} profile.
+ * Routes messages with the exchanges, queues and bindings declared as Spring beans
+ * (default, direct, topic and fanout exchanges), buffers them in lock-free ring buffers
+ * and applies the broker's dead-letter and TTL queue arguments on rejection.
+ */
+public class InMemoryEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryEventBus.class);
+
+    private static final String DEFAULT_EXCHANGE = "";
+    private static final String DEAD_LETTER_EXCHANGE_ARG = "x-dead-letter-exchange";
+    private static final String DEAD_LETTER_ROUTING_KEY_ARG = "x-dead-letter-routing-key";
+    private static final String MESSAGE_TTL_ARG = "x-message-ttl";
+    private static final String X_DEATH_HEADER = "x-death";
+    private static final long MAX_FULL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ObjectProvider<Declarable> declarables;
+    private final ObjectProvider<Declarables> declarableGroups;
+    private final int queueCapacity;
+
+    private final Map<String, BusQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, Exchange> exchanges = new ConcurrentHashMap<>();
+    private final List<Binding> bindings = new CopyOnWriteArrayList<>();
+    private final Map<String, List<BusQueue>> routeCache = new ConcurrentHashMap<>();
+    private volatile boolean topologyLoaded;
+
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong unroutableCount = new AtomicLong();
+    private final AtomicLong deadLetteredCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong requeueOverflowCount = new AtomicLong();
+
+    public InMemoryEventBus(ObjectProvider<Declarable> declarables,
+                            ObjectProvider<Declarables> declarableGroups,
+                            int queueCapacity) {
+        this.declarables = declarables;
+        this.declarableGroups = declarableGroups;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Publishes a message the way a broker would: one copy per bound queue.
+     * Blocks the publisher while a target queue is full (broker flow control).
+     */
+    public void publish(String exchange, String routingKey, Message message) {
+        loadTopology();
+        String exchangeName = exchange != null ? exchange : DEFAULT_EXCHANGE;
+        String key = routingKey != null ? routingKey : "";
+        List<BusQueue> targets = routeCache.computeIfAbsent(exchangeName + '\u0000' + key,
+                cacheKey -> resolveRoute(exchangeName, key));
+
+        if (targets.isEmpty()) {
+            unroutableCount.incrementAndGet();
+            logger.warn("Unroutable message on in-memory bus: exchange='{}', routingKey='{}', messageId={}",
+                       exchangeName, key, message.getMessageProperties().getMessageId());
+            return;
+        }
+
+        publishedCount.incrementAndGet();
+        for (BusQueue queue : targets) {
+            queue.enqueue(new Delivery(copyFor(message, exchangeName, key, queue.name), System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Returns the queue with the given name, declaring it on the fly if no bean declares it.
+     * Never called while a route is being resolved: queues that bindings point to are declared with the topology.
+     */
+    public BusQueue queue(String name) {
+        loadTopology();
+        BusQueue queue = queues.get(name);
+        if (queue != null) {
+            return queue;
+        }
+        queue = declareQueue(name);
+        // Default exchange routes cached before this queue existed are now stale
+        routeCache.clear();
+        return queue;
+    }
+
+    /**
+     * Settles a delivery that the listener failed to process: requeues it, or dead-letters it
+     * using the queue's {@code x-dead-letter-*} arguments (dropping it when none are set).
+     * Runs on the consumer thread, so a requeue never waits for room: when the queue is full the delivery
+     * is dead-lettered as {@code maxlen} instead, as a broker does on overflow, and counted.
+     */
+    void reject(BusQueue source, Delivery delivery, boolean requeue) {
+        if (requeue) {
+            delivery.message().getMessageProperties().setRedelivered(true);
+            if (source.tryEnqueue(delivery)) {
+                return;
+            }
+            requeueOverflowCount.incrementAndGet();
+            logger.warn("Queue '{}' full, rejected message {} dead-lettered instead of requeued",
+                       source.name, delivery.message().getMessageProperties().getMessageId());
+            deadLetter(source, delivery.message(), "maxlen");
+        } else {
+            deadLetter(source, delivery.message(), "rejected");
+        }
+    }
+
+    public int getQueueDepth(String queueName) {
+        BusQueue queue = queues.get(queueName);
+        return queue != null ? queue.buffer.size() : 0;
+    }
+
+    public long getPublishedCount() { return publishedCount.get(); }
+    public long getUnroutableCount() { return unroutableCount.get(); }
+    public long getDeadLetteredCount() { return deadLetteredCount.get(); }
+    public long getDroppedCount() { return droppedCount.get(); }
+    public long getRequeueOverflowCount() { return requeueOverflowCount.get(); }
+
+    private BusQueue declareQueue(String name) {
+        return queues.computeIfAbsent(name, queueName -> {
+            logger.warn("Queue '{}' is not declared as a bean, creating it on the in-memory bus", queueName);
+            return new BusQueue(new Queue(queueName), queueCapacity);
+        });
+    }
+
+    private void deadLetter(BusQueue source, Message message, String reason) {
+        Object dlx = source.declaration.getArguments().get(DEAD_LETTER_EXCHANGE_ARG);
+        MessageProperties properties = message.getMessageProperties();
+        if (dlx == null) {
+            droppedCount.incrementAndGet();
+            logger.debug("Message {} {} from '{}' dropped (no dead letter exchange)",
+                        properties.getMessageId(), reason, source.name);
+            return;
+        }
+        Object dlk = source.declaration.getArguments().get(DEAD_LETTER_ROUTING_KEY_ARG);
+        String routingKey = dlk != null ? dlk.toString() : properties.getReceivedRoutingKey();
+
+        Map<String, Object> death = new HashMap<>();
+        death.put("queue", source.name);
+        death.put("reason", reason);
+        death.put("exchange", properties.getReceivedExchange());
+        death.put("routing-keys", List.of(properties.getReceivedRoutingKey()));
+        death.put("time", new Date());
+        death.put("count", 1L);
+        List<Object> deaths = new ArrayList<>();
+        deaths.add(death);
+        if (properties.getHeaders().get(X_DEATH_HEADER) instanceof List<?> previous) {
+            deaths.addAll(previous);
+        }
+        properties.setHeader(X_DEATH_HEADER, deaths);
+
+        deadLetteredCount.incrementAndGet();
+        publish(dlx.toString(), routingKey, message);
+    }
+
+    private Message copyFor(Message message, String exchange, String routingKey, String queueName) {
+        // Copies the AMQP basic properties by hand: the builder copy helpers are reflective or
+        // serialization based and cost tens of microseconds per delivery
+        MessageProperties source = message.getMessageProperties();
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(source.getContentType());
+        properties.setContentEncoding(source.getContentEncoding());
+        properties.setContentLength(source.getContentLength());
+        properties.setCorrelationId(source.getCorrelationId());
+        properties.setMessageId(source.getMessageId());
+        properties.setTimestamp(source.getTimestamp());
+        properties.setType(source.getType());
+        properties.setAppId(source.getAppId());
+        properties.setUserId(source.getUserId());
+        properties.setReplyTo(source.getReplyTo());
+        properties.setExpiration(source.getExpiration());
+        properties.setPriority(source.getPriority());
+        properties.setDeliveryMode(source.getDeliveryMode());
+        properties.getHeaders().putAll(source.getHeaders());
+        properties.setReceivedExchange(exchange);
+        properties.setReceivedRoutingKey(routingKey);
+        properties.setConsumerQueue(queueName);
+        return new Message(message.getBody(), properties);
+    }
+
+    private List<BusQueue> resolveRoute(String exchange, String routingKey) {
+        Set<BusQueue> targets = new LinkedHashSet<>();
+        if (DEFAULT_EXCHANGE.equals(exchange)) {
+            BusQueue queue = queues.get(routingKey);
+            if (queue != null) {
+                targets.add(queue);
+            }
+        } else {
+            collectTargets(exchange, routingKey, targets, new LinkedHashSet<>());
+        }
+        return List.copyOf(targets);
+    }
+
+    private void collectTargets(String exchangeName, String routingKey, Set<BusQueue> targets, Set<String> visited) {
+        Exchange exchange = exchanges.get(exchangeName);
+        if (exchange == null || !visited.add(exchangeName)) {
+            return;
+        }
+        for (Binding binding : bindings) {
+            if (!binding.getExchange().equals(exchangeName)
+                    || !matches(exchange.getType(), binding.getRoutingKey(), routingKey)) {
+                continue;
+            }
+            if (binding.isDestinationQueue()) {
+                // Declared with the topology; queue() would clear the route cache from inside its computation
+                targets.add(queues.get(binding.getDestination()));
+            } else {
+                collectTargets(binding.getDestination(), routingKey, targets, visited);
+            }
+        }
+    }
+
+    private static boolean matches(String exchangeType, String bindingKey, String routingKey) {
+        return switch (exchangeType) {
+            case ExchangeTypes.FANOUT -> true;
+            case ExchangeTypes.DIRECT -> bindingKey.equals(routingKey);
+            case ExchangeTypes.TOPIC -> topicMatches(bindingKey.split("\\.", -1), 0, routingKey.split("\\.", -1), 0);
+            default -> false;
+        };
+    }
+
+    private static boolean topicMatches(String[] pattern, int p, String[] words, int w) {
+        if (p == pattern.length) {
+            return w == words.length;
+        }
+        if ("#".equals(pattern[p])) {
+            // '#' matches zero or more words
+            for (int skip = w; skip <= words.length; skip++) {
+                if (topicMatches(pattern, p + 1, words, skip)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (w == words.length) {
+            return false;
+        }
+        return ("*".equals(pattern[p]) || pattern[p].equals(words[w]))
+                && topicMatches(pattern, p + 1, words, w + 1);
+    }
+
+    private void loadTopology() {
+        if (topologyLoaded) {
+            return;
+        }
+        synchronized (this) {
+            if (topologyLoaded) {
+                return;
+            }
+            List<Declarable> all = new ArrayList<>();
+            declarables.orderedStream().forEach(all::add);
+            declarableGroups.orderedStream().forEach(group -> all.addAll(group.getDeclarables()));
+            for (Declarable declarable : all) {
+                if (declarable instanceof Queue queue) {
+                    queues.putIfAbsent(queue.getName(), new BusQueue(queue, queueCapacity));
+                } else if (declarable instanceof Exchange exchange) {
+                    exchanges.putIfAbsent(exchange.getName(), exchange);
+                } else if (declarable instanceof Binding binding) {
+                    bindings.add(binding);
+                }
+            }
+            for (Binding binding : bindings) {
+                if (binding.isDestinationQueue() && !queues.containsKey(binding.getDestination())) {
+                    declareQueue(binding.getDestination());
+                }
+            }
+            exchanges.values().stream()
+                    .filter(exchange -> ExchangeTypes.HEADERS.equals(exchange.getType()))
+                    .forEach(exchange -> logger.warn("Headers exchange '{}' is not supported by the in-memory bus",
+                                                     exchange.getName()));
+            logger.info("In-memory event bus topology loaded: {} queues, {} exchanges, {} bindings",
+                       queues.size(), exchanges.size(), bindings.size());
+            topologyLoaded = true;
+        }
+    }
+
+    /**
+     * A message buffered in a queue with the time it was enqueued, used for {@code x-message-ttl}.
+     */
+    record Delivery(Message message, long enqueuedAtMillis) {
+    }
+
+    /**
+     * A queue of the in-memory bus. Consumers compete for deliveries and park when it is idle.
+     */
+    public final class BusQueue {
+
+        private final String name;
+        private final Queue declaration;
+        private final InMemoryRingBuffer<Delivery> buffer;
+        private final long ttlMillis;
+        private final ConcurrentLinkedQueue<Thread> parkedConsumers = new ConcurrentLinkedQueue<>();
+
+        private BusQueue(Queue declaration, int capacity) {
+            this.name = declaration.getName();
+            this.declaration = declaration;
+            this.buffer = new InMemoryRingBuffer<>(capacity);
+            Object ttl = declaration.getArguments().get(MESSAGE_TTL_ARG);
+            this.ttlMillis = ttl instanceof Number number ? number.longValue() : -1;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        void enqueue(Delivery delivery) {
+            long parkNanos = 1_000;
+            while (!tryEnqueue(delivery)) {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos * 2, MAX_FULL_BACKOFF_NANOS);
+            }
+        }
+
+        /**
+         * Enqueues a delivery unless the queue is full.
+         *
+         * @return false if the queue is full
+         */
+        boolean tryEnqueue(Delivery delivery) {
+            if (!buffer.offer(delivery)) {
+                return false;
+            }
+            // Wake a single parked consumer; busy consumers will see the delivery on their own
+            Thread parked = parkedConsumers.poll();
+            if (parked != null) {
+                LockSupport.unpark(parked);
+            }
+            return true;
+        }
+
+        /**
+         * Takes the next live delivery, dead-lettering expired ones on the way.
+         */
+        Delivery poll() {
+            Delivery delivery;
+            while ((delivery = buffer.poll()) != null) {
+                if (ttlMillis < 0 || System.currentTimeMillis() - delivery.enqueuedAtMillis() <= ttlMillis) {
+                    return delivery;
+                }
+                deadLetter(this, delivery.message(), "expired");
+            }
+            return null;
+        }
+
+        /**
+         * Parks the calling consumer until a delivery is enqueued or the thread is interrupted.
+         * May return spuriously; callers poll again and come back if the queue is still empty.
+         */
+        void awaitDelivery() {
+            Thread consumer = Thread.currentThread();
+            parkedConsumers.offer(consumer);
+            try {
+                // Re-check after publishing ourselves so an enqueue racing with us cannot be missed:
+                // it either sees us in parkedConsumers and unparks us, or we see its delivery here
+                if (buffer.isEmpty()) {
+                    LockSupport.park(this);
+                }
+            } finally {
+                parkedConsumers.remove(consumer);
+            }
+        }
+    }
+}
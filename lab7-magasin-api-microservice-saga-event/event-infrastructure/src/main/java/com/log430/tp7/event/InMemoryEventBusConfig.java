@@ -0,0 +1,55 @@
+package com.log430.tp7.event;
+
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Replaces the broker-backed template and listener container factory with the in-process
+ * {@link InMemoryEventBus} when the {@code in-memory-bus} profile is active, so the whole
+ * event-driven flow can run in a single JVM without RabbitMQ (single-node runs, benchmarks).
+ */
+@Configuration
+@Profile(InMemoryEventBusConfig.IN_MEMORY_BUS_PROFILE)
+public class InMemoryEventBusConfig {
+
+    public static final String IN_MEMORY_BUS_PROFILE = "in-memory-bus";
+
+    @Bean
+    public InMemoryEventBus inMemoryEventBus(ObjectProvider<Declarable> declarables,
+                                             ObjectProvider<Declarables> declarableGroups,
+                                             @Value("${event.bus.in-memory.queue-capacity:65536}") int queueCapacity) {
+        return new InMemoryEventBus(declarables, declarableGroups, queueCapacity);
+    }
+
+    @Bean
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory,
+                                         Jackson2JsonMessageConverter messageConverter,
+                                         InMemoryEventBus inMemoryEventBus) {
+        RabbitTemplate template = new InMemoryRabbitTemplate(connectionFactory, inMemoryEventBus);
+        template.setMessageConverter(messageConverter);
+        return template;
+    }
+
+    @Bean
+    public InMemoryRabbitListenerContainerFactory rabbitListenerContainerFactory(
+            InMemoryEventBus inMemoryEventBus,
+            Jackson2JsonMessageConverter messageConverter,
+            @Value("${event.bus.in-memory.concurrent-consumers:1}") int concurrentConsumers) {
+        InMemoryRabbitListenerContainerFactory factory = new InMemoryRabbitListenerContainerFactory(inMemoryEventBus);
+        factory.setMessageConverter(messageConverter);
+        factory.setConcurrentConsumers(concurrentConsumers);
+        // Same settlement policy as RabbitMQEventConfig: failed deliveries go to the DLQ
+        factory.setDefaultRequeueRejected(false);
+        factory.setErrorHandler(throwable ->
+                System.err.println("Error in message processing: " + throwable.getMessage()));
+        return factory;
+    }
+}
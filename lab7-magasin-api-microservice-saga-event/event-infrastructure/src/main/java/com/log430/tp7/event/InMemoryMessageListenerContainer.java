@@ -0,0 +1,182 @@
+package com.log430.tp7.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.api.ChannelAwareMessageListener;
+import org.springframework.amqp.rabbit.listener.support.ContainerUtils;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * Listener container that consumes from {@link InMemoryEventBus} queues instead of a broker.
+ * Keeps the AUTO acknowledge semantics of the Rabbit containers: a delivery is settled when the
+ * listener returns, and a listener failure requeues or dead-letters it according to
+ * {@code defaultRequeueRejected} and {@code AmqpRejectAndDontRequeueException}.
+ */
+public class InMemoryMessageListenerContainer implements MessageListenerContainer {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryMessageListenerContainer.class);
+    private static final Log requeueLogger = LogFactory.getLog(InMemoryMessageListenerContainer.class);
+    private static final int SPINS_BEFORE_YIELD = 100;
+    private static final int YIELDS_BEFORE_PARK = 1000;
+
+    private final InMemoryEventBus bus;
+    private final List<Thread> consumerThreads = new ArrayList<>();
+    private String[] queueNames = new String[0];
+    private MessageListener messageListener;
+    private String listenerId;
+    private ErrorHandler errorHandler;
+    private boolean autoStartup = true;
+    private boolean defaultRequeueRejected = true;
+    private int concurrentConsumers = 1;
+    private volatile boolean running;
+
+    public InMemoryMessageListenerContainer(InMemoryEventBus bus) {
+        this.bus = bus;
+    }
+
+    @Override
+    public void setupMessageListener(MessageListener messageListener) {
+        this.messageListener = messageListener;
+    }
+
+    @Override
+    public Object getMessageListener() {
+        return messageListener;
+    }
+
+    @Override
+    public void setQueueNames(String... queueNames) {
+        this.queueNames = queueNames;
+    }
+
+    @Override
+    public void setAutoStartup(boolean autoStartup) {
+        this.autoStartup = autoStartup;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return autoStartup;
+    }
+
+    @Override
+    public void setListenerId(String listenerId) {
+        this.listenerId = listenerId;
+    }
+
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    public void setDefaultRequeueRejected(boolean defaultRequeueRejected) {
+        this.defaultRequeueRejected = defaultRequeueRejected;
+    }
+
+    public void setConcurrentConsumers(int concurrentConsumers) {
+        this.concurrentConsumers = Math.max(1, concurrentConsumers);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (messageListener == null) {
+            throw new IllegalStateException("No message listener configured for container " + listenerId);
+        }
+        running = true;
+        for (String queueName : queueNames) {
+            InMemoryEventBus.BusQueue queue = bus.queue(queueName);
+            for (int i = 0; i < concurrentConsumers; i++) {
+                Thread consumer = new Thread(() -> consume(queue), "inmem-" + queueName + "-" + i);
+                consumer.setDaemon(true);
+                consumerThreads.add(consumer);
+                consumer.start();
+            }
+        }
+        logger.info("In-memory listener container {} started on queues {} with {} consumer(s) each",
+                   listenerId, Arrays.toString(queueNames), concurrentConsumers);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread consumer : consumerThreads) {
+            consumer.interrupt();
+        }
+        for (Thread consumer : consumerThreads) {
+            try {
+                consumer.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        consumerThreads.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Same phase as the Rabbit containers so they stop before the beans they call
+        return Integer.MAX_VALUE;
+    }
+
+    private void consume(InMemoryEventBus.BusQueue queue) {
+        int idleSpins = 0;
+        while (running) {
+            InMemoryEventBus.Delivery delivery = queue.poll();
+            if (delivery == null) {
+                // Spin, then yield, then park: parking on every idle poll turns each delivery into a wake-up
+                if (idleSpins < SPINS_BEFORE_YIELD) {
+                    Thread.onSpinWait();
+                } else if (idleSpins < SPINS_BEFORE_YIELD + YIELDS_BEFORE_PARK) {
+                    Thread.yield();
+                } else {
+                    queue.awaitDelivery();
+                }
+                idleSpins++;
+                continue;
+            }
+            idleSpins = 0;
+            dispatch(queue, delivery);
+        }
+    }
+
+    private void dispatch(InMemoryEventBus.BusQueue queue, InMemoryEventBus.Delivery delivery) {
+        try {
+            if (messageListener instanceof ChannelAwareMessageListener channelAware) {
+                // No channel: listeners relying on manual ack or replies are not supported in-memory
+                channelAware.onMessage(delivery.message(), null);
+            } else {
+                messageListener.onMessage(delivery.message());
+            }
+        } catch (Exception e) {
+            Throwable failure = e;
+            if (errorHandler != null) {
+                try {
+                    errorHandler.handleError(e);
+                } catch (Exception handlerException) {
+                    failure = handlerException;
+                }
+            }
+            boolean requeue = ContainerUtils.shouldRequeue(defaultRequeueRejected, failure, requeueLogger);
+            logger.debug("Listener {} failed on queue {}, requeue={}", listenerId, queue.getName(), requeue, e);
+            bus.reject(queue, delivery, requeue);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.log430.tp7.event;
+
+import org.springframework.amqp.rabbit.listener.RabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpoint;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * Creates {@link InMemoryMessageListenerContainer}s for {@code @RabbitListener} endpoints
+ * when the in-memory event bus profile is active.
+ */
+public class InMemoryRabbitListenerContainerFactory
+        implements RabbitListenerContainerFactory<InMemoryMessageListenerContainer> {
+
+    private final InMemoryEventBus bus;
+    private MessageConverter messageConverter;
+    private ErrorHandler errorHandler;
+    private boolean defaultRequeueRejected = true;
+    private int concurrentConsumers = 1;
+
+    public InMemoryRabbitListenerContainerFactory(InMemoryEventBus bus) {
+        this.bus = bus;
+    }
+
+    public void setMessageConverter(MessageConverter messageConverter) {
+        this.messageConverter = messageConverter;
+    }
+
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    public void setDefaultRequeueRejected(boolean defaultRequeueRejected) {
+        this.defaultRequeueRejected = defaultRequeueRejected;
+    }
+
+    public void setConcurrentConsumers(int concurrentConsumers) {
+        this.concurrentConsumers = concurrentConsumers;
+    }
+
+    @Override
+    public InMemoryMessageListenerContainer createListenerContainer(RabbitListenerEndpoint endpoint) {
+        InMemoryMessageListenerContainer container = new InMemoryMessageListenerContainer(bus);
+        container.setErrorHandler(errorHandler);
+        container.setDefaultRequeueRejected(defaultRequeueRejected);
+        container.setConcurrentConsumers(concurrentConsumers);
+
+        if (endpoint != null) {
+            if (endpoint.getMessageConverter() == null && messageConverter != null) {
+                endpoint.setMessageConverter(messageConverter);
+            }
+            if (endpoint.getConcurrency() != null) {
+                // "min-max" ranges run with the minimum, like the steady state of the simple container
+                String concurrency = endpoint.getConcurrency();
+                int separator = concurrency.indexOf('-');
+                container.setConcurrentConsumers(Integer.parseInt(
+                        (separator > 0 ? concurrency.substring(0, separator) : concurrency).trim()));
+            }
+            if (endpoint.getAutoStartup() != null) {
+                container.setAutoStartup(endpoint.getAutoStartup());
+            }
+            container.setListenerId(endpoint.getId());
+            endpoint.setupListenerContainer(container);
+        }
+        return container;
+    }
+}
@@ -0,0 +1,31 @@
+package com.log430.tp7.event;
+
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+/**
+ * RabbitTemplate that publishes to the {@link InMemoryEventBus} instead of a broker.
+ * Every send and convertAndSend variant ends up here, so existing producers such as
+ * {@link RabbitMQEventProducer} keep their serialization, headers and routing keys unchanged.
+ * Receive and channel callback operations are not redirected and still require a broker.
+ */
+public class InMemoryRabbitTemplate extends RabbitTemplate {
+
+    private final InMemoryEventBus bus;
+
+    public InMemoryRabbitTemplate(ConnectionFactory connectionFactory, InMemoryEventBus bus) {
+        super(connectionFactory);
+        this.bus = bus;
+    }
+
+    @Override
+    public void send(String exchange, String routingKey, Message message, CorrelationData correlationData)
+            throws AmqpException {
+        bus.publish(exchange != null ? exchange : getExchange(),
+                    routingKey != null ? routingKey : getRoutingKey(),
+                    message);
+    }
+}
@@ -0,0 +1,104 @@
+package com.log430.tp7.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer ring buffer.
+ * Each slot carries a sequence number so producers and consumers only contend
+ * on a single CAS of their respective cursor (Vyukov bounded queue).
+ *
+ * @param <E> element type
+ */
+public final class InMemoryRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueueCursor = new AtomicLong();
+    private final AtomicLong dequeueCursor = new AtomicLong();
+
+    /**
+     * Creates a ring buffer; the capacity is rounded up to the next power of two.
+     */
+    public InMemoryRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        int capacity = Integer.highestOneBit(requestedCapacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Appends an element.
+     *
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        long position = enqueueCursor.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (enqueueCursor.compareAndSet(position, position + 1)) {
+                    slots.set(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = enqueueCursor.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = enqueueCursor.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element.
+     *
+     * @return the element, or null if the buffer is empty
+     */
+    public E poll() {
+        long position = dequeueCursor.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (dequeueCursor.compareAndSet(position, position + 1)) {
+                    E element = slots.get(index);
+                    slots.set(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return element;
+                }
+                position = dequeueCursor.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = dequeueCursor.get();
+            }
+        }
+    }
+
+    /**
+     * Approximate number of buffered elements.
+     */
+    public int size() {
+        long size = enqueueCursor.get() - dequeueCursor.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
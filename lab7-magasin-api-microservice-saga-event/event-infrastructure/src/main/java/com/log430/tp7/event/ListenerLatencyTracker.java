@@ -0,0 +1,89 @@
+package com.log430.tp7.event;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.amqp.core.Message;
+
+/**
+ * Listener advice that measures how long each delivery takes to process, per consumer queue.
+ * Installed in the listener container advice chain; the measurements are drained periodically
+ * by {@link AdaptiveConsumerController}.
+ */
+public class ListenerLatencyTracker implements MethodInterceptor {
+
+    private static final String UNKNOWN_QUEUE = "unknown";
+
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        try {
+            return invocation.proceed();
+        } finally {
+            record(invocation.getArguments(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the measurements collected for the given queues since the previous call and resets them.
+     */
+    public LatencySnapshot drain(String... queueNames) {
+        long count = 0;
+        long totalNanos = 0;
+        long maxNanos = 0;
+        for (String queueName : queueNames) {
+            LatencyWindow window = windows.get(queueName);
+            if (window != null) {
+                count += window.count.sumThenReset();
+                totalNanos += window.totalNanos.sumThenReset();
+                maxNanos = Math.max(maxNanos, window.maxNanos.getAndSet(0));
+            }
+        }
+        return new LatencySnapshot(count, totalNanos, maxNanos);
+    }
+
+    private void record(Object[] arguments, long elapsedNanos) {
+        // ContainerDelegate.invokeListener(Channel channel, Object data)
+        Object data = arguments.length > 1 ? arguments[1] : null;
+        String queueName = UNKNOWN_QUEUE;
+        int messages = 1;
+        if (data instanceof Message message) {
+            queueName = consumerQueue(message);
+        } else if (data instanceof List<?> batch && !batch.isEmpty() && batch.get(0) instanceof Message first) {
+            queueName = consumerQueue(first);
+            messages = batch.size();
+        }
+        LatencyWindow window = windows.computeIfAbsent(queueName, name -> new LatencyWindow());
+        window.count.add(messages);
+        window.totalNanos.add(elapsedNanos);
+        window.maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+    }
+
+    private static String consumerQueue(Message message) {
+        String queue = message.getMessageProperties().getConsumerQueue();
+        return queue != null ? queue : UNKNOWN_QUEUE;
+    }
+
+    private static final class LatencyWindow {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+    }
+
+    /**
+     * Processing latency observed over one control interval.
+     */
+    public record LatencySnapshot(long count, long totalNanos, long maxNanos) {
+
+        public double averageMillis() {
+            return count == 0 ? 0.0 : totalNanos / (double) count / 1_000_000.0;
+        }
+    }
+}
@@ -11,9 +11,11 @@ import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFacto
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -31,6 +33,8 @@ public class RabbitMQEventConfig {
     public static final String AUDIT_QUEUE = "audit.events.queue";
     public static final String NOTIFICATION_DLQ = "notification.events.dlq";
     public static final String AUDIT_DLQ = "audit.events.dlq";
+    public static final String NOTIFICATION_PARKING_LOT = "notification.events.parking-lot";
+    public static final String AUDIT_PARKING_LOT = "audit.events.parking-lot";
     
     @Bean
     public TopicExchange businessEventsExchange() {
@@ -75,6 +79,20 @@ public class RabbitMQEventConfig {
                 .build();
     }
     
+    @Bean
+    public Queue notificationParkingLotQueue() {
+        return QueueBuilder
+                .durable(NOTIFICATION_PARKING_LOT)
+                .build();
+    }
+    
+    @Bean
+    public Queue auditParkingLotQueue() {
+        return QueueBuilder
+                .durable(AUDIT_PARKING_LOT)
+                .build();
+    }
+    
     @Bean
     public Binding notificationBinding() {
         return BindingBuilder
@@ -106,6 +124,7 @@ public class RabbitMQEventConfig {
     }
     
     @Bean
+    @Profile("!" + InMemoryEventBusConfig.IN_MEMORY_BUS_PROFILE)
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, 
                                        Jackson2JsonMessageConverter messageConverter) {
         RabbitTemplate template = new RabbitTemplate(connectionFactory);
@@ -130,15 +149,29 @@ public class RabbitMQEventConfig {
     }
     
     @Bean
+    public ListenerLatencyTracker listenerLatencyTracker() {
+        return new ListenerLatencyTracker();
+    }
+    
+    @Bean
+    @Profile("!" + InMemoryEventBusConfig.IN_MEMORY_BUS_PROFILE)
     public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
             ConnectionFactory connectionFactory,
-            Jackson2JsonMessageConverter messageConverter) {
+            Jackson2JsonMessageConverter messageConverter,
+            ListenerLatencyTracker listenerLatencyTracker,
+            @Value("${event.consumer.adaptive.min-consumers:1}") int initialConsumers,
+            @Value("${event.consumer.adaptive.initial-prefetch:50}") int initialPrefetch) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
         factory.setMessageConverter(messageConverter);
         factory.setDefaultRequeueRejected(false);
         factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
         
+        // Starting point of the adaptive controller, which then tunes each container
+        factory.setConcurrentConsumers(initialConsumers);
+        factory.setPrefetchCount(initialPrefetch);
+        factory.setAdviceChain(listenerLatencyTracker);
+        
         // Error handler
         factory.setErrorHandler(throwable -> {
             System.err.println("Error in message processing: " + throwable.getMessage());
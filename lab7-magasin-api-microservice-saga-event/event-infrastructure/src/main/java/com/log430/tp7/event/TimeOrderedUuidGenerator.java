@@ -0,0 +1,68 @@
+package com.log430.tp7.event;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free generator of time-ordered identifiers in the UUIDv7 layout (RFC 9562):
+ * 48-bit Unix millisecond timestamp, 12-bit sequence, 62 random bits.
+ * Identifiers generated in the same JVM are strictly increasing, so they append to the right-hand
+ * side of B-tree primary keys instead of scattering inserts like random v4 UUIDs.
+ */
+public final class TimeOrderedUuidGenerator {
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_MASK = 0x3FFFFFFFFFFFFFFFL;
+    private static final long VARIANT_RFC_4122 = 0x8000000000000000L;
+
+    /** Last issued (timestamp << 12 | sequence); a sequence overflow borrows the next millisecond. */
+    private static final AtomicLong lastTimestampAndSequence = new AtomicLong();
+
+    private TimeOrderedUuidGenerator() {
+    }
+
+    /**
+     * Returns the next time-ordered UUID.
+     */
+    public static UUID next() {
+        long timestampAndSequence = nextTimestampAndSequence();
+        long timestamp = timestampAndSequence >>> SEQUENCE_BITS;
+        long sequence = timestampAndSequence & ((1L << SEQUENCE_BITS) - 1);
+        long mostSignificant = (timestamp << 16) | VERSION_7 | sequence;
+        // ThreadLocalRandom: uniqueness comes from the timestamp and sequence, not from SecureRandom
+        long leastSignificant = (ThreadLocalRandom.current().nextLong() & VARIANT_MASK) | VARIANT_RFC_4122;
+        return new UUID(mostSignificant, leastSignificant);
+    }
+
+    /**
+     * Returns the next time-ordered UUID in its canonical string form.
+     */
+    public static String nextString() {
+        return next().toString();
+    }
+
+    /**
+     * Extracts the Unix millisecond timestamp of a version 7 UUID.
+     */
+    public static long timestampMillis(UUID uuid) {
+        if (uuid.version() != 7) {
+            throw new IllegalArgumentException("Not a version 7 UUID: " + uuid);
+        }
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+
+    private static long nextTimestampAndSequence() {
+        while (true) {
+            long previous = lastTimestampAndSequence.get();
+            long candidate = System.currentTimeMillis() << SEQUENCE_BITS;
+            if (candidate <= previous) {
+                candidate = previous + 1;
+            }
+            if (lastTimestampAndSequence.compareAndSet(previous, candidate)) {
+                return candidate;
+            }
+        }
+    }
+}
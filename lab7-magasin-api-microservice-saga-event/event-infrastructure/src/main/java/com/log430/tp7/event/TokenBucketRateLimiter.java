@@ -0,0 +1,68 @@
+package com.log430.tp7.event;
+
+/**
+ * Simple token bucket used to pace bulk event operations such as DLQ replay.
+ * Tokens refill continuously at the configured rate up to the bucket capacity.
+ */
+public class TokenBucketRateLimiter {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double availableTokens;
+    private long lastRefillNanos;
+
+    /**
+     * Creates a limiter that allows {@code permitsPerSecond} on average with bursts of {@code capacity}.
+     */
+    public TokenBucketRateLimiter(double permitsPerSecond, int capacity) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.refillPerNano = permitsPerSecond / NANOS_PER_SECOND;
+        this.availableTokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Takes one token, blocking until one is available.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = reserveOrGetWait()) > 0) {
+            Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+        }
+    }
+
+    /**
+     * Takes one token if immediately available.
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (availableTokens >= 1.0) {
+            availableTokens -= 1.0;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized long reserveOrGetWait() {
+        refill();
+        if (availableTokens >= 1.0) {
+            availableTokens -= 1.0;
+            return 0;
+        }
+        return (long) Math.ceil((1.0 - availableTokens) / refillPerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        availableTokens = Math.min(capacity, availableTokens + (now - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = now;
+    }
+}
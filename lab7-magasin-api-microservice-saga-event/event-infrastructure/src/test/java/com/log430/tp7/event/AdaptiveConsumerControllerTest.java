@@ -0,0 +1,140 @@
+package com.log430.tp7.event;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AdaptiveConsumerControllerTest {
+
+    private final RabbitListenerEndpointRegistry registry = mock(RabbitListenerEndpointRegistry.class);
+    private final ListenerLatencyTracker latencyTracker = mock(ListenerLatencyTracker.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final SimpleMessageListenerContainer container = mock(SimpleMessageListenerContainer.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AdaptiveConsumerController controller;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<RabbitListenerEndpointRegistry> registryProvider = mock(ObjectProvider.class);
+        when(registryProvider.getIfAvailable()).thenReturn(registry);
+        ObjectProvider<MeterRegistry> meterRegistryProvider = mock(ObjectProvider.class);
+        when(meterRegistryProvider.getIfAvailable(any())).thenReturn(meterRegistry);
+
+        controller = new AdaptiveConsumerController(registryProvider, latencyTracker, rabbitTemplate,
+            meterRegistryProvider);
+        ReflectionTestUtils.setField(controller, "minConsumers", 1);
+        ReflectionTestUtils.setField(controller, "maxConsumers", 10);
+        ReflectionTestUtils.setField(controller, "minPrefetch", 1);
+        ReflectionTestUtils.setField(controller, "maxPrefetch", 250);
+        ReflectionTestUtils.setField(controller, "initialPrefetch", 50);
+        ReflectionTestUtils.setField(controller, "prefetchStep", 10);
+        ReflectionTestUtils.setField(controller, "targetLatencyMs", 200.0);
+        ReflectionTestUtils.setField(controller, "backlogThreshold", 100L);
+        ReflectionTestUtils.setField(controller, "decreaseFactor", 0.5);
+
+        when(registry.getListenerContainers()).thenReturn(List.of(container));
+        when(container.isRunning()).thenReturn(true);
+        when(container.getListenerId()).thenReturn("notification-listener");
+        when(container.getQueueNames()).thenReturn(new String[] {"notification.events.queue"});
+        when(container.getActiveConsumerCount()).thenReturn(4);
+    }
+
+    @Test
+    void testBacklogAddsAConsumerWithTheHigherPrefetchWithoutRestarting() {
+        givenLatency(0, 0);
+        givenQueueDepth(500);
+
+        controller.adjustAll();
+
+        // Starts from the four consumers actually running, not from min-consumers
+        InOrder inOrder = inOrder(container);
+        inOrder.verify(container).setPrefetchCount(60);
+        inOrder.verify(container).setConcurrentConsumers(5);
+        verify(container, never()).stop();
+        verify(container, never()).start();
+        assertEquals(5.0, gauge("event_consumer_concurrency"));
+        assertEquals(60.0, gauge("event_consumer_prefetch"));
+    }
+
+    @Test
+    void testLastingBacklogNeverRestartsConsumers() {
+        givenLatency(0, 0);
+        givenQueueDepth(500);
+
+        for (int interval = 0; interval < 10; interval++) {
+            controller.adjustAll();
+        }
+
+        verify(container, never()).stop();
+        verify(container, never()).start();
+        assertEquals(10.0, gauge("event_consumer_concurrency"));
+        assertEquals(150.0, gauge("event_consumer_prefetch"));
+    }
+
+    @Test
+    void testLatencyBreachHalvesConsumersAndPrefetch() {
+        givenLatency(10, 500);
+        givenQueueDepth(500);
+
+        controller.adjustAll();
+
+        InOrder inOrder = inOrder(container);
+        inOrder.verify(container).stop();
+        inOrder.verify(container).setPrefetchCount(25);
+        inOrder.verify(container).setConcurrentConsumers(2);
+        inOrder.verify(container).start();
+    }
+
+    @Test
+    void testIdleQueueRemovesAConsumerWithoutRestarting() {
+        givenLatency(0, 0);
+        givenQueueDepth(0);
+
+        controller.adjustAll();
+
+        verify(container).setConcurrentConsumers(3);
+        verify(container, never()).setPrefetchCount(anyInt());
+        verify(container, never()).stop();
+        verify(container, never()).start();
+    }
+
+    @Test
+    void testStoppedContainersAreLeftAlone() {
+        when(container.isRunning()).thenReturn(false);
+
+        controller.adjustAll();
+
+        verify(container, never()).setConcurrentConsumers(anyInt());
+        verify(container, never()).stop();
+    }
+
+    private void givenLatency(long count, long averageMillis) {
+        when(latencyTracker.drain(any(String[].class))).thenReturn(new ListenerLatencyTracker.LatencySnapshot(
+            count, count * TimeUnit.MILLISECONDS.toNanos(averageMillis), TimeUnit.MILLISECONDS.toNanos(averageMillis)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenQueueDepth(long depth) {
+        when(rabbitTemplate.execute(any(ChannelCallback.class))).thenReturn(depth);
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).tag("listener", "notification-listener").gauge().value();
+    }
+}
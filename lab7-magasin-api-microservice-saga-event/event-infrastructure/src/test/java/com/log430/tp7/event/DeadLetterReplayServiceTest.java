@@ -0,0 +1,155 @@
+package com.log430.tp7.event;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DeadLetterReplayServiceTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final Channel channel = mock(Channel.class);
+    private final Deque<GetResponse> deadLetters = new ArrayDeque<>();
+    private DeadLetterReplayService replayService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        replayService = new DeadLetterReplayService(rabbitTemplate, 1000, 10, 100, 3);
+        when(rabbitTemplate.execute(any(ChannelCallback.class)))
+            .thenAnswer(invocation -> ((ChannelCallback<Object>) invocation.getArgument(0)).doInRabbit(channel));
+        when(channel.messageCount(anyString())).thenAnswer(invocation -> (long) deadLetters.size());
+        when(channel.basicGet(anyString(), eq(false))).thenAnswer(invocation -> deadLetters.poll());
+    }
+
+    @AfterEach
+    void tearDown() {
+        replayService.shutdown();
+    }
+
+    @Test
+    void testReplaySendsMessagesBackToTheQueueTheyDiedIn() throws Exception {
+        deadLetters.add(deadLetter(1, "SaleCompleted", null));
+
+        DeadLetterReplayReport report = replayService.replay(new DeadLetterReplayRequest("notification"));
+
+        ArgumentCaptor<AMQP.BasicProperties> properties = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        verify(channel).basicPublish(eq(""), eq(RabbitMQEventConfig.NOTIFICATION_QUEUE), properties.capture(),
+            any(byte[].class));
+        verify(channel, never()).basicPublish(eq(RabbitMQEventConfig.BUSINESS_EVENTS_EXCHANGE), anyString(),
+            any(AMQP.BasicProperties.class), any(byte[].class));
+        verify(channel).basicAck(1L, false);
+        assertEquals(1, properties.getValue().getHeaders().get("x-replay-count"));
+        assertEquals(report.getReplayId(), properties.getValue().getHeaders().get("x-replay-id"));
+        assertEquals(DeadLetterReplayReport.Status.COMPLETED, report.getStatus());
+        assertEquals(1, report.getRepublished());
+    }
+
+    @Test
+    void testFanOutRepublishesToTheOriginalExchangeAndRoutingKey() throws Exception {
+        deadLetters.add(deadLetter(1, "SaleCompleted", null));
+        DeadLetterReplayRequest request = new DeadLetterReplayRequest("notification");
+        request.setFanOut(true);
+
+        DeadLetterReplayReport report = replayService.replay(request);
+
+        verify(channel).basicPublish(eq(RabbitMQEventConfig.BUSINESS_EVENTS_EXCHANGE), eq("sale.completed"),
+            any(AMQP.BasicProperties.class), any(byte[].class));
+        verify(channel, never()).basicPublish(eq(""), anyString(), any(AMQP.BasicProperties.class),
+            any(byte[].class));
+        assertEquals(1, report.getRepublished());
+    }
+
+    @Test
+    void testMessagesBelowTheReplayLimitAreReplayedAgain() throws Exception {
+        deadLetters.add(deadLetter(1, "SaleCompleted", 2));
+
+        DeadLetterReplayReport report = replayService.replay(new DeadLetterReplayRequest("audit"));
+
+        ArgumentCaptor<AMQP.BasicProperties> properties = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        verify(channel).basicPublish(eq(""), eq(RabbitMQEventConfig.NOTIFICATION_QUEUE), properties.capture(),
+            any(byte[].class));
+        assertEquals(3, properties.getValue().getHeaders().get("x-replay-count"));
+        assertEquals(1, report.getRepublished());
+        assertEquals(0, report.getParked());
+    }
+
+    @Test
+    void testMessagesAtTheReplayLimitAreParked() throws Exception {
+        deadLetters.add(deadLetter(1, "SaleCompleted", 3));
+        deadLetters.add(deadLetter(2, "SaleCompleted", 0));
+
+        DeadLetterReplayReport report = replayService.replay(new DeadLetterReplayRequest("audit"));
+
+        verify(channel).basicPublish(eq(""), eq(RabbitMQEventConfig.AUDIT_PARKING_LOT),
+            any(AMQP.BasicProperties.class), any(byte[].class));
+        verify(channel).basicPublish(eq(""), eq(RabbitMQEventConfig.NOTIFICATION_QUEUE),
+            any(AMQP.BasicProperties.class), any(byte[].class));
+        verify(channel).basicAck(1L, false);
+        verify(channel).basicAck(2L, false);
+        assertEquals(1, report.getParked());
+        assertEquals(1, report.getRepublished());
+    }
+
+    @Test
+    void testFilteredAndDryRunMessagesAreRequeuedWithoutPublishing() throws Exception {
+        deadLetters.add(deadLetter(1, "SaleCompleted", null));
+        deadLetters.add(deadLetter(2, "StockReserved", null));
+        DeadLetterReplayRequest request = new DeadLetterReplayRequest("notification");
+        request.setEventType("SaleCompleted");
+        request.setDryRun(true);
+
+        DeadLetterReplayReport report = replayService.replay(request);
+
+        verify(channel, never()).basicPublish(anyString(), anyString(), any(AMQP.BasicProperties.class),
+            any(byte[].class));
+        verify(channel).basicNack(1L, false, true);
+        verify(channel).basicNack(2L, false, true);
+        assertEquals(1, report.getMatched());
+        assertEquals(1, report.getSkipped());
+    }
+
+    @Test
+    void testUnknownQueueIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+            () -> replayService.replay(new DeadLetterReplayRequest("payment")));
+    }
+
+    private static GetResponse deadLetter(long deliveryTag, String eventType, Integer replayCount) {
+        Map<String, Object> death = new HashMap<>();
+        death.put("queue", RabbitMQEventConfig.NOTIFICATION_QUEUE);
+        death.put("exchange", RabbitMQEventConfig.BUSINESS_EVENTS_EXCHANGE);
+        death.put("routing-keys", List.of("sale.completed"));
+        death.put("reason", "rejected");
+
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("x-death", List.of(death));
+        headers.put("eventType", eventType);
+        if (replayCount != null) {
+            headers.put("x-replay-count", replayCount);
+        }
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+            .messageId("message-" + deliveryTag)
+            .headers(headers)
+            .build();
+        return new GetResponse(new Envelope(deliveryTag, false, "", RabbitMQEventConfig.NOTIFICATION_DLQ),
+            properties, "{}".getBytes(StandardCharsets.UTF_8), 0);
+    }
+}
@@ -0,0 +1,208 @@
+package com.log430.tp7.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageListener;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryEventBusTest {
+
+    private static final String EXCHANGE = "business.events";
+
+    private final List<InMemoryMessageListenerContainer> containers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        containers.forEach(InMemoryMessageListenerContainer::stop);
+    }
+
+    @Test
+    void testTopicBindingsMatchSingleWordAndMultiWordWildcards() {
+        TopicExchange exchange = new TopicExchange(EXCHANGE);
+        Queue allEvents = new Queue("all");
+        Queue saleEvents = new Queue("sale");
+        Queue everything = new Queue("everything");
+        Queue completed = new Queue("completed");
+        InMemoryEventBus bus = bus(exchange, allEvents, saleEvents, everything, completed,
+            BindingBuilder.bind(allEvents).to(exchange).with("*.*"),
+            BindingBuilder.bind(saleEvents).to(exchange).with("sale.*"),
+            BindingBuilder.bind(everything).to(exchange).with("#"),
+            BindingBuilder.bind(completed).to(exchange).with("#.completed"));
+
+        bus.publish(EXCHANGE, "sale.completed", message("1"));
+        bus.publish(EXCHANGE, "stock.reserved", message("2"));
+        bus.publish(EXCHANGE, "sale.step.completed", message("3"));
+        bus.publish(EXCHANGE, "payment", message("4"));
+
+        assertEquals(2, bus.getQueueDepth("all"));
+        assertEquals(1, bus.getQueueDepth("sale"));
+        assertEquals(4, bus.getQueueDepth("everything"));
+        assertEquals(2, bus.getQueueDepth("completed"));
+        assertEquals(0, bus.getUnroutableCount());
+    }
+
+    @Test
+    void testDirectFanoutAndDefaultExchangeRouting() {
+        DirectExchange direct = new DirectExchange("direct");
+        FanoutExchange fanout = new FanoutExchange("fanout");
+        Queue first = new Queue("first");
+        Queue second = new Queue("second");
+        InMemoryEventBus bus = bus(direct, fanout, first, second,
+            BindingBuilder.bind(first).to(direct).with("key"),
+            BindingBuilder.bind(first).to(fanout),
+            BindingBuilder.bind(second).to(fanout));
+
+        bus.publish("direct", "key", message("1"));
+        bus.publish("direct", "other", message("2"));
+        bus.publish("fanout", "ignored", message("3"));
+        bus.publish("", "second", message("4"));
+
+        assertEquals(2, bus.getQueueDepth("first"));
+        assertEquals(2, bus.getQueueDepth("second"));
+        assertEquals(1, bus.getUnroutableCount());
+    }
+
+    @Test
+    void testRejectedDeliveryIsDeadLetteredWithAnXDeathHeader() throws Exception {
+        TopicExchange exchange = new TopicExchange(EXCHANGE);
+        Queue queue = QueueBuilder.durable("notification")
+            .withArgument("x-dead-letter-exchange", "")
+            .withArgument("x-dead-letter-routing-key", "notification.dlq")
+            .build();
+        Queue deadLetterQueue = new Queue("notification.dlq");
+        InMemoryEventBus bus = bus(exchange, queue, deadLetterQueue,
+            BindingBuilder.bind(queue).to(exchange).with("*.*"));
+
+        BlockingQueue<Message> deadLetters = new LinkedBlockingQueue<>();
+        start(bus, "notification", message -> {
+            throw new AmqpRejectAndDontRequeueException("listener failure");
+        });
+        start(bus, "notification.dlq", deadLetters::add);
+
+        bus.publish(EXCHANGE, "sale.completed", message("1"));
+
+        Message deadLetter = deadLetters.poll(5, TimeUnit.SECONDS);
+        assertNotNull(deadLetter);
+        assertEquals("1", deadLetter.getMessageProperties().getMessageId());
+        List<?> deaths = (List<?>) deadLetter.getMessageProperties().getHeaders().get("x-death");
+        Map<?, ?> death = (Map<?, ?>) deaths.get(0);
+        assertEquals("notification", death.get("queue"));
+        assertEquals("rejected", death.get("reason"));
+        assertEquals(EXCHANGE, death.get("exchange"));
+        assertEquals(List.of("sale.completed"), death.get("routing-keys"));
+        assertEquals(1, bus.getDeadLetteredCount());
+    }
+
+    @Test
+    void testBindingToAnUndeclaredQueueDeclaresItWithTheTopology() {
+        TopicExchange exchange = new TopicExchange(EXCHANGE);
+        // The queue itself is not a bean: only the binding names it
+        InMemoryEventBus bus = bus(exchange, BindingBuilder.bind(new Queue("undeclared")).to(exchange).with("#"));
+
+        bus.publish(EXCHANGE, "sale.completed", message("1"));
+        bus.publish(EXCHANGE, "sale.completed", message("2"));
+
+        assertEquals(2, bus.getQueueDepth("undeclared"));
+        assertEquals(0, bus.getUnroutableCount());
+    }
+
+    @Test
+    void testRequeueIntoAFullQueueDoesNotBlockTheConsumer() {
+        Queue queue = new Queue("full");
+        InMemoryEventBus bus = bus(2, queue);
+        bus.publish("", "full", message("1"));
+        bus.publish("", "full", message("2"));
+
+        InMemoryEventBus.Delivery rejected = new InMemoryEventBus.Delivery(message("3"), System.currentTimeMillis());
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> bus.reject(bus.queue("full"), rejected, true));
+
+        // No room to requeue and no dead letter exchange: the delivery is dropped and counted
+        assertEquals(2, bus.getQueueDepth("full"));
+        assertEquals(1, bus.getRequeueOverflowCount());
+        assertEquals(1, bus.getDroppedCount());
+    }
+
+    @Test
+    void testIdleConsumerParksUntilAPublishWakesIt() throws Exception {
+        Queue queue = new Queue("idle");
+        InMemoryEventBus bus = bus(queue);
+        BlockingQueue<Message> received = new LinkedBlockingQueue<>();
+        start(bus, "idle", received::add);
+
+        Thread consumer = awaitConsumerThread("inmem-idle-0");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (consumer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // Parked without a timeout: an idle queue costs no periodic wake-ups
+        assertEquals(Thread.State.WAITING, consumer.getState());
+
+        bus.publish("", "idle", message("1"));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+    }
+
+    private InMemoryEventBus bus(Declarable... declarables) {
+        return bus(1024, declarables);
+    }
+
+    private InMemoryEventBus bus(int queueCapacity, Declarable... declarables) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        for (int i = 0; i < declarables.length; i++) {
+            beanFactory.registerSingleton("declarable" + i, declarables[i]);
+        }
+        return new InMemoryEventBus(beanFactory.getBeanProvider(Declarable.class),
+            beanFactory.getBeanProvider(Declarables.class), queueCapacity);
+    }
+
+    private void start(InMemoryEventBus bus, String queueName,
+                       MessageListener listener) {
+        InMemoryMessageListenerContainer container = new InMemoryMessageListenerContainer(bus);
+        container.setQueueNames(queueName);
+        container.setupMessageListener(listener);
+        container.setDefaultRequeueRejected(false);
+        container.setListenerId(queueName);
+        container.start();
+        containers.add(container);
+    }
+
+    private static Thread awaitConsumerThread(String name) throws InterruptedException {
+        for (int attempt = 0; attempt < 500; attempt++) {
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals(name)) {
+                    return thread;
+                }
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Consumer thread " + name + " not started");
+    }
+
+    private static Message message(String messageId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(messageId);
+        return new Message("{}".getBytes(StandardCharsets.UTF_8), properties);
+    }
+}
@@ -0,0 +1,101 @@
+package com.log430.tp7.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryRingBufferTest {
+
+    @Test
+    void testCapacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(8, new InMemoryRingBuffer<Integer>(5).capacity());
+        assertEquals(8, new InMemoryRingBuffer<Integer>(8).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryRingBuffer<Integer>(1));
+    }
+
+    @Test
+    void testElementsAreReturnedInOrderAndOfferFailsWhenFull() {
+        InMemoryRingBuffer<Integer> buffer = new InMemoryRingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void testConcurrentProducersAndConsumersNeitherLoseNorDuplicateElements() throws Exception {
+        int producers = 2;
+        int consumers = 2;
+        int perProducer = 20_000;
+        InMemoryRingBuffer<Integer> buffer = new InMemoryRingBuffer<>(64);
+        Set<Integer> received = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(producers * perProducer);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(producers + consumers);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int base = p * perProducer;
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        while (!buffer.offer(base + i)) {
+                            Thread.yield();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int c = 0; c < consumers; c++) {
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    while (remaining.get() > 0) {
+                        Integer element = buffer.poll();
+                        if (element == null) {
+                            Thread.yield();
+                        } else {
+                            if (!received.add(element)) {
+                                duplicates.incrementAndGet();
+                            }
+                            remaining.decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, duplicates.get());
+        assertEquals(producers * perProducer, received.size());
+        assertTrue(buffer.isEmpty());
+    }
+}
@@ -1,8 +1,5 @@
 package com.log430.tp7.application.service;
 
-import java.time.LocalDateTime;
-import java.util.UUID;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -13,8 +10,10 @@ import com.log430.tp7.domain.inventory.StockReservation;
 import com.log430.tp7.domain.inventory.events.InventoryReleased;
 import com.log430.tp7.domain.inventory.events.InventoryReserved;
 import com.log430.tp7.domain.inventory.events.InventoryUnavailable;
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
 import com.log430.tp7.infrastructure.event.EventProducer;
 import com.log430.tp7.infrastructure.repository.InventoryItemRepository;
+import com.log430.tp7.infrastructure.repository.InventoryItemRepository.StockLevels;
 import com.log430.tp7.infrastructure.repository.StockReservationRepository;
 
 /**
@@ -56,39 +55,36 @@ public class EventDrivenInventoryService {
                    inventoryItemId, transactionId, quantity);
         
         try {
-            InventoryItem item = inventoryItemRepository.findById(inventoryItemId)
-                    .orElseThrow(() -> new IllegalArgumentException("Inventory item not found: " + inventoryItemId));
-            
-            // Check if item is active
-            if (!item.isActive()) {
-                logger.warn("Inventory item is not active: {}", inventoryItemId);
-                publishInventoryUnavailable(inventoryItemId, transactionId, quantity, 0, 
-                                          "Item is not active", correlationId);
-                return null;
-            }
-            
-            // Calculate available stock (current stock - reserved stock)
-            Integer reservedQuantity = stockReservationRepository.calculateReservedQuantityWithLock(
-                    inventoryItemId.toString(), LocalDateTime.now());
-            Integer availableStock = item.getStockCentral() - reservedQuantity;
-            
-            // Check if sufficient stock is available
-            if (availableStock < quantity) {
+            // Move the quantity from available to reserved stock only if enough of it is available
+            if (inventoryItemRepository.reserveStock(inventoryItemId, quantity) == 0) {
+                InventoryItem item = inventoryItemRepository.findById(inventoryItemId)
+                        .orElseThrow(() -> new IllegalArgumentException("Inventory item not found: " + inventoryItemId));
+                
+                // Check if item is active
+                if (!item.isActive()) {
+                    logger.warn("Inventory item is not active: {}", inventoryItemId);
+                    publishInventoryUnavailable(inventoryItemId, transactionId, quantity, 0, 
+                                              "Item is not active", correlationId);
+                    return null;
+                }
+                
                 logger.warn("Insufficient inventory: itemId={}, requested={}, available={}", 
-                           inventoryItemId, quantity, availableStock);
-                publishInventoryUnavailable(inventoryItemId, transactionId, quantity, availableStock, 
+                           inventoryItemId, quantity, item.getStockAvailable());
+                publishInventoryUnavailable(inventoryItemId, transactionId, quantity, item.getStockAvailable(), 
                                           "Insufficient stock", correlationId);
                 return null;
             }
             
             // Create reservation
-            String reservationId = UUID.randomUUID().toString();
+            String reservationId = TimeOrderedUuidGenerator.nextString();
             StockReservation reservation = new StockReservation(reservationId, inventoryItemId.toString(), 
                                                               quantity, transactionId);
             stockReservationRepository.save(reservation);
             
-            // Calculate remaining stock after reservation
-            Integer remainingStock = availableStock - quantity;
+            // Remaining stock after reservation
+            Integer remainingStock = inventoryItemRepository.findStockLevelsById(inventoryItemId)
+                    .map(StockLevels::getStockAvailable)
+                    .orElse(0);
             
             // Publish success event
             publishInventoryReserved(inventoryItemId, transactionId, quantity, reservationId, 
@@ -129,19 +125,19 @@ public class EventDrivenInventoryService {
                 return false;
             }
             
-            // Release the reservation
+            // Release the reservation and give its quantity back to the available stock
+            Long inventoryItemId = Long.parseLong(reservation.getProductId());
+            if (inventoryItemRepository.releaseStock(inventoryItemId, reservation.getQuantity()) == 0) {
+                throw new IllegalStateException("Reserved stock of item " + inventoryItemId
+                        + " does not cover reservation " + reservationId);
+            }
             reservation.release();
             stockReservationRepository.save(reservation);
             
-            // Get current inventory item to calculate new available stock
-            Long inventoryItemId = Long.parseLong(reservation.getProductId());
-            InventoryItem item = inventoryItemRepository.findById(inventoryItemId)
-                    .orElseThrow(() -> new IllegalArgumentException("Inventory item not found: " + inventoryItemId));
-            
-            // Calculate new available stock after release
-            Integer reservedQuantity = stockReservationRepository.calculateReservedQuantity(
-                    inventoryItemId.toString(), LocalDateTime.now());
-            Integer newAvailableStock = item.getStockCentral() - reservedQuantity;
+            // New available stock after release
+            Integer newAvailableStock = inventoryItemRepository.findStockLevelsById(inventoryItemId)
+                    .map(StockLevels::getStockAvailable)
+                    .orElse(0);
             
             // Publish release event
             publishInventoryReleased(inventoryItemId, reservation.getSagaId(), reservation.getQuantity(), 
@@ -178,14 +174,11 @@ public class EventDrivenInventoryService {
                 return false;
             }
             
-            // Get inventory item and reduce actual stock
+            // Reduce actual stock, out of the stock reserved for it
             Long inventoryItemId = Long.parseLong(reservation.getProductId());
-            InventoryItem item = inventoryItemRepository.findById(inventoryItemId)
-                    .orElseThrow(() -> new IllegalArgumentException("Inventory item not found: " + inventoryItemId));
-            
-            // Reduce actual stock
-            item.reduceStock(reservation.getQuantity());
-            inventoryItemRepository.save(item);
+            if (inventoryItemRepository.confirmStock(inventoryItemId, reservation.getQuantity()) == 0) {
+                throw new IllegalArgumentException("Inventory item not found or not reserved: " + inventoryItemId);
+            }
             
             // Confirm the reservation
             reservation.confirm();
@@ -16,6 +16,7 @@ import com.log430.tp7.domain.inventory.events.InventoryUnavailable;
 import com.log430.tp7.domain.inventory.readmodel.InventoryReadModel;
 import com.log430.tp7.domain.inventory.readmodel.InventoryReservationReadModel;
 import com.log430.tp7.infrastructure.repository.InventoryItemRepository;
+import com.log430.tp7.infrastructure.repository.InventoryItemRepository.StockLevels;
 import com.log430.tp7.infrastructure.repository.InventoryReadModelRepository;
 import com.log430.tp7.infrastructure.repository.InventoryReservationReadModelRepository;
 import com.log430.tp7.infrastructure.repository.StockReservationRepository;
@@ -137,11 +138,6 @@ public class InventoryProjectionService {
             
             InventoryItem item = itemOpt.get();
             
-            // Calculate current reserved quantity
-            Integer reservedQuantity = stockReservationRepository.calculateReservedQuantity(
-                inventoryItemId.toString(), LocalDateTime.now()
-            );
-            
             // Create or update read model
             InventoryReadModel readModel = inventoryReadModelRepository.findById(inventoryItemId)
                 .orElse(new InventoryReadModel());
@@ -156,7 +152,7 @@ public class InventoryProjectionService {
             readModel.setActive(item.isActive());
             
             // Update stock information
-            readModel.updateStock(item.getStockCentral(), reservedQuantity);
+            readModel.updateStock(item.getStockCentral(), item.getStockReserved());
             
             inventoryReadModelRepository.save(readModel);
             
@@ -245,10 +241,8 @@ public class InventoryProjectionService {
             
             InventoryItem item = itemOpt.get();
             
-            // Calculate current reserved quantity
-            Integer reservedQuantity = stockReservationRepository.calculateReservedQuantity(
-                inventoryItemId.toString(), LocalDateTime.now()
-            );
+            // Current stock levels, which the reservation being projected has just changed
+            StockLevels stock = inventoryItemRepository.findStockLevelsById(inventoryItemId).orElseThrow();
             
             // Update read model
             InventoryReadModel readModel = inventoryReadModelRepository.findById(inventoryItemId)
@@ -262,7 +256,7 @@ public class InventoryProjectionService {
                     item.isActive()
                 ));
             
-            readModel.updateStock(item.getStockCentral(), reservedQuantity);
+            readModel.updateStock(stock.getStockCentral(), stock.getStockReserved());
             inventoryReadModelRepository.save(readModel);
             
         } catch (Exception e) {
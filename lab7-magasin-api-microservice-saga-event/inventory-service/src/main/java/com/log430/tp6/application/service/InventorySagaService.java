@@ -1,6 +1,5 @@
 package com.log430.tp7.application.service;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -234,11 +233,8 @@ public class InventorySagaService {
                 return false;
             }
             
-            // Calculate available stock (current stock - reserved stock)
-            Integer reservedQuantity = stockReservationRepository.calculateReservedQuantity(
-                inventoryItemId.toString(), LocalDateTime.now()
-            );
-            Integer availableStock = item.getStockCentral() - reservedQuantity;
+            // Available stock is kept net of the active reservations
+            Integer availableStock = item.getStockAvailable();
             
             boolean available = availableStock >= requestedQuantity;
             logger.debug("Inventory availability check: itemId={}, requested={}, available={}, result={}", 
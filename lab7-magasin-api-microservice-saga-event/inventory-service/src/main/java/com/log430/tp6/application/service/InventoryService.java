@@ -98,12 +98,13 @@ public class InventoryService {
     })
     public InventoryItem updateStock(Long id, Integer newStock) {
         log.info("Updating stock for item id: {} to {}", id, newStock);
-        return inventoryItemRepository.findById(id)
-                .map(item -> {
-                    item.setStockCentral(newStock);
-                    return inventoryItemRepository.save(item);
-                })
-                .orElseThrow(() -> new IllegalArgumentException(ITEM_NOT_FOUND_MSG + id));
+        if (newStock == null || newStock < 0) {
+            throw new IllegalArgumentException("Stock cannot be negative");
+        }
+        if (inventoryItemRepository.setStock(id, newStock) == 0) {
+            throw stockNotChanged(id, "Stock cannot be lower than the reserved stock");
+        }
+        return findUpdatedItem(id);
     }
 
     /**
@@ -115,12 +116,11 @@ public class InventoryService {
     })
     public InventoryItem increaseStock(Long id, Integer quantity) {
         log.info("Increasing stock for item id: {} by {}", id, quantity);
-        return inventoryItemRepository.findById(id)
-                .map(item -> {
-                    item.increaseStock(quantity);
-                    return inventoryItemRepository.save(item);
-                })
-                .orElseThrow(() -> new IllegalArgumentException(ITEM_NOT_FOUND_MSG + id));
+        requirePositive(quantity);
+        if (inventoryItemRepository.adjustStock(id, quantity) == 0) {
+            throw new IllegalArgumentException(ITEM_NOT_FOUND_MSG + id);
+        }
+        return findUpdatedItem(id);
     }
 
     /**
@@ -132,12 +132,11 @@ public class InventoryService {
     })
     public InventoryItem decreaseStock(Long id, Integer quantity) {
         log.info("Decreasing stock for item id: {} by {}", id, quantity);
-        return inventoryItemRepository.findById(id)
-                .map(item -> {
-                    item.reduceStock(quantity);
-                    return inventoryItemRepository.save(item);
-                })
-                .orElseThrow(() -> new IllegalArgumentException(ITEM_NOT_FOUND_MSG + id));
+        requirePositive(quantity);
+        if (inventoryItemRepository.adjustStock(id, -quantity) == 0) {
+            throw stockNotChanged(id, "Insufficient stock");
+        }
+        return findUpdatedItem(id);
     }
 
     /**
@@ -224,17 +223,32 @@ public class InventoryService {
     })
     public void reduceStock(Long id, Integer quantity) {
         log.info("Reducing stock for item id: {} by quantity: {}", id, quantity);
-        inventoryItemRepository.findById(id)
-                .ifPresentOrElse(
-                        item -> {
-                            item.reduceStock(quantity);
-                            inventoryItemRepository.save(item);
-                        },
-                        () -> {
-                            log.error("Item not found for stock reduction: {}", id);
-                            throw new IllegalArgumentException(ITEM_NOT_FOUND_MSG + id);
-                        }
-                );
+        requirePositive(quantity);
+        if (inventoryItemRepository.adjustStock(id, -quantity) == 0) {
+            log.error("Item not found or short of stock for stock reduction: {}", id);
+            throw stockNotChanged(id, "Insufficient stock");
+        }
+    }
+
+    private static void requirePositive(Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+    }
+
+    /**
+     * Explains why a guarded stock update changed nothing: the item is missing, or the stock reserved
+     * by sagas does not allow the change.
+     */
+    private RuntimeException stockNotChanged(Long id, String reason) {
+        return inventoryItemRepository.existsById(id)
+                ? new IllegalStateException(reason)
+                : new IllegalArgumentException(ITEM_NOT_FOUND_MSG + id);
+    }
+
+    private InventoryItem findUpdatedItem(Long id) {
+        return inventoryItemRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException(ITEM_NOT_FOUND_MSG + id));
     }
     
     /**
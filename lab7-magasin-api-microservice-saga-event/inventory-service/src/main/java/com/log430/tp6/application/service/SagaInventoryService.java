@@ -1,24 +1,39 @@
 package com.log430.tp7.application.service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import com.log430.tp7.domain.inventory.InventoryItem;
 import com.log430.tp7.domain.inventory.StockReservation;
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
 import com.log430.tp7.infrastructure.repository.InventoryItemRepository;
 import com.log430.tp7.infrastructure.repository.StockReservationRepository;
+import com.log430.tp7.presentation.api.dto.CartStockRequest.CartLine;
+import com.log430.tp7.presentation.api.dto.CartStockReservationResponse;
+import com.log430.tp7.presentation.api.dto.CartStockVerificationResponse;
 import com.log430.tp7.presentation.api.dto.StockReservationResponse;
 import com.log430.tp7.presentation.api.dto.StockVerificationResponse;
 
 /**
  * Application service for saga-specific inventory operations.
  * Handles stock verification, reservation, and release for distributed transactions.
+ * Verification is a read-only preview; reservations check availability themselves, atomically,
+ * against the reserved and available stock counters of the inventory item.
  */
 @Service
 @Transactional
@@ -62,12 +77,8 @@ public class SagaInventoryService {
                 );
             }
             
-            // Calculate available stock (current stock - active reservations)
-            Integer currentStock = item.getStockCentral();
-            Integer reservedQuantity = stockReservationRepository.calculateReservedQuantity(
-                productId, LocalDateTime.now()
-            );
-            Integer availableStock = currentStock - reservedQuantity;
+            // Available stock is kept net of the active reservations
+            Integer availableStock = item.getStockAvailable();
             
             if (availableStock >= quantity) {
                 log.info("Stock verification successful for product {} - available: {}, requested: {}", 
@@ -95,21 +106,49 @@ public class SagaInventoryService {
     }
 
     /**
-     * Reserve stock for a saga transaction.
+     * Reserve stock for a saga transaction only if it is available, in one atomic operation.
+     * A single guarded update moves the quantity from available to reserved stock, and the reservation
+     * is inserted in the same transaction; the updated row stays locked until commit, so concurrent
+     * reservations of a product are serialized without summing its reservations.
+     * A retried call for a saga that already holds an active reservation of the product returns it;
+     * the item row is locked before looking for it, by the update or, when the update matched nothing,
+     * explicitly, so a concurrent first attempt has committed its reservation by then.
      */
-    public StockReservationResponse reserveStock(String productId, Integer quantity, String sagaId) {
-        log.info("Reserving stock for product {} with quantity {} for saga {}", productId, quantity, sagaId);
+    public StockReservationResponse reserveIfAvailable(String productId, Integer quantity, String sagaId) {
+        log.info("Reserving stock if available for product {} with quantity {} for saga {}",
+            productId, quantity, sagaId);
         
         try {
-            // First verify stock is still available
-            StockVerificationResponse verification = verifyStock(productId, quantity, sagaId);
-            if (!verification.available()) {
-                log.warn("Cannot reserve stock - verification failed: {}", verification.message());
-                return StockReservationResponse.failure(productId, quantity, sagaId, verification.message());
+            Long itemId = Long.parseLong(productId);
+            boolean reserved = inventoryItemRepository.reserveStock(itemId, quantity) == 1;
+            if (!reserved) {
+                // A guarded update that matched no row locked nothing
+                inventoryItemRepository.lockById(itemId);
+            }
+            
+            // Checked with the item row locked, so a concurrent attempt of the saga has committed its reservation
+            Optional<StockReservation> existing = findActiveReservation(sagaId, productId);
+            if (existing.isPresent()) {
+                StockReservation reservation = existing.get();
+                if (reserved) {
+                    inventoryItemRepository.releaseStock(itemId, quantity);
+                }
+                log.info("Saga {} already holds reservation {} for product {}",
+                    sagaId, reservation.getReservationId(), productId);
+                return StockReservationResponse.success(reservation.getReservationId(), productId,
+                    reservation.getQuantity(), sagaId, reservation.getExpiresAt());
+            }
+            
+            if (!reserved) {
+                StockVerificationResponse check = verifyLine(productId, quantity,
+                    inventoryItemRepository.findById(itemId).orElse(null), sagaId);
+                log.warn("Cannot reserve stock for product {} - {} (available: {}, requested: {})",
+                    productId, check.message(), check.availableQuantity(), quantity);
+                return StockReservationResponse.failure(productId, quantity, sagaId, check.message());
             }
             
             // Create reservation
-            String reservationId = UUID.randomUUID().toString();
+            String reservationId = TimeOrderedUuidGenerator.nextString();
             LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(30); // 30 minute expiration
             
             StockReservation reservation = new StockReservation(reservationId, productId, quantity, sagaId);
@@ -122,7 +161,11 @@ public class SagaInventoryService {
             
             return StockReservationResponse.success(reservationId, productId, quantity, sagaId, expiresAt);
             
+        } catch (NumberFormatException e) {
+            log.error("Invalid product ID format: {}", productId);
+            return StockReservationResponse.failure(productId, quantity, sagaId, "Invalid product ID format");
         } catch (Exception e) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             log.error("Error reserving stock for product {}: {}", productId, e.getMessage(), e);
             return StockReservationResponse.failure(
                 productId, quantity, sagaId, "Internal error during stock reservation"
@@ -130,6 +173,131 @@ public class SagaInventoryService {
         }
     }
 
+    /**
+     * Verify every line of a cart with one item lookup.
+     * Lines for the same product are merged before checking availability.
+     */
+    @Transactional(readOnly = true)
+    public CartStockVerificationResponse verifyCart(List<CartLine> lines, String sagaId) {
+        log.info("Verifying stock for cart of {} lines for saga {}", lines.size(), sagaId);
+        
+        try {
+            Map<String, Integer> requested = mergeLines(lines);
+            Map<Long, InventoryItem> items = new HashMap<>();
+            inventoryItemRepository.findAllById(parseItemIds(requested.keySet()))
+                .forEach(item -> items.put(item.getId(), item));
+            List<StockVerificationResponse> results = new ArrayList<>();
+            requested.forEach((productId, quantity) ->
+                results.add(verifyLine(productId, quantity, items.get(parseItemId(productId)), sagaId)));
+            
+            CartStockVerificationResponse response = CartStockVerificationResponse.of(sagaId, results);
+            if (response.available()) {
+                log.info("Cart stock verification successful for saga {} - {} products", sagaId, results.size());
+            } else {
+                log.warn("Cart stock verification failed for saga {}: {}", sagaId, response.message());
+            }
+            return response;
+            
+        } catch (Exception e) {
+            log.error("Error verifying cart stock for saga {}: {}", sagaId, e.getMessage(), e);
+            return CartStockVerificationResponse.failure(sagaId, "Internal error during stock verification");
+        }
+    }
+
+    /**
+     * Reserve every line of a cart for a saga transaction, all or nothing:
+     * if any line is short, the transaction is rolled back and no reservation is created.
+     * Like {@link #reserveIfAvailable}, each product is reserved with a guarded update, in ascending
+     * product ID order so that concurrent carts sharing products always lock them in the same order.
+     * A retried call for a saga that already holds its cart reservations returns them; this is checked
+     * once the products are locked, by the guarded updates and, for a short product, explicitly,
+     * so a concurrent retry sees the first call's rows.
+     */
+    public CartStockReservationResponse reserveCart(List<CartLine> lines, String sagaId) {
+        log.info("Reserving stock for cart of {} lines for saga {}", lines.size(), sagaId);
+        
+        try {
+            Map<String, Integer> requested = mergeLines(lines);
+            Map<Long, String> productIds = new TreeMap<>();
+            for (Map.Entry<String, Integer> line : requested.entrySet()) {
+                Long itemId = parseItemId(line.getKey());
+                if (itemId == null) {
+                    return cartShortage(line.getKey(), line.getValue(), null, sagaId);
+                }
+                productIds.put(itemId, line.getKey());
+            }
+            Map.Entry<Long, String> shortProduct = null;
+            for (Map.Entry<Long, String> product : productIds.entrySet()) {
+                if (inventoryItemRepository.reserveStock(product.getKey(), requested.get(product.getValue())) == 0) {
+                    // A guarded update that matched no row locked nothing
+                    inventoryItemRepository.lockById(product.getKey());
+                    shortProduct = product;
+                    break;
+                }
+            }
+            
+            // Checked with the products locked, so a concurrent retry of the saga sees these reservations
+            List<StockReservation> existing = findActiveReservations(sagaId);
+            if (!existing.isEmpty()) {
+                // Undo the lines reserved by this call
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                log.info("Saga {} already holds its cart reservations", sagaId);
+                return CartStockReservationResponse.success(sagaId, existing.stream()
+                    .map(r -> StockReservationResponse.success(
+                        r.getReservationId(), r.getProductId(), r.getQuantity(), sagaId, r.getExpiresAt()))
+                    .toList());
+            }
+            if (shortProduct != null) {
+                // Undo the lines already reserved
+                TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                return cartShortage(shortProduct.getValue(), requested.get(shortProduct.getValue()),
+                    inventoryItemRepository.findById(shortProduct.getKey()).orElse(null), sagaId);
+            }
+            
+            LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(30); // 30 minute expiration
+            List<StockReservation> reservations = new ArrayList<>();
+            requested.forEach((productId, quantity) -> {
+                StockReservation reservation = new StockReservation(
+                    TimeOrderedUuidGenerator.nextString(), productId, quantity, sagaId);
+                reservation.setExpiresAt(expiresAt);
+                reservations.add(reservation);
+            });
+            
+            stockReservationRepository.saveAll(reservations);
+            
+            List<StockReservationResponse> results = reservations.stream()
+                .map(r -> StockReservationResponse.success(
+                    r.getReservationId(), r.getProductId(), r.getQuantity(), sagaId, expiresAt))
+                .toList();
+            
+            log.info("Cart stock reserved successfully - {} reservations for saga {}", results.size(), sagaId);
+            return CartStockReservationResponse.success(sagaId, results);
+            
+        } catch (Exception e) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+            log.error("Error reserving cart stock for saga {}: {}", sagaId, e.getMessage(), e);
+            return CartStockReservationResponse.failure(sagaId, "Internal error during stock reservation");
+        }
+    }
+
+    /**
+     * Release every active reservation of a saga (cart compensation action).
+     * If the reserved stock of a product does not cover its reservation, nothing is released.
+     *
+     * @return the number of reservations released
+     * @throws IllegalStateException if a product does not hold the stock reserved for the saga
+     */
+    public int releaseSagaReservations(String sagaId) {
+        log.info("Releasing stock reservations of saga: {}", sagaId);
+        
+        List<StockReservation> reservations = findActiveReservations(sagaId);
+        reservations.forEach(this::release);
+        stockReservationRepository.saveAll(reservations);
+        
+        log.info("Released {} stock reservations of saga {}", reservations.size(), sagaId);
+        return reservations.size();
+    }
+
     /**
      * Release a stock reservation (compensation action).
      */
@@ -149,13 +317,14 @@ public class SagaInventoryService {
                 return false;
             }
             
-            reservation.release();
+            release(reservation);
             stockReservationRepository.save(reservation);
             
             log.info("Stock reservation released successfully: {}", reservationId);
             return true;
             
         } catch (Exception e) {
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             log.error("Error releasing reservation {}: {}", reservationId, e.getMessage(), e);
             return false;
         }
@@ -180,18 +349,14 @@ public class SagaInventoryService {
                 return false;
             }
             
-            // Reduce actual stock
+            // Reduce actual stock, out of the stock reserved for it
             Long itemId = Long.parseLong(reservation.getProductId());
-            Optional<InventoryItem> itemOpt = inventoryItemRepository.findById(itemId);
-            if (itemOpt.isEmpty()) {
-                log.error("Product not found when confirming reservation: {}", reservation.getProductId());
+            if (inventoryItemRepository.confirmStock(itemId, reservation.getQuantity()) == 0) {
+                log.error("Product not found or not reserved when confirming reservation: {}",
+                    reservation.getProductId());
                 return false;
             }
             
-            InventoryItem item = itemOpt.get();
-            item.reduceStock(reservation.getQuantity());
-            inventoryItemRepository.save(item);
-            
             // Mark reservation as confirmed
             reservation.confirm();
             stockReservationRepository.save(reservation);
@@ -207,8 +372,9 @@ public class SagaInventoryService {
     }
 
     /**
-     * Clean up expired reservations (scheduled task).
+     * Clean up expired reservations (scheduled task): each one gives its quantity back to the available stock.
      */
+    @Scheduled(fixedDelayString = "${inventory.reservations.cleanup-interval:60000}") // Every minute
     @Transactional
     public void cleanupExpiredReservations() {
         log.info("Cleaning up expired reservations");
@@ -217,7 +383,14 @@ public class SagaInventoryService {
             var expiredReservations = stockReservationRepository.findExpiredReservations(LocalDateTime.now());
             
             for (StockReservation reservation : expiredReservations) {
-                reservation.release();
+                try {
+                    release(reservation);
+                } catch (IllegalStateException e) {
+                    // Left active and unchanged, the others are still released
+                    log.error("Cannot release expired reservation {}: {}", reservation.getReservationId(),
+                        e.getMessage());
+                    continue;
+                }
                 stockReservationRepository.save(reservation);
                 log.info("Released expired reservation: {}", reservation.getReservationId());
             }
@@ -228,4 +401,82 @@ public class SagaInventoryService {
             log.error("Error cleaning up expired reservations: {}", e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+
+    private CartStockReservationResponse cartShortage(String productId, Integer quantity, InventoryItem item,
+                                                      String sagaId) {
+        String message = CartStockVerificationResponse.of(sagaId,
+            List.of(verifyLine(productId, quantity, item, sagaId))).message();
+        log.warn("Cannot reserve cart for saga {}: {}", sagaId, message);
+        return CartStockReservationResponse.failure(sagaId, message);
+    }
+
+    /**
+     * Gives the quantity of a reservation back to the available stock of the product and marks it released.
+     *
+     * @throws IllegalStateException if the product does not hold that much reserved stock, leaving the
+     *         reservation active; the caller's transaction must then be rolled back
+     */
+    private void release(StockReservation reservation) {
+        Long itemId = parseItemId(reservation.getProductId());
+        if (itemId == null || inventoryItemRepository.releaseStock(itemId, reservation.getQuantity()) == 0) {
+            throw new IllegalStateException("Reserved stock of product " + reservation.getProductId()
+                + " does not cover reservation " + reservation.getReservationId());
+        }
+        reservation.release();
+    }
+
+    private List<StockReservation> findActiveReservations(String sagaId) {
+        return stockReservationRepository.findBySagaIdAndStatus(sagaId, StockReservation.ReservationStatus.ACTIVE);
+    }
+
+    private Optional<StockReservation> findActiveReservation(String sagaId, String productId) {
+        return findActiveReservations(sagaId).stream()
+            .filter(reservation -> reservation.getProductId().equals(productId))
+            .findFirst();
+    }
+
+    private static List<Long> parseItemIds(Collection<String> productIds) {
+        List<Long> itemIds = new ArrayList<>();
+        for (String productId : productIds) {
+            Long itemId = parseItemId(productId);
+            if (itemId != null) {
+                itemIds.add(itemId);
+            }
+        }
+        return itemIds;
+    }
+
+    private static Long parseItemId(String productId) {
+        try {
+            return Long.parseLong(productId);
+        } catch (NumberFormatException e) {
+            log.error("Invalid product ID format: {}", productId);
+            return null;
+        }
+    }
+
+    private StockVerificationResponse verifyLine(String productId, Integer quantity, InventoryItem item,
+                                                 String sagaId) {
+        if (parseItemId(productId) == null) {
+            return StockVerificationResponse.failure(productId, quantity, 0, "Invalid product ID format", sagaId);
+        }
+        if (item == null) {
+            return StockVerificationResponse.failure(productId, quantity, 0, "Product not found", sagaId);
+        }
+        if (!item.isActive()) {
+            return StockVerificationResponse.failure(productId, quantity, 0, "Product is inactive", sagaId);
+        }
+        
+        // Available stock is kept net of the active reservations
+        int availableStock = item.getStockAvailable();
+        if (availableStock >= quantity) {
+            return StockVerificationResponse.success(productId, quantity, availableStock, sagaId);
+        }
+        return StockVerificationResponse.failure(productId, quantity, availableStock, "Insufficient stock", sagaId);
+    }
+
+    private static Map<String, Integer> mergeLines(List<CartLine> lines) {
+        return lines.stream().collect(Collectors.toMap(
+            CartLine::productId, CartLine::quantity, Integer::sum, LinkedHashMap::new));
+    }
+}
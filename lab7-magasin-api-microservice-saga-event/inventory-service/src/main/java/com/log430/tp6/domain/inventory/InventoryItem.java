@@ -2,6 +2,8 @@ package com.log430.tp7.domain.inventory;
 
 import java.time.LocalDate;
 
+import org.hibernate.annotations.ColumnDefault;
+
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -12,6 +14,9 @@ import jakarta.persistence.Table;
 /**
  * Unified Inventory domain combining Product information with stock management.
  * Represents a product with its central stock and store-specific stock levels.
+ * Stock reserved by sagas and stock still available are kept as counters next to the central stock.
+ * Once the item exists, these three columns only change through the guarded updates of
+ * {@code InventoryItemRepository}, so that flushing a stale copy of the item cannot overwrite them.
  */
 @Entity
 @Table(name = "inventory_items")
@@ -35,9 +40,18 @@ public class InventoryItem {
     private String description;
 
     // Central stock information
-    @Column(name = "stock_central", nullable = false)
+    @Column(name = "stock_central", nullable = false, updatable = false)
     private Integer stockCentral = 0;
 
+    // Sum of the active reservations, and central stock minus that sum
+    @Column(name = "stock_reserved", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private Integer stockReserved = 0;
+
+    @Column(name = "stock_available", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private Integer stockAvailable = 0;
+
     @Column(name = "stock_minimum")
     private Integer stockMinimum = 0;
 
@@ -55,6 +69,7 @@ public class InventoryItem {
         this.categorie = categorie;
         this.prix = prix;
         this.stockCentral = stockCentral;
+        this.stockAvailable = stockCentral;
         this.dateDerniereMaj = LocalDate.now();
     }
 
@@ -66,35 +81,6 @@ public class InventoryItem {
         return stockCentral <= stockMinimum;
     }
 
-    /**
-     * Reduce stock by specified quantity.
-     * Throws exception if trying to reduce more than available.
-     */
-    public void reduceStock(Integer quantity) {
-        if (quantity == null || quantity <= 0) {
-            throw new IllegalArgumentException("Quantity must be positive");
-        }
-        if (stockCentral == null || stockCentral < quantity) {
-            throw new IllegalArgumentException("Insufficient stock");
-        }
-        this.stockCentral -= quantity;
-        this.dateDerniereMaj = LocalDate.now();
-    }
-
-    /**
-     * Increase stock by specified quantity.
-     */
-    public void increaseStock(Integer quantity) {
-        if (quantity == null || quantity <= 0) {
-            throw new IllegalArgumentException("Quantity must be positive");
-        }
-        if (stockCentral == null) {
-            stockCentral = 0;
-        }
-        this.stockCentral += quantity;
-        this.dateDerniereMaj = LocalDate.now();
-    }
-
     /**
      * Deactivate the inventory item.
      */
@@ -109,17 +95,6 @@ public class InventoryItem {
         this.isActive = true;
     }
 
-    /**
-     * Update stock to specific value.
-     */
-    public void updateStock(Integer newStock) {
-        if (newStock == null || newStock < 0) {
-            throw new IllegalArgumentException("Stock cannot be negative");
-        }
-        this.stockCentral = newStock;
-        this.dateDerniereMaj = LocalDate.now();
-    }
-
     /**
      * Validate the inventory item data.
      */
@@ -168,11 +143,17 @@ public class InventoryItem {
     public void setDescription(String description) { this.description = description; }
 
     public Integer getStockCentral() { return stockCentral; }
+    // Only for an item not saved yet: a saved item changes stock through InventoryItemRepository
     public void setStockCentral(Integer stockCentral) { 
         this.stockCentral = stockCentral;
+        this.stockAvailable = stockCentral - stockReserved;
         this.dateDerniereMaj = LocalDate.now();
     }
 
+    public Integer getStockReserved() { return stockReserved; }
+
+    public Integer getStockAvailable() { return stockAvailable; }
+
     public Integer getStockMinimum() { return stockMinimum; }
     public void setStockMinimum(Integer stockMinimum) { this.stockMinimum = stockMinimum; }
 
@@ -190,6 +171,8 @@ public class InventoryItem {
                 ", categorie='" + categorie + '\'' +
                 ", prix=" + prix +
                 ", stockCentral=" + stockCentral +
+                ", stockReserved=" + stockReserved +
+                ", stockAvailable=" + stockAvailable +
                 ", stockMinimum=" + stockMinimum +
                 ", isActive=" + isActive +
                 '}';
@@ -1,9 +1,9 @@
 package com.log430.tp7.infrastructure.event;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
 
 /**
  * Base class for all domain events in the system.
@@ -44,7 +44,7 @@ public abstract class DomainEvent {
     }
     
     protected DomainEvent(String eventType, String aggregateId, String aggregateType, int version, String correlationId, String causationId) {
-        this.eventId = UUID.randomUUID().toString();
+        this.eventId = TimeOrderedUuidGenerator.nextString();
         this.eventType = eventType != null ? eventType : this.getClass().getSimpleName();
         this.timestamp = LocalDateTime.now();
         this.aggregateId = aggregateId;
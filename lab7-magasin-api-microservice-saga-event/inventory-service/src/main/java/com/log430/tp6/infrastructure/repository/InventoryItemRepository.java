@@ -4,7 +4,9 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.log430.tp7.domain.inventory.InventoryItem;
 
@@ -19,6 +21,81 @@ public interface InventoryItemRepository extends JpaRepository<InventoryItem, Lo
      */
     List<InventoryItem> findByIsActiveTrue();
 
+    /**
+     * Reserve stock only if enough of it is available, as a single guarded update.
+     * The updated row stays locked until the transaction ends, so concurrent reservations
+     * of a product queue on that row instead of reading and summing its reservations.
+     *
+     * @return 1 if the stock was reserved, 0 if the item is missing, inactive or short of stock
+     */
+    @Modifying
+    @Query("UPDATE InventoryItem i SET i.stockReserved = i.stockReserved + :quantity, " +
+           "i.stockAvailable = i.stockAvailable - :quantity " +
+           "WHERE i.id = :id AND i.isActive = true AND i.stockAvailable >= :quantity")
+    int reserveStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+    /**
+     * Lock the row of an item until the transaction ends, waiting for a concurrent reservation of it to commit.
+     * A guarded update that matched no row locked nothing, so this is taken before acting on its failure.
+     *
+     * @return the item ID, empty if the item is missing
+     */
+    @Query(value = "SELECT id FROM inventory_items WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockById(@Param("id") Long id);
+
+    /**
+     * Read the stock levels of an item from the database, bypassing any copy of the item
+     * already loaded in the persistence context (which the guarded updates leave as is).
+     */
+    @Query("SELECT i.stockCentral AS stockCentral, i.stockReserved AS stockReserved, " +
+           "i.stockAvailable AS stockAvailable FROM InventoryItem i WHERE i.id = :id")
+    Optional<StockLevels> findStockLevelsById(@Param("id") Long id);
+
+    /**
+     * Give reserved stock back to the available stock (released or expired reservation).
+     *
+     * @return 1 if released, 0 if the item is missing or does not hold that much reserved stock
+     */
+    @Modifying
+    @Query("UPDATE InventoryItem i SET i.stockReserved = i.stockReserved - :quantity, " +
+           "i.stockAvailable = i.stockAvailable + :quantity " +
+           "WHERE i.id = :id AND i.stockReserved >= :quantity")
+    int releaseStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+    /**
+     * Take reserved stock out of the central stock (confirmed reservation).
+     * The available stock is unchanged, as it already excluded the reservation.
+     *
+     * @return 1 if confirmed, 0 if the item is missing or does not hold that much reserved stock
+     */
+    @Modifying
+    @Query("UPDATE InventoryItem i SET i.stockCentral = i.stockCentral - :quantity, " +
+           "i.stockReserved = i.stockReserved - :quantity, i.dateDerniereMaj = CURRENT_DATE " +
+           "WHERE i.id = :id AND i.stockReserved >= :quantity AND i.stockCentral >= :quantity")
+    int confirmStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+    /**
+     * Add to or take from the central stock outside of reservations (receipts, direct sales),
+     * never below the stock reserved by sagas.
+     *
+     * @return 1 if adjusted, 0 if the item is missing or the available stock would become negative
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE InventoryItem i SET i.stockCentral = i.stockCentral + :delta, " +
+           "i.stockAvailable = i.stockAvailable + :delta, i.dateDerniereMaj = CURRENT_DATE " +
+           "WHERE i.id = :id AND i.stockAvailable + :delta >= 0")
+    int adjustStock(@Param("id") Long id, @Param("delta") Integer delta);
+
+    /**
+     * Set the central stock to a counted value, never below the stock reserved by sagas.
+     *
+     * @return 1 if set, 0 if the item is missing or the value is below the reserved stock
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE InventoryItem i SET i.stockCentral = :stock, i.stockAvailable = :stock - i.stockReserved, " +
+           "i.dateDerniereMaj = CURRENT_DATE WHERE i.id = :id AND i.stockReserved <= :stock")
+    int setStock(@Param("id") Long id, @Param("stock") Integer stock);
+
     /**
      * Find inventory items by category.
      */
@@ -61,4 +138,13 @@ public interface InventoryItemRepository extends JpaRepository<InventoryItem, Lo
      */
     @Query("SELECT SUM(i.prix * i.stockCentral) FROM InventoryItem i WHERE i.isActive = true")
     Double calculateTotalInventoryValue();
+
+    /**
+     * Central, reserved and available stock of an inventory item.
+     */
+    interface StockLevels {
+        Integer getStockCentral();
+        Integer getStockReserved();
+        Integer getStockAvailable();
+    }
 }
@@ -72,14 +72,6 @@ public interface StockReservationRepository extends JpaRepository<StockReservati
                                     @Param("createdAt") LocalDateTime createdAt,
                                     @Param("expiresAt") LocalDateTime expiresAt);
     
-    /**
-     * Calculate total reserved quantity with pessimistic read lock for consistency.
-     */
-    @Lock(LockModeType.PESSIMISTIC_READ)
-    @Query("SELECT COALESCE(SUM(r.quantity), 0) FROM StockReservation r WHERE r.productId = :productId " +
-           "AND r.status = 'ACTIVE' AND r.expiresAt > :now")
-    Integer calculateReservedQuantityWithLock(@Param("productId") String productId, @Param("now") LocalDateTime now);
-    
     /**
      * Find and lock reservation for atomic status updates.
      */
@@ -5,11 +5,16 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableDiscoveryClient
-@ComponentScan(basePackages = "com.log430.tp7")
+@EnableScheduling
+// event-infrastructure is used for its shared utilities only; this service declares its own Rabbit topology
+@ComponentScan(basePackages = "com.log430.tp7",
+               excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = "com\\.log430\\.tp7\\.event\\..*"))
 @EnableJpaRepositories(basePackages = "com.log430.tp7.infrastructure.repository")
 @EntityScan(basePackages = {"com.log430.tp7.domain.inventory", "com.log430.tp7.domain.inventory.readmodel"})
 public class InventoryServiceApplication {
@@ -26,6 +26,9 @@ import com.log430.tp7.application.service.InventoryQueryService;
 import com.log430.tp7.application.service.InventoryService;
 import com.log430.tp7.application.service.SagaInventoryService;
 import com.log430.tp7.domain.inventory.InventoryItem;
+import com.log430.tp7.presentation.api.dto.CartStockRequest;
+import com.log430.tp7.presentation.api.dto.CartStockReservationResponse;
+import com.log430.tp7.presentation.api.dto.CartStockVerificationResponse;
 import com.log430.tp7.presentation.api.dto.InventoryItemDto;
 import com.log430.tp7.presentation.api.dto.StockReservationRequest;
 import com.log430.tp7.presentation.api.dto.StockReservationResponse;
@@ -759,6 +762,7 @@ public class InventoryController {
 
     /**
      * Verify stock availability for saga operations.
+     * Read-only preview: nothing is held, so the stock may change before reserve-stock.
      */
     @Operation(summary = "Vérifier la disponibilité du stock", description = "Vérifie si le stock est suffisant pour une opération saga.")
     @PostMapping("/api/v1/inventory/verify-stock")
@@ -790,16 +794,18 @@ public class InventoryController {
     }
 
     /**
-     * Reserve stock for saga operations.
+     * Reserve stock for saga operations if it is available.
+     * Checks availability and reserves atomically, so sagas do not need to call verify-stock first.
      */
-    @Operation(summary = "Réserver du stock", description = "Réserve du stock pour une opération saga.")
+    @Operation(summary = "Réserver du stock si disponible",
+        description = "Vérifie la disponibilité et réserve du stock pour une opération saga, de façon atomique.")
     @PostMapping("/api/v1/inventory/reserve-stock")
     public ResponseEntity<StockReservationResponse> reserveStock(@Valid @RequestBody StockReservationRequest request) {
         log.info("Saga API call: reserveStock for product {} with quantity {} for saga {}", 
             request.productId(), request.quantity(), request.sagaId());
         
         try {
-            StockReservationResponse response = sagaInventoryService.reserveStock(
+            StockReservationResponse response = sagaInventoryService.reserveIfAvailable(
                 request.productId(), request.quantity(), request.sagaId()
             );
             
@@ -822,6 +828,67 @@ public class InventoryController {
         }
     }
 
+    /**
+     * Verify stock availability for every line of a cart in one saga call.
+     */
+    @Operation(summary = "Vérifier le stock d'un panier", description = "Vérifie en un seul appel si le stock est suffisant pour toutes les lignes d'un panier.")
+    @PostMapping("/api/v1/inventory/verify-stock/cart")
+    public ResponseEntity<CartStockVerificationResponse> verifyCartStock(@Valid @RequestBody CartStockRequest request) {
+        log.info("Saga API call: verifyCartStock for {} lines for saga {}", request.lines().size(), request.sagaId());
+        
+        CartStockVerificationResponse response = sagaInventoryService.verifyCart(request.lines(), request.sagaId());
+        
+        if (!response.success()) {
+            return ResponseEntity.internalServerError().body(response);
+        }
+        return response.available() ? ResponseEntity.ok(response) : ResponseEntity.badRequest().body(response);
+    }
+
+    /**
+     * Reserve stock for every line of a cart, all or nothing.
+     */
+    @Operation(summary = "Réserver le stock d'un panier", description = "Réserve toutes les lignes d'un panier en un seul appel; aucune ligne n'est réservée si l'une d'elles manque de stock.")
+    @PostMapping("/api/v1/inventory/reserve-stock/cart")
+    public ResponseEntity<CartStockReservationResponse> reserveCartStock(@Valid @RequestBody CartStockRequest request) {
+        log.info("Saga API call: reserveCartStock for {} lines for saga {}", request.lines().size(), request.sagaId());
+        
+        CartStockReservationResponse response = sagaInventoryService.reserveCart(request.lines(), request.sagaId());
+        
+        if (response.success()) {
+            log.info("Cart stock reservation successful for saga {} - {} reservations", 
+                request.sagaId(), response.reservations().size());
+            return ResponseEntity.ok(response);
+        }
+        log.warn("Cart stock reservation failed for saga {}: {}", request.sagaId(), response.message());
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    /**
+     * Release every reservation of a saga (cart compensation action).
+     */
+    @Operation(summary = "Libérer les réservations d'une saga", description = "Libère toutes les réservations actives d'une saga pour compensation.")
+    @DeleteMapping("/api/v1/inventory/reservations/saga/{sagaId}")
+    public ResponseEntity<Map<String, Object>> releaseSagaReservations(@PathVariable String sagaId) {
+        log.info("Saga API call: releaseSagaReservations for saga {}", sagaId);
+        
+        try {
+            int released = sagaInventoryService.releaseSagaReservations(sagaId);
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "sagaId", sagaId,
+                "released", released,
+                "message", "Reservations released successfully"
+            ));
+        } catch (Exception e) {
+            log.error("Error in releaseSagaReservations for saga {}: {}", sagaId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                "success", false,
+                "sagaId", sagaId,
+                "message", "Internal server error"
+            ));
+        }
+    }
+
     /**
      * Release stock reservation (compensation action).
      */
@@ -0,0 +1,35 @@
+package com.log430.tp7.presentation.api.dto;
+
+import java.util.List;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * Request DTO for verifying or reserving every line of a cart in one saga call.
+ */
+public record CartStockRequest(
+    @NotBlank(message = "Saga ID cannot be blank")
+    String sagaId,
+    
+    String customerId,
+    
+    @NotEmpty(message = "Cart must contain at least one line")
+    List<@Valid CartLine> lines
+) {
+    
+    /**
+     * A product and quantity of the cart.
+     */
+    public record CartLine(
+        @NotBlank(message = "Product ID cannot be blank")
+        String productId,
+        
+        @NotNull(message = "Quantity cannot be null")
+        @Positive(message = "Quantity must be positive")
+        Integer quantity
+    ) {}
+}
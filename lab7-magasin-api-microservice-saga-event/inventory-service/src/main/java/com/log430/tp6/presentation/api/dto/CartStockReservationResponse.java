@@ -0,0 +1,22 @@
+package com.log430.tp7.presentation.api.dto;
+
+import java.util.List;
+
+/**
+ * Response DTO for cart stock reservation in saga operations.
+ * Either every line is reserved or none is.
+ */
+public record CartStockReservationResponse(
+    boolean success,
+    String sagaId,
+    List<StockReservationResponse> reservations,
+    String message
+) {
+    public static CartStockReservationResponse success(String sagaId, List<StockReservationResponse> reservations) {
+        return new CartStockReservationResponse(true, sagaId, reservations, "Stock reserved successfully");
+    }
+    
+    public static CartStockReservationResponse failure(String sagaId, String message) {
+        return new CartStockReservationResponse(false, sagaId, List.of(), message);
+    }
+}
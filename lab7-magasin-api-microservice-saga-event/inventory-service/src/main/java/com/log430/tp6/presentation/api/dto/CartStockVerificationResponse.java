@@ -0,0 +1,35 @@
+package com.log430.tp7.presentation.api.dto;
+
+import java.util.List;
+
+/**
+ * Response DTO for cart stock verification in saga operations.
+ * The cart is available only when every line is.
+ */
+public record CartStockVerificationResponse(
+    boolean success,
+    boolean available,
+    String sagaId,
+    List<StockVerificationResponse> lines,
+    String message
+) {
+    public static CartStockVerificationResponse of(String sagaId, List<StockVerificationResponse> lines) {
+        List<String> unavailable = lines.stream()
+            .filter(line -> !line.available())
+            .map(line -> line.productId() + " (" + line.message() + ", requested: " + line.requestedQuantity()
+                + ", available: " + line.availableQuantity() + ")")
+            .toList();
+        boolean available = unavailable.isEmpty();
+        return new CartStockVerificationResponse(
+            true,
+            available,
+            sagaId,
+            lines,
+            available ? "Stock verification successful" : "Unavailable lines: " + String.join(", ", unavailable)
+        );
+    }
+    
+    public static CartStockVerificationResponse failure(String sagaId, String message) {
+        return new CartStockVerificationResponse(false, false, sagaId, List.of(), message);
+    }
+}
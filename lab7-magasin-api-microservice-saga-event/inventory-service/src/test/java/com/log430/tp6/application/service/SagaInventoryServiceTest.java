@@ -0,0 +1,259 @@
+package com.log430.tp7.application.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.log430.tp7.domain.inventory.InventoryItem;
+import com.log430.tp7.domain.inventory.StockReservation;
+import com.log430.tp7.infrastructure.repository.InventoryItemRepository;
+import com.log430.tp7.infrastructure.repository.StockReservationRepository;
+import com.log430.tp7.presentation.api.dto.CartStockRequest.CartLine;
+import com.log430.tp7.presentation.api.dto.CartStockReservationResponse;
+import com.log430.tp7.presentation.api.dto.StockReservationResponse;
+
+/**
+ * Reservations, releases and confirmations of {@link SagaInventoryService} against an in-memory database,
+ * each call in its own transaction, checking that the stock counters always agree with the reservation rows.
+ */
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:saga-inventory;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "logging.level.com.log430=ERROR"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SagaInventoryServiceTest {
+
+    @SpringBootConfiguration
+    @EntityScan("com.log430.tp7.domain")
+    @EnableJpaRepositories("com.log430.tp7.infrastructure.repository")
+    @Import(SagaInventoryService.class)
+    static class Configuration {
+    }
+
+    @Autowired
+    private SagaInventoryService sagaInventoryService;
+
+    @Autowired
+    private InventoryItemRepository inventoryItemRepository;
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    private String productId;
+    private String otherProductId;
+
+    @BeforeEach
+    void setUp() {
+        stockReservationRepository.deleteAllInBatch();
+        inventoryItemRepository.deleteAllInBatch();
+        productId = inventoryItemRepository.save(new InventoryItem("Product", "Test", 10.0, 5)).getId().toString();
+        otherProductId = inventoryItemRepository.save(new InventoryItem("Other", "Test", 10.0, 1)).getId().toString();
+    }
+
+    @Test
+    void testReservationBeyondTheAvailableStockIsRefused() {
+        assertTrue(sagaInventoryService.reserveIfAvailable(productId, 3, "saga-1").success());
+
+        StockReservationResponse refused = sagaInventoryService.reserveIfAvailable(productId, 3, "saga-2");
+
+        assertFalse(refused.success());
+        assertEquals("Insufficient stock", refused.message());
+        assertStock(productId, 5, 3, 2);
+        assertTrue(activeReservations("saga-2").isEmpty());
+    }
+
+    @Test
+    void testRetriedReservationReturnsTheSameReservation() {
+        StockReservationResponse first = sagaInventoryService.reserveIfAvailable(productId, 2, "saga-1");
+        StockReservationResponse retry = sagaInventoryService.reserveIfAvailable(productId, 2, "saga-1");
+
+        assertEquals(first.reservationId(), retry.reservationId());
+        assertStock(productId, 5, 2, 3);
+        assertEquals(1, activeReservations("saga-1").size());
+    }
+
+    @Test
+    void testConcurrentRetriesOfTheLastUnitsAllGetTheReservation() throws Exception {
+        String lastUnitsId = inventoryItemRepository.save(new InventoryItem("Last", "Test", 10.0, 2)).getId().toString();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService retries = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<StockReservationResponse>> responses = IntStream.range(0, 8)
+                .mapToObj(i -> retries.submit(() -> {
+                    start.await();
+                    return sagaInventoryService.reserveIfAvailable(lastUnitsId, 2, "saga-1");
+                }))
+                .toList();
+            start.countDown();
+
+            // A retry left without stock waits on the item row, then finds the reservation of the saga
+            for (Future<StockReservationResponse> response : responses) {
+                assertTrue(response.get(30, TimeUnit.SECONDS).success());
+            }
+        } finally {
+            retries.shutdown();
+        }
+
+        assertEquals(1, activeReservations("saga-1").size());
+        assertStock(lastUnitsId, 2, 2, 0);
+    }
+
+    @Test
+    void testReleasingTwiceGivesTheStockBackOnce() {
+        String reservationId = sagaInventoryService.reserveIfAvailable(productId, 3, "saga-1").reservationId();
+
+        assertTrue(sagaInventoryService.releaseReservation(reservationId));
+        assertFalse(sagaInventoryService.releaseReservation(reservationId));
+
+        assertStock(productId, 5, 0, 5);
+        assertEquals(StockReservation.ReservationStatus.RELEASED,
+            stockReservationRepository.findById(reservationId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void testReleaseNotCoveredByTheReservedStockRollsBack() {
+        // A reservation whose quantity was never moved to the reserved stock
+        stockReservationRepository.save(new StockReservation("reservation-1", productId, 2, "saga-1"));
+
+        assertFalse(sagaInventoryService.releaseReservation("reservation-1"));
+
+        assertStock(productId, 5, 0, 5);
+        assertEquals(StockReservation.ReservationStatus.ACTIVE,
+            stockReservationRepository.findById("reservation-1").orElseThrow().getStatus());
+    }
+
+    @Test
+    void testExpiredReservationGivesItsStockBack() {
+        String expiredId = sagaInventoryService.reserveIfAvailable(productId, 3, "saga-1").reservationId();
+        String liveId = sagaInventoryService.reserveIfAvailable(productId, 1, "saga-2").reservationId();
+        StockReservation expired = stockReservationRepository.findById(expiredId).orElseThrow();
+        expired.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+        stockReservationRepository.save(expired);
+
+        sagaInventoryService.cleanupExpiredReservations();
+
+        assertStock(productId, 5, 1, 4);
+        assertEquals(StockReservation.ReservationStatus.RELEASED,
+            stockReservationRepository.findById(expiredId).orElseThrow().getStatus());
+        assertEquals(StockReservation.ReservationStatus.ACTIVE,
+            stockReservationRepository.findById(liveId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void testConfirmTakesTheReservedStockOutOfTheCentralStock() {
+        String reservationId = sagaInventoryService.reserveIfAvailable(productId, 2, "saga-1").reservationId();
+
+        assertTrue(sagaInventoryService.confirmReservation(reservationId));
+        assertFalse(sagaInventoryService.confirmReservation(reservationId));
+        assertFalse(sagaInventoryService.releaseReservation(reservationId));
+
+        assertStock(productId, 3, 0, 3);
+    }
+
+    @Test
+    void testShortCartLineRollsBackTheWholeCart() {
+        CartStockReservationResponse response = sagaInventoryService.reserveCart(
+            List.of(new CartLine(productId, 2), new CartLine(otherProductId, 2)), "saga-1");
+
+        assertFalse(response.success());
+        assertStock(productId, 5, 0, 5);
+        assertStock(otherProductId, 1, 0, 1);
+        assertTrue(activeReservations("saga-1").isEmpty());
+    }
+
+    @Test
+    void testCartRetriedAfterItsStockRanOutGetsItsReservations() {
+        List<CartLine> lines = List.of(new CartLine(productId, 4), new CartLine(otherProductId, 1));
+        CartStockReservationResponse first = sagaInventoryService.reserveCart(lines, "saga-1");
+        assertTrue(first.success());
+
+        // The retry finds no stock left for its lines, but the saga already holds them
+        CartStockReservationResponse retry = sagaInventoryService.reserveCart(lines, "saga-1");
+
+        assertTrue(retry.success());
+        assertEquals(reservationIds(first), reservationIds(retry));
+        assertStock(productId, 5, 4, 1);
+        assertStock(otherProductId, 1, 1, 0);
+    }
+
+    @Test
+    void testConcurrentRetriesOfACartReserveItOnce() throws Exception {
+        String plentyId = inventoryItemRepository.save(new InventoryItem("Plenty", "Test", 10.0, 100)).getId().toString();
+        List<CartLine> lines = List.of(new CartLine(plentyId, 2));
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService retries = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CartStockReservationResponse>> responses = IntStream.range(0, 8)
+                .mapToObj(i -> retries.submit(() -> {
+                    start.await();
+                    return sagaInventoryService.reserveCart(lines, "saga-1");
+                }))
+                .toList();
+            start.countDown();
+
+            for (Future<CartStockReservationResponse> response : responses) {
+                assertTrue(response.get(30, TimeUnit.SECONDS).success());
+            }
+        } finally {
+            retries.shutdown();
+        }
+
+        // Each retry locked the product before looking for the saga's reservations
+        assertEquals(1, activeReservations("saga-1").size());
+        assertStock(plentyId, 100, 2, 98);
+    }
+
+    @Test
+    void testCartReleaseNotCoveredByTheReservedStockReleasesNothing() {
+        sagaInventoryService.reserveCart(List.of(new CartLine(productId, 2)), "saga-1");
+        stockReservationRepository.save(new StockReservation("reservation-1", otherProductId, 1, "saga-1"));
+
+        assertThrows(IllegalStateException.class, () -> sagaInventoryService.releaseSagaReservations("saga-1"));
+
+        assertStock(productId, 5, 2, 3);
+        assertEquals(2, activeReservations("saga-1").size());
+
+        stockReservationRepository.deleteById("reservation-1");
+        assertEquals(1, sagaInventoryService.releaseSagaReservations("saga-1"));
+        assertStock(productId, 5, 0, 5);
+    }
+
+    private void assertStock(String itemId, int central, int reserved, int available) {
+        InventoryItem item = inventoryItemRepository.findById(Long.parseLong(itemId)).orElseThrow();
+        assertEquals(central, item.getStockCentral());
+        assertEquals(reserved, item.getStockReserved());
+        assertEquals(available, item.getStockAvailable());
+    }
+
+    private List<StockReservation> activeReservations(String sagaId) {
+        return stockReservationRepository.findBySagaIdAndStatus(sagaId, StockReservation.ReservationStatus.ACTIVE);
+    }
+
+    private static List<String> reservationIds(CartStockReservationResponse response) {
+        return response.reservations().stream().map(StockReservationResponse::reservationId).sorted().toList();
+    }
+}
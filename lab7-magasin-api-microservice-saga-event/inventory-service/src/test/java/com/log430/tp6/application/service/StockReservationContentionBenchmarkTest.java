@@ -0,0 +1,179 @@
+package com.log430.tp7.application.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.log430.tp7.domain.inventory.InventoryItem;
+import com.log430.tp7.domain.inventory.StockReservation;
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
+import com.log430.tp7.infrastructure.repository.InventoryItemRepository;
+import com.log430.tp7.infrastructure.repository.StockReservationRepository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Concurrent reservations of a single hot product, each in its own transaction, against an in-memory database:
+ * the guarded counter update of {@link SagaInventoryService#reserveIfAvailable} versus the previous approach,
+ * which locked the item row and summed the active reservations of the product before inserting.
+ * Half of the attempts find no stock left, and neither approach may oversell. Runs only with -Dbenchmark=true.
+ */
+@DataJpaTest(properties = {
+    "spring.datasource.url=jdbc:h2:mem:contention;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=60000",
+    "spring.datasource.hikari.maximum-pool-size=64",
+    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+    "logging.level.com.log430=ERROR"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StockReservationContentionBenchmarkTest {
+
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 32);
+    private static final int RESERVATIONS_PER_CLIENT = Integer.getInteger("benchmark.reservations", 100);
+
+    @SpringBootConfiguration
+    @EntityScan("com.log430.tp7.domain")
+    @EnableJpaRepositories("com.log430.tp7.infrastructure.repository")
+    @Import(SagaInventoryService.class)
+    static class Configuration {
+    }
+
+    @Autowired
+    private SagaInventoryService sagaInventoryService;
+
+    @Autowired
+    private InventoryItemRepository inventoryItemRepository;
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private interface Reservation {
+        boolean reserve(Long itemId, String sagaId);
+    }
+
+    @Test
+    void benchmarkHotProductReservations() throws Exception {
+        Reservation lockedSum = this::reserveWithLockedSum;
+        Reservation guardedUpdate = (itemId, sagaId) ->
+            sagaInventoryService.reserveIfAvailable(itemId.toString(), 1, sagaId).success();
+
+        // Warm up both code paths before measuring
+        run(lockedSum, false, 5);
+        run(guardedUpdate, true, 5);
+
+        BenchmarkResult locked = run(lockedSum, false, RESERVATIONS_PER_CLIENT);
+        BenchmarkResult guarded = run(guardedUpdate, true, RESERVATIONS_PER_CLIENT);
+
+        System.out.printf("%nHot product, %d clients x %d reservations, stock for half of them%n",
+            CLIENTS, RESERVATIONS_PER_CLIENT);
+        System.out.printf("  locked row + SUM: %,8.1f reservations/s, p50 %,8.2f ms, p99 %,8.2f ms, %,6d reserved%n",
+            locked.reservationsPerSecond(), locked.p50Millis(), locked.p99Millis(), locked.reserved());
+        System.out.printf("  guarded update:   %,8.1f reservations/s, p50 %,8.2f ms, p99 %,8.2f ms, %,6d reserved%n",
+            guarded.reservationsPerSecond(), guarded.p50Millis(), guarded.p99Millis(), guarded.reserved());
+    }
+
+    private BenchmarkResult run(Reservation reservation, boolean countersMaintained, int reservationsPerClient)
+            throws Exception {
+        int attempts = CLIENTS * reservationsPerClient;
+        int stock = attempts / 2;
+        stockReservationRepository.deleteAllInBatch();
+        inventoryItemRepository.deleteAllInBatch();
+        Long itemId = inventoryItemRepository.save(new InventoryItem("Hot product", "Benchmark", 10.0, stock)).getId();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long[] latencies = new long[attempts];
+        AtomicInteger index = new AtomicInteger();
+        AtomicInteger reserved = new AtomicInteger();
+        try {
+            long start = System.nanoTime();
+            List<CompletableFuture<Void>> runs = IntStream.range(0, CLIENTS)
+                .mapToObj(client -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < reservationsPerClient; i++) {
+                        long reservationStart = System.nanoTime();
+                        if (reservation.reserve(itemId, TimeOrderedUuidGenerator.nextString())) {
+                            reserved.incrementAndGet();
+                        }
+                        latencies[index.getAndIncrement()] = System.nanoTime() - reservationStart;
+                    }
+                }, clients))
+                .toList();
+            CompletableFuture.allOf(runs.toArray(CompletableFuture[]::new)).get(10, TimeUnit.MINUTES);
+            long elapsedNanos = System.nanoTime() - start;
+
+            // Exactly the stock is reserved, and the counters agree with the reservation rows
+            List<StockReservation> active = stockReservationRepository.findByProductIdAndStatus(
+                itemId.toString(), StockReservation.ReservationStatus.ACTIVE);
+            assertEquals(stock, reserved.get());
+            assertEquals(stock, active.size());
+            if (countersMaintained) {
+                InventoryItem item = inventoryItemRepository.findById(itemId).orElseThrow();
+                assertEquals(stock, item.getStockReserved());
+                assertEquals(0, item.getStockAvailable());
+            }
+
+            Arrays.sort(latencies);
+            return new BenchmarkResult(
+                attempts / (elapsedNanos / 1_000_000_000.0),
+                latencies[attempts / 2] / 1_000_000.0,
+                latencies[(int) Math.ceil(attempts * 0.99) - 1] / 1_000_000.0,
+                reserved.get());
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    /**
+     * The reservation as it was before the stock counters: lock the item row, sum the active reservations
+     * of the product, then insert if the difference covers the request.
+     */
+    private boolean reserveWithLockedSum(Long itemId, String sagaId) {
+        String productId = itemId.toString();
+        return Boolean.TRUE.equals(new TransactionTemplate(transactionManager).execute(status -> {
+            InventoryItem item = entityManager.find(InventoryItem.class, itemId, LockModeType.PESSIMISTIC_WRITE);
+            if (!stockReservationRepository.findBySagaIdAndStatus(
+                    sagaId, StockReservation.ReservationStatus.ACTIVE).isEmpty()) {
+                return true;
+            }
+            int reservedQuantity = stockReservationRepository.calculateReservedQuantity(productId, LocalDateTime.now());
+            if (item.getStockCentral() - reservedQuantity < 1) {
+                return false;
+            }
+            stockReservationRepository.save(new StockReservation(TimeOrderedUuidGenerator.nextString(),
+                productId, 1, sagaId));
+            return true;
+        }));
+    }
+
+    private record BenchmarkResult(double reservationsPerSecond, double p50Millis, double p99Millis, int reserved) {}
+}
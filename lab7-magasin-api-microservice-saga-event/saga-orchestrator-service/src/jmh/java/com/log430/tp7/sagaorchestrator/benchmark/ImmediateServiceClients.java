@@ -0,0 +1,67 @@
+package com.log430.tp7.sagaorchestrator.benchmark;
+
+import com.log430.tp7.sagaorchestrator.dto.*;
+import com.log430.tp7.sagaorchestrator.service.ServiceClientWrapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Remote services answering successfully at once, so benchmarks measure the orchestrator only.
+ */
+class ImmediateServiceClients extends ServiceClientWrapper {
+
+    ImmediateServiceClients() {
+        super(null, null, null, null, null, null, null);
+    }
+
+    @Override
+    public CompletableFuture<StockVerificationResponse> verifyStock(String productId, Integer quantity, String sagaId) {
+        return CompletableFuture.completedFuture(StockVerificationResponse.success(productId, quantity, 1_000, true));
+    }
+
+    @Override
+    public CompletableFuture<StockReservationResponse> reserveStock(String productId, Integer quantity,
+                                                                   String sagaId, String customerId) {
+        return CompletableFuture.completedFuture(StockReservationResponse.success(sagaId + ":" + productId, productId,
+            quantity, sagaId, LocalDateTime.now().plusMinutes(30)));
+    }
+
+    @Override
+    public CompletableFuture<CartStockVerificationResponse> verifyCartStock(List<SaleRequest.SaleLine> lines,
+                                                                           String sagaId) {
+        return CompletableFuture.completedFuture(new CartStockVerificationResponse(true, true, sagaId, List.of(),
+            "Stock verification successful"));
+    }
+
+    @Override
+    public CompletableFuture<CartStockReservationResponse> reserveCartStock(List<SaleRequest.SaleLine> lines,
+                                                                           String sagaId, String customerId) {
+        return CompletableFuture.completedFuture(CartStockReservationResponse.success(sagaId, lines.stream()
+            .map(line -> StockReservationResponse.success(sagaId + ":" + line.productId(), line.productId(),
+                line.quantity(), sagaId, LocalDateTime.now().plusMinutes(30)))
+            .toList()));
+    }
+
+    @Override
+    public CompletableFuture<PaymentResponse> processPayment(String customerId, BigDecimal amount,
+            String paymentMethod, String cardNumber, String expiryMonth, String expiryYear, String cvv,
+            String billingAddress, String sagaId, String productId, Integer quantity) {
+        return CompletableFuture.completedFuture(PaymentResponse.success("payment-" + sagaId, customerId, amount,
+            paymentMethod, sagaId, "AUTH"));
+    }
+
+    @Override
+    public CompletableFuture<OrderResponse> createOrder(OrderRequest request) {
+        return CompletableFuture.completedFuture(orderCreated(request));
+    }
+
+    private static OrderResponse orderCreated(OrderRequest request) {
+        int quantity = request.items().stream().mapToInt(OrderRequest.OrderItem::quantity).sum();
+        return OrderResponse.success("order-" + request.sagaId(), request.customerId(), request.firstProductId(),
+            quantity, request.totalAmount(), request.sagaId(), request.stockReservationId(),
+            request.paymentTransactionId(), "ORD-" + request.sagaId(), null);
+    }
+}
@@ -0,0 +1,83 @@
+package com.log430.tp7.sagaorchestrator.benchmark;
+
+import com.log430.tp7.sagaorchestrator.dto.SaleRequest;
+import com.log430.tp7.sagaorchestrator.model.SagaEventType;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaLine;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import com.log430.tp7.sagaorchestrator.service.SagaStepStore;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Step store keeping sagas in memory, in place of the repositories and the event journal.
+ */
+class InMemorySagaStepStore extends SagaStepStore {
+
+    private final Map<String, SagaExecution> sagas = new ConcurrentHashMap<>();
+
+    InMemorySagaStepStore() {
+        super(null, null, null, null, null);
+    }
+
+    void clear() {
+        sagas.clear();
+    }
+
+    @Override
+    public SagaExecution createSaga(String sagaId, SaleRequest request) {
+        SagaExecution saga = new SagaExecution(sagaId, request.customerId(), request.saleLines().get(0).productId(),
+            request.saleLines().stream().mapToInt(SaleRequest.SaleLine::quantity).sum(), request.amount());
+        if (request.isCart()) {
+            saga.setLines(new ArrayList<>(request.lines().stream()
+                .map(line -> new SagaLine(line.productId(), line.quantity()))
+                .toList()));
+        }
+        sagas.put(sagaId, saga);
+        return saga;
+    }
+
+    @Override
+    public SagaExecution beginStep(String sagaId, SagaState stepState, String callMessage) {
+        return update(sagaId, saga -> saga.transitionTo(stepState));
+    }
+
+    @Override
+    public SagaExecution completeStep(String sagaId, Consumer<SagaExecution> update, String message) {
+        return update(sagaId, update);
+    }
+
+    @Override
+    public SagaExecution confirmSale(String sagaId) {
+        return update(sagaId, saga -> saga.transitionTo(SagaState.SALE_CONFIRMED));
+    }
+
+    @Override
+    public void failStep(String sagaId, SagaEventType eventType, String errorMessage) {
+        update(sagaId, saga -> saga.setErrorMessage(errorMessage));
+    }
+
+    @Override
+    public SagaExecution beginCompensation(String sagaId, String errorMessage) {
+        return sagas.get(sagaId);
+    }
+
+    @Override
+    public void failSale(String sagaId, String errorMessage, String compensationLog, String compensationState) {
+        update(sagaId, saga -> saga.setErrorMessage(errorMessage));
+    }
+
+    @Override
+    public void logSagaEvent(String sagaId, SagaEventType eventType, String eventData) {
+    }
+
+    private SagaExecution update(String sagaId, Consumer<SagaExecution> update) {
+        return sagas.computeIfPresent(sagaId, (id, saga) -> {
+            update.accept(saga);
+            return saga;
+        });
+    }
+}
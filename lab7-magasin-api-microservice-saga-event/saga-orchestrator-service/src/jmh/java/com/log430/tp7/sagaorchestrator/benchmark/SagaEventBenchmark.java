@@ -0,0 +1,49 @@
+package com.log430.tp7.sagaorchestrator.benchmark;
+
+import com.log430.tp7.sagaorchestrator.model.SagaEvent;
+import com.log430.tp7.sagaorchestrator.model.SagaEventType;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction and JSON serialization of the saga events written for every step.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SagaEventBenchmark {
+
+    private SagaEvent sagaStarted;
+    private String sagaStartedJson;
+
+    @Setup
+    public void setUp() {
+        sagaStarted = SagaEvent.sagaStarted("saga-1", "customer-1", "product-1", 2, "20.00");
+        sagaStartedJson = sagaStarted.getEventDataAsJson();
+    }
+
+    @Benchmark
+    public SagaEvent stateTransitionEvent() {
+        return SagaEvent.stateTransition("saga-1", SagaState.STOCK_RESERVING, SagaState.PAYMENT_PROCESSING);
+    }
+
+    @Benchmark
+    public SagaEvent sagaStartedEvent() {
+        return SagaEvent.sagaStarted("saga-1", "customer-1", "product-1", 2, "20.00");
+    }
+
+    @Benchmark
+    public String serializeEventData() {
+        return sagaStarted.getEventDataAsJson();
+    }
+
+    @Benchmark
+    public SagaEvent eventFromJson() {
+        return new SagaEvent("saga-1", SagaEventType.SAGA_STARTED, sagaStartedJson);
+    }
+}
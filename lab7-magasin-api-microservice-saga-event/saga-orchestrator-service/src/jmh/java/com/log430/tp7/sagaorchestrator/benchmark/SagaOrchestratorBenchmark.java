@@ -0,0 +1,90 @@
+package com.log430.tp7.sagaorchestrator.benchmark;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.dto.SagaResponse;
+import com.log430.tp7.sagaorchestrator.dto.SaleRequest;
+import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import com.log430.tp7.sagaorchestrator.service.ConcurrentSagaManager;
+import com.log430.tp7.sagaorchestrator.service.SagaAdmissionController;
+import com.log430.tp7.sagaorchestrator.service.SagaOrchestrator;
+import com.log430.tp7.sagaorchestrator.service.StripedSagaLockProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SagaOrchestrator#executeSale} end to end with in-memory stubs: remote calls answer at once and sagas
+ * are kept in a map, so the score is the orchestrator's own cost per sale (step chaining, thread hops, metrics,
+ * structured logging).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SagaOrchestratorBenchmark {
+
+    private final SaleRequest request = new SaleRequest("customer-1", "product-1", 2, new BigDecimal("20.00"), null);
+
+    private InMemorySagaStepStore sagaStepStore;
+    private SagaOrchestrator orchestrator;
+
+    @Setup
+    public void setUp() {
+        SagaMetrics sagaMetrics = new SagaMetrics(new SimpleMeterRegistry());
+        SagaEventLogger sagaEventLogger = new SagaEventLogger();
+        SagaConfiguration.SagaAdmissionProperties admission = new SagaConfiguration.SagaAdmissionProperties();
+        admission.setEnabled(false);
+
+        sagaStepStore = new InMemorySagaStepStore();
+        orchestrator = new SagaOrchestrator(sagaStepStore, new ImmediateServiceClients(),
+            new UncontendedSagaManager(sagaMetrics, sagaEventLogger), sagaMetrics, sagaEventLogger,
+            new SagaConfiguration.SagaExecutionProperties(),
+            new SagaAdmissionController(admission, sagaMetrics));
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearSagas() {
+        sagaStepStore.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        orchestrator.shutdown();
+    }
+
+    @Benchmark
+    public SagaResponse executeSale() {
+        SagaResponse response = orchestrator.executeSale(request);
+        if (response.state() != SagaState.SALE_CONFIRMED) {
+            throw new IllegalStateException("Sale not confirmed: " + response.message());
+        }
+        return response;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public SagaResponse executeSaleConcurrently() {
+        return executeSale();
+    }
+
+    /**
+     * Lets every stock reservation through, as a saga manager without concurrent sales on the same product would.
+     */
+    private static class UncontendedSagaManager extends ConcurrentSagaManager {
+
+        UncontendedSagaManager(SagaMetrics sagaMetrics, SagaEventLogger sagaEventLogger) {
+            super(null, sagaMetrics, sagaEventLogger, new StripedSagaLockProvider(16));
+        }
+
+        @Override
+        public boolean handleStockReservationRaceCondition(String customerId, String productId, String sagaId) {
+            return true;
+        }
+    }
+}
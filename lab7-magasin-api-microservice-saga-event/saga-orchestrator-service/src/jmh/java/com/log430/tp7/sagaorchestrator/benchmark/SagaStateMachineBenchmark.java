@@ -0,0 +1,60 @@
+package com.log430.tp7.sagaorchestrator.benchmark;
+
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transition checks of the saga state machine, on the enum and on {@link SagaExecution},
+ * and a saga driven through its happy path. Run with {@code -prof gc} to see allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SagaStateMachineBenchmark {
+
+    private static final SagaState[] STATES = SagaState.values();
+    private static final SagaState[] HAPPY_PATH = {
+        SagaState.STOCK_RESERVING, SagaState.PAYMENT_PROCESSING, SagaState.ORDER_CONFIRMING, SagaState.SALE_CONFIRMED
+    };
+
+    private SagaExecution paymentProcessingSaga;
+
+    @Setup
+    public void setUp() {
+        paymentProcessingSaga = new SagaExecution("saga-1", "customer-1", "product-1", 2, new BigDecimal("20.00"));
+        paymentProcessingSaga.setCurrentState(SagaState.PAYMENT_PROCESSING);
+    }
+
+    @Benchmark
+    public void stateCanTransitionTo(Blackhole blackhole) {
+        for (SagaState from : STATES) {
+            for (SagaState to : STATES) {
+                blackhole.consume(from.canTransitionTo(to));
+            }
+        }
+    }
+
+    @Benchmark
+    public void executionCanTransitionTo(Blackhole blackhole) {
+        for (SagaState to : STATES) {
+            blackhole.consume(paymentProcessingSaga.canTransitionTo(to));
+        }
+    }
+
+    @Benchmark
+    public SagaExecution executionHappyPath() {
+        SagaExecution saga = new SagaExecution("saga-1", "customer-1", "product-1", 2, new BigDecimal("20.00"));
+        for (SagaState state : HAPPY_PATH) {
+            saga.transitionTo(state);
+        }
+        return saga;
+    }
+}
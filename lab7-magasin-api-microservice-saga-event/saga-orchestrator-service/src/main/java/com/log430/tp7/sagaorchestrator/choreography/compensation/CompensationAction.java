@@ -2,27 +2,77 @@ package com.log430.tp7.sagaorchestrator.choreography.compensation;
 
 import java.time.LocalDateTime;
 
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
 /**
  * Represents a compensation action that needs to be executed
  * when a choreographed saga step fails or times out.
+ * Actions are persisted in a delay queue ordered by {@code executeAfter} then {@code priority};
+ * while an action is in progress, {@code executeAfter} is the end of the worker's lease,
+ * after which another worker may claim it again.
  */
+@Entity
+@Table(name = "compensation_actions")
 public class CompensationAction {
     
-    private final String actionId;
-    private final String sagaId;
-    private final String correlationId;
-    private final String stepName;
-    private final String serviceName;
-    private final String compensationEndpoint;
-    private final String compensationPayload;
-    private final int priority;
-    private final LocalDateTime createdAt;
+    @Id
+    @Column(name = "action_id", length = 36)
+    private String actionId;
+    
+    @Column(name = "saga_id", nullable = false, length = 36)
+    private String sagaId;
+    
+    @Column(name = "correlation_id", nullable = false, length = 36)
+    private String correlationId;
+    
+    @Column(name = "step_name", nullable = false, length = 100)
+    private String stepName;
+    
+    @Column(name = "service_name", nullable = false, length = 100)
+    private String serviceName;
+    
+    @Column(name = "compensation_endpoint", nullable = false)
+    private String compensationEndpoint;
+    
+    @Column(name = "compensation_payload", columnDefinition = "TEXT")
+    private String compensationPayload;
+    
+    @Column(name = "priority", nullable = false)
+    private int priority;
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "execute_after", nullable = false)
     private LocalDateTime executeAfter;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
     private CompensationStatus status;
+    
+    @Column(name = "error_message", columnDefinition = "TEXT")
     private String errorMessage;
+    
+    @Column(name = "retry_count", nullable = false)
     private int retryCount;
+    
+    @Column(name = "last_attempt")
     private LocalDateTime lastAttempt;
     
+    @Version
+    @Column(name = "version")
+    private Long version;
+    
+    // Required by JPA
+    protected CompensationAction() {
+    }
+    
     // Private constructor - use Builder
     private CompensationAction(Builder builder) {
         this.actionId = builder.actionId;
@@ -65,6 +115,22 @@ public class CompensationAction {
         this.lastAttempt = LocalDateTime.now();
     }
     
+    /**
+     * Claims the action for a worker until the lease ends.
+     */
+    public void claim(LocalDateTime leaseUntil) {
+        markInProgress();
+        this.executeAfter = leaseUntil;
+    }
+    
+    /**
+     * Puts a failed action back in the queue, to run again after the given time.
+     */
+    public void scheduleRetry(LocalDateTime retryAt) {
+        this.status = CompensationStatus.PENDING;
+        this.executeAfter = retryAt;
+    }
+    
     public void markCompleted() {
         this.status = CompensationStatus.COMPLETED;
     }
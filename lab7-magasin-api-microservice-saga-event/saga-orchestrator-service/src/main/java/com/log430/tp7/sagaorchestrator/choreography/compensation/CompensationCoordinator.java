@@ -1,59 +1,114 @@
 package com.log430.tp7.sagaorchestrator.choreography.compensation;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaState;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStep;
 import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaRepository;
+import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaStepRepository;
+import com.log430.tp7.sagaorchestrator.choreography.repository.CompensationActionRepository;
+
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service for coordinating compensation actions in choreographed sagas.
  * Manages the execution of compensation logic when saga steps fail or timeout.
+ * Pending actions live in the {@code compensation_actions} table, so a restart loses none. Workers claim due
+ * actions with {@code FOR UPDATE SKIP LOCKED}, so several threads and instances share the queue without
+ * claiming the same action twice, and run them on virtual threads with at most
+ * {@code max-concurrency-per-service} calls per target service. A worker claims no more actions than it has
+ * free slots, so a claimed action starts well within its lease.
+ * The actions of one saga run one after another, in plan order (last completed step first): only the first
+ * unfinished action of a saga can be claimed, so only different sagas are compensated in parallel, across
+ * workers and instances alike. A failed action is retried after an exponential backoff of its own and
+ * holds back the rest of its saga until then.
  */
 @Service
 public class CompensationCoordinator {
     
     private static final Logger log = LoggerFactory.getLogger(CompensationCoordinator.class);
     private static final int MAX_RETRIES = 3;
-    private static final int RETRY_DELAY_MINUTES = 5;
     private static final String INVENTORY_SERVICE = "inventory-service";
     private static final String PAYMENT_SERVICE = "payment-service";
     private static final String STORE_SERVICE = "store-service";
     
     private final ChoreographedSagaRepository sagaRepository;
+    private final CompensationActionRepository actionRepository;
+    private final ChoreographedSagaStepRepository stepRepository;
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxConcurrencyPerService;
+    private final long leaseMs;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final Map<String, String> serviceUrls;
     
-    // In-memory queues for compensation actions (could be replaced with persistent storage)
-    private final Queue<CompensationAction> pendingActions = new ConcurrentLinkedQueue<>();
-    private final Map<String, CompensationAction> actionRegistry = new ConcurrentHashMap<>();
+    private final ExecutorService workers =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("compensation-worker-", 0).factory());
+    private final Map<String, Semaphore> servicePermits = new ConcurrentHashMap<>();
     
-    public CompensationCoordinator(ChoreographedSagaRepository sagaRepository, 
-                                 RestTemplate restTemplate, ObjectMapper objectMapper) {
+    public CompensationCoordinator(ChoreographedSagaRepository sagaRepository,
+                                 CompensationActionRepository actionRepository,
+                                 ChoreographedSagaStepRepository stepRepository,
+                                 RestTemplate restTemplate, ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${saga.choreographed.compensation.batch-size:100}") int batchSize,
+                                 @Value("${saga.choreographed.compensation.max-concurrency-per-service:8}") int maxConcurrencyPerService,
+                                 @Value("${saga.choreographed.compensation.lease-ms:60000}") long leaseMs,
+                                 @Value("${saga.choreographed.compensation.base-backoff-ms:5000}") long baseBackoffMs,
+                                 @Value("${saga.choreographed.compensation.max-backoff-ms:300000}") long maxBackoffMs,
+                                 @Value("${services.inventory.url:http://inventory-service:8081}") String inventoryServiceUrl,
+                                 @Value("${services.transaction.url:http://transaction-service:8082}") String transactionServiceUrl,
+                                 @Value("${services.store.url:http://store-service:8083}") String storeServiceUrl) {
         this.sagaRepository = sagaRepository;
+        this.actionRepository = actionRepository;
+        this.stepRepository = stepRepository;
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxConcurrencyPerService = maxConcurrencyPerService;
+        this.leaseMs = leaseMs;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        // Payments are refunded and cancelled by the transaction service
+        this.serviceUrls = Map.of(
+            INVENTORY_SERVICE, inventoryServiceUrl,
+            PAYMENT_SERVICE, transactionServiceUrl,
+            STORE_SERVICE, storeServiceUrl
+        );
     }
     
     /**
@@ -80,10 +135,9 @@ public class CompensationCoordinator {
             
             log.info("Generated {} compensation actions for saga: sagaId={}", compensationActions.size(), sagaId);
             
-            // Queue compensation actions for execution
-            for (CompensationAction action : compensationActions) {
-                queueCompensationAction(action);
-            }
+            // Queue compensation actions for execution, in one transaction
+            actionRepository.saveAll(compensationActions);
+            log.info("Queued {} compensation actions for saga: sagaId={}", compensationActions.size(), sagaId);
             
         } catch (Exception e) {
             log.error("Failed to trigger compensation for saga: sagaId={}", sagaId, e);
@@ -97,7 +151,12 @@ public class CompensationCoordinator {
         List<CompensationAction> actions = new ArrayList<>();
         
         try {
-            List<String> completedStepsList = parseCompletedSteps(saga.getCompletedSteps());
+            List<String> completedStepsList = stepRepository.findStepNames(saga.getSagaId(),
+                ChoreographedSagaStep.Outcome.COMPLETED);
+            if (completedStepsList.isEmpty()) {
+                // Sagas recorded before the step log keep their steps in a JSON column
+                completedStepsList = parseCompletedSteps(saga.getCompletedSteps());
+            }
             
             log.debug("Building compensation plan for saga: sagaId={}, completedSteps={}", 
                      saga.getSagaId(), completedStepsList);
@@ -105,6 +164,8 @@ public class CompensationCoordinator {
             // Create compensation actions for all completed steps (in reverse order)
             List<String> stepsToCompensate = completedStepsList.reversed();
             
+            // Same ready time for the whole plan: workers then take the actions in priority order
+            LocalDateTime readyAt = LocalDateTime.now();
             int priority = 1;
             for (String stepName : stepsToCompensate) {
                 CompensationDefinition definition = getCompensationDefinition(stepName);
@@ -120,6 +181,7 @@ public class CompensationCoordinator {
                         .compensationEndpoint(definition.getEndpoint())
                         .compensationPayload(buildCompensationPayload(saga, stepName))
                         .priority(priority++)
+                        .executeAfter(readyAt)
                         .build();
                     
                     actions.add(action);
@@ -192,8 +254,7 @@ public class CompensationCoordinator {
      * Queues a compensation action for execution.
      */
     public void queueCompensationAction(CompensationAction action) {
-        pendingActions.offer(action);
-        actionRegistry.put(action.getActionId(), action);
+        actionRepository.save(action);
         
         log.info("Queued compensation action: actionId={}, step={}, priority={}", 
                 action.getActionId(), action.getStepName(), action.getPriority());
@@ -201,34 +262,113 @@ public class CompensationCoordinator {
     
     /**
      * Processes pending compensation actions.
+     * Claims due actions batch by batch until none is left or every service slot is taken, and runs the
+     * actions of each saga in order while sagas run in parallel. Actions that are not due yet are never read.
+     *
+     * @return number of actions executed
      */
-    public void processCompensationActions() {
-        if (pendingActions.isEmpty()) {
-            return;
+    public int processCompensationActions() {
+        int processed = 0;
+        int limit;
+        List<CompensationAction> claimed;
+        while ((limit = Math.min(batchSize, freeServiceSlots())) > 0 && !(claimed = claimDueActions(limit)).isEmpty()) {
+            log.debug("Claimed {} due compensation actions", claimed.size());
+            
+            Map<String, List<CompensationAction>> bySaga = new LinkedHashMap<>();
+            for (CompensationAction action : claimed) {
+                bySaga.computeIfAbsent(action.getSagaId(), sagaId -> new ArrayList<>()).add(action);
+            }
+            CompletableFuture<?>[] running = bySaga.values().stream()
+                .map(actions -> CompletableFuture.runAsync(() -> executeInOrder(actions), workers))
+                .toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(running).join();
+            processed += claimed.size();
         }
-        
-        log.debug("Processing {} pending compensation actions", pendingActions.size());
-        
-        List<CompensationAction> actionsToProcess = new ArrayList<>();
-        
-        // Collect actions ready for execution
-        while (!pendingActions.isEmpty()) {
-            CompensationAction action = pendingActions.poll();
-            if (action != null && action.isReadyForExecution()) {
-                actionsToProcess.add(action);
-            } else if (action != null) {
-                // Re-queue if not ready yet
-                pendingActions.offer(action);
+        return processed;
+    }
+    
+    /**
+     * Slots free on the busiest service: the claimed actions may all target it.
+     */
+    private int freeServiceSlots() {
+        int free = maxConcurrencyPerService;
+        for (Semaphore permits : servicePermits.values()) {
+            free = Math.min(free, permits.availablePermits());
+        }
+        return free;
+    }
+    
+    /**
+     * Locks the next due actions and leases them to this worker in one short transaction.
+     */
+    private List<CompensationAction> claimDueActions(int limit) {
+        List<CompensationAction> claimed = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<CompensationAction> due = actionRepository.lockDueActions(now, limit);
+            for (CompensationAction action : due) {
+                action.claim(now.plus(leaseMs, ChronoUnit.MILLIS));
+            }
+            return actionRepository.saveAll(due);
+        });
+        return claimed != null ? claimed : List.of();
+    }
+    
+    /**
+     * Runs the claimed actions of one saga in plan order. The claim query hands out one action per saga;
+     * should a batch still hold several, an action requeued for a retry or interrupted before it ran stops
+     * the sequence, and the actions after it are released to be claimed again once it is finished.
+     */
+    private void executeInOrder(List<CompensationAction> actions) {
+        actions.sort(Comparator.comparingInt(CompensationAction::getPriority));
+        for (int i = 0; i < actions.size(); i++) {
+            CompensationAction action = actions.get(i);
+            if (!executeWithServiceLimit(action)) {
+                log.warn("Compensation of saga interrupted: sagaId={}, step={}",
+                        action.getSagaId(), action.getStepName());
+                return;
             }
+            if (action.getStatus() != CompensationStatus.PENDING) {
+                continue;
+            }
+            LocalDateTime retryAt = action.getExecuteAfter();
+            try {
+                for (CompensationAction held : actions.subList(i + 1, actions.size())) {
+                    held.scheduleRetry(retryAt);
+                    actionRepository.save(held);
+                }
+            } catch (Exception e) {
+                log.error("Failed to hold back compensation actions: sagaId={}", action.getSagaId(), e);
+            }
+            log.info("Compensation of saga held back until retry: sagaId={}, failedStep={}, retryAt={}",
+                    action.getSagaId(), action.getStepName(), retryAt);
+            return;
         }
-        
-        // Sort by priority (lower number = higher priority)
-        actionsToProcess.sort(Comparator.comparingInt(CompensationAction::getPriority));
-        
-        // Execute actions
-        for (CompensationAction action : actionsToProcess) {
+    }
+    
+    /**
+     * Executes an action once its target service has a free slot.
+     *
+     * @return false if the worker was interrupted while waiting; the action is left claimed, its lease
+     *         expires and another worker takes it over, and the interrupt flag is kept set
+     */
+    private boolean executeWithServiceLimit(CompensationAction action) {
+        Semaphore permits = servicePermits.computeIfAbsent(action.getServiceName(),
+            service -> new Semaphore(maxConcurrencyPerService));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
             executeCompensationAction(action);
+        } catch (Exception e) {
+            // Typically the lease expired and another worker already saved a newer version
+            log.error("Failed to record compensation action outcome: actionId={}", action.getActionId(), e);
+        } finally {
+            permits.release();
         }
+        return true;
     }
     
     /**
@@ -238,8 +378,6 @@ public class CompensationCoordinator {
         log.info("Executing compensation action: actionId={}, step={}, service={}", 
                 action.getActionId(), action.getStepName(), action.getServiceName());
         
-        action.markInProgress();
-        
         try {
             // Prepare HTTP request
             HttpHeaders headers = new HttpHeaders();
@@ -256,6 +394,7 @@ public class CompensationCoordinator {
             
             if (response.getStatusCode().is2xxSuccessful()) {
                 action.markCompleted();
+                actionRepository.save(action);
                 log.info("Compensation action completed successfully: actionId={}", action.getActionId());
             } else {
                 String errorMsg = "HTTP " + response.getStatusCode() + ": " + response.getBody();
@@ -277,25 +416,23 @@ public class CompensationCoordinator {
         
         if (action.canRetry(MAX_RETRIES)) {
             // Schedule retry with delay
-            LocalDateTime retryTime = LocalDateTime.now().plusMinutes((long) RETRY_DELAY_MINUTES * action.getRetryCount());
-            CompensationAction retryAction = CompensationAction.builder()
-                .actionId(action.getActionId())
-                .sagaId(action.getSagaId())
-                .correlationId(action.getCorrelationId())
-                .stepName(action.getStepName())
-                .serviceName(action.getServiceName())
-                .compensationEndpoint(action.getCompensationEndpoint())
-                .compensationPayload(action.getCompensationPayload())
-                .priority(action.getPriority())
-                .executeAfter(retryTime)
-                .build();
-            
-            queueCompensationAction(retryAction);
+            LocalDateTime retryTime = LocalDateTime.now().plus(backoffMillis(action.getRetryCount()), ChronoUnit.MILLIS);
+            action.scheduleRetry(retryTime);
             log.info("Scheduled compensation retry: actionId={}, retryTime={}", 
                     action.getActionId(), retryTime);
         } else {
             log.error("Compensation action exceeded max retries: actionId={}", action.getActionId());
         }
+        actionRepository.save(action);
+    }
+    
+    /**
+     * Exponential backoff with jitter, so that actions failing together during an outage
+     * of their service are not retried together.
+     */
+    private long backoffMillis(int retryCount) {
+        long delay = Math.min(maxBackoffMs, baseBackoffMs << Math.min(retryCount - 1, 20));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
     }
     
     /**
@@ -308,16 +445,10 @@ public class CompensationCoordinator {
     }
     
     /**
-     * Gets base URL for a service (simplified for demo).
+     * Gets base URL for a service, from the same {@code services.<name>.url} properties as the service clients.
      */
     private String getServiceBaseUrl(String serviceName) {
         // In production, this would use service discovery
-        Map<String, String> serviceUrls = Map.of(
-            INVENTORY_SERVICE, "http://inventory-service:8080",
-            PAYMENT_SERVICE, "http://payment-service:8080",
-            STORE_SERVICE, "http://store-service:8080"
-        );
-        
         return serviceUrls.getOrDefault(serviceName, "http://localhost:8080");
     }
     
@@ -325,17 +456,19 @@ public class CompensationCoordinator {
      * Gets pending compensation actions count.
      */
     public int getPendingActionsCount() {
-        return pendingActions.size();
+        return (int) actionRepository.countActive();
     }
     
     /**
      * Gets all compensation actions for a saga.
      */
     public List<CompensationAction> getCompensationActions(String sagaId) {
-        return actionRegistry.values().stream()
-            .filter(action -> sagaId.equals(action.getSagaId()))
-            .sorted(Comparator.comparingInt(CompensationAction::getPriority))
-            .toList();
+        return actionRepository.findBySagaIdOrderByPriority(sagaId);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
     }
     
     /**
@@ -23,20 +23,17 @@ public class CompensationProcessingService {
     }
     
     /**
-     * Processes pending compensation actions every 30 seconds.
+     * Processes due compensation actions; polling is cheap since only due actions are read.
      */
-    @Scheduled(fixedRate = 30000) // 30 seconds
+    @Scheduled(fixedDelayString = "${saga.choreographed.compensation.poll-interval-ms:1000}")
     public void processCompensationActions() {
         try {
-            int pendingCount = compensationCoordinator.getPendingActionsCount();
-            if (pendingCount > 0) {
-                log.debug("Processing {} pending compensation actions", pendingCount);
-                
-                long startTime = System.currentTimeMillis();
-                compensationCoordinator.processCompensationActions();
+            long startTime = System.currentTimeMillis();
+            int processed = compensationCoordinator.processCompensationActions();
+            
+            if (processed > 0) {
                 long duration = System.currentTimeMillis() - startTime;
-                
-                log.debug("Compensation processing completed in {} ms", duration);
+                log.debug("Processed {} compensation actions in {} ms", processed, duration);
             }
         } catch (Exception e) {
             log.error("Error during compensation action processing", e);
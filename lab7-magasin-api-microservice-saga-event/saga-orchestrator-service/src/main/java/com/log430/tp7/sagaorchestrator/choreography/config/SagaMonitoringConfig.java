@@ -4,9 +4,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
-import com.log430.tp7.sagaorchestrator.choreography.compensation.CompensationCoordinator;
 import com.log430.tp7.sagaorchestrator.choreography.monitoring.ChoreographedSagaMetrics;
-import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaRepository;
+import com.log430.tp7.sagaorchestrator.choreography.monitoring.SagaDashboardStatistics;
 
 import io.micrometer.core.instrument.MeterRegistry;
 
@@ -24,8 +23,7 @@ public class SagaMonitoringConfig {
     @Bean
     public ChoreographedSagaMetrics choreographedSagaMetrics(
             MeterRegistry meterRegistry,
-            ChoreographedSagaRepository sagaRepository,
-            CompensationCoordinator compensationCoordinator) {
-        return new ChoreographedSagaMetrics(meterRegistry, sagaRepository, compensationCoordinator);
+            SagaDashboardStatistics dashboardStatistics) {
+        return new ChoreographedSagaMetrics(meterRegistry, dashboardStatistics);
     }
 }
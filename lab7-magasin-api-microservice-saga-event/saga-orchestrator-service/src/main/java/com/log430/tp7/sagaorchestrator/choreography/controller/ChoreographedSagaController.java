@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaState;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStep;
 import com.log430.tp7.sagaorchestrator.choreography.service.ChoreographedSagaCoordinator;
 import com.log430.tp7.sagaorchestrator.choreography.service.SagaStatistics;
 
@@ -169,6 +170,29 @@ public class ChoreographedSagaController {
         }
     }
     
+    /**
+     * Gets the steps recorded for a saga, in order.
+     */
+    @GetMapping("/saga/{correlationId}/steps")
+    public ResponseEntity<List<ChoreographedSagaStep>> getSagaSteps(@PathVariable String correlationId) {
+        log.debug("Getting saga steps by correlation ID: {}", correlationId);
+        
+        try {
+            Optional<List<ChoreographedSagaStep>> steps = sagaCoordinator.getSagaSteps(correlationId);
+            
+            if (steps.isEmpty()) {
+                log.debug("No saga found for correlation ID: {}", correlationId);
+                return ResponseEntity.notFound().build();
+            }
+            
+            return ResponseEntity.ok(steps.get());
+            
+        } catch (Exception e) {
+            log.error("Failed to get saga steps: correlationId={}", correlationId, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
     /**
      * Gets all active sagas.
      */
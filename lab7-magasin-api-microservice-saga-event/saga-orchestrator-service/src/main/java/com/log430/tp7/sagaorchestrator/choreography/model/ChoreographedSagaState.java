@@ -16,6 +16,7 @@ import jakarta.persistence.Version;
  * Entity representing a choreographed saga state for distributed transaction coordination.
  * Unlike orchestrated sagas, this tracks the distributed state across multiple services
  * without a central orchestrator, using event-driven coordination.
+ * Step outcomes are appended to the {@link ChoreographedSagaStep} log; the saga row only changes with its status.
  */
 @Entity
 @Table(name = "choreographed_saga_state", indexes = {
@@ -44,11 +45,12 @@ public class ChoreographedSagaState {
     @Column(name = "current_step", length = 100)
     private String currentStep;
     
+    // JSON arrays of step names, only set on sagas recorded before the step log
     @Column(name = "completed_steps", columnDefinition = "TEXT")
-    private String completedSteps; // JSON array of completed step names
+    private String completedSteps;
     
     @Column(name = "failed_steps", columnDefinition = "TEXT")
-    private String failedSteps; // JSON array of failed step names
+    private String failedSteps;
     
     @Column(name = "compensation_required", nullable = false)
     private Boolean compensationRequired = false;
@@ -102,16 +104,17 @@ public class ChoreographedSagaState {
     public void markStepCompleted(String stepName) {
         this.currentStep = stepName;
         this.updatedAt = LocalDateTime.now();
-        addToCompletedSteps(stepName);
     }
     
-    public void markStepFailed(String stepName, String errorMessage) {
+    /**
+     * @param stepsCompleted Whether the saga has completed steps that must be compensated
+     */
+    public void markStepFailed(String stepName, String errorMessage, boolean stepsCompleted) {
         this.currentStep = stepName;
         this.errorMessage = errorMessage;
         this.updatedAt = LocalDateTime.now();
-        addToFailedSteps(stepName);
         
-        if (shouldTriggerCompensation()) {
+        if (shouldTriggerCompensation(stepsCompleted)) {
             this.compensationRequired = true;
             this.status = ChoreographedSagaStatus.COMPENSATING;
         } else if (canRetry()) {
@@ -156,28 +159,9 @@ public class ChoreographedSagaState {
                status == ChoreographedSagaStatus.COMPENSATED;
     }
     
-    private boolean shouldTriggerCompensation() {
+    private boolean shouldTriggerCompensation(boolean stepsCompleted) {
         // Trigger compensation if we've exhausted retries or have critical failures
-        return !canRetry() || (completedSteps != null && !completedSteps.isEmpty());
-    }
-    
-    private void addToCompletedSteps(String stepName) {
-        if (completedSteps == null || completedSteps.isEmpty()) {
-            completedSteps = "[\"" + stepName + "\"]";
-        } else {
-            // Simple JSON array manipulation - in production, use proper JSON library
-            completedSteps = completedSteps.substring(0, completedSteps.length() - 1) + 
-                           ",\"" + stepName + "\"]";
-        }
-    }
-    
-    private void addToFailedSteps(String stepName) {
-        if (failedSteps == null || failedSteps.isEmpty()) {
-            failedSteps = "[\"" + stepName + "\"]";
-        } else {
-            failedSteps = failedSteps.substring(0, failedSteps.length() - 1) + 
-                         ",\"" + stepName + "\"]";
-        }
+        return !canRetry() || stepsCompleted || (completedSteps != null && !completedSteps.isEmpty());
     }
     
     // Getters and Setters
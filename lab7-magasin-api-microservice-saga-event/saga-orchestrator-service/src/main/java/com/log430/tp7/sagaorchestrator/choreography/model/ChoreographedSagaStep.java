@@ -0,0 +1,71 @@
+package com.log430.tp7.sagaorchestrator.choreography.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * One step outcome of a choreographed saga, in an append-only log.
+ * Recording a step inserts one of these small rows instead of rewriting the saga row;
+ * the step list of a saga is rebuilt from the log when it is asked for.
+ */
+@Entity
+@Table(name = "choreographed_saga_step", indexes = {
+    @Index(name = "idx_saga_step_saga_id", columnList = "saga_id, step_id")
+})
+public class ChoreographedSagaStep {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "step_id")
+    private Long stepId;
+
+    @Column(name = "saga_id", nullable = false, length = 36)
+    private String sagaId;
+
+    @Column(name = "step_name", nullable = false, length = 100)
+    private String stepName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "outcome", nullable = false, length = 20)
+    private Outcome outcome;
+
+    @Column(name = "recorded_at", nullable = false)
+    private LocalDateTime recordedAt;
+
+    protected ChoreographedSagaStep() {
+        // For JPA
+    }
+
+    public ChoreographedSagaStep(String sagaId, String stepName, Outcome outcome) {
+        this.sagaId = sagaId;
+        this.stepName = stepName;
+        this.outcome = outcome;
+        this.recordedAt = LocalDateTime.now();
+    }
+
+    public Long getStepId() { return stepId; }
+
+    public String getSagaId() { return sagaId; }
+
+    public String getStepName() { return stepName; }
+
+    public Outcome getOutcome() { return outcome; }
+
+    public LocalDateTime getRecordedAt() { return recordedAt; }
+
+    /**
+     * Outcome of a saga step.
+     */
+    public enum Outcome {
+        COMPLETED, FAILED, COMPENSATED
+    }
+}
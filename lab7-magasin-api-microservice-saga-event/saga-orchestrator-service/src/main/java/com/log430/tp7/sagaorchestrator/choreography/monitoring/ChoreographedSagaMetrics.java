@@ -4,9 +4,7 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.stereotype.Component;
 
-import com.log430.tp7.sagaorchestrator.choreography.compensation.CompensationCoordinator;
 import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStatus;
-import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaRepository;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
@@ -16,12 +14,12 @@ import io.micrometer.core.instrument.Timer;
 /**
  * Metrics collector for choreographed saga monitoring and observability.
  * Provides Prometheus-compatible metrics for saga performance and health tracking.
+ * Gauges read {@link SagaDashboardStatistics}, so a scrape does not query the database.
  */
 @Component
 public class ChoreographedSagaMetrics {
     
-    private final ChoreographedSagaRepository sagaRepository;
-    private final CompensationCoordinator compensationCoordinator;
+    private final SagaDashboardStatistics dashboardStatistics;
     
     // Counters for saga lifecycle events
     private final Counter sagaInitiatedCounter;
@@ -47,10 +45,8 @@ public class ChoreographedSagaMetrics {
     private final AtomicLong pendingCompensationsGauge = new AtomicLong(0);
     
     public ChoreographedSagaMetrics(MeterRegistry meterRegistry, 
-                                  ChoreographedSagaRepository sagaRepository,
-                                  CompensationCoordinator compensationCoordinator) {
-        this.sagaRepository = sagaRepository;
-        this.compensationCoordinator = compensationCoordinator;
+                                  SagaDashboardStatistics dashboardStatistics) {
+        this.dashboardStatistics = dashboardStatistics;
         
         // Initialize counters
         this.sagaInitiatedCounter = Counter.builder("choreographed_saga_initiated_total")
@@ -199,27 +195,16 @@ public class ChoreographedSagaMetrics {
     // Gauge value providers
     
     private double getActiveSagasCount() {
-        try {
-            return sagaRepository.findActiveSagas().size();
-        } catch (Exception e) {
-            return 0.0;
-        }
+        return dashboardStatistics.getActiveCount()
+            + dashboardStatistics.getCount(ChoreographedSagaStatus.COMPENSATING);
     }
     
     private double getPendingCompensationsCount() {
-        try {
-            return compensationCoordinator.getPendingActionsCount();
-        } catch (Exception e) {
-            return 0.0;
-        }
+        return dashboardStatistics.getPendingCompensations();
     }
     
     private double getSagaCountByStatus(ChoreographedSagaStatus status) {
-        try {
-            return sagaRepository.countByStatus(status);
-        } catch (Exception e) {
-            return 0.0;
-        }
+        return dashboardStatistics.getCount(status);
     }
     
     // Manual gauge updates (for cases where automatic updates aren't sufficient)
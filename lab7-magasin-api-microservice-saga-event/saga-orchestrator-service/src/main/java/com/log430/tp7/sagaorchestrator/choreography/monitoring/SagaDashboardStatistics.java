@@ -0,0 +1,327 @@
+package com.log430.tp7.sagaorchestrator.choreography.monitoring;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.log430.tp7.sagaorchestrator.choreography.compensation.CompensationCoordinator;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaState;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStatus;
+import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaRepository;
+
+/**
+ * Saga dashboard statistics kept up to date in memory, so dashboard reads and metric scrapes take constant time.
+ * Status counts are moved on each {@code ChoreographedSagaCoordinator} transition once its transaction commits,
+ * and sagas started, failed and completed are kept in a 24 hour rolling window of five minute slots, with a
+ * histogram of saga durations.
+ * The counts are reconciled against the database periodically, which also corrects transitions made by other
+ * instances; the rolling window only covers the transitions seen by this instance.
+ */
+@Component
+public class SagaDashboardStatistics {
+
+    private static final Logger log = LoggerFactory.getLogger(SagaDashboardStatistics.class);
+
+    private static final long SLOT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int WINDOW_SLOTS = 288; // 24 hours
+    private static final int HOUR_SLOTS = 12;
+    // Bucket i holds durations below 2^i seconds, the last bucket everything longer
+    private static final int DURATION_BUCKETS = 24;
+    private static final Duration STUCK_AFTER = Duration.ofHours(2);
+
+    private final ChoreographedSagaRepository sagaRepository;
+    private final CompensationCoordinator compensationCoordinator;
+    private final Map<ChoreographedSagaStatus, AtomicLong> statusCounts = new EnumMap<>(ChoreographedSagaStatus.class);
+    private final WindowSlot[] window = new WindowSlot[WINDOW_SLOTS];
+
+    // Refreshed by reconcile(), these need a scan of running sagas or of the compensation queue
+    private volatile long stuckSagas;
+    private volatile long sagasRequiringCompensation;
+    private volatile int pendingCompensations;
+
+    public SagaDashboardStatistics(ChoreographedSagaRepository sagaRepository,
+                                   CompensationCoordinator compensationCoordinator) {
+        this.sagaRepository = sagaRepository;
+        this.compensationCoordinator = compensationCoordinator;
+        for (ChoreographedSagaStatus status : ChoreographedSagaStatus.values()) {
+            statusCounts.put(status, new AtomicLong());
+        }
+        for (int i = 0; i < WINDOW_SLOTS; i++) {
+            window[i] = new WindowSlot();
+        }
+    }
+
+    /**
+     * Records a saga that was just created, once the current transaction commits.
+     */
+    public void recordSagaStarted(ChoreographedSagaState saga) {
+        ChoreographedSagaStatus status = saga.getStatus();
+        afterCommit(() -> {
+            statusCounts.get(status).incrementAndGet();
+            currentSlot().recordStarted();
+        });
+    }
+
+    /**
+     * Records a saga status transition, once the current transaction commits.
+     *
+     * @param previousStatus The status of the saga before the transition
+     * @param saga           The saga, as saved
+     */
+    public void recordStatusChange(ChoreographedSagaStatus previousStatus, ChoreographedSagaState saga) {
+        ChoreographedSagaStatus status = saga.getStatus();
+        if (previousStatus == status) {
+            return;
+        }
+        long durationMillis = status == ChoreographedSagaStatus.COMPLETED ? durationMillis(saga) : -1;
+        // A timed out saga that is compensated afterwards counts as one failure
+        boolean newFailure = status.isFailure() && (previousStatus == null || !previousStatus.isFailure());
+        afterCommit(() -> {
+            if (previousStatus != null) {
+                statusCounts.get(previousStatus).decrementAndGet();
+            }
+            statusCounts.get(status).incrementAndGet();
+            if (durationMillis >= 0) {
+                currentSlot().recordCompleted(durationMillis);
+            } else if (newFailure) {
+                currentSlot().recordFailed();
+            }
+        });
+    }
+
+    /**
+     * Reconciles the counters with the database, and refreshes the counts that need a query.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${saga.choreographed.statistics.reconcile-interval-ms:60000}",
+               initialDelayString = "${saga.choreographed.statistics.reconcile-interval-ms:60000}")
+    public void reconcile() {
+        try {
+            Map<ChoreographedSagaStatus, Long> counted = new EnumMap<>(ChoreographedSagaStatus.class);
+            for (Object[] row : sagaRepository.countSagasByStatus()) {
+                counted.put((ChoreographedSagaStatus) row[0], (Long) row[1]);
+            }
+            for (ChoreographedSagaStatus status : ChoreographedSagaStatus.values()) {
+                long actual = counted.getOrDefault(status, 0L);
+                long previous = statusCounts.get(status).getAndSet(actual);
+                if (previous != actual) {
+                    log.debug("Saga status count reconciled: status={}, counted={}, actual={}", status, previous, actual);
+                }
+            }
+            stuckSagas = sagaRepository.countActiveCreatedBefore(LocalDateTime.now().minus(STUCK_AFTER));
+            sagasRequiringCompensation = sagaRepository.countSagasRequiringCompensation();
+            pendingCompensations = compensationCoordinator.getPendingActionsCount();
+        } catch (Exception e) {
+            // The counters keep moving with transitions until the next reconciliation
+            log.error("Failed to reconcile saga dashboard statistics", e);
+        }
+    }
+
+    public long getCount(ChoreographedSagaStatus status) {
+        return Math.max(0, statusCounts.get(status).get());
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (ChoreographedSagaStatus status : ChoreographedSagaStatus.values()) {
+            total += getCount(status);
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of sagas in a status matching {@link ChoreographedSagaStatus#isActive()}
+     */
+    public long getActiveCount() {
+        long active = 0;
+        for (ChoreographedSagaStatus status : ChoreographedSagaStatus.values()) {
+            if (status.isActive()) {
+                active += getCount(status);
+            }
+        }
+        return active;
+    }
+
+    public long getStuckSagas() {
+        return stuckSagas;
+    }
+
+    public long getSagasRequiringCompensation() {
+        return sagasRequiringCompensation;
+    }
+
+    public int getPendingCompensations() {
+        return pendingCompensations;
+    }
+
+    /**
+     * @return the sagas started, completed and failed in the last 24 hours, with the completed sagas' durations
+     */
+    public WindowSnapshot getLastDay() {
+        return snapshot(WINDOW_SLOTS);
+    }
+
+    /**
+     * @return the sagas started, completed and failed in the last hour
+     */
+    public WindowSnapshot getLastHour() {
+        return snapshot(HOUR_SLOTS);
+    }
+
+    private WindowSnapshot snapshot(int slots) {
+        long currentIndex = System.currentTimeMillis() / SLOT_MILLIS;
+        long oldestIndex = currentIndex - slots + 1;
+        long started = 0;
+        long completed = 0;
+        long failed = 0;
+        long durationSum = 0;
+        long durationMin = Long.MAX_VALUE;
+        long durationMax = 0;
+        long[] histogram = new long[DURATION_BUCKETS];
+        for (WindowSlot slot : window) {
+            synchronized (slot) {
+                if (slot.index < oldestIndex || slot.index > currentIndex) {
+                    continue;
+                }
+                started += slot.started;
+                completed += slot.completed;
+                failed += slot.failed;
+                durationSum += slot.durationSum;
+                durationMin = Math.min(durationMin, slot.durationMin);
+                durationMax = Math.max(durationMax, slot.durationMax);
+                for (int i = 0; i < DURATION_BUCKETS; i++) {
+                    histogram[i] += slot.histogram[i];
+                }
+            }
+        }
+        return new WindowSnapshot(slots * SLOT_MILLIS, started, completed, failed, durationSum,
+            completed > 0 ? durationMin : 0, durationMax, histogram);
+    }
+
+    private WindowSlot currentSlot() {
+        long index = System.currentTimeMillis() / SLOT_MILLIS;
+        WindowSlot slot = window[(int) (index % WINDOW_SLOTS)];
+        synchronized (slot) {
+            if (slot.index != index) {
+                slot.reset(index);
+            }
+        }
+        return slot;
+    }
+
+    private static long durationMillis(ChoreographedSagaState saga) {
+        if (saga.getCreatedAt() == null || saga.getCompletedAt() == null) {
+            return 0;
+        }
+        return Math.max(0, Duration.between(saga.getCreatedAt(), saga.getCompletedAt()).toMillis());
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            update.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                update.run();
+            }
+        });
+    }
+
+    /**
+     * Sagas seen during one five minute slot of the rolling window.
+     */
+    private static final class WindowSlot {
+
+        private long index = -1;
+        private long started;
+        private long completed;
+        private long failed;
+        private long durationSum;
+        private long durationMin = Long.MAX_VALUE;
+        private long durationMax;
+        private final long[] histogram = new long[DURATION_BUCKETS];
+
+        private void reset(long index) {
+            this.index = index;
+            started = 0;
+            completed = 0;
+            failed = 0;
+            durationSum = 0;
+            durationMin = Long.MAX_VALUE;
+            durationMax = 0;
+            Arrays.fill(histogram, 0);
+        }
+
+        private synchronized void recordStarted() {
+            started++;
+        }
+
+        private synchronized void recordFailed() {
+            failed++;
+        }
+
+        private synchronized void recordCompleted(long durationMillis) {
+            completed++;
+            durationSum += durationMillis;
+            durationMin = Math.min(durationMin, durationMillis);
+            durationMax = Math.max(durationMax, durationMillis);
+            long seconds = durationMillis / 1000;
+            int bucket = seconds == 0 ? 0 : 64 - Long.numberOfLeadingZeros(seconds);
+            histogram[Math.min(bucket, DURATION_BUCKETS - 1)]++;
+        }
+    }
+
+    /**
+     * Sum of the rolling window slots covering the last {@code windowMillis}.
+     */
+    public record WindowSnapshot(
+        long windowMillis,
+        long started,
+        long completed,
+        long failed,
+        long durationSumMillis,
+        long durationMinMillis,
+        long durationMaxMillis,
+        long[] durationHistogram
+    ) {
+
+        public double averageDurationMillis() {
+            return completed > 0 ? (double) durationSumMillis / completed : 0.0;
+        }
+
+        /**
+         * @return an upper bound of the given percentile of saga durations, from the histogram buckets
+         */
+        public long durationPercentileMillis(double percentile) {
+            if (completed == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(percentile * completed);
+            long seen = 0;
+            for (int i = 0; i < durationHistogram.length; i++) {
+                seen += durationHistogram[i];
+                if (seen >= rank) {
+                    return i == durationHistogram.length - 1
+                        ? durationMaxMillis
+                        : Math.min(durationMaxMillis, TimeUnit.SECONDS.toMillis(1L << i));
+                }
+            }
+            return durationMaxMillis;
+        }
+    }
+}
@@ -3,16 +3,13 @@ package com.log430.tp7.sagaorchestrator.choreography.monitoring;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.OptionalDouble;
-import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.stereotype.Service;
 
-import com.log430.tp7.sagaorchestrator.choreography.compensation.CompensationCoordinator;
 import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaState;
 import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStatus;
 import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaRepository;
@@ -20,17 +17,20 @@ import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSaga
 /**
  * Service for providing choreographed saga monitoring dashboard data.
  * Aggregates saga statistics and health metrics for visualization.
+ * Counts are read from {@link SagaDashboardStatistics}, so building the dashboard does not scan the saga table.
  */
 @Service
 public class SagaMonitoringService {
     
+    private static final double MILLIS_PER_MINUTE = 60_000.0;
+    
     private final ChoreographedSagaRepository sagaRepository;
-    private final CompensationCoordinator compensationCoordinator;
+    private final SagaDashboardStatistics dashboardStatistics;
     
     public SagaMonitoringService(ChoreographedSagaRepository sagaRepository,
-                               CompensationCoordinator compensationCoordinator) {
+                               SagaDashboardStatistics dashboardStatistics) {
         this.sagaRepository = sagaRepository;
-        this.compensationCoordinator = compensationCoordinator;
+        this.dashboardStatistics = dashboardStatistics;
     }
     
     /**
@@ -51,16 +51,12 @@ public class SagaMonitoringService {
      * Gets high-level saga overview statistics.
      */
     public SagaOverview getSagaOverview() {
-        List<ChoreographedSagaState> allSagas = sagaRepository.findAll();
-        
-        long totalSagas = allSagas.size();
-        long activeSagas = allSagas.stream()
-            .filter(saga -> saga.getStatus().isActive())
-            .count();
+        long totalSagas = dashboardStatistics.getTotalCount();
+        long activeSagas = dashboardStatistics.getActiveCount();
         
-        long completedSagas = sagaRepository.countByStatus(ChoreographedSagaStatus.COMPLETED);
-        long failedSagas = sagaRepository.countByStatus(ChoreographedSagaStatus.FAILED);
-        long compensatedSagas = sagaRepository.countByStatus(ChoreographedSagaStatus.COMPENSATED);
+        long completedSagas = dashboardStatistics.getCount(ChoreographedSagaStatus.COMPLETED);
+        long failedSagas = dashboardStatistics.getCount(ChoreographedSagaStatus.FAILED);
+        long compensatedSagas = dashboardStatistics.getCount(ChoreographedSagaStatus.COMPENSATED);
         
         double successRate = totalSagas > 0 ? (double) completedSagas / totalSagas * 100 : 0.0;
         double failureRate = totalSagas > 0 ? (double) failedSagas / totalSagas * 100 : 0.0;
@@ -83,7 +79,7 @@ public class SagaMonitoringService {
         Map<ChoreographedSagaStatus, Long> distribution = new EnumMap<>(ChoreographedSagaStatus.class);
         
         for (ChoreographedSagaStatus status : ChoreographedSagaStatus.values()) {
-            long count = sagaRepository.countByStatus(status);
+            long count = dashboardStatistics.getCount(status);
             if (count > 0) {
                 distribution.put(status, count);
             }
@@ -97,7 +93,7 @@ public class SagaMonitoringService {
      */
     public List<SagaActivity> getRecentSagaActivity() {
         LocalDateTime since = LocalDateTime.now().minusHours(24);
-        List<ChoreographedSagaState> recentSagas = sagaRepository.findByCreatedAtAfter(since);
+        List<ChoreographedSagaState> recentSagas = sagaRepository.findTop50ByCreatedAtAfterOrderByCreatedAtDesc(since);
         
         return recentSagas.stream()
             .map(saga -> new SagaActivity(
@@ -109,45 +105,24 @@ public class SagaMonitoringService {
                 saga.getCompletedAt(),
                 calculateDuration(saga)
             ))
-            .sorted(Comparator.comparing(SagaActivity::timestamp).reversed())
-            .limit(50)
             .toList();
     }
     
     /**
      * Gets performance metrics for monitoring.
+     * Durations and throughput cover the sagas seen by this instance in the last 24 hours.
      */
     public PerformanceMetrics getPerformanceMetrics() {
-        List<ChoreographedSagaState> completedSagas = sagaRepository.findByStatus(ChoreographedSagaStatus.COMPLETED);
-        List<ChoreographedSagaState> failedSagas = sagaRepository.findByStatus(ChoreographedSagaStatus.FAILED);
-        
-        OptionalDouble avgDuration = completedSagas.stream()
-            .filter(saga -> saga.getCompletedAt() != null)
-            .mapToLong(this::calculateDuration)
-            .average();
-        
-        OptionalLong maxDuration = completedSagas.stream()
-            .filter(saga -> saga.getCompletedAt() != null)
-            .mapToLong(this::calculateDuration)
-            .max();
-        
-        OptionalLong minDuration = completedSagas.stream()
-            .filter(saga -> saga.getCompletedAt() != null)
-            .mapToLong(this::calculateDuration)
-            .min();
-        
-        // Calculate throughput (sagas per hour in last 24 hours)
-        LocalDateTime last24Hours = LocalDateTime.now().minusHours(24);
-        long sagasLast24Hours = sagaRepository.findByCreatedAtAfter(last24Hours).size();
-        double throughputPerHour = sagasLast24Hours / 24.0;
+        SagaDashboardStatistics.WindowSnapshot lastDay = dashboardStatistics.getLastDay();
         
         return new PerformanceMetrics(
-            avgDuration.orElse(0.0),
-            maxDuration.orElse(0L),
-            minDuration.orElse(0L),
-            throughputPerHour,
-            completedSagas.size(),
-            failedSagas.size()
+            lastDay.averageDurationMillis() / MILLIS_PER_MINUTE,
+            TimeUnit.MILLISECONDS.toMinutes(lastDay.durationMaxMillis()),
+            TimeUnit.MILLISECONDS.toMinutes(lastDay.durationMinMillis()),
+            lastDay.started() / 24.0,
+            (int) dashboardStatistics.getCount(ChoreographedSagaStatus.COMPLETED),
+            (int) dashboardStatistics.getCount(ChoreographedSagaStatus.FAILED),
+            TimeUnit.MILLISECONDS.toMinutes(lastDay.durationPercentileMillis(0.95))
         );
     }
     
@@ -155,9 +130,9 @@ public class SagaMonitoringService {
      * Gets compensation-specific metrics.
      */
     public CompensationMetrics getCompensationMetrics() {
-        int pendingCompensations = compensationCoordinator.getPendingActionsCount();
-        long sagasRequiringCompensation = sagaRepository.findSagasRequiringCompensation().size();
-        long compensatedSagas = sagaRepository.countByStatus(ChoreographedSagaStatus.COMPENSATED);
+        int pendingCompensations = dashboardStatistics.getPendingCompensations();
+        long sagasRequiringCompensation = dashboardStatistics.getSagasRequiringCompensation();
+        long compensatedSagas = dashboardStatistics.getCount(ChoreographedSagaStatus.COMPENSATED);
         
         // Calculate compensation success rate
         long totalCompensations = compensatedSagas + sagasRequiringCompensation;
@@ -179,11 +154,7 @@ public class SagaMonitoringService {
         List<HealthIndicator> indicators = new ArrayList<>();
         
         // Check for stuck sagas (active for more than 2 hours)
-        LocalDateTime stuckThreshold = LocalDateTime.now().minusHours(2);
-        List<ChoreographedSagaState> activeSagas = sagaRepository.findActiveSagas();
-        long stuckSagas = activeSagas.stream()
-            .filter(saga -> saga.getCreatedAt().isBefore(stuckThreshold))
-            .count();
+        long stuckSagas = dashboardStatistics.getStuckSagas();
         
         HealthStatus stuckSagasStatus;
         if (stuckSagas == 0) {
@@ -203,7 +174,7 @@ public class SagaMonitoringService {
         ));
         
         // Check compensation backlog
-        int compensationBacklog = compensationCoordinator.getPendingActionsCount();
+        int compensationBacklog = dashboardStatistics.getPendingCompensations();
         HealthStatus compensationBacklogStatus;
         if (compensationBacklog == 0) {
             compensationBacklogStatus = HealthStatus.HEALTHY;
@@ -222,14 +193,10 @@ public class SagaMonitoringService {
         ));
         
         // Check recent failure rate
-        LocalDateTime recentThreshold = LocalDateTime.now().minusHours(1);
-        List<ChoreographedSagaState> recentSagas = sagaRepository.findByCreatedAtAfter(recentThreshold);
-        long recentFailures = recentSagas.stream()
-            .filter(saga -> saga.getStatus() == ChoreographedSagaStatus.FAILED)
-            .count();
+        SagaDashboardStatistics.WindowSnapshot lastHour = dashboardStatistics.getLastHour();
         
-        double recentFailureRate = !recentSagas.isEmpty() ? 
-            (double) recentFailures / recentSagas.size() * 100 : 0.0;
+        double recentFailureRate = lastHour.started() > 0 ? 
+            Math.min(100.0, (double) lastHour.failed() / lastHour.started() * 100) : 0.0;
         
         HealthStatus recentFailureStatus;
         if (recentFailureRate < 5) {
@@ -298,7 +265,8 @@ public class SagaMonitoringService {
         long minDurationMinutes,
         double throughputPerHour,
         int completedCount,
-        int failedCount
+        int failedCount,
+        long p95DurationMinutes
     ) {}
     
     public record CompensationMetrics(
@@ -7,6 +7,7 @@ import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -42,18 +43,38 @@ public interface ChoreographedSagaRepository extends JpaRepository<Choreographed
     @Query("SELECT s FROM ChoreographedSagaState s WHERE s.compensationRequired = true AND s.compensationCompleted = false")
     List<ChoreographedSagaState> findSagasRequiringCompensation();
     
+    /**
+     * Count sagas that require compensation.
+     */
+    @Query("SELECT COUNT(s) FROM ChoreographedSagaState s WHERE s.compensationRequired = true AND s.compensationCompleted = false")
+    long countSagasRequiringCompensation();
+    
     /**
      * Find active sagas (not in final state).
      */
     @Query("SELECT s FROM ChoreographedSagaState s WHERE s.status IN ('STARTED', 'IN_PROGRESS', 'RETRYING', 'COMPENSATING')")
     List<ChoreographedSagaState> findActiveSagas();
     
+    /**
+     * Count active sagas created before the given time, for stuck saga detection.
+     */
+    @Query("SELECT COUNT(s) FROM ChoreographedSagaState s WHERE s.createdAt < :createdBefore AND s.status IN ('STARTED', 'IN_PROGRESS', 'RETRYING', 'COMPENSATING')")
+    long countActiveCreatedBefore(@Param("createdBefore") LocalDateTime createdBefore);
+    
     /**
      * Find timed out sagas that need attention.
      */
     @Query("SELECT s FROM ChoreographedSagaState s WHERE s.timeoutAt < :currentTime AND s.status IN ('STARTED', 'IN_PROGRESS', 'RETRYING')")
     List<ChoreographedSagaState> findTimedOutSagas(@Param("currentTime") LocalDateTime currentTime);
     
+    /**
+     * Find the timeout of every saga that can still time out, to rebuild the in-memory timeout wheel.
+     * Returns rows of [sagaId, timeoutAt].
+     */
+    @Query("SELECT s.sagaId, s.timeoutAt FROM ChoreographedSagaState s WHERE s.timeoutAt IS NOT NULL " +
+           "AND s.status IN ('STARTED', 'IN_PROGRESS', 'RETRYING')")
+    List<Object[]> findPendingTimeouts();
+    
     /**
      * Find sagas by status with pagination.
      */
@@ -89,13 +110,15 @@ public interface ChoreographedSagaRepository extends JpaRepository<Choreographed
     /**
      * Find sagas with specific step completed.
      */
-    @Query("SELECT s FROM ChoreographedSagaState s WHERE s.completedSteps LIKE %:stepName%")
+    @Query("SELECT s FROM ChoreographedSagaState s WHERE s.sagaId IN (SELECT st.sagaId FROM ChoreographedSagaStep st " +
+           "WHERE st.stepName = :stepName AND st.outcome = 'COMPLETED') OR s.completedSteps LIKE %:stepName%")
     List<ChoreographedSagaState> findSagasWithCompletedStep(@Param("stepName") String stepName);
     
     /**
      * Find sagas with specific step failed.
      */
-    @Query("SELECT s FROM ChoreographedSagaState s WHERE s.failedSteps LIKE %:stepName%")
+    @Query("SELECT s FROM ChoreographedSagaState s WHERE s.sagaId IN (SELECT st.sagaId FROM ChoreographedSagaStep st " +
+           "WHERE st.stepName = :stepName AND st.outcome = 'FAILED') OR s.failedSteps LIKE %:stepName%")
     List<ChoreographedSagaState> findSagasWithFailedStep(@Param("stepName") String stepName);
     
     /**
@@ -135,6 +158,18 @@ public interface ChoreographedSagaRepository extends JpaRepository<Choreographed
      */
     long countByStatus(ChoreographedSagaStatus status);
     
+    /**
+     * Record the latest completed step of a saga that stays in progress, in one statement that neither reads
+     * the row nor checks its version, so concurrent step events of the same saga do not conflict. Pending
+     * writes are flushed first and the persistence context is cleared afterwards, so no stale copy of the
+     * saga is saved over it.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ChoreographedSagaState s SET s.currentStep = :stepName, s.updatedAt = :updatedAt " +
+           "WHERE s.sagaId = :sagaId AND s.status = 'IN_PROGRESS'")
+    int recordStepProgress(@Param("sagaId") String sagaId, @Param("stepName") String stepName,
+                           @Param("updatedAt") LocalDateTime updatedAt);
+    
     /**
      * Find sagas by specific status.
      */
@@ -145,6 +180,11 @@ public interface ChoreographedSagaRepository extends JpaRepository<Choreographed
      */
     List<ChoreographedSagaState> findByCreatedAtAfter(LocalDateTime dateTime);
     
+    /**
+     * Find the 50 most recent sagas created after specified time.
+     */
+    List<ChoreographedSagaState> findTop50ByCreatedAtAfterOrderByCreatedAtDesc(LocalDateTime dateTime);
+    
     /**
      * Delete old saga states for data retention.
      */
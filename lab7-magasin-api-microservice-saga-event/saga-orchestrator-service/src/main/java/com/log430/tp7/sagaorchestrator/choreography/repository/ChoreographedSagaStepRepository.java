@@ -0,0 +1,33 @@
+package com.log430.tp7.sagaorchestrator.choreography.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStep;
+
+/**
+ * Repository for the append-only choreographed saga step log.
+ */
+@Repository
+public interface ChoreographedSagaStepRepository extends JpaRepository<ChoreographedSagaStep, Long> {
+
+    /**
+     * Find the steps of a saga, in the order they were recorded.
+     */
+    List<ChoreographedSagaStep> findBySagaIdOrderByStepIdAsc(String sagaId);
+
+    /**
+     * Find the names of the steps of a saga with the given outcome, in the order they were recorded.
+     */
+    @Query("SELECT st.stepName FROM ChoreographedSagaStep st WHERE st.sagaId = :sagaId AND st.outcome = :outcome ORDER BY st.stepId")
+    List<String> findStepNames(@Param("sagaId") String sagaId, @Param("outcome") ChoreographedSagaStep.Outcome outcome);
+
+    /**
+     * Check if a saga has any step with the given outcome.
+     */
+    boolean existsBySagaIdAndOutcome(String sagaId, ChoreographedSagaStep.Outcome outcome);
+}
@@ -0,0 +1,44 @@
+package com.log430.tp7.sagaorchestrator.choreography.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.log430.tp7.sagaorchestrator.choreography.compensation.CompensationAction;
+
+/**
+ * Repository for the persisted compensation delay queue.
+ */
+@Repository
+public interface CompensationActionRepository extends JpaRepository<CompensationAction, String> {
+    
+    /**
+     * Locks the next due actions, pending or whose worker lease expired, in ready-time then priority order.
+     * Only the first unfinished action of each saga in plan order is eligible, so the actions of a saga run
+     * one after another whichever worker or instance claims them, and one waiting for its retry holds back
+     * the rest of its saga.
+     * Rows locked by other workers are skipped, so concurrent workers never claim the same action.
+     * Must run in a transaction that marks the returned actions as claimed.
+     */
+    @Query(value = "SELECT * FROM compensation_actions a " +
+                   "WHERE a.status IN ('PENDING', 'IN_PROGRESS') AND a.execute_after <= :now " +
+                   "AND NOT EXISTS (SELECT 1 FROM compensation_actions e WHERE e.saga_id = a.saga_id " +
+                   "AND e.priority < a.priority AND e.status IN ('PENDING', 'IN_PROGRESS')) " +
+                   "ORDER BY a.execute_after, a.priority LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<CompensationAction> lockDueActions(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    /**
+     * Count actions still waiting or running.
+     */
+    @Query("SELECT COUNT(a) FROM CompensationAction a WHERE a.status IN ('PENDING', 'IN_PROGRESS')")
+    long countActive();
+    
+    /**
+     * Find every compensation action of a saga in execution order.
+     */
+    List<CompensationAction> findBySagaIdOrderByPriority(String sagaId);
+}
@@ -1,38 +1,95 @@
 package com.log430.tp7.sagaorchestrator.choreography.service;
 
 import java.time.LocalDateTime;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
 import com.log430.tp7.sagaorchestrator.choreography.compensation.CompensationCoordinator;
 import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaState;
 import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStatus;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStep;
+import com.log430.tp7.sagaorchestrator.choreography.monitoring.SagaDashboardStatistics;
 import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaRepository;
+import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaStepRepository;
+import com.log430.tp7.sagaorchestrator.service.SagaTimeoutWheel;
+
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service for managing choreographed saga coordination.
  * Handles saga state tracking, timeout detection, and compensation coordination
  * without central orchestration.
+ * Saga timeouts are held in a {@link SagaTimeoutWheel} loaded on startup, so they fire on time;
+ * {@link ChoreographedSagaTimeoutService} sweeps the database as a safety net.
+ * Every status transition is reported to {@link SagaDashboardStatistics}.
+ * Step outcomes are appended to the step log; the saga row is only written when its status changes.
  */
 @Service
 public class ChoreographedSagaCoordinator {
     
     private static final Logger log = LoggerFactory.getLogger(ChoreographedSagaCoordinator.class);
     private static final String NO_SAGA_FOUND_MSG = "No saga found for correlation ID: {}";
+    private static final Set<ChoreographedSagaStatus> TIMEOUT_STATUSES = EnumSet.of(
+        ChoreographedSagaStatus.STARTED, ChoreographedSagaStatus.IN_PROGRESS, ChoreographedSagaStatus.RETRYING);
     
     private final ChoreographedSagaRepository sagaRepository;
+    private final ChoreographedSagaStepRepository stepRepository;
     private final CompensationCoordinator compensationCoordinator;
+    private final ExecutorService timeoutExecutor;
+    private final SagaTimeoutWheel timeoutWheel;
+    private final SagaDashboardStatistics dashboardStatistics;
     
     public ChoreographedSagaCoordinator(ChoreographedSagaRepository sagaRepository,
-                                      CompensationCoordinator compensationCoordinator) {
+                                      ChoreographedSagaStepRepository stepRepository,
+                                      CompensationCoordinator compensationCoordinator,
+                                      SagaDashboardStatistics dashboardStatistics) {
         this.sagaRepository = sagaRepository;
+        this.stepRepository = stepRepository;
         this.compensationCoordinator = compensationCoordinator;
+        this.dashboardStatistics = dashboardStatistics;
+        this.timeoutExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "choreographed-saga-timeout-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Timeouts are counted in minutes, a one second tick is precise enough
+        this.timeoutWheel = new SagaTimeoutWheel("choreographed-saga-timeout-wheel", 1000, 512,
+            sagaId -> timeoutExecutor.execute(() -> handleTimeout(sagaId)));
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        timeoutWheel.shutdown();
+        timeoutExecutor.shutdown();
+    }
+    
+    /**
+     * Loads the timeouts of running sagas into the timeout wheel on startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadTimeouts() {
+        try {
+            List<Object[]> timeouts = sagaRepository.findPendingTimeouts();
+            for (Object[] row : timeouts) {
+                timeoutWheel.schedule((String) row[0], (LocalDateTime) row[1]);
+            }
+            log.info("Choreographed saga timeout wheel loaded: {} running sagas", timeouts.size());
+        } catch (Exception e) {
+            // The scheduled sweep still finds timed out sagas
+            log.error("Failed to load choreographed saga timeouts", e);
+        }
     }
     
     /**
@@ -55,7 +112,7 @@ public class ChoreographedSagaCoordinator {
      * Internal method to create saga instance.
      */
     private ChoreographedSagaState createSaga(String correlationId, String sagaType, String sagaData, int timeoutMinutes) {
-        String sagaId = UUID.randomUUID().toString();
+        String sagaId = TimeOrderedUuidGenerator.nextString();
         
         log.info("Initiating choreographed saga: sagaId={}, correlationId={}, type={}", 
                 sagaId, correlationId, sagaType);
@@ -65,6 +122,8 @@ public class ChoreographedSagaCoordinator {
         sagaState.setTimeoutAt(LocalDateTime.now().plusMinutes(timeoutMinutes));
         
         sagaState = sagaRepository.save(sagaState);
+        timeoutWheel.schedule(sagaId, sagaState.getTimeoutAt());
+        dashboardStatistics.recordSagaStarted(sagaState);
         
         log.info("Choreographed saga initiated successfully: sagaId={}, correlationId={}", 
                 sagaId, correlationId);
@@ -85,21 +144,35 @@ public class ChoreographedSagaCoordinator {
         }
         
         ChoreographedSagaState saga = sagaOpt.get();
+        ChoreographedSagaStatus previousStatus = saga.getStatus();
         
         log.info("Recording step completion: sagaId={}, correlationId={}, step={}", 
                 saga.getSagaId(), correlationId, stepName);
         
-        saga.markStepCompleted(stepName);
+        stepRepository.save(new ChoreographedSagaStep(saga.getSagaId(), stepName, ChoreographedSagaStep.Outcome.COMPLETED));
         
         // Check if this is the final step to complete the saga
         if (isLastStep(saga, stepName)) {
+            saga.markStepCompleted(stepName);
             saga.markCompleted();
             log.info("Saga completed: sagaId={}, correlationId={}", saga.getSagaId(), correlationId);
-        } else {
+        } else if (previousStatus != ChoreographedSagaStatus.IN_PROGRESS) {
+            saga.markStepCompleted(stepName);
             saga.setStatus(ChoreographedSagaStatus.IN_PROGRESS);
+        } else {
+            // The step row and the saga's current step, without a versioned save of the loaded row;
+            // the saga is detached by the update, so the copy returned is brought up to date by hand
+            LocalDateTime updatedAt = LocalDateTime.now();
+            sagaRepository.recordStepProgress(saga.getSagaId(), stepName, updatedAt);
+            saga.setCurrentStep(stepName);
+            saga.setUpdatedAt(updatedAt);
+            log.info("Step completion recorded: sagaId={}, step={}, status={}", 
+                    saga.getSagaId(), stepName, saga.getStatus());
+            return saga;
         }
         
         saga = sagaRepository.save(saga);
+        dashboardStatistics.recordStatusChange(previousStatus, saga);
         
         log.info("Step completion recorded: sagaId={}, step={}, status={}", 
                 saga.getSagaId(), stepName, saga.getStatus());
@@ -120,11 +193,14 @@ public class ChoreographedSagaCoordinator {
         }
         
         ChoreographedSagaState saga = sagaOpt.get();
+        ChoreographedSagaStatus previousStatus = saga.getStatus();
         
         log.warn("Recording step failure: sagaId={}, correlationId={}, step={}, error={}", 
                 saga.getSagaId(), correlationId, stepName, errorMessage);
         
-        saga.markStepFailed(stepName, errorMessage);
+        stepRepository.save(new ChoreographedSagaStep(saga.getSagaId(), stepName, ChoreographedSagaStep.Outcome.FAILED));
+        saga.markStepFailed(stepName, errorMessage,
+            stepRepository.existsBySagaIdAndOutcome(saga.getSagaId(), ChoreographedSagaStep.Outcome.COMPLETED));
         
         if (saga.getStatus() == ChoreographedSagaStatus.COMPENSATING) {
             log.warn("Saga compensation started: sagaId={}, step={}", saga.getSagaId(), stepName);
@@ -135,6 +211,7 @@ public class ChoreographedSagaCoordinator {
         }
         
         saga = sagaRepository.save(saga);
+        dashboardStatistics.recordStatusChange(previousStatus, saga);
         
         log.warn("Step failure recorded: sagaId={}, step={}, status={}", 
                 saga.getSagaId(), stepName, saga.getStatus());
@@ -155,13 +232,19 @@ public class ChoreographedSagaCoordinator {
         }
         
         ChoreographedSagaState saga = sagaOpt.get();
+        ChoreographedSagaStatus previousStatus = saga.getStatus();
         
         log.info("Recording compensation completion: sagaId={}, correlationId={}, step={}", 
                 saga.getSagaId(), correlationId, stepName);
         
+        stepRepository.save(new ChoreographedSagaStep(saga.getSagaId(), stepName, ChoreographedSagaStep.Outcome.COMPENSATED));
+        if (previousStatus == ChoreographedSagaStatus.COMPENSATED) {
+            return saga;
+        }
         saga.markCompensationCompleted();
         
         saga = sagaRepository.save(saga);
+        dashboardStatistics.recordStatusChange(previousStatus, saga);
         
         log.info("Compensation completion recorded: sagaId={}, status={}", 
                 saga.getSagaId(), saga.getStatus());
@@ -179,18 +262,46 @@ public class ChoreographedSagaCoordinator {
         log.info("Processing {} timed out sagas", timedOutSagas.size());
         
         for (ChoreographedSagaState saga : timedOutSagas) {
-            log.warn("Saga timed out: sagaId={}, correlationId={}, type={}", 
-                    saga.getSagaId(), saga.getCorrelationId(), saga.getSagaType());
-            
-            saga.setStatus(ChoreographedSagaStatus.TIMED_OUT);
-            saga.setCompensationRequired(true);
-            saga.setErrorMessage("Saga timed out after " + 
-                                LocalDateTime.now().minusMinutes(30) + " minutes");
+            markTimedOut(saga);
+        }
+    }
+    
+    /**
+     * Handles a saga whose timeout has passed in the timeout wheel.
+     * The saga is re-read: one that has finished is ignored, one whose timeout was extended is rescheduled.
+     */
+    public void handleTimeout(String sagaId) {
+        try {
+            Optional<ChoreographedSagaState> sagaOpt = sagaRepository.findById(sagaId);
+            if (sagaOpt.isEmpty() || !TIMEOUT_STATUSES.contains(sagaOpt.get().getStatus())) {
+                return;
+            }
             
-            sagaRepository.save(saga);
+            ChoreographedSagaState saga = sagaOpt.get();
+            if (saga.isTimedOut()) {
+                markTimedOut(saga);
+            } else if (saga.getTimeoutAt() != null) {
+                timeoutWheel.schedule(sagaId, saga.getTimeoutAt());
+            }
+        } catch (Exception e) {
+            log.error("Error handling choreographed saga timeout: sagaId={}", sagaId, e);
         }
     }
     
+    private void markTimedOut(ChoreographedSagaState saga) {
+        log.warn("Saga timed out: sagaId={}, correlationId={}, type={}", 
+                saga.getSagaId(), saga.getCorrelationId(), saga.getSagaType());
+        
+        ChoreographedSagaStatus previousStatus = saga.getStatus();
+        saga.setStatus(ChoreographedSagaStatus.TIMED_OUT);
+        saga.setCompensationRequired(true);
+        saga.setErrorMessage("Saga timed out at " + saga.getTimeoutAt());
+        
+        sagaRepository.save(saga);
+        timeoutWheel.cancel(saga.getSagaId());
+        dashboardStatistics.recordStatusChange(previousStatus, saga);
+    }
+    
     /**
      * Gets saga state by correlation ID.
      */
@@ -198,6 +309,14 @@ public class ChoreographedSagaCoordinator {
         return sagaRepository.findByCorrelationId(correlationId);
     }
     
+    /**
+     * Gets the steps recorded for a saga, rebuilt from the step log.
+     */
+    public Optional<List<ChoreographedSagaStep>> getSagaSteps(String correlationId) {
+        return sagaRepository.findByCorrelationId(correlationId)
+            .map(saga -> stepRepository.findBySagaIdOrderByStepIdAsc(saga.getSagaId()));
+    }
+    
     /**
      * Gets all active sagas.
      */
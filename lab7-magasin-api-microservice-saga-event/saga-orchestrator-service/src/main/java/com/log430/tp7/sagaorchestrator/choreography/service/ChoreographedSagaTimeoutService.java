@@ -8,7 +8,8 @@ import org.springframework.stereotype.Service;
 
 /**
  * Scheduled service for choreographed saga timeout detection and cleanup.
- * Runs periodically to identify and handle timed-out sagas.
+ * Timeouts normally fire from the coordinator's timeout wheel; this periodic sweep
+ * catches sagas the wheel does not hold, such as those started by another instance.
  */
 @Service
 @ConditionalOnProperty(name = "saga.choreographed.timeout.enabled", havingValue = "true", matchIfMissing = true)
@@ -24,7 +25,7 @@ public class ChoreographedSagaTimeoutService {
     
     /**
      * Periodically checks for and processes timed-out sagas.
-     * Runs every 5 minutes by default.
+     * Runs every 5 minutes; the query is served by the index on timeout_at.
      */
     @Scheduled(fixedRate = 300000) // 5 minutes
     public void processTimeouts() {
@@ -42,23 +43,4 @@ public class ChoreographedSagaTimeoutService {
             log.error("Error during choreographed saga timeout processing", e);
         }
     }
-    
-    /**
-     * More frequent check for critical timeouts (every minute).
-     * This could be used for high-priority sagas that need faster timeout detection.
-     */
-    @Scheduled(fixedRate = 60000) // 1 minute
-    @ConditionalOnProperty(name = "saga.choreographed.timeout.critical.enabled", havingValue = "true")
-    public void processCriticalTimeouts() {
-        log.debug("Starting critical choreographed saga timeout check");
-        
-        try {
-            // For now, use the same timeout logic
-            // In the future, this could handle different timeout rules for critical sagas
-            sagaCoordinator.handleTimeouts();
-            
-        } catch (Exception e) {
-            log.error("Error during critical choreographed saga timeout processing", e);
-        }
-    }
 }
@@ -1,5 +1,9 @@
 package com.log430.tp7.sagaorchestrator.client;
 
+import com.log430.tp7.sagaorchestrator.dto.CartStockRequest;
+import com.log430.tp7.sagaorchestrator.dto.CartStockReservationResponse;
+import com.log430.tp7.sagaorchestrator.dto.CartStockVerificationResponse;
+import com.log430.tp7.sagaorchestrator.dto.SaleRequest;
 import com.log430.tp7.sagaorchestrator.dto.StockReservationRequest;
 import com.log430.tp7.sagaorchestrator.dto.StockReservationResponse;
 import com.log430.tp7.sagaorchestrator.dto.StockVerificationRequest;
@@ -15,6 +19,8 @@ import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.List;
+
 /**
  * Client for communicating with the inventory service
  */
@@ -32,10 +38,21 @@ public class InventoryServiceClient {
         this.inventoryServiceUrl = inventoryServiceUrl;
     }
     
+    public String getInventoryServiceUrl() {
+        return inventoryServiceUrl;
+    }
+    
     /**
      * Verifies if stock is available for the requested product and quantity
      */
     public StockVerificationResponse verifyStock(String productId, Integer quantity, String sagaId) {
+        return verifyStock(inventoryServiceUrl, productId, quantity, sagaId);
+    }
+    
+    /**
+     * Verifies stock against a given inventory instance; the call is read-only and may be hedged
+     */
+    public StockVerificationResponse verifyStock(String baseUrl, String productId, Integer quantity, String sagaId) {
         try {
             StockVerificationRequest request = new StockVerificationRequest(productId, quantity, sagaId);
             
@@ -43,7 +60,7 @@ public class InventoryServiceClient {
                        productId, quantity, sagaId);
             
             ResponseEntity<StockVerificationResponse> response = restTemplate.postForEntity(
-                inventoryServiceUrl + "/api/v1/inventory/verify-stock",
+                baseUrl + "/api/v1/inventory/verify-stock",
                 request,
                 StockVerificationResponse.class
             );
@@ -138,6 +155,145 @@ public class InventoryServiceClient {
         }
     }
     
+    /**
+     * Verifies every line of a cart in one call
+     */
+    public CartStockVerificationResponse verifyCartStock(List<SaleRequest.SaleLine> lines, String sagaId) {
+        try {
+            CartStockRequest request = new CartStockRequest(sagaId, null, lines);
+            
+            logger.info("Verifying stock for cart of {} lines for saga {}", lines.size(), sagaId);
+            
+            ResponseEntity<CartStockVerificationResponse> response = restTemplate.postForEntity(
+                inventoryServiceUrl + "/api/v1/inventory/verify-stock/cart",
+                request,
+                CartStockVerificationResponse.class
+            );
+            
+            CartStockVerificationResponse result = response.getBody();
+            if (result != null && result.success()) {
+                logger.info("Cart stock verification successful for saga {}: available={}", 
+                           sagaId, result.available());
+            } else {
+                logger.warn("Cart stock verification failed for saga {}: {}", 
+                           sagaId, result != null ? result.message() : "No response body");
+            }
+            
+            return result;
+            
+        } catch (HttpClientErrorException e) {
+            logger.error("Client error during cart stock verification for saga {}: {} - {}", 
+                        sagaId, e.getStatusCode(), e.getResponseBodyAsString());
+            return CartStockVerificationResponse.failure(sagaId, 
+                "Stock verification failed: " + e.getResponseBodyAsString());
+                
+        } catch (HttpServerErrorException e) {
+            logger.error("Server error during cart stock verification for saga {}: {} - {}", 
+                        sagaId, e.getStatusCode(), e.getResponseBodyAsString());
+            return CartStockVerificationResponse.failure(sagaId, 
+                "Inventory service error: " + e.getMessage());
+                
+        } catch (ResourceAccessException e) {
+            logger.error("Timeout or connection error during cart stock verification for saga {}: {}", 
+                        sagaId, e.getMessage());
+            return CartStockVerificationResponse.failure(sagaId, 
+                "Inventory service unavailable: " + e.getMessage());
+                
+        } catch (Exception e) {
+            logger.error("Unexpected error during cart stock verification for saga {}: {}", 
+                        sagaId, e.getMessage(), e);
+            return CartStockVerificationResponse.failure(sagaId, 
+                "Unexpected error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Reserves every line of a cart in one call; the inventory service reserves all lines or none
+     */
+    public CartStockReservationResponse reserveCartStock(List<SaleRequest.SaleLine> lines, String sagaId,
+                                                         String customerId) {
+        try {
+            CartStockRequest request = new CartStockRequest(sagaId, customerId, lines);
+            
+            logger.info("Reserving stock for cart of {} lines for saga {}", lines.size(), sagaId);
+            
+            ResponseEntity<CartStockReservationResponse> response = restTemplate.postForEntity(
+                inventoryServiceUrl + "/api/v1/inventory/reserve-stock/cart",
+                request,
+                CartStockReservationResponse.class
+            );
+            
+            CartStockReservationResponse result = response.getBody();
+            if (result != null && result.success()) {
+                logger.info("Cart stock reservation successful for saga {}: {} reservations", 
+                           sagaId, result.reservations().size());
+            } else {
+                logger.warn("Cart stock reservation failed for saga {}: {}", 
+                           sagaId, result != null ? result.message() : "No response body");
+            }
+            
+            return result;
+            
+        } catch (HttpClientErrorException e) {
+            logger.error("Client error during cart stock reservation for saga {}: {} - {}", 
+                        sagaId, e.getStatusCode(), e.getResponseBodyAsString());
+            return CartStockReservationResponse.failure(sagaId, 
+                "Stock reservation failed: " + e.getResponseBodyAsString());
+                
+        } catch (HttpServerErrorException e) {
+            logger.error("Server error during cart stock reservation for saga {}: {} - {}", 
+                        sagaId, e.getStatusCode(), e.getResponseBodyAsString());
+            return CartStockReservationResponse.failure(sagaId, 
+                "Inventory service error: " + e.getMessage());
+                
+        } catch (ResourceAccessException e) {
+            logger.error("Timeout or connection error during cart stock reservation for saga {}: {}", 
+                        sagaId, e.getMessage());
+            return CartStockReservationResponse.failure(sagaId, 
+                "Inventory service unavailable: " + e.getMessage());
+                
+        } catch (Exception e) {
+            logger.error("Unexpected error during cart stock reservation for saga {}: {}", 
+                        sagaId, e.getMessage(), e);
+            return CartStockReservationResponse.failure(sagaId, 
+                "Unexpected error: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Releases every stock reservation of a saga in one call
+     */
+    public boolean releaseSagaReservations(String sagaId) {
+        try {
+            logger.info("Releasing stock reservations of saga {}", sagaId);
+            
+            restTemplate.delete(inventoryServiceUrl + "/api/v1/inventory/reservations/saga/" + sagaId);
+            
+            logger.info("Stock reservations released successfully for saga {}", sagaId);
+            return true;
+            
+        } catch (HttpClientErrorException e) {
+            logger.error("Client error during saga stock release for saga {}: {} - {}", 
+                        sagaId, e.getStatusCode(), e.getResponseBodyAsString());
+            return false;
+            
+        } catch (HttpServerErrorException e) {
+            logger.error("Server error during saga stock release for saga {}: {} - {}", 
+                        sagaId, e.getStatusCode(), e.getResponseBodyAsString());
+            return false;
+            
+        } catch (ResourceAccessException e) {
+            logger.error("Timeout or connection error during saga stock release for saga {}: {}", 
+                        sagaId, e.getMessage());
+            return false;
+            
+        } catch (Exception e) {
+            logger.error("Unexpected error during saga stock release for saga {}: {}", 
+                        sagaId, e.getMessage(), e);
+            return false;
+        }
+    }
+    
     /**
      * Releases a stock reservation
      */
@@ -13,8 +13,6 @@ import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
-import java.math.BigDecimal;
-
 /**
  * Client for communicating with the store service
  */
@@ -35,18 +33,13 @@ public class StoreServiceClient {
     /**
      * Creates an order in the store service
      */
-    public OrderResponse createOrder(String customerId, String productId, Integer quantity, 
-                                   BigDecimal amount, String sagaId, String stockReservationId,
-                                   String paymentTransactionId, String shippingAddress) {
+    public OrderResponse createOrder(OrderRequest request) {
+        String sagaId = request.sagaId();
+        String customerId = request.customerId();
+        String productId = request.firstProductId();
         try {
-            OrderRequest request = new OrderRequest(
-                customerId, productId, quantity, amount, sagaId,
-                stockReservationId, paymentTransactionId, shippingAddress,
-                String.format("Order created via saga %s", sagaId)
-            );
-            
-            logger.info("Creating order for saga {} - customer: {}, product: {}, quantity: {}", 
-                       sagaId, customerId, productId, quantity);
+            logger.info("Creating order for saga {} - customer: {}, store: {}, items: {}, total: {}", 
+                       sagaId, customerId, request.storeId(), request.items().size(), request.totalAmount());
             
             ResponseEntity<OrderResponse> response = restTemplate.postForEntity(
                 storeServiceUrl + "/api/v1/orders/create-order",
@@ -5,6 +5,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 public class SagaConfiguration {
 
@@ -25,6 +28,42 @@ public class SagaConfiguration {
         return new SagaRetryProperties();
     }
 
+    @Bean
+    @ConfigurationProperties(prefix = "saga.execution")
+    public SagaExecutionProperties sagaExecutionProperties() {
+        return new SagaExecutionProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "saga.clients")
+    public SagaClientProperties sagaClientProperties() {
+        return new SagaClientProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "saga.admission")
+    public SagaAdmissionProperties sagaAdmissionProperties() {
+        return new SagaAdmissionProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "saga.hedging")
+    public SagaHedgingProperties sagaHedgingProperties() {
+        return new SagaHedgingProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "saga.archive")
+    public SagaArchiveProperties sagaArchiveProperties() {
+        return new SagaArchiveProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "saga.idempotency")
+    public SagaIdempotencyProperties sagaIdempotencyProperties() {
+        return new SagaIdempotencyProperties();
+    }
+
     public static class SagaTimeoutProperties {
         private long defaultTimeout = 300000; // 5 minutes
         private long stockVerification = 30000; // 30 seconds
@@ -60,4 +99,151 @@ public class SagaConfiguration {
         public long getBackoffDelay() { return backoffDelay; }
         public void setBackoffDelay(long backoffDelay) { this.backoffDelay = backoffDelay; }
     }
-}
\ No newline at end of file
+
+    public static class SagaExecutionProperties {
+        private int stepPoolSize = 8;
+        private int stepQueueCapacity = 1000;
+        private int asyncWorkers = 32;
+        private int asyncQueueCapacity = 500;
+        private long retryAfterSeconds = 1;
+        private long eventsTimeout = 60000; // 1 minute
+        private long orderStoreId = 1; // store the orchestrated orders are placed in
+
+        // Getters and setters
+        public int getStepPoolSize() { return stepPoolSize; }
+        public void setStepPoolSize(int stepPoolSize) { this.stepPoolSize = stepPoolSize; }
+        
+        public int getStepQueueCapacity() { return stepQueueCapacity; }
+        public void setStepQueueCapacity(int stepQueueCapacity) { this.stepQueueCapacity = stepQueueCapacity; }
+        
+        public int getAsyncWorkers() { return asyncWorkers; }
+        public void setAsyncWorkers(int asyncWorkers) { this.asyncWorkers = asyncWorkers; }
+        
+        public int getAsyncQueueCapacity() { return asyncQueueCapacity; }
+        public void setAsyncQueueCapacity(int asyncQueueCapacity) { this.asyncQueueCapacity = asyncQueueCapacity; }
+        
+        public long getRetryAfterSeconds() { return retryAfterSeconds; }
+        public void setRetryAfterSeconds(long retryAfterSeconds) { this.retryAfterSeconds = retryAfterSeconds; }
+        
+        public long getEventsTimeout() { return eventsTimeout; }
+        public void setEventsTimeout(long eventsTimeout) { this.eventsTimeout = eventsTimeout; }
+        
+        public long getOrderStoreId() { return orderStoreId; }
+        public void setOrderStoreId(long orderStoreId) { this.orderStoreId = orderStoreId; }
+    }
+
+    public static class SagaClientProperties {
+        private Map<String, Bulkhead> bulkhead = new HashMap<>(); // keyed by downstream service name
+
+        public Map<String, Bulkhead> getBulkhead() { return bulkhead; }
+        public void setBulkhead(Map<String, Bulkhead> bulkhead) { this.bulkhead = bulkhead; }
+
+        public Bulkhead forService(String service) {
+            return bulkhead.getOrDefault(service, new Bulkhead());
+        }
+    }
+
+    public static class Bulkhead {
+        private int maxConcurrent = 64;
+        private int maxQueue = 256;
+        private long maxWaitMs = 2000; // 2 seconds
+
+        // Getters and setters
+        public int getMaxConcurrent() { return maxConcurrent; }
+        public void setMaxConcurrent(int maxConcurrent) { this.maxConcurrent = maxConcurrent; }
+        
+        public int getMaxQueue() { return maxQueue; }
+        public void setMaxQueue(int maxQueue) { this.maxQueue = maxQueue; }
+        
+        public long getMaxWaitMs() { return maxWaitMs; }
+        public void setMaxWaitMs(long maxWaitMs) { this.maxWaitMs = maxWaitMs; }
+    }
+
+    public static class SagaAdmissionProperties {
+        private boolean enabled = true;
+        private int initialLimit = 20;
+        private int minLimit = 4;
+        private int maxLimit = 256;
+        private int maxQueue = 50;
+        private long maxWaitMs = 100;
+
+        // Getters and setters
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        
+        public int getInitialLimit() { return initialLimit; }
+        public void setInitialLimit(int initialLimit) { this.initialLimit = initialLimit; }
+        
+        public int getMinLimit() { return minLimit; }
+        public void setMinLimit(int minLimit) { this.minLimit = minLimit; }
+        
+        public int getMaxLimit() { return maxLimit; }
+        public void setMaxLimit(int maxLimit) { this.maxLimit = maxLimit; }
+        
+        public int getMaxQueue() { return maxQueue; }
+        public void setMaxQueue(int maxQueue) { this.maxQueue = maxQueue; }
+        
+        public long getMaxWaitMs() { return maxWaitMs; }
+        public void setMaxWaitMs(long maxWaitMs) { this.maxWaitMs = maxWaitMs; }
+    }
+
+    public static class SagaHedgingProperties {
+        private boolean enabled = true;
+        private double percentile = 0.95; // latency percentile after which the hedge is sent
+        private long minDelayMs = 20;
+        private int minSamples = 100; // min-delay-ms is used until this many calls were timed
+        private double budgetRatio = 0.1; // hedges allowed per primary request
+        private int budgetBurst = 10;
+
+        // Getters and setters
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        
+        public double getPercentile() { return percentile; }
+        public void setPercentile(double percentile) { this.percentile = percentile; }
+        
+        public long getMinDelayMs() { return minDelayMs; }
+        public void setMinDelayMs(long minDelayMs) { this.minDelayMs = minDelayMs; }
+        
+        public int getMinSamples() { return minSamples; }
+        public void setMinSamples(int minSamples) { this.minSamples = minSamples; }
+        
+        public double getBudgetRatio() { return budgetRatio; }
+        public void setBudgetRatio(double budgetRatio) { this.budgetRatio = budgetRatio; }
+        
+        public int getBudgetBurst() { return budgetBurst; }
+        public void setBudgetBurst(int budgetBurst) { this.budgetBurst = budgetBurst; }
+    }
+
+    public static class SagaArchiveProperties {
+        private boolean enabled = true;
+        private long retentionHours = 168; // final sagas stay in saga_executions for 7 days
+        private int batchSize = 500; // sagas moved per transaction
+        private int maxBatchesPerRun = 20;
+
+        // Getters and setters
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        
+        public long getRetentionHours() { return retentionHours; }
+        public void setRetentionHours(long retentionHours) { this.retentionHours = retentionHours; }
+        
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+        
+        public int getMaxBatchesPerRun() { return maxBatchesPerRun; }
+        public void setMaxBatchesPerRun(int maxBatchesPerRun) { this.maxBatchesPerRun = maxBatchesPerRun; }
+    }
+
+    public static class SagaIdempotencyProperties {
+        private long ttlHours = 24; // a retry with the same key returns the same saga for this long
+        private int cacheSize = 10000; // key to saga mappings kept in memory
+
+        // Getters and setters
+        public long getTtlHours() { return ttlHours; }
+        public void setTtlHours(long ttlHours) { this.ttlHours = ttlHours; }
+        
+        public int getCacheSize() { return cacheSize; }
+        public void setCacheSize(int cacheSize) { this.cacheSize = cacheSize; }
+    }
+}
@@ -1,13 +1,21 @@
 package com.log430.tp7.sagaorchestrator.controller;
 
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
 import com.log430.tp7.sagaorchestrator.dto.ErrorResponse;
 import com.log430.tp7.sagaorchestrator.dto.SagaResponse;
 import com.log430.tp7.sagaorchestrator.dto.SagaStatus;
 import com.log430.tp7.sagaorchestrator.dto.SaleRequest;
+import com.log430.tp7.sagaorchestrator.dto.StockVerificationResponse;
+import com.log430.tp7.sagaorchestrator.exception.IdempotencyKeyMismatchException;
+import com.log430.tp7.sagaorchestrator.exception.SagaCapacityExceededException;
 import com.log430.tp7.sagaorchestrator.exception.SagaNotFoundException;
 import com.log430.tp7.sagaorchestrator.model.SagaExecution;
-import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
+import com.log430.tp7.sagaorchestrator.service.InventoryConcurrencyManager;
+import com.log430.tp7.sagaorchestrator.service.SagaArchiveService;
+import com.log430.tp7.sagaorchestrator.service.SagaCompletionNotifier;
 import com.log430.tp7.sagaorchestrator.service.SagaOrchestrator;
+import com.log430.tp7.sagaorchestrator.service.SaleIdempotencyService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,14 +24,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.Optional;
 
@@ -40,19 +54,33 @@ public class SagaController {
     private static final Logger logger = LoggerFactory.getLogger(SagaController.class);
     
     private final SagaOrchestrator sagaOrchestrator;
-    private final SagaExecutionRepository sagaExecutionRepository;
+    private final SaleIdempotencyService saleIdempotencyService;
+    private final SagaArchiveService sagaArchiveService;
+    private final SagaCompletionNotifier sagaCompletionNotifier;
+    private final SagaConfiguration.SagaExecutionProperties sagaExecutionProperties;
+    private final InventoryConcurrencyManager inventoryConcurrencyManager;
     
     @Autowired
-    public SagaController(SagaOrchestrator sagaOrchestrator, SagaExecutionRepository sagaExecutionRepository) {
+    public SagaController(SagaOrchestrator sagaOrchestrator, SaleIdempotencyService saleIdempotencyService,
+                          SagaArchiveService sagaArchiveService, SagaCompletionNotifier sagaCompletionNotifier,
+                          SagaConfiguration.SagaExecutionProperties sagaExecutionProperties,
+                          InventoryConcurrencyManager inventoryConcurrencyManager) {
         this.sagaOrchestrator = sagaOrchestrator;
-        this.sagaExecutionRepository = sagaExecutionRepository;
+        this.saleIdempotencyService = saleIdempotencyService;
+        this.sagaArchiveService = sagaArchiveService;
+        this.sagaCompletionNotifier = sagaCompletionNotifier;
+        this.sagaExecutionProperties = sagaExecutionProperties;
+        this.inventoryConcurrencyManager = inventoryConcurrencyManager;
     }
     
     /**
      * Initiates a new saga for a customer sale transaction.
      * Coordinates stock verification, reservation, payment, and order confirmation.
+     * A retry carrying the same {@code Idempotency-Key} and request gets the saga started by the first request;
+     * the same key with a different request is rejected with 422.
      * 
      * @param request The sale request containing customer and product details
+     * @param idempotencyKey optional client key identifying the sale across retries
      * @return SagaResponse with saga ID and current state
      */
     @PostMapping("/sales")
@@ -71,6 +99,16 @@ public class SagaController {
             description = "Invalid request data or validation errors",
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
         ),
+        @ApiResponse(
+            responseCode = "422", 
+            description = "Idempotency-Key already used by this customer for a different sale",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+        ),
+        @ApiResponse(
+            responseCode = "429", 
+            description = "Sale shed by the admission limiter, retry after the Retry-After delay",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+        ),
         @ApiResponse(
             responseCode = "500", 
             description = "Internal server error during saga execution",
@@ -79,14 +117,19 @@ public class SagaController {
     })
     public ResponseEntity<SagaResponse> createSale(
             @Parameter(description = "Sale request with customer, product, and payment details", required = true)
-            @Valid @RequestBody SaleRequest request) {
+            @Valid @RequestBody SaleRequest request,
+            @Parameter(description = "Client key identifying the sale across retries, scoped to the customer; a duplicate returns the existing saga")
+            @RequestHeader(value = "Idempotency-Key", required = false)
+            @Size(min = 1, max = 255, message = "Idempotency-Key must be 1 to 255 characters") String idempotencyKey) {
         
         logger.info("Received sale request: customerId={}, productId={}, quantity={}, amount={}", 
                    request.customerId(), request.productId(), request.quantity(), request.amount());
         
         try {
             // Execute the saga through the orchestrator
-            SagaResponse response = sagaOrchestrator.executeSale(request);
+            SagaResponse response = idempotencyKey == null
+                ? sagaOrchestrator.executeSale(request)
+                : saleIdempotencyService.executeSale(idempotencyKey, request);
             
             // Determine HTTP status based on saga outcome
             HttpStatus status = switch (response.state()) {
@@ -100,6 +143,9 @@ public class SagaController {
             
             return ResponseEntity.status(status).body(response);
             
+        } catch (SagaCapacityExceededException | IdempotencyKeyMismatchException e) {
+            // Mapped to 429 with Retry-After and to 422 by GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             logger.error("Unexpected error during saga creation: customerId={}, productId={}, error={}", 
                         request.customerId(), request.productId(), e.getMessage(), e);
@@ -115,6 +161,112 @@ public class SagaController {
         }
     }
     
+    /**
+     * Accepts a sale and returns as soon as its saga is persisted.
+     * The saga runs on the bounded worker pool; its outcome is available through
+     * {@code /sales/{sagaId}/events} or the status endpoint.
+     * A retry carrying the same {@code Idempotency-Key} and request gets the saga accepted for the first request;
+     * the same key with a different request is rejected with 422.
+     * 
+     * @param request The sale request containing customer and product details
+     * @param idempotencyKey optional client key identifying the sale across retries
+     * @return SagaResponse with saga ID in SALE_INITIATED state
+     */
+    @PostMapping("/sales/async")
+    @Operation(
+        summary = "Submit a sale saga asynchronously",
+        description = "Persists the sale saga and returns immediately with its ID. The saga is executed by a bounded worker pool; the final state is pushed on /sales/{sagaId}/events."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "202", 
+            description = "Saga accepted for processing",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = SagaResponse.class))
+        ),
+        @ApiResponse(
+            responseCode = "400", 
+            description = "Invalid request data or validation errors",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+        ),
+        @ApiResponse(
+            responseCode = "422", 
+            description = "Idempotency-Key already used by this customer for a different sale",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+        ),
+        @ApiResponse(
+            responseCode = "429", 
+            description = "Saga worker queue is full, retry after the Retry-After delay",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+        )
+    })
+    public ResponseEntity<SagaResponse> submitSale(
+            @Parameter(description = "Sale request with customer, product, and payment details", required = true)
+            @Valid @RequestBody SaleRequest request,
+            @Parameter(description = "Client key identifying the sale across retries, scoped to the customer; a duplicate returns the existing saga")
+            @RequestHeader(value = "Idempotency-Key", required = false)
+            @Size(min = 1, max = 255, message = "Idempotency-Key must be 1 to 255 characters") String idempotencyKey) {
+        
+        logger.info("Received async sale request: customerId={}, productId={}, quantity={}, amount={}", 
+                   request.customerId(), request.productId(), request.quantity(), request.amount());
+        
+        SagaResponse response = idempotencyKey == null
+            ? sagaOrchestrator.submitSale(request)
+            : saleIdempotencyService.submitSale(idempotencyKey, request);
+        
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .header(HttpHeaders.LOCATION, "/api/v1/saga/sales/" + response.sagaId())
+            .body(response);
+    }
+    
+    /**
+     * Streams the state of a saga as Server-Sent Events.
+     * The current state is sent on connection and the stream closes once the saga is confirmed or failed.
+     * 
+     * @param sagaId The unique identifier of the saga
+     * @return emitter sending "saga-state" events
+     */
+    @GetMapping(value = "/sales/{sagaId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+        summary = "Subscribe to saga state",
+        description = "Server-Sent Events stream sending the current saga state, then the final state once the saga completes."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Event stream opened"),
+        @ApiResponse(
+            responseCode = "404", 
+            description = "Saga not found",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+        )
+    })
+    public SseEmitter streamSagaEvents(
+            @Parameter(description = "Unique identifier of the saga", required = true)
+            @PathVariable @NotBlank(message = "Saga ID cannot be blank") String sagaId) {
+        
+        // Subscribe before reading the state so a completion in between is not missed
+        SseEmitter emitter = sagaCompletionNotifier.subscribe(sagaId, sagaExecutionProperties.getEventsTimeout());
+        
+        Optional<SagaExecution> sagaOptional = sagaArchiveService.findById(sagaId);
+        if (sagaOptional.isEmpty()) {
+            sagaCompletionNotifier.unsubscribe(sagaId, emitter);
+            logger.warn("Saga not found for event stream: sagaId={}", sagaId);
+            throw new SagaNotFoundException(sagaId);
+        }
+        
+        SagaExecution saga = sagaOptional.get();
+        SagaResponse current = saga.getCurrentState().isFailureState()
+            ? SagaResponse.failure(sagaId, saga.getCurrentState(), saga.getErrorMessage())
+            : SagaResponse.success(sagaId, saga.getCurrentState(), "Saga in state " + saga.getCurrentState());
+        
+        if (saga.getCurrentState().isFinalState()) {
+            sagaCompletionNotifier.publishFinalState(current);
+        } else {
+            sagaCompletionNotifier.sendState(emitter, current);
+        }
+        
+        logger.info("Saga event stream opened: sagaId={}, state={}", sagaId, saga.getCurrentState());
+        return emitter;
+    }
+    
     /**
      * Retrieves the current status of a saga by its ID.
      * 
@@ -149,8 +301,8 @@ public class SagaController {
         
         logger.info("Received saga status request: sagaId={}", sagaId);
         
-        // Find the saga execution by ID
-        Optional<SagaExecution> sagaOptional = sagaExecutionRepository.findById(sagaId);
+        // Find the saga execution by ID, archived sagas included
+        Optional<SagaExecution> sagaOptional = sagaArchiveService.findById(sagaId);
         
         if (sagaOptional.isEmpty()) {
             logger.warn("Saga not found: sagaId={}", sagaId);
@@ -180,4 +332,47 @@ public class SagaController {
         
         return ResponseEntity.ok(status);
     }
-}
\ No newline at end of file
+    
+    /**
+     * Previews whether a sale of a product can be served, before it is submitted.
+     * Nothing is reserved: the sale itself reserves stock atomically. Previews of the same product arriving
+     * together share a single inventory call.
+     * 
+     * @param productId The product to check
+     * @param quantity The quantity the customer wants
+     * @return stock verification with the available quantity
+     */
+    @GetMapping("/stock/{productId}")
+    @Operation(
+        summary = "Preview stock availability",
+        description = "Checks, without reserving anything, whether the requested quantity of a product is in stock. Concurrent previews of the same product share one inventory call."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200", 
+            description = "Stock availability retrieved",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = StockVerificationResponse.class))
+        ),
+        @ApiResponse(
+            responseCode = "500", 
+            description = "Inventory service unavailable",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))
+        )
+    })
+    public ResponseEntity<StockVerificationResponse> previewStock(
+            @Parameter(description = "Product identifier", required = true)
+            @PathVariable @NotBlank(message = "Product ID cannot be blank") String productId,
+            @Parameter(description = "Requested quantity")
+            @RequestParam(defaultValue = "1")
+            @Min(value = 1, message = "Quantity must be at least 1")
+            @Max(value = 1000, message = "Quantity cannot exceed 1000") Integer quantity) {
+        
+        // No saga exists yet; the ID only correlates the inventory call in the logs
+        String correlationId = TimeOrderedUuidGenerator.nextString();
+        logger.debug("Received stock preview request: productId={}, quantity={}, correlationId={}",
+                   productId, quantity, correlationId);
+        
+        return ResponseEntity.ok(
+            inventoryConcurrencyManager.verifyStockWithConcurrencyProtection(productId, quantity, correlationId));
+    }
+}
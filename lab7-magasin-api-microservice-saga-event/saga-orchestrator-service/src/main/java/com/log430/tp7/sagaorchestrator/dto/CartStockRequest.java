@@ -0,0 +1,24 @@
+package com.log430.tp7.sagaorchestrator.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+/**
+ * Request DTO for verifying or reserving every line of a cart in one call
+ */
+public record CartStockRequest(
+    @NotBlank(message = "Saga ID is required")
+    @JsonProperty("sagaId")
+    String sagaId,
+    
+    @JsonProperty("customerId")
+    String customerId,
+    
+    @NotEmpty(message = "Cart lines are required")
+    @JsonProperty("lines")
+    List<SaleRequest.@Valid SaleLine> lines
+) {}
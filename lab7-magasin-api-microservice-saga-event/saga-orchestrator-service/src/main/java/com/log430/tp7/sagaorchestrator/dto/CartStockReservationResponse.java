@@ -0,0 +1,37 @@
+package com.log430.tp7.sagaorchestrator.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Response DTO for cart stock reservation; either every line is reserved or none is
+ */
+public record CartStockReservationResponse(
+    @JsonProperty("success")
+    boolean success,
+    
+    @JsonProperty("sagaId")
+    String sagaId,
+    
+    @JsonProperty("reservations")
+    List<StockReservationResponse> reservations,
+    
+    @JsonProperty("message")
+    String message
+) {
+    
+    /**
+     * Creates a successful cart stock reservation response
+     */
+    public static CartStockReservationResponse success(String sagaId, List<StockReservationResponse> reservations) {
+        return new CartStockReservationResponse(true, sagaId, reservations, "Stock reserved successfully");
+    }
+    
+    /**
+     * Creates a failed cart stock reservation response
+     */
+    public static CartStockReservationResponse failure(String sagaId, String errorMessage) {
+        return new CartStockReservationResponse(false, sagaId, List.of(), errorMessage);
+    }
+}
@@ -0,0 +1,33 @@
+package com.log430.tp7.sagaorchestrator.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Response DTO for cart stock verification; the cart is available only when every line is
+ */
+public record CartStockVerificationResponse(
+    @JsonProperty("success")
+    boolean success,
+    
+    @JsonProperty("available")
+    boolean available,
+    
+    @JsonProperty("sagaId")
+    String sagaId,
+    
+    @JsonProperty("lines")
+    List<StockVerificationResponse> lines,
+    
+    @JsonProperty("message")
+    String message
+) {
+    
+    /**
+     * Creates a failed cart stock verification response
+     */
+    public static CartStockVerificationResponse failure(String sagaId, String errorMessage) {
+        return new CartStockVerificationResponse(false, false, sagaId, List.of(), errorMessage);
+    }
+}
@@ -1,48 +1,73 @@
 package com.log430.tp7.sagaorchestrator.dto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import jakarta.validation.constraints.DecimalMin;
-import jakarta.validation.constraints.Min;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
- * Request DTO for order creation
+ * Request DTO for order creation, matching the saga order contract of the store service.
+ * The items list every product of the order, single product sales included.
  */
 public record OrderRequest(
-    @NotBlank(message = "Customer ID is required")
-    @JsonProperty("customerId")
-    String customerId,
-    
-    @NotBlank(message = "Product ID is required")
-    @JsonProperty("productId")
-    String productId,
-    
-    @NotNull(message = "Quantity is required")
-    @Min(value = 1, message = "Quantity must be at least 1")
-    @JsonProperty("quantity")
-    Integer quantity,
-    
-    @NotNull(message = "Amount is required")
-    @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
-    @JsonProperty("amount")
-    BigDecimal amount,
-    
     @NotBlank(message = "Saga ID is required")
     @JsonProperty("sagaId")
     String sagaId,
-    
-    @JsonProperty("stockReservationId")
-    String stockReservationId,
-    
+
+    @NotBlank(message = "Customer ID is required")
+    @JsonProperty("customerId")
+    String customerId,
+
+    @NotNull(message = "Store ID is required")
+    @Positive(message = "Store ID must be positive")
+    @JsonProperty("storeId")
+    Long storeId,
+
+    @NotEmpty(message = "Order items are required")
+    @Valid
+    @JsonProperty("items")
+    List<OrderItem> items,
+
+    @NotNull(message = "Total amount is required")
+    @Positive(message = "Total amount must be positive")
+    @JsonProperty("totalAmount")
+    BigDecimal totalAmount,
+
     @JsonProperty("paymentTransactionId")
     String paymentTransactionId,
-    
-    @JsonProperty("shippingAddress")
-    String shippingAddress,
-    
-    @JsonProperty("notes")
-    String notes
-) {}
\ No newline at end of file
+
+    @JsonProperty("stockReservationId")
+    String stockReservationId
+) {
+
+    /**
+     * A product, quantity and unit price of the order
+     */
+    public record OrderItem(
+        @NotBlank(message = "Product ID is required")
+        @JsonProperty("productId")
+        String productId,
+
+        @NotNull(message = "Quantity is required")
+        @Positive(message = "Quantity must be positive")
+        @JsonProperty("quantity")
+        Integer quantity,
+
+        @NotNull(message = "Unit price is required")
+        @Positive(message = "Unit price must be positive")
+        @JsonProperty("unitPrice")
+        BigDecimal unitPrice
+    ) {}
+
+    /**
+     * The product of a single product order, or the first product of a cart
+     */
+    public String firstProductId() {
+        return items == null || items.isEmpty() ? null : items.get(0).productId();
+    }
+}
@@ -1,13 +1,17 @@
 package com.log430.tp7.sagaorchestrator.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 /**
- * Request DTO for initiating a saga-based sale transaction
+ * Request DTO for initiating a saga-based sale transaction.
+ * A single product sale sets productId and quantity; a cart sets lines instead
+ * and is verified, reserved, charged and ordered as one saga.
  */
 public record SaleRequest(
     @NotBlank(message = "Customer ID is required")
@@ -15,12 +19,10 @@ public record SaleRequest(
     @JsonProperty("customerId")
     String customerId,
     
-    @NotBlank(message = "Product ID is required")
     @Size(min = 1, max = 100, message = "Product ID must be between 1 and 100 characters")
     @JsonProperty("productId")
     String productId,
     
-    @NotNull(message = "Quantity is required")
     @Min(value = 1, message = "Quantity must be at least 1")
     @Max(value = 1000, message = "Quantity cannot exceed 1000")
     @JsonProperty("quantity")
@@ -35,9 +37,59 @@ public record SaleRequest(
     @NotNull(message = "Payment details are required")
     @Valid
     @JsonProperty("paymentDetails")
-    PaymentDetails paymentDetails
+    PaymentDetails paymentDetails,
+    
+    @Size(max = 100, message = "Cart cannot exceed 100 lines")
+    @JsonProperty("lines")
+    List<@Valid SaleLine> lines
 ) {
     
+    /**
+     * Creates a single product sale request
+     */
+    public SaleRequest(String customerId, String productId, Integer quantity, BigDecimal amount,
+                       PaymentDetails paymentDetails) {
+        this(customerId, productId, quantity, amount, paymentDetails, null);
+    }
+    
+    /**
+     * Whether this request is a multi-line cart
+     */
+    @JsonIgnore
+    public boolean isCart() {
+        return lines != null && !lines.isEmpty();
+    }
+    
+    /**
+     * The lines of the sale; a single product sale is returned as one line
+     */
+    @JsonIgnore
+    public List<SaleLine> saleLines() {
+        return isCart() ? lines : List.of(new SaleLine(productId, quantity));
+    }
+    
+    @JsonIgnore
+    @AssertTrue(message = "Either productId and quantity or cart lines are required")
+    public boolean isProductOrLinesPresent() {
+        return isCart() || (productId != null && !productId.isBlank() && quantity != null);
+    }
+    
+    /**
+     * A product and quantity of a cart
+     */
+    public record SaleLine(
+        @NotBlank(message = "Product ID is required")
+        @Size(min = 1, max = 100, message = "Product ID must be between 1 and 100 characters")
+        @JsonProperty("productId")
+        String productId,
+        
+        @NotNull(message = "Quantity is required")
+        @Min(value = 1, message = "Quantity must be at least 1")
+        @Max(value = 1000, message = "Quantity cannot exceed 1000")
+        @JsonProperty("quantity")
+        Integer quantity
+    ) {}
+    
     /**
      * Payment details for the transaction
      */
@@ -6,6 +6,7 @@ import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -127,6 +128,37 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
     
+    /**
+     * Handles sales rejected because the saga worker queue is full
+     */
+    @ExceptionHandler(SagaCapacityExceededException.class)
+    public ResponseEntity<ErrorResponse> handleSagaCapacityExceeded(
+            SagaCapacityExceededException ex, HttpServletRequest request) {
+        
+        logger.warn("Saga capacity exceeded on request to {}: sagaId={}", request.getRequestURI(), ex.getSagaId());
+        
+        ErrorResponse errorResponse = ErrorResponse.sagaError(ex.getMessage(), request.getRequestURI());
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(errorResponse);
+    }
+    
+    /**
+     * Handles sales reusing an idempotency key for a different request
+     */
+    @ExceptionHandler(IdempotencyKeyMismatchException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyKeyMismatch(
+            IdempotencyKeyMismatchException ex, HttpServletRequest request) {
+        
+        logger.warn("Idempotency key reused for a different request to {}: sagaId={}",
+                   request.getRequestURI(), ex.getSagaId());
+        
+        ErrorResponse errorResponse = ErrorResponse.sagaError(ex.getMessage(), request.getRequestURI());
+        
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(errorResponse);
+    }
+    
     /**
      * Handles saga execution errors
      */
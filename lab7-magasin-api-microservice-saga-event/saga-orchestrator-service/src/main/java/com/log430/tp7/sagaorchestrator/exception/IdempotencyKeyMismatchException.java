@@ -0,0 +1,11 @@
+package com.log430.tp7.sagaorchestrator.exception;
+
+/**
+ * Exception thrown when an idempotency key is reused by its customer for a different sale request
+ */
+public class IdempotencyKeyMismatchException extends SagaException {
+    
+    public IdempotencyKeyMismatchException(String sagaId) {
+        super("Idempotency key was already used for a different sale request", sagaId);
+    }
+}
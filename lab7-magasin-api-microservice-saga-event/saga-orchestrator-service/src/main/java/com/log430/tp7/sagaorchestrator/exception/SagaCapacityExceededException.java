@@ -0,0 +1,18 @@
+package com.log430.tp7.sagaorchestrator.exception;
+
+/**
+ * Exception thrown when the saga worker queue is full and a sale cannot be accepted
+ */
+public class SagaCapacityExceededException extends SagaException {
+    
+    private final long retryAfterSeconds;
+    
+    public SagaCapacityExceededException(String sagaId, long retryAfterSeconds) {
+        super("Saga capacity exceeded, retry later", sagaId);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
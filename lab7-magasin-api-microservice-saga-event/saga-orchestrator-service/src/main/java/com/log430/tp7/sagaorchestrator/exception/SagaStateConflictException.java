@@ -0,0 +1,35 @@
+package com.log430.tp7.sagaorchestrator.exception;
+
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+
+/**
+ * Exception thrown when a saga transition loses its compare-and-set, because the saga
+ * was moved on concurrently (e.g. timed out and compensated while a step was in flight)
+ */
+public class SagaStateConflictException extends SagaException {
+
+    private final SagaState expectedState;
+    private final SagaState targetState;
+
+    public SagaStateConflictException(String sagaId, SagaState expectedState, SagaState targetState) {
+        super(String.format("Saga %s is no longer in %s, cannot move to %s", sagaId, expectedState, targetState),
+              sagaId);
+        this.expectedState = expectedState;
+        this.targetState = targetState;
+    }
+
+    public SagaStateConflictException(String sagaId, SagaState currentState) {
+        super(String.format("Saga %s was moved to %s concurrently, step result rejected", sagaId, currentState),
+              sagaId);
+        this.expectedState = currentState;
+        this.targetState = null;
+    }
+
+    public SagaState getExpectedState() {
+        return expectedState;
+    }
+
+    public SagaState getTargetState() {
+        return targetState;
+    }
+}
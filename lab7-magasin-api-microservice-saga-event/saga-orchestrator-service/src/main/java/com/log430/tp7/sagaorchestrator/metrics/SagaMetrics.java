@@ -7,7 +7,10 @@ import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Custom metrics component for saga orchestrator monitoring and observability
@@ -190,6 +193,13 @@ public class SagaMetrics {
         }
     }
     
+    public void incrementCoalescedStockVerification() {
+        Counter.builder("saga_stock_verifications_coalesced_total")
+            .description("Stock verifications answered by an inventory call shared with other sagas")
+            .register(meterRegistry)
+            .increment();
+    }
+    
     public void incrementStockReservation(boolean success) {
         if (success) {
             stockReservationSuccessCounter.increment();
@@ -308,6 +318,109 @@ public class SagaMetrics {
             .increment();
     }
     
+    // Lock tracking
+    
+    public void recordLockWait(String provider, long waitNanos, boolean acquired) {
+        Timer.builder("saga_lock_wait_seconds")
+            .description("Time spent waiting for customer-product saga locks")
+            .tag("provider", provider)
+            .tag("outcome", acquired ? "acquired" : "timeout")
+            .register(meterRegistry)
+            .record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    // Downstream client tracking
+    
+    public void registerDownstreamGauges(String service, AtomicInteger inFlight, AtomicInteger queued) {
+        Gauge.builder("saga_downstream_in_flight", inFlight, AtomicInteger::doubleValue)
+            .description("Calls in progress to a downstream service")
+            .tag("service", service)
+            .register(meterRegistry);
+        Gauge.builder("saga_downstream_queued", queued, AtomicInteger::doubleValue)
+            .description("Calls waiting for a downstream bulkhead permit")
+            .tag("service", service)
+            .register(meterRegistry);
+    }
+    
+    public void recordDownstreamCall(String service, long durationNanos, boolean success) {
+        Timer.builder("saga_downstream_call_seconds")
+            .description("Duration of downstream service calls")
+            .tag("service", service)
+            .tag("outcome", success ? "success" : "failure")
+            .register(meterRegistry)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public void incrementHedgedRequest(String service, String outcome) {
+        Counter.builder("saga_hedged_requests_total")
+            .description("Hedged downstream requests by outcome: sent, won or budget_exhausted")
+            .tag("service", service)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .increment();
+    }
+    
+    // Admission tracking
+    
+    public void registerAdmissionGauges(Supplier<Number> limit, Supplier<Number> inFlight) {
+        Gauge.builder("saga_admission_limit", limit)
+            .description("Sagas admitted concurrently, learned from downstream latency")
+            .register(meterRegistry);
+        Gauge.builder("saga_admission_in_flight", inFlight)
+            .description("Sagas currently admitted")
+            .register(meterRegistry);
+    }
+    
+    public void registerDownstreamLimitGauge(String service, Supplier<Number> limit) {
+        Gauge.builder("saga_downstream_concurrency_limit", limit)
+            .description("Concurrency limit learned for a downstream service")
+            .tag("service", service)
+            .register(meterRegistry);
+    }
+    
+    public void incrementAdmissionRejected(String reason) {
+        Counter.builder("saga_admission_rejected_total")
+            .description("Sales rejected by the adaptive admission limiter")
+            .tag("reason", reason)
+            .register(meterRegistry)
+            .increment();
+    }
+    
+    public void incrementIdempotentReplay(String outcome) {
+        Counter.builder("saga_idempotent_replays_total")
+            .description("Sales matching an idempotency key already in use: coalesced onto the running saga, replayed, or rejected as a different request")
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .increment();
+    }
+    
+    // Event journal tracking
+    
+    public void recordJournalFlush(int batchSize, long flushNanos) {
+        Timer.builder("saga_journal_flush_seconds")
+            .description("Time spent writing a batch of saga events")
+            .register(meterRegistry)
+            .record(flushNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("saga_journal_events_written_total")
+            .description("Total number of saga events written by the journal")
+            .register(meterRegistry)
+            .increment(batchSize);
+    }
+    
+    public void incrementJournalBlocked() {
+        Counter.builder("saga_journal_blocked_total")
+            .description("Saga events that found the journal buffer full")
+            .register(meterRegistry)
+            .increment();
+    }
+    
+    public void incrementJournalDropped() {
+        Counter.builder("saga_journal_dropped_total")
+            .description("Saga events dropped because the journal buffer stayed full")
+            .register(meterRegistry)
+            .increment();
+    }
+    
     // Timeout tracking
     
     public void incrementSagaTimeout(String state) {
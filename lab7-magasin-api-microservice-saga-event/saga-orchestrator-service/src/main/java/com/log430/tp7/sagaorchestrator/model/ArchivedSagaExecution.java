@@ -0,0 +1,106 @@
+package com.log430.tp7.sagaorchestrator.model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A final saga moved out of {@code saga_executions} once its retention window has passed.
+ * Rows are written in bulk by the archiver's INSERT ... SELECT and only read afterwards,
+ * so {@code saga_executions} stays about the size of in-flight work.
+ */
+@Entity
+@Table(name = "saga_executions_archive")
+public class ArchivedSagaExecution {
+
+    @Id
+    @Column(name = "saga_id", length = 36)
+    private String sagaId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "current_state", nullable = false, length = 50)
+    private SagaState currentState;
+
+    @Column(name = "customer_id", nullable = false, length = 100)
+    private String customerId;
+
+    @Column(name = "product_id", nullable = false, length = 100)
+    private String productId;
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+
+    @Column(name = "amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "stock_reservation_id", length = 36)
+    private String stockReservationId;
+
+    @Column(name = "payment_transaction_id", length = 36)
+    private String paymentTransactionId;
+
+    @Column(name = "order_id", length = 36)
+    private String orderId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "version")
+    private Long version;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "saga_execution_lines_archive", joinColumns = @JoinColumn(name = "saga_id"))
+    @OrderColumn(name = "line_number")
+    private List<SagaLine> lines = new ArrayList<>();
+
+    // Default constructor for JPA
+    protected ArchivedSagaExecution() {}
+
+    /**
+     * Rebuilds the saga as it was when archived, for read-only lookups.
+     *
+     * @return a detached saga execution, never to be saved
+     */
+    public SagaExecution toSagaExecution() {
+        SagaExecution saga = new SagaExecution();
+        saga.setSagaId(sagaId);
+        saga.setCurrentState(currentState);
+        saga.setCustomerId(customerId);
+        saga.setProductId(productId);
+        saga.setQuantity(quantity);
+        saga.setAmount(amount);
+        saga.setStockReservationId(stockReservationId);
+        saga.setPaymentTransactionId(paymentTransactionId);
+        saga.setOrderId(orderId);
+        // setErrorMessage touches updatedAt, set it first
+        saga.setErrorMessage(errorMessage);
+        saga.setCreatedAt(createdAt);
+        saga.setUpdatedAt(updatedAt);
+        saga.setVersion(version);
+        saga.setLines(new ArrayList<>(lines));
+        return saga;
+    }
+
+    public String getSagaId() {
+        return sagaId;
+    }
+
+    public SagaState getCurrentState() {
+        return currentState;
+    }
+
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+}
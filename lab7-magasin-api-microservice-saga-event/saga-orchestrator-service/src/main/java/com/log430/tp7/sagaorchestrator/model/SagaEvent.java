@@ -1,6 +1,7 @@
 package com.log430.tp7.sagaorchestrator.model;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.*;
@@ -9,7 +10,6 @@ import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * Entity representing saga events for audit trail and debugging purposes.
@@ -43,7 +43,7 @@ public class SagaEvent {
     
     // Default constructor for JPA
     public SagaEvent() {
-        this.eventId = UUID.randomUUID().toString();
+        this.eventId = TimeOrderedUuidGenerator.nextString();
         this.createdAt = LocalDateTime.now();
     }
     
@@ -227,7 +227,7 @@ public class SagaEvent {
     @PrePersist
     protected void onCreate() {
         if (eventId == null) {
-            eventId = UUID.randomUUID().toString();
+            eventId = TimeOrderedUuidGenerator.nextString();
         }
         if (createdAt == null) {
             createdAt = LocalDateTime.now();
@@ -3,7 +3,9 @@ package com.log430.tp7.sagaorchestrator.model;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -52,10 +54,22 @@ public class SagaExecution {
     @Column(name = "error_message", columnDefinition = "TEXT")
     private String errorMessage;
     
+    // When the current step times out; null once the saga is final. Indexed by a partial index
+    // on active sagas only (add-saga-deadline-index.sql).
+    @Column(name = "deadline_at")
+    private LocalDateTime deadlineAt;
+    
     @Version
     @Column(name = "version")
     private Long version;
     
+    // Cart lines; empty for single product sales. productId and quantity then hold
+    // the first line's product and the cart's total quantity.
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "saga_execution_lines", joinColumns = @JoinColumn(name = "saga_id"))
+    @OrderColumn(name = "line_number")
+    private List<SagaLine> lines = new ArrayList<>();
+    
     // Valid state transitions mapping
     private static final Set<SagaState> INITIAL_STATES = EnumSet.of(SagaState.SALE_INITIATED);
     private static final Set<SagaState> FINAL_STATES = EnumSet.of(SagaState.SALE_CONFIRMED, SagaState.SALE_FAILED);
@@ -101,7 +115,7 @@ public class SagaExecution {
     
     /**
      * Transitions the saga to a new state if the transition is valid.
-     * Updates the updatedAt timestamp automatically.
+     * Updates the updatedAt timestamp automatically and clears the deadline of a final state.
      * 
      * @param newState the target state to transition to
      * @throws IllegalStateException if the transition is not valid
@@ -115,6 +129,9 @@ public class SagaExecution {
         
         this.currentState = newState;
         this.updatedAt = LocalDateTime.now();
+        if (FINAL_STATES.contains(newState)) {
+            this.deadlineAt = null;
+        }
     }
     
     /**
@@ -135,6 +152,15 @@ public class SagaExecution {
         return !isInFinalState();
     }
     
+    /**
+     * Checks if the saga sells a multi-line cart.
+     * 
+     * @return true if the saga has cart lines
+     */
+    public boolean isCart() {
+        return lines != null && !lines.isEmpty();
+    }
+    
     /**
      * Sets an error message and updates the timestamp.
      * 
@@ -256,6 +282,22 @@ public class SagaExecution {
         return errorMessage;
     }
     
+    public LocalDateTime getDeadlineAt() {
+        return deadlineAt;
+    }
+    
+    public void setDeadlineAt(LocalDateTime deadlineAt) {
+        this.deadlineAt = deadlineAt;
+    }
+    
+    public List<SagaLine> getLines() {
+        return lines;
+    }
+    
+    public void setLines(List<SagaLine> lines) {
+        this.lines = lines;
+    }
+    
     public Long getVersion() {
         return version;
     }
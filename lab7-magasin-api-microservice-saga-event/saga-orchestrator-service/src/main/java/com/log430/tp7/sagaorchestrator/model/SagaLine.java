@@ -0,0 +1,53 @@
+package com.log430.tp7.sagaorchestrator.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+/**
+ * One product line of a cart saga, with the stock reservation created for it.
+ */
+@Embeddable
+public class SagaLine {
+    
+    @Column(name = "product_id", nullable = false, length = 100)
+    private String productId;
+    
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+    
+    @Column(name = "stock_reservation_id", length = 36)
+    private String stockReservationId;
+    
+    // Default constructor for JPA
+    public SagaLine() {}
+    
+    public SagaLine(String productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+    
+    // Getters and setters
+    public String getProductId() {
+        return productId;
+    }
+    
+    public void setProductId(String productId) {
+        this.productId = productId;
+    }
+    
+    public Integer getQuantity() {
+        return quantity;
+    }
+    
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+    
+    public String getStockReservationId() {
+        return stockReservationId;
+    }
+    
+    public void setStockReservationId(String stockReservationId) {
+        this.stockReservationId = stockReservationId;
+    }
+}
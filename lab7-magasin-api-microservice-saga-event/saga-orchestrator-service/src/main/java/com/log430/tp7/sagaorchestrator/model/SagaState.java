@@ -11,12 +11,12 @@ public enum SagaState {
     
     /**
      * Initial state when a sale request is received.
-     * Next states: STOCK_VERIFYING, SALE_FAILED
+     * Next states: STOCK_RESERVING, STOCK_VERIFYING, SALE_FAILED
      */
     SALE_INITIATED {
         @Override
         public Set<SagaState> getValidTransitions() {
-            return EnumSet.of(STOCK_VERIFYING, SALE_FAILED);
+            return EnumSet.of(STOCK_RESERVING, STOCK_VERIFYING, SALE_FAILED);
         }
         
         @Override
@@ -27,6 +27,7 @@ public enum SagaState {
     
     /**
      * State when verifying stock availability with inventory service.
+     * Kept for sagas recorded before reservation checked availability itself.
      * Next states: STOCK_RESERVING, SALE_FAILED
      */
     STOCK_VERIFYING {
@@ -206,7 +207,7 @@ public enum SagaState {
      */
     public SagaState getNextHappyPathState() {
         return switch (this) {
-            case SALE_INITIATED -> STOCK_VERIFYING;
+            case SALE_INITIATED -> STOCK_RESERVING;
             case STOCK_VERIFYING -> STOCK_RESERVING;
             case STOCK_RESERVING -> PAYMENT_PROCESSING;
             case PAYMENT_PROCESSING -> ORDER_CONFIRMING;
@@ -0,0 +1,105 @@
+package com.log430.tp7.sagaorchestrator.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Maps a customer's {@code Idempotency-Key} to the saga started for it.
+ * Keys are scoped per customer, so two customers choosing the same key never share a saga.
+ * A retried sale carrying the same key and the same request hash gets the existing saga instead of a new one
+ * until the mapping expires; a different request under the key is rejected.
+ * Rows are claimed with an INSERT ... ON CONFLICT by {@link com.log430.tp7.sagaorchestrator.repository.SaleIdempotencyKeyRepository}.
+ */
+@Entity
+@Table(name = "sale_idempotency_keys",
+       indexes = @Index(name = "idx_sale_idempotency_keys_expires_at", columnList = "expires_at"))
+@IdClass(SaleIdempotencyKey.Key.class)
+public class SaleIdempotencyKey {
+
+    @Id
+    @Column(name = "customer_id", length = 100)
+    private String customerId;
+
+    @Id
+    @Column(name = "idempotency_key", length = 255)
+    private String idempotencyKey;
+
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(name = "saga_id", nullable = false, length = 36)
+    private String sagaId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    // Default constructor for JPA
+    protected SaleIdempotencyKey() {}
+
+    public SaleIdempotencyKey(String customerId, String idempotencyKey, String requestHash, String sagaId,
+                              LocalDateTime createdAt, LocalDateTime expiresAt) {
+        this.customerId = customerId;
+        this.idempotencyKey = idempotencyKey;
+        this.requestHash = requestHash;
+        this.sagaId = sagaId;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public String getSagaId() {
+        return sagaId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Primary key of a mapping: the customer and the key they chose
+     */
+    public static class Key implements Serializable {
+
+        private String customerId;
+        private String idempotencyKey;
+
+        protected Key() {}
+
+        public Key(String customerId, String idempotencyKey) {
+            this.customerId = customerId;
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(customerId, key.customerId) && Objects.equals(idempotencyKey, key.idempotencyKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(customerId, idempotencyKey);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.log430.tp7.sagaorchestrator.repository;
+
+import com.log430.tp7.sagaorchestrator.model.ArchivedSagaExecution;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Repository for final sagas moved out of {@code saga_executions} by the archiver.
+ */
+@Repository
+public interface ArchivedSagaExecutionRepository extends JpaRepository<ArchivedSagaExecution, String> {
+
+    /**
+     * Copies sagas from the hot table into the archive, in one statement.
+     *
+     * @param sagaIds the sagas to copy, locked by the caller
+     * @param archivedAt the archival timestamp
+     * @return number of archived sagas
+     */
+    @Modifying
+    @Query(value = "INSERT INTO saga_executions_archive (saga_id, current_state, customer_id, product_id, quantity, " +
+                   "amount, stock_reservation_id, payment_transaction_id, order_id, created_at, updated_at, " +
+                   "error_message, version, archived_at) " +
+                   "SELECT saga_id, current_state, customer_id, product_id, quantity, amount, stock_reservation_id, " +
+                   "payment_transaction_id, order_id, created_at, updated_at, error_message, version, :archivedAt " +
+                   "FROM saga_executions WHERE saga_id IN (:sagaIds)", nativeQuery = true)
+    int copyFromSagaExecutions(@Param("sagaIds") Collection<String> sagaIds,
+                               @Param("archivedAt") LocalDateTime archivedAt);
+
+    /**
+     * Copies the cart lines of sagas into the archive, in one statement.
+     *
+     * @param sagaIds the sagas whose lines are copied
+     * @return number of archived lines
+     */
+    @Modifying
+    @Query(value = "INSERT INTO saga_execution_lines_archive (saga_id, line_number, product_id, quantity, " +
+                   "stock_reservation_id) " +
+                   "SELECT saga_id, line_number, product_id, quantity, stock_reservation_id " +
+                   "FROM saga_execution_lines WHERE saga_id IN (:sagaIds)", nativeQuery = true)
+    int copyLinesFromSagaExecutions(@Param("sagaIds") Collection<String> sagaIds);
+}
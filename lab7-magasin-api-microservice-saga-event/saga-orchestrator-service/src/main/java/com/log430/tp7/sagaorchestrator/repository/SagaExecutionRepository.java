@@ -8,9 +8,11 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.LockModeType;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,6 +31,45 @@ public interface SagaExecutionRepository extends JpaRepository<SagaExecution, St
     @Query("SELECT s FROM SagaExecution s WHERE s.currentState NOT IN ('SALE_CONFIRMED', 'SALE_FAILED')")
     List<SagaExecution> findActiveSagas();
     
+    /**
+     * Finds the IDs of active sagas whose deadline has passed.
+     * Served by the partial index on deadline_at, so the cost follows overdue sagas only.
+     * 
+     * @param now the current timestamp
+     * @return IDs of overdue sagas, oldest deadline first
+     */
+    @Query("SELECT s.sagaId FROM SagaExecution s WHERE s.deadlineAt <= :now ORDER BY s.deadlineAt ASC")
+    List<String> findSagaIdsPastDeadline(@Param("now") LocalDateTime now);
+    
+    /**
+     * Finds the pending deadline of every active saga, to rebuild the in-memory timeout wheel.
+     * 
+     * @return rows of [sagaId, deadlineAt]
+     */
+    @Query("SELECT s.sagaId, s.deadlineAt FROM SagaExecution s WHERE s.deadlineAt IS NOT NULL")
+    List<Object[]> findPendingDeadlines();
+    
+    /**
+     * Finds active sagas without a deadline, recorded before deadlines were persisted.
+     * 
+     * @return active sagas with a null deadline
+     */
+    @Query("SELECT s FROM SagaExecution s WHERE s.deadlineAt IS NULL " +
+           "AND s.currentState NOT IN ('SALE_CONFIRMED', 'SALE_FAILED')")
+    List<SagaExecution> findActiveSagasWithoutDeadline();
+    
+    /**
+     * Updates the deadline of a saga without touching its state or version.
+     * 
+     * @param sagaId the saga identifier
+     * @param deadlineAt the new deadline
+     * @return number of updated records
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE SagaExecution s SET s.deadlineAt = :deadlineAt WHERE s.sagaId = :sagaId")
+    int updateDeadline(@Param("sagaId") String sagaId, @Param("deadlineAt") LocalDateTime deadlineAt);
+    
     /**
      * Finds sagas in a specific state.
      * 
@@ -242,6 +283,40 @@ public interface SagaExecutionRepository extends JpaRepository<SagaExecution, St
            "WHERE s.sagaId = :sagaId")
     int updateOrderId(@Param("sagaId") String sagaId, @Param("orderId") String orderId);
     
+    /**
+     * Finds and locks a batch of final sagas last updated before the cutoff, for archival.
+     * Served by the partial index on final sagas (add-saga-archive-tables.sql); rows locked by another
+     * archiver are skipped.
+     * 
+     * @param cutoffDate the end of the retention window
+     * @param limit the batch size
+     * @return IDs of the locked sagas, oldest first
+     */
+    @Query(value = "SELECT saga_id FROM saga_executions WHERE current_state IN ('SALE_CONFIRMED', 'SALE_FAILED') " +
+                   "AND updated_at < :cutoffDate ORDER BY updated_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<String> lockArchivableSagaIds(@Param("cutoffDate") LocalDateTime cutoffDate, @Param("limit") int limit);
+    
+    /**
+     * Deletes the cart lines of the given sagas.
+     * 
+     * @param sagaIds the saga identifiers
+     * @return number of deleted lines
+     */
+    @Modifying
+    @Query(value = "DELETE FROM saga_execution_lines WHERE saga_id IN (:sagaIds)", nativeQuery = true)
+    int deleteLinesBySagaIds(@Param("sagaIds") Collection<String> sagaIds);
+    
+    /**
+     * Deletes the given sagas, once their lines are gone.
+     * 
+     * @param sagaIds the saga identifiers
+     * @return number of deleted sagas
+     */
+    @Modifying
+    @Query(value = "DELETE FROM saga_executions WHERE saga_id IN (:sagaIds)", nativeQuery = true)
+    int deleteBySagaIds(@Param("sagaIds") Collection<String> sagaIds);
+    
     /**
      * Deletes old completed sagas beyond the retention period.
      * 
@@ -291,13 +366,16 @@ public interface SagaExecutionRepository extends JpaRepository<SagaExecution, St
     /**
      * Finds and locks active sagas for a customer-product combination with pessimistic read lock.
      * Prevents race conditions during stock reservation conflicts.
+     * Matches carts on any of their lines, not only on their first product.
      * 
      * @param customerId the customer identifier
      * @param productId the product identifier
      * @return list of active sagas with pessimistic lock
      */
     @Lock(LockModeType.PESSIMISTIC_READ)
-    @Query("SELECT s FROM SagaExecution s WHERE s.customerId = :customerId AND s.productId = :productId " +
+    @Query("SELECT s FROM SagaExecution s WHERE s.customerId = :customerId " +
+           "AND (s.productId = :productId OR EXISTS (SELECT 1 FROM SagaExecution c JOIN c.lines l " +
+           "WHERE c.sagaId = s.sagaId AND l.productId = :productId)) " +
            "AND s.currentState NOT IN ('SALE_CONFIRMED', 'SALE_FAILED') ORDER BY s.createdAt ASC")
     List<SagaExecution> findActiveByCustomerAndProductWithLock(@Param("customerId") String customerId, 
                                                                @Param("productId") String productId);
@@ -314,6 +392,55 @@ public interface SagaExecutionRepository extends JpaRepository<SagaExecution, St
            "AND s.currentState IN ('STOCK_VERIFYING', 'STOCK_RESERVING') ORDER BY s.createdAt ASC")
     List<SagaExecution> findStockReservingSagasWithLock(@Param("productId") String productId);
     
+    /**
+     * Compare-and-set transition into a step state in a single UPDATE, also moving the saga's deadline to that
+     * step: succeeds only if the saga is still in the expected state at the expected version, and bumps the version.
+     * Clears the persistence context, so a saga loaded before the update is detached afterwards.
+     *
+     * @param sagaId the saga identifier
+     * @param expectedState the state the caller read
+     * @param expectedVersion the version the caller read
+     * @param newState the new state to set
+     * @param deadlineAt the deadline of the new state
+     * @param now the transition timestamp
+     * @return number of updated records (0 if another transition got there first)
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE SagaExecution s SET s.currentState = :newState, s.version = s.version + 1, s.updatedAt = :now, " +
+           "s.deadlineAt = :deadlineAt " +
+           "WHERE s.sagaId = :sagaId AND s.currentState = :expectedState AND s.version = :expectedVersion")
+    int compareAndSetState(@Param("sagaId") String sagaId,
+                           @Param("expectedState") SagaState expectedState,
+                           @Param("expectedVersion") Long expectedVersion,
+                           @Param("newState") SagaState newState,
+                           @Param("deadlineAt") LocalDateTime deadlineAt,
+                           @Param("now") LocalDateTime now);
+
+    /**
+     * Compare-and-set transition into a final state with its error message, clearing the saga's deadline.
+     * Clears the persistence context, so a saga loaded before the update is detached afterwards.
+     *
+     * @param sagaId the saga identifier
+     * @param expectedState the state the caller read
+     * @param expectedVersion the version the caller read
+     * @param newState the final state to set
+     * @param errorMessage the final error message, null for a confirmed sale
+     * @param now the transition timestamp
+     * @return number of updated records (0 if another transition got there first)
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE SagaExecution s SET s.currentState = :newState, s.version = s.version + 1, s.updatedAt = :now, " +
+           "s.deadlineAt = NULL, s.errorMessage = :errorMessage " +
+           "WHERE s.sagaId = :sagaId AND s.currentState = :expectedState AND s.version = :expectedVersion")
+    int compareAndSetFinalState(@Param("sagaId") String sagaId,
+                                @Param("expectedState") SagaState expectedState,
+                                @Param("expectedVersion") Long expectedVersion,
+                                @Param("newState") SagaState newState,
+                                @Param("errorMessage") String errorMessage,
+                                @Param("now") LocalDateTime now);
+
     /**
      * Atomically updates saga state with version check for optimistic locking.
      * 
@@ -346,6 +473,26 @@ public interface SagaExecutionRepository extends JpaRepository<SagaExecution, St
                                                        @Param("stockReservationId") String stockReservationId,
                                                        @Param("expectedVersion") Long expectedVersion);
     
+    /**
+     * Checks whether another active saga exists for the same customer-product combination.
+     * Stops at the first match on the partial (customer_id, product_id) index of active sagas,
+     * then looks for an active cart of the customer holding the product on another line.
+     * 
+     * @param customerId the customer identifier
+     * @param productId the product identifier
+     * @param excludeSagaId saga ID to exclude from the check
+     * @return true if a concurrent active saga exists
+     */
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM saga_executions WHERE customer_id = :customerId " +
+                   "AND product_id = :productId AND saga_id <> :excludeSagaId " +
+                   "AND current_state NOT IN ('SALE_CONFIRMED', 'SALE_FAILED')) " +
+                   "OR EXISTS (SELECT 1 FROM saga_execution_lines l JOIN saga_executions s ON s.saga_id = l.saga_id " +
+                   "WHERE l.product_id = :productId AND s.customer_id = :customerId AND s.saga_id <> :excludeSagaId " +
+                   "AND s.current_state NOT IN ('SALE_CONFIRMED', 'SALE_FAILED'))", nativeQuery = true)
+    boolean existsConcurrentActiveSaga(@Param("customerId") String customerId,
+                                       @Param("productId") String productId,
+                                       @Param("excludeSagaId") String excludeSagaId);
+    
     /**
      * Counts concurrent active sagas for the same customer-product combination.
      * Used for race condition detection.
@@ -0,0 +1,86 @@
+package com.log430.tp7.sagaorchestrator.repository;
+
+import com.log430.tp7.sagaorchestrator.model.SaleIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Repository for the idempotency key to saga mappings of sale submissions.
+ */
+@Repository
+public interface SaleIdempotencyKeyRepository extends JpaRepository<SaleIdempotencyKey, SaleIdempotencyKey.Key> {
+
+    /**
+     * Finds the saga mapped to a customer's key, ignoring expired mappings not purged yet.
+     *
+     * @param customerId the customer the key belongs to
+     * @param idempotencyKey the client's idempotency key
+     * @param now the lookup timestamp
+     * @return the live mapping, if any
+     */
+    Optional<SaleIdempotencyKey> findByCustomerIdAndIdempotencyKeyAndExpiresAtAfter(String customerId,
+                                                                                    String idempotencyKey,
+                                                                                    LocalDateTime now);
+
+    /**
+     * Claims a customer's key for a saga in one statement.
+     * Succeeds when the key is new or its previous mapping has expired; a live mapping is left untouched,
+     * so of several instances claiming the same key at once exactly one wins.
+     *
+     * @param customerId the customer the key belongs to
+     * @param idempotencyKey the client's idempotency key
+     * @param requestHash the hash of the request the key is claimed for
+     * @param sagaId the saga about to be started for it
+     * @param now the claim timestamp
+     * @param expiresAt the end of the mapping's lifetime
+     * @return 1 if the key was claimed, 0 if it already maps to a live saga
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO sale_idempotency_keys " +
+                   "(customer_id, idempotency_key, request_hash, saga_id, created_at, expires_at) " +
+                   "VALUES (:customerId, :idempotencyKey, :requestHash, :sagaId, :now, :expiresAt) " +
+                   "ON CONFLICT (customer_id, idempotency_key) DO UPDATE SET saga_id = EXCLUDED.saga_id, " +
+                   "request_hash = EXCLUDED.request_hash, created_at = EXCLUDED.created_at, expires_at = EXCLUDED.expires_at " +
+                   "WHERE sale_idempotency_keys.expires_at <= :now", nativeQuery = true)
+    int claim(@Param("customerId") String customerId,
+              @Param("idempotencyKey") String idempotencyKey,
+              @Param("requestHash") String requestHash,
+              @Param("sagaId") String sagaId,
+              @Param("now") LocalDateTime now,
+              @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Releases a key claimed for a saga that was never started, so the client can retry with it.
+     *
+     * @param customerId the customer the key belongs to
+     * @param idempotencyKey the client's idempotency key
+     * @param sagaId the saga the key was claimed for
+     * @return number of deleted mappings
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SaleIdempotencyKey k WHERE k.customerId = :customerId " +
+           "AND k.idempotencyKey = :idempotencyKey AND k.sagaId = :sagaId")
+    int release(@Param("customerId") String customerId,
+                @Param("idempotencyKey") String idempotencyKey,
+                @Param("sagaId") String sagaId);
+
+    /**
+     * Deletes expired mappings.
+     *
+     * @param now the purge timestamp
+     * @return number of deleted mappings
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SaleIdempotencyKey k WHERE k.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,68 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+/**
+ * Concurrency limit of one downstream service, learned from its latency in the style of TCP Vegas.
+ * The lowest latency seen is taken as the no-load latency; the share of each sample above it estimates
+ * how many calls are queueing in the service. Few queued calls grow the limit, many shrink it, and a failed
+ * or timed-out call cuts it by {@link #BACKOFF_RATIO}. The no-load latency is re-probed periodically
+ * so the limit follows a service that became permanently slower or faster.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int PROBE_MULTIPLIER = 30;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private long noLoadRttNanos;
+    private long samplesSinceProbe;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Updates the limit with the outcome of one call.
+     *
+     * @param rttNanos Duration of the call
+     * @param inFlight Calls in progress to the service when this one completed
+     * @param dropped  Whether the call failed or timed out
+     */
+    public synchronized void onSample(long rttNanos, int inFlight, boolean dropped) {
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+        if (++samplesSinceProbe >= PROBE_MULTIPLIER * (long) limit) {
+            samplesSinceProbe = 0;
+            noLoadRttNanos = rttNanos;
+            return;
+        }
+        if (noLoadRttNanos == 0 || rttNanos < noLoadRttNanos) {
+            noLoadRttNanos = rttNanos;
+        }
+        // Far below the limit the latency says nothing about the limit
+        if (inFlight * 2 < limit) {
+            return;
+        }
+
+        int current = (int) limit;
+        double step = Math.max(1, Math.log10(current));
+        double queued = current * (1 - (double) noLoadRttNanos / rttNanos);
+        if (queued <= 3 * step) {
+            limit = Math.min(maxLimit, limit + step);
+        } else if (queued > 6 * step) {
+            limit = Math.max(minLimit, limit - step);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+}
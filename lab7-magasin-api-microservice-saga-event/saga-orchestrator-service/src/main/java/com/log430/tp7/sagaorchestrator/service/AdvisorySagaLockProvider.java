@@ -0,0 +1,89 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Postgres transaction-level advisory locks, shared by every orchestrator instance on the same database.
+ * Keys are hashed to the 64-bit lock space; the lock is taken with {@code pg_try_advisory_xact_lock}
+ * in the caller's transaction and released by Postgres when that transaction commits or rolls back,
+ * so {@link #unlock} only checks that a lock was taken.
+ */
+@Component
+@ConditionalOnProperty(name = "saga.lock.provider", havingValue = "advisory")
+public class AdvisorySagaLockProvider implements SagaLockProvider {
+
+    private static final long MIN_BACKOFF_MS = 5;
+    private static final long MAX_BACKOFF_MS = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicInteger heldLocks = new AtomicInteger();
+
+    public AdvisorySagaLockProvider(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public boolean tryLock(String key, long timeoutMillis) throws InterruptedException {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Advisory saga locks require an active transaction");
+        }
+
+        long lockId = hash(key);
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        long backoff = MIN_BACKOFF_MS;
+        while (!Boolean.TRUE.equals(
+                jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?)", Boolean.class, lockId))) {
+            long remainingMs = (deadline - System.nanoTime()) / 1_000_000;
+            if (remainingMs <= 0) {
+                return false;
+            }
+            Thread.sleep(Math.min(backoff, remainingMs));
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+
+        heldLocks.incrementAndGet();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                heldLocks.decrementAndGet();
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean unlock(String key) {
+        // Released with the transaction
+        return TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    @Override
+    public int getHeldLockCount() {
+        return heldLocks.get();
+    }
+
+    @Override
+    public String getName() {
+        return "advisory";
+    }
+
+    /**
+     * 64-bit FNV-1a of the key: stable across JVMs and using the whole advisory lock space,
+     * where {@link String#hashCode} would only fill 32 bits.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -3,6 +3,7 @@ package com.log430.tp7.sagaorchestrator.service;
 import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
 import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
 import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaLine;
 import com.log430.tp7.sagaorchestrator.model.SagaState;
 import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
 import jakarta.persistence.OptimisticLockException;
@@ -16,12 +17,11 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service responsible for managing concurrent saga operations and handling race conditions.
- * Implements database-level locking and optimistic locking for saga state updates.
+ * Implements database-level locking and optimistic locking for saga state updates;
+ * the saga steps themselves use the single round trip compare-and-set of {@link SagaStepStore}.
  */
 @Service
 public class ConcurrentSagaManager {
@@ -32,20 +32,25 @@ public class ConcurrentSagaManager {
     private final SagaMetrics sagaMetrics;
     private final SagaEventLogger sagaEventLogger;
     
-    // In-memory locks for customer-product combinations to prevent race conditions
-    private final ConcurrentHashMap<String, ReentrantLock> customerProductLocks = new ConcurrentHashMap<>();
+    // Locks for customer-product combinations to prevent race conditions
+    private final SagaLockProvider lockProvider;
     
     // Maximum retry attempts for optimistic locking conflicts
     private static final int MAX_RETRY_ATTEMPTS = 3;
     private static final long RETRY_DELAY_MS = 100;
     
+    // Maximum wait for a customer-product lock
+    private static final long LOCK_WAIT_TIMEOUT_MS = 5000;
+    
     public ConcurrentSagaManager(
             SagaExecutionRepository sagaExecutionRepository,
             SagaMetrics sagaMetrics,
-            SagaEventLogger sagaEventLogger) {
+            SagaEventLogger sagaEventLogger,
+            SagaLockProvider lockProvider) {
         this.sagaExecutionRepository = sagaExecutionRepository;
         this.sagaMetrics = sagaMetrics;
         this.sagaEventLogger = sagaEventLogger;
+        this.lockProvider = lockProvider;
     }
     
     /**
@@ -132,6 +137,7 @@ public class ConcurrentSagaManager {
     /**
      * Checks for concurrent sagas for the same customer and product combination.
      * Prevents race conditions in inventory management.
+     * Runs as a single existence query on the active customer-product index.
      * 
      * @param customerId the customer identifier
      * @param productId the product identifier
@@ -140,27 +146,22 @@ public class ConcurrentSagaManager {
      */
     @Transactional(readOnly = true)
     public boolean hasConcurrentSagas(String customerId, String productId, String excludeSagaId) {
-        List<SagaExecution> activeSagas = sagaExecutionRepository.findActiveSagas();
-        
-        long concurrentCount = activeSagas.stream()
-            .filter(saga -> !saga.getSagaId().equals(excludeSagaId))
-            .filter(saga -> saga.getCustomerId().equals(customerId))
-            .filter(saga -> saga.getProductId().equals(productId))
-            .count();
+        boolean concurrent = sagaExecutionRepository.existsConcurrentActiveSaga(customerId, productId, excludeSagaId);
         
-        if (concurrentCount > 0) {
-            logger.warn("Concurrent sagas detected: customerId={}, productId={}, count={}, excludeSagaId={}", 
-                       customerId, productId, concurrentCount, excludeSagaId);
+        if (concurrent) {
+            logger.warn("Concurrent sagas detected: customerId={}, productId={}, excludeSagaId={}", 
+                       customerId, productId, excludeSagaId);
             
             sagaMetrics.recordError("ConcurrentSagaDetected", "race_condition_check");
         }
         
-        return concurrentCount > 0;
+        return concurrent;
     }
     
     /**
      * Acquires a lock for customer-product combination to prevent race conditions.
-     * Uses in-memory locks to serialize access to the same customer-product combination.
+     * Uses the configured {@link SagaLockProvider} to serialize access to the same customer-product combination,
+     * waiting at most {@value #LOCK_WAIT_TIMEOUT_MS} ms.
      * 
      * @param customerId the customer identifier
      * @param productId the product identifier
@@ -170,30 +171,77 @@ public class ConcurrentSagaManager {
     public String acquireCustomerProductLock(String customerId, String productId, String sagaId) {
         String lockKey = customerId + ":" + productId;
         
-        ReentrantLock lock = customerProductLocks.computeIfAbsent(lockKey, k -> new ReentrantLock());
-        
         logger.debug("Acquiring customer-product lock: customerId={}, productId={}, sagaId={}", 
                     customerId, productId, sagaId);
         
+        long waitStart = System.nanoTime();
+        boolean acquired;
         try {
-            lock.lock();
-            
-            logger.debug("Customer-product lock acquired: customerId={}, productId={}, sagaId={}", 
-                        customerId, productId, sagaId);
-            
-            sagaEventLogger.logDebugInfo(sagaId, "lock_acquisition", 
-                                       "Customer-product lock acquired", 
-                                       java.util.Map.of("lockKey", lockKey));
-            
-            return lockKey;
-            
-        } catch (Exception e) {
+            acquired = lockProvider.tryLock(lockKey, LOCK_WAIT_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sagaMetrics.recordError("LockAcquisitionFailure", "race_condition_prevention");
+            throw new RuntimeException("Interrupted while acquiring customer-product lock", e);
+        } catch (RuntimeException e) {
             logger.error("Failed to acquire customer-product lock: customerId={}, productId={}, sagaId={}, error={}", 
                         customerId, productId, sagaId, e.getMessage());
             
             sagaMetrics.recordError("LockAcquisitionFailure", "race_condition_prevention");
             throw new RuntimeException("Failed to acquire customer-product lock", e);
         }
+        sagaMetrics.recordLockWait(lockProvider.getName(), System.nanoTime() - waitStart, acquired);
+        
+        if (!acquired) {
+            logger.warn("Timed out acquiring customer-product lock: customerId={}, productId={}, sagaId={}", 
+                       customerId, productId, sagaId);
+            
+            sagaMetrics.recordError("LockAcquisitionTimeout", "race_condition_prevention");
+            throw new RuntimeException("Timed out acquiring customer-product lock");
+        }
+        
+        logger.debug("Customer-product lock acquired: customerId={}, productId={}, sagaId={}", 
+                    customerId, productId, sagaId);
+        
+        sagaEventLogger.logDebugInfo(sagaId, "lock_acquisition", 
+                                   "Customer-product lock acquired", 
+                                   java.util.Map.of("lockKey", lockKey));
+        
+        return lockKey;
+    }
+    
+    /**
+     * Acquires the customer-product locks of several products, in product order so that two carts
+     * sharing products cannot each hold a lock the other waits for.
+     * On failure the locks already taken are released before the exception is rethrown.
+     * 
+     * @param customerId the customer identifier
+     * @param productIds the product identifiers
+     * @param sagaId the saga identifier for logging
+     * @return lock keys for later release, in acquisition order
+     */
+    public List<String> acquireCustomerProductLocks(String customerId, List<String> productIds, String sagaId) {
+        List<String> lockKeys = new java.util.ArrayList<>();
+        try {
+            for (String productId : productIds.stream().distinct().sorted().toList()) {
+                lockKeys.add(acquireCustomerProductLock(customerId, productId, sagaId));
+            }
+        } catch (RuntimeException e) {
+            releaseCustomerProductLocks(lockKeys, sagaId);
+            throw e;
+        }
+        return lockKeys;
+    }
+    
+    /**
+     * Releases the customer-product locks taken by acquireCustomerProductLocks, in reverse order.
+     * 
+     * @param lockKeys the lock keys returned by acquireCustomerProductLocks
+     * @param sagaId the saga identifier for logging
+     */
+    public void releaseCustomerProductLocks(List<String> lockKeys, String sagaId) {
+        for (int i = lockKeys.size() - 1; i >= 0; i--) {
+            releaseCustomerProductLock(lockKeys.get(i), sagaId);
+        }
     }
     
     /**
@@ -203,32 +251,22 @@ public class ConcurrentSagaManager {
      * @param sagaId the saga identifier for logging
      */
     public void releaseCustomerProductLock(String lockKey, String sagaId) {
-        ReentrantLock lock = customerProductLocks.get(lockKey);
-        
-        if (lock != null && lock.isHeldByCurrentThread()) {
-            try {
-                lock.unlock();
-                
+        try {
+            if (lockProvider.unlock(lockKey)) {
                 logger.debug("Customer-product lock released: lockKey={}, sagaId={}", lockKey, sagaId);
                 
                 sagaEventLogger.logDebugInfo(sagaId, "lock_release", 
                                            "Customer-product lock released", 
                                            java.util.Map.of("lockKey", lockKey));
-                
-                // Clean up unused locks to prevent memory leaks
-                if (!lock.hasQueuedThreads()) {
-                    customerProductLocks.remove(lockKey);
-                }
-                
-            } catch (Exception e) {
-                logger.error("Error releasing customer-product lock: lockKey={}, sagaId={}, error={}", 
-                           lockKey, sagaId, e.getMessage());
-                
-                sagaMetrics.recordError("LockReleaseFailure", "race_condition_prevention");
+            } else {
+                logger.warn("Attempted to release lock not held by current thread: lockKey={}, sagaId={}", 
+                           lockKey, sagaId);
             }
-        } else {
-            logger.warn("Attempted to release lock not held by current thread: lockKey={}, sagaId={}", 
-                       lockKey, sagaId);
+        } catch (Exception e) {
+            logger.error("Error releasing customer-product lock: lockKey={}, sagaId={}, error={}", 
+                       lockKey, sagaId, e.getMessage());
+            
+            sagaMetrics.recordError("LockReleaseFailure", "race_condition_prevention");
         }
     }
     
@@ -272,11 +310,13 @@ public class ConcurrentSagaManager {
             return false;
         }
         
-        // Check for concurrent sagas
-        if (hasConcurrentSagas(saga.getCustomerId(), saga.getProductId(), saga.getSagaId())) {
-            logger.warn("Concurrent sagas detected, saga cannot proceed safely: sagaId={}, customerId={}, productId={}", 
-                       saga.getSagaId(), saga.getCustomerId(), saga.getProductId());
-            return false;
+        // Check for concurrent sagas on every product of the saga
+        for (String productId : productIds(saga)) {
+            if (hasConcurrentSagas(saga.getCustomerId(), productId, saga.getSagaId())) {
+                logger.warn("Concurrent sagas detected, saga cannot proceed safely: sagaId={}, customerId={}, productId={}", 
+                           saga.getSagaId(), saga.getCustomerId(), productId);
+                return false;
+            }
         }
         
         return true;
@@ -343,47 +383,28 @@ public class ConcurrentSagaManager {
      */
     @Transactional(isolation = Isolation.SERIALIZABLE)
     public boolean handleStockReservationRaceCondition(String customerId, String productId, String sagaId) {
-        // Get lock for customer-product combination
-        String lockKey = acquireCustomerProductLock(customerId, productId, sagaId);
+        return handleStockReservationRaceCondition(customerId, List.of(productId), sagaId);
+    }
+    
+    /**
+     * Handles race conditions during stock reservation of several products, such as the lines of a cart.
+     * Locks every customer-product combination, in product order, then applies first-come-first-served
+     * to each product; the saga proceeds only if it comes first on all of them.
+     * 
+     * @param customerId the customer identifier
+     * @param productIds the product identifiers
+     * @param sagaId the current saga identifier
+     * @return true if saga can proceed with stock reservation
+     */
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public boolean handleStockReservationRaceCondition(String customerId, List<String> productIds, String sagaId) {
+        // Get locks for every customer-product combination
+        List<String> lockKeys = acquireCustomerProductLocks(customerId, productIds, sagaId);
         
         try {
-            // Find concurrent active sagas with pessimistic lock
-            List<SagaExecution> concurrentSagas = sagaExecutionRepository
-                .findActiveByCustomerAndProductWithLock(customerId, productId);
-            
-            // Filter out current saga and check for conflicts
-            List<SagaExecution> conflictingSagas = concurrentSagas.stream()
-                .filter(saga -> !saga.getSagaId().equals(sagaId))
-                .filter(saga -> saga.getCurrentState() == SagaState.STOCK_VERIFYING || 
-                               saga.getCurrentState() == SagaState.STOCK_RESERVING)
-                .toList();
-            
-            if (!conflictingSagas.isEmpty()) {
-                // Find the earliest saga (first-come-first-served)
-                SagaExecution earliestSaga = conflictingSagas.stream()
-                    .min((s1, s2) -> s1.getCreatedAt().compareTo(s2.getCreatedAt()))
-                    .orElse(null);
-                
-                // Current saga can proceed only if it's the earliest
-                Optional<SagaExecution> currentSaga = concurrentSagas.stream()
-                    .filter(saga -> saga.getSagaId().equals(sagaId))
-                    .findFirst();
-                
-                if (currentSaga.isPresent() && earliestSaga != null) {
-                    boolean canProceed = currentSaga.get().getCreatedAt().isBefore(earliestSaga.getCreatedAt()) ||
-                                        currentSaga.get().getCreatedAt().equals(earliestSaga.getCreatedAt());
-                    
-                    if (!canProceed) {
-                        logger.warn("Stock reservation race condition detected - saga must wait: sagaId={}, " +
-                                   "customerId={}, productId={}, conflictingSagas={}", 
-                                   sagaId, customerId, productId, conflictingSagas.size());
-                        
-                        sagaEventLogger.logSagaError(sagaId, "StockReservationRaceCondition", "race_condition_handling",
-                                                   "Saga blocked due to concurrent stock reservation conflict", null);
-                        sagaMetrics.recordError("StockReservationRaceCondition", "race_condition_handling");
-                    }
-                    
-                    return canProceed;
+            for (String productId : productIds.stream().distinct().sorted().toList()) {
+                if (!isFirstToReserve(customerId, productId, sagaId)) {
+                    return false;
                 }
             }
             
@@ -391,10 +412,74 @@ public class ConcurrentSagaManager {
             return true;
             
         } finally {
-            releaseCustomerProductLock(lockKey, sagaId);
+            releaseCustomerProductLocks(lockKeys, sagaId);
         }
     }
     
+    /**
+     * Checks whether the saga comes first among the sagas reserving the same customer-product combination.
+     */
+    private boolean isFirstToReserve(String customerId, String productId, String sagaId) {
+        // Find concurrent active sagas with pessimistic lock
+        List<SagaExecution> concurrentSagas = sagaExecutionRepository
+            .findActiveByCustomerAndProductWithLock(customerId, productId);
+        
+        // Filter out current saga and check for conflicts
+        List<SagaExecution> conflictingSagas = concurrentSagas.stream()
+            .filter(saga -> !saga.getSagaId().equals(sagaId))
+            .filter(saga -> saga.getCurrentState() == SagaState.STOCK_VERIFYING || 
+                           saga.getCurrentState() == SagaState.STOCK_RESERVING)
+            .toList();
+        
+        if (!conflictingSagas.isEmpty()) {
+            // Find the earliest saga (first-come-first-served)
+            SagaExecution earliestSaga = conflictingSagas.stream()
+                .min((s1, s2) -> s1.getCreatedAt().compareTo(s2.getCreatedAt()))
+                .orElse(null);
+            
+            // Current saga can proceed only if it's the earliest
+            Optional<SagaExecution> currentSaga = concurrentSagas.stream()
+                .filter(saga -> saga.getSagaId().equals(sagaId))
+                .findFirst();
+            
+            if (currentSaga.isPresent() && earliestSaga != null) {
+                boolean canProceed = currentSaga.get().getCreatedAt().isBefore(earliestSaga.getCreatedAt()) ||
+                                    currentSaga.get().getCreatedAt().equals(earliestSaga.getCreatedAt());
+                
+                if (!canProceed) {
+                    logger.warn("Stock reservation race condition detected - saga must wait: sagaId={}, " +
+                               "customerId={}, productId={}, conflictingSagas={}", 
+                               sagaId, customerId, productId, conflictingSagas.size());
+                    
+                    sagaEventLogger.logSagaError(sagaId, "StockReservationRaceCondition", "race_condition_handling",
+                                               "Saga blocked due to concurrent stock reservation conflict", null);
+                    sagaMetrics.recordError("StockReservationRaceCondition", "race_condition_handling");
+                }
+                
+                return canProceed;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * The products of a saga: every cart line, or the single product of a sale.
+     * 
+     * @param saga the saga
+     * @return distinct product identifiers in product order
+     */
+    public static List<String> productIds(SagaExecution saga) {
+        if (!saga.isCart()) {
+            return List.of(saga.getProductId());
+        }
+        return saga.getLines().stream()
+            .map(SagaLine::getProductId)
+            .distinct()
+            .sorted()
+            .toList();
+    }
+    
     /**
      * Validates and handles concurrent saga execution for inventory management.
      * Implements business rules for handling multiple sagas accessing the same inventory.
@@ -522,7 +607,7 @@ public class ConcurrentSagaManager {
         // Calculate statistics
         int totalActiveSagas = activeSagas.size();
         int concurrentCombinations = highConcurrencyCombinations.size();
-        int activeLocks = customerProductLocks.size();
+        int activeLocks = lockProvider.getHeldLockCount();
         
         return new ConcurrencyMonitoringReport(
             totalActiveSagas,
@@ -539,7 +624,7 @@ public class ConcurrentSagaManager {
      * @return statistics map
      */
     public java.util.Map<String, Object> getConcurrencyStatistics() {
-        int activeLocks = customerProductLocks.size();
+        int activeLocks = lockProvider.getHeldLockCount();
         int potentialConflicts = detectAndLogRaceConditions();
         ConcurrencyMonitoringReport report = generateConcurrencyReport();
         
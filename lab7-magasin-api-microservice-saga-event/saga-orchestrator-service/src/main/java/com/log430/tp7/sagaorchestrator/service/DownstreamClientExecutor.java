@@ -0,0 +1,184 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking REST clients of {@link ServiceClientWrapper} on virtual threads, behind one bulkhead
+ * per downstream service.
+ * A bulkhead lets at most {@code max-concurrent} calls run at once; up to {@code max-queue} more wait
+ * {@code max-wait-ms} for a permit, and anything beyond is rejected immediately with a
+ * {@link RejectedExecutionException}. A slow service therefore fills its own bulkhead only,
+ * and never the common pool the other services and the rest of the application share.
+ * The latency of every call is also fed to the {@link SagaAdmissionController}.
+ */
+@Component
+public class DownstreamClientExecutor {
+
+    public static final String INVENTORY_SERVICE = "inventory-service";
+    public static final String TRANSACTION_SERVICE = "transaction-service";
+    public static final String STORE_SERVICE = "store-service";
+
+    private final SagaMetrics sagaMetrics;
+    private final SagaAdmissionController admissionController;
+    private final SagaConfiguration.SagaClientProperties properties;
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public DownstreamClientExecutor(SagaMetrics sagaMetrics, SagaAdmissionController admissionController,
+                                    SagaConfiguration.SagaClientProperties properties) {
+        this.sagaMetrics = sagaMetrics;
+        this.admissionController = admissionController;
+        this.properties = properties;
+    }
+
+    /**
+     * Calls a downstream service on a virtual thread once its bulkhead grants a permit.
+     *
+     * @param service The downstream service name, as used for the Resilience4j instances
+     * @param call    The blocking client call
+     * @return the result of the call, or a RejectedExecutionException if the bulkhead is full;
+     *         cancelling it interrupts the call
+     */
+    public <T> CompletableFuture<T> supply(String service, Supplier<T> call) {
+        return bulkheads.computeIfAbsent(service, this::createBulkhead).submit(call);
+    }
+
+    /**
+     * Runs a downstream call without result, see {@link #supply}.
+     */
+    public CompletableFuture<Void> run(String service, Runnable call) {
+        return supply(service, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    public int getInFlight(String service) {
+        Bulkhead bulkhead = bulkheads.get(service);
+        return bulkhead == null ? 0 : bulkhead.inFlight.get();
+    }
+
+    public int getQueued(String service) {
+        Bulkhead bulkhead = bulkheads.get(service);
+        return bulkhead == null ? 0 : bulkhead.queued.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(bulkhead -> bulkhead.executor.shutdownNow());
+    }
+
+    private Bulkhead createBulkhead(String service) {
+        Bulkhead bulkhead = new Bulkhead(service, properties.forService(service));
+        sagaMetrics.registerDownstreamGauges(service, bulkhead.inFlight, bulkhead.queued);
+        return bulkhead;
+    }
+
+    private final class Bulkhead {
+
+        private final String service;
+        private final Semaphore permits;
+        private final int maxQueue;
+        private final long maxWaitMs;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final ExecutorService executor;
+
+        private Bulkhead(String service, SagaConfiguration.Bulkhead config) {
+            this.service = service;
+            this.permits = new Semaphore(config.getMaxConcurrent());
+            this.maxQueue = config.getMaxQueue();
+            this.maxWaitMs = config.getMaxWaitMs();
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(service + "-client-", 0).factory());
+        }
+
+        private <T> CompletableFuture<T> submit(Supplier<T> call) {
+            boolean acquired = permits.tryAcquire();
+            if (!acquired && queued.incrementAndGet() > maxQueue) {
+                queued.decrementAndGet();
+                return rejected();
+            }
+
+            CompletableFuture<T> result = new CompletableFuture<>();
+            AtomicReference<Thread> runner = new AtomicReference<>();
+            executor.execute(() -> {
+                runner.set(Thread.currentThread());
+                if (result.isCancelled()) {
+                    if (acquired) {
+                        permits.release();
+                    } else {
+                        queued.decrementAndGet();
+                    }
+                    return;
+                }
+                try {
+                    result.complete(acquired ? call(call) : awaitPermitThenCall(call));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e instanceof CompletionException ? e : new CompletionException(e));
+                }
+            });
+            // Cancelling the future interrupts the virtual thread, which aborts its blocking socket I/O
+            result.whenComplete((value, error) -> {
+                Thread thread = runner.get();
+                if (result.isCancelled() && thread != null) {
+                    thread.interrupt();
+                }
+            });
+            return result;
+        }
+
+        private <T> T awaitPermitThenCall(Supplier<T> call) {
+            try {
+                if (!permits.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                    throw rejection();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw rejection();
+            } finally {
+                queued.decrementAndGet();
+            }
+            return call(call);
+        }
+
+        private <T> T call(Supplier<T> call) {
+            inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                T result = call.get();
+                success = true;
+                return result;
+            } finally {
+                long duration = System.nanoTime() - start;
+                sagaMetrics.recordDownstreamCall(service, duration, success);
+                admissionController.onDownstreamSample(service, duration, inFlight.getAndDecrement(), success);
+                permits.release();
+            }
+        }
+
+        private <T> CompletableFuture<T> rejected() {
+            return CompletableFuture.failedFuture(rejection());
+        }
+
+        private RejectedExecutionException rejection() {
+            sagaMetrics.recordError("BulkheadFull", service);
+            return new RejectedExecutionException("Bulkhead full for " + service);
+        }
+    }
+}
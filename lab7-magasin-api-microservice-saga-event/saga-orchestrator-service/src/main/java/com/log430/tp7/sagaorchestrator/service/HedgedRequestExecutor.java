@@ -0,0 +1,242 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Hedged requests for idempotent downstream reads.
+ * The call goes to one instance of the service found in discovery; if it has not answered after the configured
+ * latency percentile of recent calls, the same call is sent to another instance. The first successful response
+ * wins and the other call is cancelled, which interrupts its virtual thread.
+ * Hedges draw from a budget shared by all services that only refills as primary requests are sent,
+ * so a slow or failing service cannot receive more than {@code budget-ratio} extra requests.
+ * Only use this for calls without side effects.
+ */
+@Component
+public class HedgedRequestExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgedRequestExecutor.class);
+
+    private final DownstreamClientExecutor clientExecutor;
+    private final ObjectProvider<DiscoveryClient> discoveryClient;
+    private final SagaMetrics sagaMetrics;
+    private final SagaConfiguration.SagaHedgingProperties properties;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService hedgeTimer;
+    private double budgetTokens;
+
+    public HedgedRequestExecutor(DownstreamClientExecutor clientExecutor,
+                                 ObjectProvider<DiscoveryClient> discoveryClient,
+                                 SagaMetrics sagaMetrics,
+                                 SagaConfiguration.SagaHedgingProperties properties) {
+        this.clientExecutor = clientExecutor;
+        this.discoveryClient = discoveryClient;
+        this.sagaMetrics = sagaMetrics;
+        this.properties = properties;
+        this.budgetTokens = properties.getBudgetBurst();
+        this.hedgeTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "saga-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs an idempotent call, hedged on a second instance of the service when it is slow.
+     *
+     * @param service    The downstream service name, as registered in discovery
+     * @param defaultUrl Base URL used when discovery knows fewer than two instances
+     * @param call       The blocking client call, given the base URL of the instance to call
+     * @return the first successful response, or the failure of the last call to complete
+     */
+    public <T> CompletableFuture<T> supply(String service, String defaultUrl, Function<String, T> call) {
+        List<String> instances = properties.isEnabled() ? instanceUrls(service) : List.of();
+        if (instances.size() < 2) {
+            return clientExecutor.supply(service, () -> call.apply(defaultUrl));
+        }
+
+        depositBudget();
+        int primaryIndex = ThreadLocalRandom.current().nextInt(instances.size());
+        String primaryUrl = instances.get(primaryIndex);
+        String hedgeUrl = instances.get((primaryIndex + 1 + ThreadLocalRandom.current().nextInt(instances.size() - 1))
+            % instances.size());
+
+        LatencyWindow window = latencies.computeIfAbsent(service, ignored -> new LatencyWindow());
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<T> primary = clientExecutor.supply(service, () -> call.apply(primaryUrl));
+        HedgeRace<T> race = new HedgeRace<>(result, primary);
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                window.record(System.nanoTime() - start);
+            }
+            race.complete(value, error, false);
+        });
+        // The time limiter cancels the caller's future on timeout: stop both calls
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                race.cancelAll();
+            }
+        });
+
+        hedgeTimer.schedule(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (!withdrawBudget()) {
+                sagaMetrics.incrementHedgedRequest(service, "budget_exhausted");
+                return;
+            }
+            logger.debug("Hedging slow call: service={}, primary={}, hedge={}", service, primaryUrl, hedgeUrl);
+            sagaMetrics.incrementHedgedRequest(service, "sent");
+            CompletableFuture<T> hedge = clientExecutor.supply(service, () -> call.apply(hedgeUrl));
+            race.hedge(hedge);
+            hedge.whenComplete((value, error) -> {
+                if (race.complete(value, error, true)) {
+                    sagaMetrics.incrementHedgedRequest(service, "won");
+                }
+            });
+        }, window.hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeTimer.shutdownNow();
+    }
+
+    private List<String> instanceUrls(String service) {
+        DiscoveryClient client = discoveryClient.getIfAvailable();
+        if (client == null) {
+            return List.of();
+        }
+        try {
+            List<String> urls = new ArrayList<>();
+            for (ServiceInstance instance : client.getInstances(service)) {
+                urls.add(instance.getUri().toString());
+            }
+            return urls;
+        } catch (Exception e) {
+            logger.warn("Discovery lookup failed, calling without hedging: service={}, error={}",
+                service, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private synchronized void depositBudget() {
+        budgetTokens = Math.min(properties.getBudgetBurst(), budgetTokens + properties.getBudgetRatio());
+    }
+
+    private synchronized boolean withdrawBudget() {
+        if (budgetTokens < 1) {
+            return false;
+        }
+        budgetTokens -= 1;
+        return true;
+    }
+
+    /**
+     * Completes the caller's future with the first success, or with the last failure, and cancels the loser.
+     */
+    private static final class HedgeRace<T> {
+
+        private final CompletableFuture<T> result;
+        private final CompletableFuture<T> primary;
+        private CompletableFuture<T> hedge;
+        private int pending = 1;
+
+        private HedgeRace(CompletableFuture<T> result, CompletableFuture<T> primary) {
+            this.result = result;
+            this.primary = primary;
+        }
+
+        private synchronized void hedge(CompletableFuture<T> hedge) {
+            this.hedge = hedge;
+            pending++;
+        }
+
+        private void cancelAll() {
+            CompletableFuture<T> started;
+            synchronized (this) {
+                started = hedge;
+            }
+            primary.cancel(true);
+            if (started != null) {
+                started.cancel(true);
+            }
+        }
+
+        /**
+         * @return true if this call's response won the race
+         */
+        private boolean complete(T value, Throwable error, boolean fromHedge) {
+            CompletableFuture<T> loser;
+            synchronized (this) {
+                pending--;
+                if (error != null && pending > 0) {
+                    // The other call may still succeed
+                    return false;
+                }
+                loser = fromHedge ? primary : hedge;
+            }
+            boolean won = error == null ? result.complete(value) : result.completeExceptionally(error);
+            if (won && loser != null) {
+                loser.cancel(true);
+            }
+            return won;
+        }
+    }
+
+    /**
+     * Recent successful call durations of one service, and the hedge delay derived from them.
+     */
+    private final class LatencyWindow {
+
+        private static final int SIZE = 256;
+        private static final int RECOMPUTE_EVERY = 32;
+
+        private final long[] samples = new long[SIZE];
+        private long count;
+        private volatile long delayNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMinDelayMs());
+
+        private void record(long durationNanos) {
+            long[] snapshot = null;
+            synchronized (this) {
+                samples[(int) (count++ % SIZE)] = durationNanos;
+                if (count >= properties.getMinSamples() && count % RECOMPUTE_EVERY == 0) {
+                    snapshot = Arrays.copyOf(samples, (int) Math.min(count, SIZE));
+                }
+            }
+            if (snapshot != null) {
+                Arrays.sort(snapshot);
+                int index = (int) Math.min(snapshot.length - 1, Math.ceil(properties.getPercentile() * snapshot.length) - 1);
+                delayNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(properties.getMinDelayMs()),
+                    snapshot[Math.max(0, index)]);
+            }
+        }
+
+        private long hedgeDelayNanos() {
+            return delayNanos;
+        }
+    }
+}
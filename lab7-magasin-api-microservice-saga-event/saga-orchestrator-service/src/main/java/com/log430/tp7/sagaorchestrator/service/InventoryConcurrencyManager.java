@@ -1,7 +1,6 @@
 package com.log430.tp7.sagaorchestrator.service;
 
 import com.log430.tp7.sagaorchestrator.dto.StockReservationResponse;
-import com.log430.tp7.sagaorchestrator.dto.StockVerificationRequest;
 import com.log430.tp7.sagaorchestrator.dto.StockVerificationResponse;
 import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
 import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
@@ -15,12 +14,19 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Service responsible for managing concurrent inventory operations and preventing race conditions
  * during stock verification and reservation processes.
+ *
+ * Stock verification, used by the stock preview endpoint, takes no lock: callers verifying the same product at about
+ * the same time share a single inventory call and each compares its own quantity with the available quantity it
+ * returned. Only reservations are serialized per product.
  */
 @Service
 public class InventoryConcurrencyManager {
@@ -35,10 +41,18 @@ public class InventoryConcurrencyManager {
     // Product-level locks for inventory operations
     private final ConcurrentHashMap<String, ReentrantReadWriteLock> productLocks = new ConcurrentHashMap<>();
     
+    // Stock verification in flight or answered recently, per product
+    private final ConcurrentHashMap<String, SharedVerification> sharedVerifications = new ConcurrentHashMap<>();
+    
     // Maximum retry attempts for inventory operations
     private static final int MAX_INVENTORY_RETRY_ATTEMPTS = 5;
     private static final long INVENTORY_RETRY_DELAY_MS = 200;
     
+    // A verification answered less than this long after it was sent is reused by the next sagas
+    private static final long VERIFICATION_COALESCING_WINDOW_MS = 100;
+    // The shared call asks for one unit so the inventory answers with the available quantity whenever there is stock
+    private static final int SHARED_VERIFICATION_QUANTITY = 1;
+    
     public InventoryConcurrencyManager(
             SagaExecutionRepository sagaExecutionRepository,
             ServiceClientWrapper serviceClientWrapper,
@@ -51,49 +65,70 @@ public class InventoryConcurrencyManager {
     }
     
     /**
-     * Safely verifies stock availability with concurrent access protection.
-     * Uses read locks to allow multiple concurrent verifications while preventing
-     * conflicts with reservation operations.
+     * Verifies stock availability, sharing the inventory call with concurrent verifications of the same product.
+     * The first saga sends the call; sagas arriving while it is in flight, or within the coalescing window after it
+     * was sent, wait for the same answer. Each saga then checks its own quantity against the available quantity.
+     * Transient failures are retried by the inventory client's resilience policy, not here.
      * 
      * @param productId the product identifier
      * @param quantity the requested quantity
      * @param sagaId the saga identifier
      * @return stock verification response
-     * @throws RuntimeException if verification fails after retries
+     * @throws RuntimeException if the shared verification fails
      */
-    @Transactional(isolation = Isolation.READ_COMMITTED)
     public StockVerificationResponse verifyStockWithConcurrencyProtection(String productId, Integer quantity, String sagaId) {
-        ReentrantReadWriteLock productLock = getProductLock(productId);
+        CompletableFuture<StockVerificationResponse> sent = new CompletableFuture<>();
+        SharedVerification shared = sharedVerifications.compute(productId, (id, current) ->
+            current != null && current.canBeJoined(System.nanoTime())
+                ? current
+                : new SharedVerification(sent, System.nanoTime()));
         
-        logger.debug("Acquiring read lock for stock verification: productId={}, sagaId={}", productId, sagaId);
+        if (shared.response() == sent) {
+            logger.debug("Sending shared stock verification: productId={}, sagaId={}", productId, sagaId);
+            try {
+                serviceClientWrapper.verifyStock(productId, SHARED_VERIFICATION_QUANTITY, sagaId)
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            sent.completeExceptionally(error);
+                        } else {
+                            sent.complete(response);
+                        }
+                    });
+            } catch (RuntimeException e) {
+                sent.completeExceptionally(e);
+            }
+        } else {
+            sagaMetrics.incrementCoalescedStockVerification();
+            logger.debug("Stock verification coalesced: productId={}, sagaId={}", productId, sagaId);
+        }
         
-        productLock.readLock().lock();
+        StockVerificationResponse response;
         try {
-            sagaEventLogger.logDebugInfo(sagaId, "inventory_lock_acquisition", 
-                                       "Read lock acquired for stock verification", 
-                                       java.util.Map.of("productId", productId, "lockType", "READ"));
-            
-            // Check for concurrent reserving sagas that might affect availability
-            List<SagaExecution> reservingSagas = sagaExecutionRepository.findStockReservingSagasWithLock(productId);
-            
-            if (!reservingSagas.isEmpty()) {
-                logger.warn("Concurrent stock reserving sagas detected during verification: productId={}, " +
-                           "sagaId={}, concurrentSagas={}", productId, sagaId, reservingSagas.size());
-                
-                sagaMetrics.recordError("ConcurrentReservingDetected", "stock_verification");
-            }
-            
-            // Perform stock verification with retry logic
-            return performStockVerificationWithRetry(productId, quantity, sagaId);
-            
-        } finally {
-            productLock.readLock().unlock();
-            sagaEventLogger.logDebugInfo(sagaId, "inventory_lock_release", 
-                                       "Read lock released for stock verification", 
-                                       java.util.Map.of("productId", productId, "lockType", "READ"));
-            
-            logger.debug("Released read lock for stock verification: productId={}, sagaId={}", productId, sagaId);
+            response = shared.response().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            sagaMetrics.recordError("StockVerificationFailed", "stock_verification");
+            throw new RuntimeException("Stock verification failed: " + cause.getMessage(), cause);
+        }
+        return answerFor(productId, quantity, sagaId, response);
+    }
+    
+    /**
+     * Compares a saga's quantity with the shared verification's available quantity.
+     * A failed verification (unknown product, no stock, inventory unavailable) holds for every saga as is.
+     */
+    private StockVerificationResponse answerFor(String productId, Integer quantity, String sagaId,
+                                                StockVerificationResponse shared) {
+        if (shared == null || !shared.success()) {
+            return shared != null ? shared : StockVerificationResponse.failure(productId, "No stock verification response");
+        }
+        if (shared.availableQuantity() == null) {
+            // The answer cannot be compared against another quantity, ask for this one
+            logger.debug("Shared stock verification has no available quantity: productId={}, sagaId={}", productId, sagaId);
+            return serviceClientWrapper.verifyStockSync(productId, quantity, sagaId);
         }
+        return StockVerificationResponse.success(productId, quantity, shared.availableQuantity(),
+                                                 shared.availableQuantity() >= quantity);
     }
     
     /**
@@ -158,42 +193,6 @@ public class InventoryConcurrencyManager {
         return productLocks.computeIfAbsent(productId, k -> new ReentrantReadWriteLock(true)); // Fair lock
     }
     
-    /**
-     * Performs stock verification with retry logic for transient failures.
-     */
-    private StockVerificationResponse performStockVerificationWithRetry(String productId, Integer quantity, String sagaId) {
-        int attempts = 0;
-        
-        while (attempts < MAX_INVENTORY_RETRY_ATTEMPTS) {
-            try {
-                StockVerificationRequest request = new StockVerificationRequest(productId, quantity, sagaId);
-                return serviceClientWrapper.verifyStockSync(productId, quantity, sagaId);
-                
-            } catch (Exception e) {
-                attempts++;
-                
-                logger.warn("Stock verification attempt failed: productId={}, sagaId={}, attempt={}/{}, error={}", 
-                           productId, sagaId, attempts, MAX_INVENTORY_RETRY_ATTEMPTS, e.getMessage());
-                
-                if (attempts >= MAX_INVENTORY_RETRY_ATTEMPTS) {
-                    sagaMetrics.recordError("StockVerificationRetryExhausted", "stock_verification");
-                    throw new RuntimeException("Stock verification failed after " + MAX_INVENTORY_RETRY_ATTEMPTS + 
-                                             " attempts: " + e.getMessage(), e);
-                }
-                
-                // Wait before retrying with exponential backoff
-                try {
-                    Thread.sleep(INVENTORY_RETRY_DELAY_MS * attempts);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Interrupted while retrying stock verification", ie);
-                }
-            }
-        }
-        
-        throw new RuntimeException("Unexpected error in stock verification retry logic");
-    }
-    
     /**
      * Performs stock reservation with retry logic for transient failures.
      */
@@ -320,18 +319,26 @@ public class InventoryConcurrencyManager {
             }
         }
         
+        long inFlightVerifications = sharedVerifications.values().stream()
+            .filter(verification -> !verification.response().isDone())
+            .count();
+        
         return java.util.Map.of(
             "activeProductLocks", activeProductLocks,
             "activeReadLocks", activeReadLocks,
             "activeWriteLocks", activeWriteLocks,
+            "inFlightVerifications", inFlightVerifications,
             "timestamp", LocalDateTime.now()
         );
     }
     
     /**
-     * Cleans up unused product locks to prevent memory leaks.
+     * Cleans up unused product locks and expired shared verifications to prevent memory leaks.
      */
     public void cleanupUnusedLocks() {
+        long now = System.nanoTime();
+        sharedVerifications.values().removeIf(verification -> !verification.canBeJoined(now));
+        
         productLocks.entrySet().removeIf(entry -> {
             ReentrantReadWriteLock lock = entry.getValue();
             boolean isUnused = !lock.isWriteLocked() && lock.getReadLockCount() == 0 && !lock.hasQueuedThreads();
@@ -343,4 +350,18 @@ public class InventoryConcurrencyManager {
             return isUnused;
         });
     }
-}
\ No newline at end of file
+    
+    /**
+     * An inventory call shared by the verifications of one product.
+     */
+    private record SharedVerification(CompletableFuture<StockVerificationResponse> response, long sentAtNanos) {
+        
+        boolean canBeJoined(long nowNanos) {
+            if (!response.isDone()) {
+                return true;
+            }
+            return !response.isCompletedExceptionally()
+                && nowNanos - sentAtNanos <= TimeUnit.MILLISECONDS.toNanos(VERIFICATION_COALESCING_WINDOW_MS);
+        }
+    }
+}
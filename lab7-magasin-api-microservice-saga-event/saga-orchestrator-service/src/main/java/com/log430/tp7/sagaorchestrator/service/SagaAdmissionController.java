@@ -0,0 +1,176 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive admission of new sagas.
+ * Every downstream call reports its latency to the {@link AdaptiveConcurrencyLimit} of its service; since a saga
+ * calls each service at most once at a time, the number of sagas in flight is capped by the lowest of those limits.
+ * When the cap is reached a new sale waits up to {@code saga.admission.max-wait-ms} behind at most
+ * {@code saga.admission.max-queue} others, then is shed, so a slowing inventory service sees fewer new sagas
+ * instead of retries piling up until its circuit breaker opens.
+ */
+@Component
+public class SagaAdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(SagaAdmissionController.class);
+
+    private final SagaConfiguration.SagaAdmissionProperties properties;
+    private final SagaMetrics sagaMetrics;
+    private final Map<String, AdaptiveConcurrencyLimit> limits = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private int inFlight;
+    private int waiting;
+
+    public SagaAdmissionController(SagaConfiguration.SagaAdmissionProperties properties, SagaMetrics sagaMetrics) {
+        this.properties = properties;
+        this.sagaMetrics = sagaMetrics;
+        if (properties.isEnabled()) {
+            sagaMetrics.registerAdmissionGauges(this::getLimit, this::getInFlight);
+        }
+    }
+
+    /**
+     * Admits a new saga, waiting briefly when the limit is reached.
+     * Every successful call must be paired with {@link #release()}.
+     *
+     * @return false if the sale should be rejected
+     */
+    public boolean tryAcquire() {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+
+        lock.lock();
+        try {
+            if (inFlight < getLimit()) {
+                inFlight++;
+                return true;
+            }
+            if (waiting >= properties.getMaxQueue()) {
+                return reject("queue_full");
+            }
+
+            waiting++;
+            try {
+                long remainingNanos = TimeUnit.MILLISECONDS.toNanos(properties.getMaxWaitMs());
+                while (inFlight >= getLimit()) {
+                    if (remainingNanos <= 0) {
+                        return reject("timeout");
+                    }
+                    remainingNanos = released.awaitNanos(remainingNanos);
+                }
+                inFlight++;
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return reject("interrupted");
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the slot of a saga that reached a final state.
+     */
+    public void release() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            inFlight--;
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Feeds the outcome of a downstream call to the limit of its service.
+     *
+     * @param service         The downstream service name
+     * @param durationNanos   Duration of the call
+     * @param serviceInFlight Calls in progress to the service when this one completed
+     * @param success         Whether the call succeeded
+     */
+    public void onDownstreamSample(String service, long durationNanos, int serviceInFlight, boolean success) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+
+        AdaptiveConcurrencyLimit limit = limits.computeIfAbsent(service, this::createLimit);
+        int before = limit.getLimit();
+        limit.onSample(durationNanos, serviceInFlight, !success);
+        int after = limit.getLimit();
+        if (after != before) {
+            logger.debug("Downstream concurrency limit changed: service={}, limit={} -> {}", service, before, after);
+            if (after > before) {
+                // A higher limit may admit waiting sales
+                lock.lock();
+                try {
+                    released.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of sagas that may run at once, the lowest limit across downstream services
+     */
+    public int getLimit() {
+        return limits.values().stream()
+            .mapToInt(AdaptiveConcurrencyLimit::getLimit)
+            .min()
+            .orElse(properties.getInitialLimit());
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private AdaptiveConcurrencyLimit createLimit(String service) {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(
+            properties.getInitialLimit(), properties.getMinLimit(), properties.getMaxLimit());
+        sagaMetrics.registerDownstreamLimitGauge(service, limit::getLimit);
+        return limit;
+    }
+
+    private boolean reject(String reason) {
+        sagaMetrics.incrementAdmissionRejected(reason);
+        logger.warn("Sale rejected by admission limiter: reason={}, limit={}, inFlight={}, waiting={}",
+            reason, getLimit(), inFlight, waiting);
+        return false;
+    }
+}
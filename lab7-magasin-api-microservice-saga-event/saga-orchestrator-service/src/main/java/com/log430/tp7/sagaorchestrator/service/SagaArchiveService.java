@@ -0,0 +1,109 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.model.ArchivedSagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.repository.ArchivedSagaExecutionRepository;
+import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps {@code saga_executions} about the size of in-flight work.
+ * Final sagas older than the retention window are moved to {@code saga_executions_archive} in batches, each batch
+ * locked with {@code FOR UPDATE SKIP LOCKED}, copied with INSERT ... SELECT and deleted in one transaction, so
+ * several instances can archive at once. Saga lookups fall back to the archive.
+ */
+@Service
+public class SagaArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SagaArchiveService.class);
+
+    private final SagaExecutionRepository sagaExecutionRepository;
+    private final ArchivedSagaExecutionRepository archivedSagaExecutionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final SagaConfiguration.SagaArchiveProperties properties;
+
+    public SagaArchiveService(SagaExecutionRepository sagaExecutionRepository,
+                              ArchivedSagaExecutionRepository archivedSagaExecutionRepository,
+                              PlatformTransactionManager transactionManager,
+                              SagaConfiguration.SagaArchiveProperties properties) {
+        this.sagaExecutionRepository = sagaExecutionRepository;
+        this.archivedSagaExecutionRepository = archivedSagaExecutionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+    }
+
+    /**
+     * Finds a saga in the hot table, then in the archive.
+     * An archived saga is returned detached, with its cart lines loaded; it is final and must not be saved.
+     *
+     * @param sagaId the saga identifier
+     * @return the saga, if it exists in either table
+     */
+    public Optional<SagaExecution> findById(String sagaId) {
+        Optional<SagaExecution> saga = sagaExecutionRepository.findById(sagaId);
+        if (saga.isPresent()) {
+            return saga;
+        }
+        // Copying the lines reads them while the session is open
+        return transactionTemplate.execute(status -> archivedSagaExecutionRepository.findById(sagaId)
+            .map(ArchivedSagaExecution::toSagaExecution));
+    }
+
+    /**
+     * Moves final sagas past the retention window to the archive, a batch per transaction.
+     * Stops after {@code max-batches-per-run} batches; the next run continues where this one stopped.
+     *
+     * @return number of archived sagas
+     */
+    @Scheduled(fixedDelayString = "${saga.archive.interval:300000}")
+    public int archiveFinalSagas() {
+        if (!properties.isEnabled()) {
+            return 0;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(properties.getRetentionHours());
+        int archived = 0;
+        try {
+            for (int batch = 0; batch < properties.getMaxBatchesPerRun(); batch++) {
+                Integer moved = transactionTemplate.execute(status -> archiveBatch(cutoff));
+                archived += moved;
+                if (moved < properties.getBatchSize()) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            // The failed batch was rolled back; it is retried on the next run
+            logger.error("Saga archival failed after {} sagas", archived, e);
+        }
+
+        if (archived > 0) {
+            logger.info("Archived {} final sagas updated before {}", archived, cutoff);
+        }
+        return archived;
+    }
+
+    private int archiveBatch(LocalDateTime cutoff) {
+        List<String> sagaIds = sagaExecutionRepository.lockArchivableSagaIds(cutoff, properties.getBatchSize());
+        if (sagaIds.isEmpty()) {
+            return 0;
+        }
+
+        archivedSagaExecutionRepository.copyFromSagaExecutions(sagaIds, LocalDateTime.now());
+        archivedSagaExecutionRepository.copyLinesFromSagaExecutions(sagaIds);
+        sagaExecutionRepository.deleteLinesBySagaIds(sagaIds);
+        int moved = sagaExecutionRepository.deleteBySagaIds(sagaIds);
+
+        logger.debug("Archived saga batch: sagas={}", moved);
+        return moved;
+    }
+}
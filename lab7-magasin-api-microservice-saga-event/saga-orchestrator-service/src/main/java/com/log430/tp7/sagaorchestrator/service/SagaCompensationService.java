@@ -1,15 +1,17 @@
 package com.log430.tp7.sagaorchestrator.service;
 
 
+import com.log430.tp7.sagaorchestrator.exception.SagaStateConflictException;
 import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
 import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaEventType;
 import com.log430.tp7.sagaorchestrator.model.SagaExecution;
 import com.log430.tp7.sagaorchestrator.model.SagaState;
 import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Service responsible for executing compensation actions when sagas fail or timeout.
@@ -24,98 +26,108 @@ public class SagaCompensationService {
     private final ServiceClientWrapper serviceClientWrapper;
     private final SagaMetrics sagaMetrics;
     private final SagaEventLogger sagaEventLogger;
+    // The step store depends on the timeout manager, which depends on this service
+    private final ObjectProvider<SagaStepStore> sagaStepStoreProvider;
     
     public SagaCompensationService(
             SagaExecutionRepository sagaExecutionRepository,
             ServiceClientWrapper serviceClientWrapper,
             SagaMetrics sagaMetrics,
-            SagaEventLogger sagaEventLogger) {
+            SagaEventLogger sagaEventLogger,
+            ObjectProvider<SagaStepStore> sagaStepStoreProvider) {
         this.sagaExecutionRepository = sagaExecutionRepository;
         this.serviceClientWrapper = serviceClientWrapper;
         this.sagaMetrics = sagaMetrics;
         this.sagaEventLogger = sagaEventLogger;
+        this.sagaStepStoreProvider = sagaStepStoreProvider;
     }
     
     /**
      * Executes compensation actions for a failed or timed-out saga.
      * Performs rollback operations in reverse order of saga execution.
+     *
+     * The saga is taken over with a compare-and-set against the state and version the caller observed,
+     * through {@link SagaStepStore}: if its step completed in the meantime, the take-over is lost and
+     * nothing is compensated. Sagas that may hold a payment move to STOCK_RELEASING before the release;
+     * earlier ones are failed first, so a reservation completing late is rejected and undone by its step.
      * 
-     * @param saga the saga requiring compensation
+     * @param saga the saga requiring compensation, as observed by the caller
      * @param reason the reason for compensation (e.g., "TIMEOUT", "PAYMENT_FAILED")
+     * @return true if the saga was compensated, false if it had moved on
      */
-    @Transactional
-    public void executeCompensation(SagaExecution saga, String reason) {
+    public boolean executeCompensation(SagaExecution saga, String reason) {
         String sagaId = saga.getSagaId();
         SagaState currentState = saga.getCurrentState();
+        SagaStepStore sagaStepStore = sagaStepStoreProvider.getObject();
+        String errorMessage = saga.getErrorMessage() != null && !saga.getErrorMessage().isEmpty()
+            ? saga.getErrorMessage()
+            : "Saga failed due to: " + reason;
         
         logger.info("Starting compensation for saga: sagaId={}, state={}, reason={}", 
                    sagaId, currentState, reason);
         
+        boolean releasing = currentState == SagaState.STOCK_RELEASING
+            || currentState.getCompensationState() == SagaState.STOCK_RELEASING;
         try {
-            // Transition to compensation state
-            saga.transitionTo(SagaState.STOCK_RELEASING);
-            sagaExecutionRepository.save(saga);
-            
-            // Log compensation start
-            sagaEventLogger.logCompensationStarted(sagaId, saga.getCustomerId(), 
-                                                 currentState.toString(), reason);
-            
-            // Execute compensation actions based on how far the saga progressed
-            boolean compensationSuccessful = true;
-            
-            // If we have a stock reservation, release it
-            if (saga.getStockReservationId() != null) {
-                compensationSuccessful &= releaseStockReservation(saga);
-            }
-            
-            // Note: Payment reversal would be handled here in a real system
-            // For this implementation, we assume payments are handled externally
-            if (saga.getPaymentTransactionId() != null) {
-                logger.info("Payment transaction {} exists for saga {} - " +
-                           "external payment reversal may be required", 
-                           saga.getPaymentTransactionId(), sagaId);
-                
-                // Log that payment reversal might be needed
-                sagaEventLogger.logCompensationAction(sagaId, "payment_reversal_noted", 
-                                                    "Payment transaction noted for potential reversal", true);
-            }
-            
-            // Mark saga as failed
-            saga.transitionTo(SagaState.SALE_FAILED);
-            if (saga.getErrorMessage() == null || saga.getErrorMessage().isEmpty()) {
-                saga.setErrorMessage("Saga failed due to: " + reason);
-            }
-            sagaExecutionRepository.save(saga);
-            
-            // Log compensation completion
-            if (compensationSuccessful) {
-                sagaEventLogger.logCompensationCompleted(sagaId, saga.getCustomerId(), reason, true);
-                sagaMetrics.incrementCompensationSuccess();
-                logger.info("Compensation completed successfully for saga: sagaId={}", sagaId);
+            if (releasing) {
+                sagaStepStore.beginCompensation(sagaId, saga.getVersion(), errorMessage);
             } else {
-                sagaEventLogger.logCompensationCompleted(sagaId, saga.getCustomerId(), reason, false);
-                sagaMetrics.incrementCompensationFailure();
-                logger.warn("Compensation completed with some failures for saga: sagaId={}", sagaId);
+                sagaStepStore.failSale(sagaId, saga.getVersion(), errorMessage,
+                    "Failed in " + currentState + " before payment", "successful");
             }
-            
-        } catch (Exception e) {
-            logger.error("Compensation failed for saga: sagaId={}, error={}", sagaId, e.getMessage(), e);
-            
-            // Record compensation failure
-            sagaMetrics.incrementCompensationFailure();
+        } catch (SagaStateConflictException e) {
+            logger.info("Saga moved on before its compensation: sagaId={}, observedState={}", sagaId, currentState);
+            return false;
+        }
+        
+        // Log compensation start
+        sagaEventLogger.logCompensationStarted(sagaId, saga.getCustomerId(), 
+                                             currentState.toString(), reason);
+        
+        // Execute compensation actions based on how far the saga progressed
+        boolean compensationSuccessful = true;
+        StringBuilder compensationLog = new StringBuilder("Compensation actions: ");
+        
+        // If we have a stock reservation, release it
+        if (saga.getStockReservationId() != null) {
+            compensationSuccessful &= releaseStockReservation(saga);
+            compensationLog.append(compensationSuccessful ? "Stock released" : "Stock release failed")
+                .append(" (reservationId: ").append(saga.getStockReservationId()).append("); ");
+        }
+        
+        // Note: Payment reversal would be handled here in a real system
+        // For this implementation, we assume payments are handled externally
+        if (saga.getPaymentTransactionId() != null) {
+            logger.info("Payment transaction {} exists for saga {} - " +
+                       "external payment reversal may be required", 
+                       saga.getPaymentTransactionId(), sagaId);
+            
+            // Log that payment reversal might be needed
+            sagaEventLogger.logCompensationAction(sagaId, "payment_reversal_noted", 
+                                                "Payment transaction noted for potential reversal", true);
+            compensationLog.append("Payment reversal may be required (transactionId: ")
+                .append(saga.getPaymentTransactionId()).append("); ");
+        }
+        
+        String compensationResult = compensationSuccessful ? "successful" : "partial";
+        if (releasing) {
+            // Mark saga as failed; a failure here leaves it in STOCK_RELEASING for the next timeout
+            sagaStepStore.failSale(sagaId, errorMessage, compensationLog.toString(), compensationResult);
+        } else {
+            sagaStepStore.logSagaEvent(sagaId, SagaEventType.CUSTOM, compensationLog.toString());
+        }
+        
+        // Log compensation completion
+        if (compensationSuccessful) {
+            sagaEventLogger.logCompensationCompleted(sagaId, saga.getCustomerId(), reason, true);
+            sagaMetrics.incrementCompensationSuccess();
+            logger.info("Compensation completed successfully for saga: sagaId={}", sagaId);
+        } else {
             sagaEventLogger.logCompensationCompleted(sagaId, saga.getCustomerId(), reason, false);
-            
-            // Ensure saga is marked as failed even if compensation fails
-            try {
-                saga.transitionTo(SagaState.SALE_FAILED);
-                saga.setErrorMessage("Compensation failed: " + e.getMessage());
-                sagaExecutionRepository.save(saga);
-            } catch (Exception saveError) {
-                logger.error("Failed to save saga after compensation failure: sagaId={}", sagaId, saveError);
-            }
-            
-            throw new RuntimeException("Compensation failed for saga: " + sagaId, e);
+            sagaMetrics.incrementCompensationFailure();
+            logger.warn("Compensation completed with some failures for saga: sagaId={}", sagaId);
         }
+        return true;
     }
     
     /**
@@ -131,8 +143,13 @@ public class SagaCompensationService {
         logger.info("Releasing stock reservation: sagaId={}, reservationId={}", sagaId, reservationId);
         
         try {
-            // Call inventory service to release the stock reservation with circuit breaker
-            serviceClientWrapper.releaseStockSync(reservationId);
+            // Call inventory service to release the stock reservation with circuit breaker;
+            // a cart holds one reservation per line, all released by saga
+            if (saga.isCart()) {
+                serviceClientWrapper.releaseCartStock(sagaId).get();
+            } else {
+                serviceClientWrapper.releaseStockSync(reservationId);
+            }
             
             // Log successful stock release
             sagaEventLogger.logCompensationAction(sagaId, "stock_release", 
@@ -164,14 +181,14 @@ public class SagaCompensationService {
      * 
      * @param sagaId the ID of the saga to compensate
      * @param reason the reason for compensation
-     * @throws RuntimeException if saga not found or compensation fails
+     * @return true if the saga was compensated, false if it had moved on
+     * @throws RuntimeException if saga not found
      */
-    @Transactional
-    public void executeCompensationById(String sagaId, String reason) {
+    public boolean executeCompensationById(String sagaId, String reason) {
         SagaExecution saga = sagaExecutionRepository.findById(sagaId)
             .orElseThrow(() -> new RuntimeException("Saga not found: " + sagaId));
         
-        executeCompensation(saga, reason);
+        return executeCompensation(saga, reason);
     }
     
     /**
@@ -0,0 +1,94 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.dto.SagaResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pushes saga state to clients subscribed through Server-Sent Events.
+ * Subscriptions are held in memory, so a client must reach the instance running its saga;
+ * on reconnect the controller replays the persisted state first.
+ */
+@Component
+public class SagaCompletionNotifier {
+
+    static final String STATE_EVENT = "saga-state";
+
+    private static final Logger logger = LoggerFactory.getLogger(SagaCompletionNotifier.class);
+
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Registers an emitter that receives the final state of the saga.
+     *
+     * @param sagaId    The saga identifier
+     * @param timeoutMs How long the connection stays open without a final state
+     * @return the emitter to return from the controller
+     */
+    public SseEmitter subscribe(String sagaId, long timeoutMs) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        subscribers.computeIfAbsent(sagaId, id -> new CopyOnWriteArrayList<>()).add(emitter);
+
+        emitter.onCompletion(() -> unsubscribe(sagaId, emitter));
+        emitter.onTimeout(() -> unsubscribe(sagaId, emitter));
+        emitter.onError(e -> unsubscribe(sagaId, emitter));
+        return emitter;
+    }
+
+    /**
+     * Sends an intermediate state to the subscribers of a saga and keeps the connections open.
+     */
+    public void sendState(SseEmitter emitter, SagaResponse response) {
+        try {
+            emitter.send(SseEmitter.event().name(STATE_EVENT).id(response.sagaId()).data(response));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Sends the final state of a saga to every subscriber and closes their connections.
+     *
+     * @param response The final saga response
+     */
+    public void publishFinalState(SagaResponse response) {
+        if (response == null || response.sagaId() == null) {
+            return;
+        }
+        List<SseEmitter> emitters = subscribers.remove(response.sagaId());
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            sendState(emitter, response);
+            emitter.complete();
+        }
+        logger.debug("Final saga state pushed: sagaId={}, state={}, subscribers={}",
+                response.sagaId(), response.state(), emitters.size());
+    }
+
+    /**
+     * Number of open subscriptions, for monitoring.
+     */
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Removes an emitter, e.g. when the saga it subscribed to does not exist.
+     */
+    public void unsubscribe(String sagaId, SseEmitter emitter) {
+        subscribers.computeIfPresent(sagaId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
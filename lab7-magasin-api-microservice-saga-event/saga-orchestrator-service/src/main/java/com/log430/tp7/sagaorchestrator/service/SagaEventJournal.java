@@ -0,0 +1,222 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind journal for saga events.
+ * Events are appended to a bounded in-memory buffer and a single writer thread inserts them in JDBC batches,
+ * every {@code saga.journal.flush-interval-ms} or {@code saga.journal.batch-size} events, whichever comes first,
+ * so a step no longer pays one insert per event.
+ *
+ * Durability is set with {@code saga.journal.durability}:
+ * {@code terminal} (default) waits for the flush of the event that ends a saga only, so a finished saga always
+ * has its final event on disk; {@code always} waits for every event, still sharing batches between callers.
+ * Events that do not wait are dropped when the buffer stays full past {@code saga.journal.block-timeout-ms}
+ * (counted by {@code saga_journal_dropped_total}), so under overload the history of a saga can have gaps
+ * unless durability is {@code always}.
+ * Events are written outside the caller's transaction.
+ */
+@Service
+public class SagaEventJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(SagaEventJournal.class);
+
+    private static final String INSERT_EVENT =
+        "INSERT INTO saga_events (event_id, saga_id, event_type, event_data, created_at) VALUES (?, ?, ?, ?, ?)";
+    private static final long DURABLE_WAIT_TIMEOUT_MS = 10000;
+
+    public enum Durability { TERMINAL, ALWAYS }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SagaMetrics sagaMetrics;
+    private final BlockingQueue<PendingEvent> buffer;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long blockTimeoutMs;
+    private final Durability durability;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public SagaEventJournal(JdbcTemplate jdbcTemplate,
+                            SagaMetrics sagaMetrics,
+                            @Value("${saga.journal.capacity:10000}") int capacity,
+                            @Value("${saga.journal.batch-size:256}") int batchSize,
+                            @Value("${saga.journal.flush-interval-ms:5}") long flushIntervalMs,
+                            @Value("${saga.journal.block-timeout-ms:10}") long blockTimeoutMs,
+                            @Value("${saga.journal.durability:terminal}") String durability) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sagaMetrics = sagaMetrics;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.blockTimeoutMs = blockTimeoutMs;
+        this.durability = Durability.valueOf(durability.toUpperCase());
+        this.writer = new Thread(this::writeLoop, "saga-event-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Appends an event to the journal.
+     *
+     * @param event    The event to persist
+     * @param terminal Whether the event ends its saga; with TERMINAL durability only these wait for their flush
+     */
+    public void append(SagaEvent event, boolean terminal) {
+        boolean durable = terminal || durability == Durability.ALWAYS;
+        PendingEvent pending = new PendingEvent(event, durable ? new CompletableFuture<>() : null);
+
+        try {
+            if (!buffer.offer(pending)) {
+                sagaMetrics.incrementJournalBlocked();
+                if (durable) {
+                    buffer.put(pending);
+                } else if (!buffer.offer(pending, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    sagaMetrics.incrementJournalDropped();
+                    logger.warn("Saga event journal full, event dropped: sagaId={}, eventType={}",
+                            event.getSagaId(), event.getEventType());
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sagaMetrics.incrementJournalDropped();
+            return;
+        }
+
+        if (durable) {
+            awaitFlush(pending);
+        }
+    }
+
+    /**
+     * @return number of events waiting to be written
+     */
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // The writer drains the buffer before it stops
+        running = false;
+        try {
+            writer.join(DURABLE_WAIT_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitFlush(PendingEvent pending) {
+        try {
+            pending.flushed().get(DURABLE_WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // The saga state is unaffected; only its audit trail is incomplete
+            logger.error("Saga event not confirmed by the journal: sagaId={}, eventType={}, error={}",
+                    pending.event().getSagaId(), pending.event().getEventType(), e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingEvent> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingEvent first = buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Let concurrent appends join the batch until it is full or the flush interval elapses
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (running && batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingEvent next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            buffer.drainTo(batch, batchSize - batch.size());
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingEvent> batch) {
+        long start = System.nanoTime();
+        try {
+            // Serialized before the batch is built; data that cannot be serialized is replaced by an error
+            // object for that event only, so one bad payload does not fail the whole batch
+            List<String> eventData = batch.stream().map(pending -> pending.event().getEventDataAsJson()).toList();
+            jdbcTemplate.batchUpdate(INSERT_EVENT, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    SagaEvent event = batch.get(i).event();
+                    ps.setString(1, event.getEventId());
+                    ps.setString(2, event.getSagaId());
+                    ps.setString(3, event.getEventType().name());
+                    // Sent untyped so Postgres casts it to jsonb
+                    ps.setObject(4, eventData.get(i), Types.OTHER);
+                    ps.setTimestamp(5, Timestamp.valueOf(event.getCreatedAt()));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+            sagaMetrics.recordJournalFlush(batch.size(), System.nanoTime() - start);
+            batch.forEach(pending -> pending.complete(null));
+        } catch (Exception e) {
+            logger.error("Failed to write {} saga events: {}", batch.size(), e.getMessage());
+            sagaMetrics.recordError("JournalFlushFailure", "saga_event_journal");
+            batch.forEach(pending -> pending.complete(e));
+        }
+    }
+
+    private record PendingEvent(SagaEvent event, CompletableFuture<Void> flushed) {
+        void complete(Exception failure) {
+            if (flushed == null) {
+                return;
+            }
+            if (failure == null) {
+                flushed.complete(null);
+            } else {
+                flushed.completeExceptionally(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+/**
+ * Mutual exclusion on a string key, used by {@link ConcurrentSagaManager} to serialize
+ * sagas of the same customer-product combination.
+ *
+ * Selected with {@code saga.lock.provider}: {@code striped} (default) for a single orchestrator,
+ * {@code advisory} for replicas sharing the Postgres database.
+ */
+public interface SagaLockProvider {
+
+    /**
+     * Waits up to the timeout for the lock of a key.
+     *
+     * @param key           The lock key
+     * @param timeoutMillis Maximum time to wait
+     * @return true once the lock is held, false if the wait timed out
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    boolean tryLock(String key, long timeoutMillis) throws InterruptedException;
+
+    /**
+     * Releases a lock taken by {@link #tryLock} on the current thread.
+     *
+     * @param key The lock key
+     * @return false if the current thread did not hold the lock
+     */
+    boolean unlock(String key);
+
+    /**
+     * @return number of locks currently held through this provider
+     */
+    int getHeldLockCount();
+
+    /**
+     * @return provider name, used as a metric tag
+     */
+    String getName();
+}
@@ -1,426 +1,411 @@
 package com.log430.tp7.sagaorchestrator.service;
 
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
 import com.log430.tp7.sagaorchestrator.dto.*;
+import com.log430.tp7.sagaorchestrator.exception.SagaCapacityExceededException;
+import com.log430.tp7.sagaorchestrator.exception.SagaException;
+import com.log430.tp7.sagaorchestrator.exception.SagaStateConflictException;
 import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
 import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
-import com.log430.tp7.sagaorchestrator.model.SagaEvent;
 import com.log430.tp7.sagaorchestrator.model.SagaEventType;
 import com.log430.tp7.sagaorchestrator.model.SagaExecution;
 import com.log430.tp7.sagaorchestrator.model.SagaState;
-import com.log430.tp7.sagaorchestrator.repository.SagaEventRepository;
-import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import io.micrometer.core.instrument.Timer;
 
-import java.time.LocalDateTime;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Core saga orchestrator service that manages distributed transactions
  * across multiple microservices for customer sales operations.
+ *
+ * The sale runs as a persisted step state machine: each step commits its transition through
+ * {@link SagaStepStore}, calls its service asynchronously, and the completion of that call
+ * persists the result and triggers the next step. No JDBC connection or step thread is held
+ * while a remote service is working; sagas interrupted by a restart stay in their step state
+ * and are picked up by {@link SagaTimeoutManager}.
+ *
+ * Sales submitted through {@link #submitSale(SaleRequest)} are driven by a bounded pool of saga
+ * workers; when its queue is full the sale is rejected instead of piling up behind the others.
+ * Both entry points first pass the {@link SagaAdmissionController}, which sheds sales once the
+ * downstream services show queueing.
+ *
+ * A saga whose deadline passes while a step is in flight is compensated by {@link SagaTimeoutManager}.
+ * The step store then rejects the late step result: the step undoes what it can (a late reservation
+ * is released) and the saga ends without a second compensation.
  */
 @Service
 public class SagaOrchestrator {
 
     private static final Logger logger = LoggerFactory.getLogger(SagaOrchestrator.class);
+    private static final BigDecimal MINIMUM_UNIT_PRICE = new BigDecimal("0.01");
 
-    private final SagaExecutionRepository sagaExecutionRepository;
-    private final SagaEventRepository sagaEventRepository;
+    private final SagaStepStore sagaStepStore;
     private final ServiceClientWrapper serviceClientWrapper;
     private final ConcurrentSagaManager concurrentSagaManager;
-    private final InventoryConcurrencyManager inventoryConcurrencyManager;
     private final SagaMetrics sagaMetrics;
     private final SagaEventLogger sagaEventLogger;
+    private final SagaConfiguration.SagaExecutionProperties sagaExecutionProperties;
+    private final SagaAdmissionController admissionController;
+    private final ExecutorService stepExecutor;
+    private final ThreadPoolExecutor sagaWorkers;
 
     public SagaOrchestrator(
-            SagaExecutionRepository sagaExecutionRepository,
-            SagaEventRepository sagaEventRepository,
+            SagaStepStore sagaStepStore,
             ServiceClientWrapper serviceClientWrapper,
             ConcurrentSagaManager concurrentSagaManager,
-            InventoryConcurrencyManager inventoryConcurrencyManager,
             SagaMetrics sagaMetrics,
-            SagaEventLogger sagaEventLogger) {
-        this.sagaExecutionRepository = sagaExecutionRepository;
-        this.sagaEventRepository = sagaEventRepository;
+            SagaEventLogger sagaEventLogger,
+            SagaConfiguration.SagaExecutionProperties sagaExecutionProperties,
+            SagaAdmissionController admissionController) {
+        this.sagaStepStore = sagaStepStore;
         this.serviceClientWrapper = serviceClientWrapper;
         this.concurrentSagaManager = concurrentSagaManager;
-        this.inventoryConcurrencyManager = inventoryConcurrencyManager;
         this.sagaMetrics = sagaMetrics;
         this.sagaEventLogger = sagaEventLogger;
+        this.sagaExecutionProperties = sagaExecutionProperties;
+        this.admissionController = admissionController;
+        this.stepExecutor = createStepExecutor(sagaExecutionProperties);
+        this.sagaWorkers = createSagaWorkers(sagaExecutionProperties);
     }
 
     /**
-     * Main method to execute a sale saga transaction.
-     * Coordinates stock verification, reservation, payment, and order confirmation.
+     * Executes a sale saga and waits for it to reach a final state.
+     * Kept for callers that need the outcome in the response; only the calling thread waits,
+     * no database connection is held meanwhile.
      * 
      * @param request The sale request containing customer and product details
-     * @return SagaResponse with saga ID and current state
+     * @return SagaResponse with saga ID and final state
      */
-    @Transactional
     public SagaResponse executeSale(SaleRequest request) {
-        // Generate correlation ID for tracing
-        String sagaId = generateCorrelationId();
-
-        // Start saga duration timer
-        Timer.Sample sagaTimer = sagaMetrics.startSagaDurationTimer();
-        long startTime = System.currentTimeMillis();
+        return startSale(request).join();
+    }
 
-        // Increment saga started counter
-        sagaMetrics.incrementSagaStarted();
+    /**
+     * Main method to execute a sale saga transaction.
+     * Persists the saga, then chains stock reservation, payment, and order confirmation.
+     * 
+     * @param request The sale request containing customer and product details
+     * @return future completed with the SagaResponse once the saga is confirmed or compensated
+     * @throws SagaCapacityExceededException when the admission limiter sheds the sale
+     */
+    public CompletableFuture<SagaResponse> startSale(SaleRequest request) {
+        // Generate correlation ID for tracing
+        return startSale(generateCorrelationId(), request);
+    }
 
-        // Log saga initiation with structured logging
-        sagaEventLogger.logSagaStarted(sagaId, request.customerId(), request.productId(), request.quantity());
+    /**
+     * Executes a sale saga under an ID chosen by the caller, e.g. one already bound to an idempotency key.
+     *
+     * @param sagaId a new, time-ordered saga ID
+     * @param request The sale request containing customer and product details
+     * @return future completed with the SagaResponse once the saga is confirmed or compensated
+     * @throws SagaCapacityExceededException when the admission limiter sheds the sale
+     */
+    public CompletableFuture<SagaResponse> startSale(String sagaId, SaleRequest request) {
+        admit(request);
 
-        logger.info("Starting saga execution: sagaId={}, customerId={}, productId={}, quantity={}",
-                sagaId, request.customerId(), request.productId(), request.quantity());
+        long startTime = System.currentTimeMillis();
+        Timer.Sample sagaTimer = recordSagaStarted(sagaId, request);
 
+        CompletableFuture<SagaExecution> saga;
         try {
             // Create and persist initial saga state
-            SagaExecution saga = createInitialSagaExecution(sagaId, request);
-            sagaExecutionRepository.save(saga);
-
-            // Log saga initiation event
-            logSagaEvent(sagaId, SagaEventType.SAGA_STARTED,
-                    "Saga initiated for customer: " + request.customerId());
-
-            // Execute the saga steps
-            executeStockVerification(saga);
-            executeStockReservation(saga);
-            executePaymentProcessing(saga);
-            executeOrderConfirmation(saga);
-
-            // If we reach here, saga completed successfully
-            saga.transitionTo(SagaState.SALE_CONFIRMED);
-            sagaExecutionRepository.save(saga);
-
-            logSagaEvent(sagaId, SagaEventType.SAGA_COMPLETED,
-                    "Saga completed successfully");
-
-            // Record successful completion metrics
-            sagaMetrics.incrementSagaCompleted();
-            sagaMetrics.recordSagaDuration(sagaTimer);
+            saga = CompletableFuture.completedFuture(sagaStepStore.createSaga(sagaId, request));
+        } catch (Exception e) {
+            saga = CompletableFuture.failedFuture(e);
+        }
+        return runSaga(sagaId, request, saga, sagaTimer, startTime);
+    }
 
-            // Log saga completion with structured logging
-            long durationMs = System.currentTimeMillis() - startTime;
-            sagaEventLogger.logSagaCompleted(sagaId, request.customerId(), saga.getOrderId(), durationMs);
+    /**
+     * Persists a sale saga and queues it for execution without waiting for any step.
+     * {@link SagaStepStore} pushes the final state to subscribers of {@link SagaCompletionNotifier};
+     * it can also be read from the saga status endpoint.
+     *
+     * @param request The sale request containing customer and product details
+     * @return SagaResponse with the saga ID in SALE_INITIATED state
+     * @throws SagaCapacityExceededException when the saga worker queue is full or the admission limiter sheds the sale
+     */
+    public SagaResponse submitSale(SaleRequest request) {
+        return submitSale(generateCorrelationId(), request);
+    }
 
-            logger.info("Saga execution completed successfully: sagaId={}", sagaId);
+    /**
+     * Queues a sale saga under an ID chosen by the caller, e.g. one already bound to an idempotency key.
+     *
+     * @param sagaId a new, time-ordered saga ID
+     * @param request The sale request containing customer and product details
+     * @return SagaResponse with the saga ID in SALE_INITIATED state
+     * @throws SagaCapacityExceededException when the saga worker queue is full or the admission limiter sheds the sale
+     */
+    public SagaResponse submitSale(String sagaId, SaleRequest request) {
+        // Reject before writing anything when the queue is already full
+        if (sagaWorkers.getQueue().remainingCapacity() == 0) {
+            sagaMetrics.recordError("SagaCapacityExceeded", "saga_submission");
+            logger.warn("Saga worker queue full, rejecting sale: customerId={}, productId={}",
+                    request.customerId(), request.productId());
+            throw new SagaCapacityExceededException(null, sagaExecutionProperties.getRetryAfterSeconds());
+        }
+        admit(request);
 
-            return SagaResponse.success(sagaId, SagaState.SALE_CONFIRMED,
-                    "Sale completed successfully");
+        long startTime = System.currentTimeMillis();
+        Timer.Sample sagaTimer = recordSagaStarted(sagaId, request);
 
+        SagaExecution saga;
+        try {
+            saga = sagaStepStore.createSaga(sagaId, request);
         } catch (Exception e) {
-            logger.error("Saga execution failed: sagaId={}, error={}", sagaId, e.getMessage(), e);
-
-            // Record failure metrics
+            admissionController.release();
             sagaMetrics.incrementSagaFailed();
             sagaMetrics.recordSagaDuration(sagaTimer);
-            sagaMetrics.recordError(e.getClass().getSimpleName(), "saga_execution");
-
-            // Log saga failure with structured logging
-            long durationMs = System.currentTimeMillis() - startTime;
-            sagaEventLogger.logSagaFailed(sagaId, request.customerId(), e.getMessage(), "saga_execution", durationMs);
-
-            // Execute compensation logic
-            executeCompensation(sagaId, e.getMessage());
+            sagaMetrics.recordError(e.getClass().getSimpleName(), "saga_submission");
+            throw new SagaException("Failed to persist sale saga", sagaId, e);
+        }
 
-            return SagaResponse.failure(sagaId, SagaState.SALE_FAILED,
-                    "Sale failed: " + e.getMessage());
+        try {
+            // A worker drives one saga at a time, which bounds the number of sagas in flight
+            sagaWorkers.execute(() -> {
+                try {
+                    runSaga(sagaId, request, CompletableFuture.completedFuture(saga), sagaTimer, startTime).join();
+                } catch (Exception e) {
+                    logger.error("Saga worker failed: sagaId={}, error={}", sagaId, e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Another submission took the last queue slot in the meantime
+            admissionController.release();
+            String reason = "Rejected: saga worker queue is full";
+            sagaStepStore.rejectSale(sagaId, reason);
+            sagaMetrics.incrementSagaFailed();
+            sagaMetrics.recordSagaDuration(sagaTimer);
+            sagaMetrics.recordError("SagaCapacityExceeded", "saga_submission");
+            sagaEventLogger.logSagaFailed(sagaId, request.customerId(), reason, "saga_submission",
+                    System.currentTimeMillis() - startTime);
+            throw new SagaCapacityExceededException(sagaId, sagaExecutionProperties.getRetryAfterSeconds());
         }
+
+        logger.info("Sale saga queued: sagaId={}, queuedSagas={}", sagaId, sagaWorkers.getQueue().size());
+        return SagaResponse.success(sagaId, SagaState.SALE_INITIATED, "Sale accepted for processing");
     }
 
     /**
-     * Generates a unique correlation ID for saga tracing
-     * 
-     * @return UUID-based correlation ID
+     * Takes an admission slot for a new sale, released once its saga reaches a final state.
      */
-    private String generateCorrelationId() {
-        return UUID.randomUUID().toString();
+    private void admit(SaleRequest request) {
+        if (!admissionController.tryAcquire()) {
+            sagaMetrics.recordError("SagaCapacityExceeded", "saga_admission");
+            logger.warn("Sale shed by admission limiter: customerId={}, productId={}, limit={}",
+                    request.customerId(), request.productId(), admissionController.getLimit());
+            throw new SagaCapacityExceededException(null, sagaExecutionProperties.getRetryAfterSeconds());
+        }
     }
 
     /**
-     * Creates the initial saga execution entity with SALE_INITIATED state
-     * 
-     * @param sagaId  The unique saga identifier
-     * @param request The sale request details
-     * @return SagaExecution entity ready for persistence
+     * Records the start of a saga in metrics and the structured log.
      */
-    private SagaExecution createInitialSagaExecution(String sagaId, SaleRequest request) {
-        SagaExecution saga = new SagaExecution();
-        saga.setSagaId(sagaId);
-        saga.setCurrentState(SagaState.SALE_INITIATED);
-        saga.setCustomerId(request.customerId());
-        saga.setProductId(request.productId());
-        saga.setQuantity(request.quantity());
-        saga.setAmount(request.amount());
-        saga.setCreatedAt(LocalDateTime.now());
-        saga.setUpdatedAt(LocalDateTime.now());
-
-        return saga;
+    private Timer.Sample recordSagaStarted(String sagaId, SaleRequest request) {
+        // Start saga duration timer
+        Timer.Sample sagaTimer = sagaMetrics.startSagaDurationTimer();
+
+        // Increment saga started counter
+        sagaMetrics.incrementSagaStarted();
+
+        // Log saga initiation with structured logging
+        sagaEventLogger.logSagaStarted(sagaId, request.customerId(), request.productId(), request.quantity());
+
+        logger.info("Starting saga execution: sagaId={}, customerId={}, productId={}, quantity={}",
+                sagaId, request.customerId(), request.productId(), request.quantity());
+        return sagaTimer;
     }
 
     /**
-     * Logs saga events for audit trail and observability
-     * 
-     * @param sagaId    The saga identifier
-     * @param eventType The type of event
-     * @param eventData Additional event details
+     * Chains stock reservation, payment, and order confirmation on a persisted saga,
+     * and compensates on failure.
      */
-    private void logSagaEvent(String sagaId, SagaEventType eventType, String eventData) {
-        SagaEvent event = new SagaEvent();
-        event.setEventId(UUID.randomUUID().toString());
-        event.setSagaId(sagaId);
-        event.setEventType(eventType);
-        event.setEventData(Map.of("message", eventData));
-        event.setCreatedAt(LocalDateTime.now());
-
-        sagaEventRepository.save(event);
-
-        logger.info("Saga event logged: sagaId={}, eventType={}, data={}",
-                sagaId, eventType, eventData);
+    private CompletableFuture<SagaResponse> runSaga(String sagaId, SaleRequest request,
+                                                    CompletableFuture<SagaExecution> saga,
+                                                    Timer.Sample sagaTimer, long startTime) {
+        // Each step starts when the previous one has persisted its result
+        CompletableFuture<SagaExecution> steps = saga
+                .thenCompose(this::executeStockReservation)
+                .thenCompose(this::executePaymentProcessing)
+                .thenCompose(this::executeOrderConfirmation);
+
+        return steps
+                .thenApplyAsync(completed -> completeSale(completed, sagaTimer, startTime), stepExecutor)
+                .exceptionallyCompose(failure -> {
+                    Throwable cause = unwrap(failure);
+                    if (cause instanceof SagaStateConflictException) {
+                        // The timeout handler has taken the saga over and compensates it
+                        logger.warn("Saga taken over by its timeout: sagaId={}, error={}", sagaId, cause.getMessage());
+                        sagaMetrics.incrementSagaFailed();
+                        sagaMetrics.recordSagaDuration(sagaTimer);
+                        return CompletableFuture.completedFuture(SagaResponse.failure(sagaId, SagaState.SALE_FAILED,
+                                "Sale failed: " + cause.getMessage()));
+                    }
+                    logger.error("Saga execution failed: sagaId={}, error={}", sagaId, cause.getMessage(), cause);
+
+                    // Record failure metrics
+                    sagaMetrics.incrementSagaFailed();
+                    sagaMetrics.recordSagaDuration(sagaTimer);
+                    sagaMetrics.recordError(cause.getClass().getSimpleName(), "saga_execution");
+
+                    // Log saga failure with structured logging
+                    long durationMs = System.currentTimeMillis() - startTime;
+                    sagaEventLogger.logSagaFailed(sagaId, request.customerId(), cause.getMessage(), "saga_execution",
+                            durationMs);
+
+                    // Execute compensation logic
+                    return executeCompensation(sagaId, cause.getMessage())
+                            .thenApply(ignored -> SagaResponse.failure(sagaId, SagaState.SALE_FAILED,
+                                    "Sale failed: " + cause.getMessage()));
+                })
+                .whenComplete((response, error) -> admissionController.release());
     }
 
-    // Placeholder methods for saga steps - to be implemented in subsequent subtasks
+    @PreDestroy
+    public void shutdown() {
+        sagaWorkers.shutdown();
+        stepExecutor.shutdown();
+    }
 
     /**
-     * Executes stock verification step of the saga.
-     * Transitions from SALE_INITIATED to STOCK_VERIFYING state.
+     * Generates a unique correlation ID for saga tracing.
+     * Time-ordered so saga_executions inserts stay append-only on the primary key.
      * 
-     * @param saga The saga execution context
-     * @throws RuntimeException if stock verification fails
+     * @return UUIDv7-based correlation ID
      */
-    private void executeStockVerification(SagaExecution saga) {
-        logger.info("Executing stock verification: sagaId={}, productId={}, quantity={}",
-                saga.getSagaId(), saga.getProductId(), saga.getQuantity());
-
-        // Start stock verification timer
-        Timer.Sample stockVerificationTimer = sagaMetrics.startStockVerificationTimer();
-
-        try {
-            // Transition to STOCK_VERIFYING state
-            SagaState previousState = saga.getCurrentState();
-            saga.transitionTo(SagaState.STOCK_VERIFYING);
-            sagaExecutionRepository.save(saga);
-
-            // Record state transition
-            sagaMetrics.recordStateTransition(previousState, SagaState.STOCK_VERIFYING);
-            sagaEventLogger.logStateTransition(saga.getSagaId(), previousState, SagaState.STOCK_VERIFYING,
-                    "stock_verification");
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.STATE_TRANSITION,
-                    "Transitioned to STOCK_VERIFYING");
-
-            // Create stock verification request
-            StockVerificationRequest request = new StockVerificationRequest(
-                    saga.getProductId(),
-                    saga.getQuantity(),
-                    saga.getSagaId());
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_STARTED,
-                    "Starting stock verification call to inventory service");
-
-            // Log structured service call start
-            Map<String, Object> requestData = new HashMap<>();
-            requestData.put("productId", request.productId());
-            requestData.put("quantity", request.quantity());
-            sagaEventLogger.logServiceCallStarted(saga.getSagaId(), "inventory-service", "verifyStock",
-                    "stock_verification", requestData);
-
-            // Call inventory service to verify stock with concurrency protection
-            long serviceCallStart = System.currentTimeMillis();
-            StockVerificationResponse response = inventoryConcurrencyManager.verifyStockWithConcurrencyProtection(
-                    request.productId(), request.quantity(), request.sagaId());
-
-            if (!response.success()) {
-                logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_FAILED,
-                        "Stock verification service call failed: " + response.message());
-
-                // Log structured service call failure
-                long serviceCallDuration = System.currentTimeMillis() - serviceCallStart;
-                sagaEventLogger.logServiceCallFailed(saga.getSagaId(), "inventory-service", "verifyStock",
-                        "stock_verification", response.message(), serviceCallDuration);
-
-                // Record failure metrics
-                sagaMetrics.incrementStockVerification(false);
-                sagaMetrics.recordStockVerificationDuration(stockVerificationTimer);
-                sagaMetrics.recordError("ServiceCallFailed", "stock_verification");
-
-                throw new RuntimeException("Stock verification service call failed: " + response.message());
-            }
-
-            if (!response.available()) {
-                logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_COMPLETED,
-                        "Stock verification completed - insufficient stock available");
-
-                // Log structured service call failure
-                long serviceCallDuration = System.currentTimeMillis() - serviceCallStart;
-                sagaEventLogger.logServiceCallFailed(saga.getSagaId(), "inventory-service", "verifyStock",
-                        "stock_verification", "Insufficient stock available", serviceCallDuration);
-
-                // Record failure metrics
-                sagaMetrics.incrementStockVerification(false);
-                sagaMetrics.recordStockVerificationDuration(stockVerificationTimer);
-                sagaMetrics.recordError("InsufficientStock", "stock_verification");
-
-                throw new RuntimeException("Insufficient stock available. Requested: " +
-                        response.requestedQuantity() + ", Available: " +
-                        response.availableQuantity());
-            }
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_COMPLETED,
-                    "Stock verification completed successfully - stock is available");
-
-            // Log structured service call success
-            long serviceCallDuration = System.currentTimeMillis() - serviceCallStart;
-            Map<String, Object> responseData = new HashMap<>();
-            responseData.put("available", response.available());
-            responseData.put("availableQuantity", response.availableQuantity());
-            sagaEventLogger.logServiceCallCompleted(saga.getSagaId(), "inventory-service", "verifyStock",
-                    "stock_verification", responseData, serviceCallDuration);
+    private String generateCorrelationId() {
+        return TimeOrderedUuidGenerator.nextString();
+    }
 
-            // Record success metrics
-            sagaMetrics.incrementStockVerification(true);
-            sagaMetrics.recordStockVerificationDuration(stockVerificationTimer);
+    /**
+     * Marks the saga as confirmed once every step has completed.
+     */
+    private SagaResponse completeSale(SagaExecution saga, Timer.Sample sagaTimer, long startTime) {
+        sagaStepStore.confirmSale(saga.getSagaId());
 
-            logger.info("Stock verification completed successfully: sagaId={}, productId={}, available={}",
-                    saga.getSagaId(), saga.getProductId(), response.available());
+        // Record successful completion metrics
+        sagaMetrics.incrementSagaCompleted();
+        sagaMetrics.recordSagaDuration(sagaTimer);
 
-        } catch (Exception e) {
-            // Update saga with error information
-            saga.setErrorMessage("Stock verification failed: " + e.getMessage());
-            saga.setUpdatedAt(LocalDateTime.now());
-            sagaExecutionRepository.save(saga);
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.ERROR,
-                    "Stock verification failed: " + e.getMessage());
-
-            // Record failure metrics if not already recorded
-            if (stockVerificationTimer != null) {
-                sagaMetrics.incrementStockVerification(false);
-                sagaMetrics.recordStockVerificationDuration(stockVerificationTimer);
-                sagaMetrics.recordError(e.getClass().getSimpleName(), "stock_verification");
-            }
+        // Log saga completion with structured logging
+        long durationMs = System.currentTimeMillis() - startTime;
+        sagaEventLogger.logSagaCompleted(saga.getSagaId(), saga.getCustomerId(), saga.getOrderId(), durationMs);
 
-            logger.error("Stock verification failed: sagaId={}, error={}",
-                    saga.getSagaId(), e.getMessage());
+        logger.info("Saga execution completed successfully: sagaId={}", saga.getSagaId());
 
-            throw e;
-        }
+        return SagaResponse.success(saga.getSagaId(), SagaState.SALE_CONFIRMED,
+                "Sale completed successfully");
     }
 
     /**
      * Executes stock reservation step of the saga.
-     * Transitions from STOCK_VERIFYING to STOCK_RESERVING state.
+     * Transitions from SALE_INITIATED to STOCK_RESERVING state.
+     * Inventory checks availability and reserves in the same call, so there is no separate
+     * verification round trip; verify-stock remains for the read-only stock preview endpoint.
      * Stores reservation ID for later compensation if needed.
-     * Implements concurrent handling to prevent race conditions.
+     * A cart is reserved all or nothing in a single call; each line keeps its reservation ID.
+     * Checks for concurrent sagas on the same customer and each product of the sale before reserving.
      * 
      * @param saga The saga execution context
-     * @throws RuntimeException if stock reservation fails
+     * @return future completed with the saga once the reservation ID is persisted
      */
-    private void executeStockReservation(SagaExecution saga) {
+    private CompletableFuture<SagaExecution> executeStockReservation(SagaExecution saga) {
+        String sagaId = saga.getSagaId();
         logger.info("Executing stock reservation: sagaId={}, productId={}, quantity={}",
-                saga.getSagaId(), saga.getProductId(), saga.getQuantity());
+                sagaId, saga.getProductId(), saga.getQuantity());
 
         // Start stock reservation timer
         Timer.Sample stockReservationTimer = sagaMetrics.startStockReservationTimer();
 
-        try {
-            // Check for race conditions before proceeding with stock reservation
-            if (!concurrentSagaManager.handleStockReservationRaceCondition(
-                    saga.getCustomerId(), saga.getProductId(), saga.getSagaId())) {
-
-                logSagaEvent(saga.getSagaId(), SagaEventType.ERROR,
-                        "Stock reservation blocked due to race condition");
-
-                sagaMetrics.recordError("StockReservationRaceCondition", "stock_reservation");
-                throw new RuntimeException("Stock reservation blocked due to concurrent saga conflict");
-            }
-
-            // Use optimistic locking with retry for state transition
-            SagaExecution updatedSaga = concurrentSagaManager.updateSagaStateWithRetry(
-                    saga.getSagaId(), SagaState.STOCK_RESERVING,
-                    s -> {
-                        // Additional update actions can be performed here
-                        logger.debug("Transitioning saga to STOCK_RESERVING: sagaId={}", s.getSagaId());
-                    });
-
-            // Update local reference
-            saga.setCurrentState(updatedSaga.getCurrentState());
-            saga.setVersion(updatedSaga.getVersion());
-
-            // Record state transition
-            sagaMetrics.recordStateTransition(SagaState.STOCK_VERIFYING, SagaState.STOCK_RESERVING);
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.STATE_TRANSITION,
-                    "Transitioned to STOCK_RESERVING");
-
-            // Create stock reservation request
-            StockReservationRequest request = new StockReservationRequest(
-                    saga.getProductId(),
-                    saga.getQuantity(),
-                    saga.getSagaId(),
-                    saga.getCustomerId());
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_STARTED,
-                    "Starting stock reservation call to inventory service");
-
-            // Call inventory service to reserve stock with concurrency protection
-            StockReservationResponse response = inventoryConcurrencyManager.reserveStockWithConcurrencyProtection(
-                    request.productId(), request.quantity(), request.sagaId(), request.customerId());
-
-            if (!response.success()) {
-                logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_FAILED,
-                        "Stock reservation service call failed: " + response.message());
-
-                // Record failure metrics
-                sagaMetrics.incrementStockReservation(false);
-                sagaMetrics.recordStockReservationDuration(stockReservationTimer);
-                sagaMetrics.recordError("ServiceCallFailed", "stock_reservation");
-
-                throw new RuntimeException("Stock reservation service call failed: " + response.message());
-            }
-
-            // Store reservation ID for later compensation if needed
-            saga.setStockReservationId(response.reservationId());
-            saga.setUpdatedAt(LocalDateTime.now());
-            sagaExecutionRepository.save(saga);
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_COMPLETED,
-                    "Stock reservation completed successfully - reservationId: " + response.reservationId());
-
-            // Record success metrics
-            sagaMetrics.incrementStockReservation(true);
+        // Check for race conditions before proceeding with stock reservation
+        if (!concurrentSagaManager.handleStockReservationRaceCondition(
+                saga.getCustomerId(), ConcurrentSagaManager.productIds(saga), sagaId)) {
+            sagaMetrics.incrementStockReservation(false);
             sagaMetrics.recordStockReservationDuration(stockReservationTimer);
+            return CompletableFuture.failedFuture(stepFailure(sagaId, "stock_reservation",
+                    "StockReservationRaceCondition", SagaEventType.ERROR, "Stock reservation failed: ",
+                    "Stock reservation blocked due to concurrent saga conflict"));
+        }
 
-            logger.info("Stock reservation completed successfully: sagaId={}, productId={}, reservationId={}",
-                    saga.getSagaId(), saga.getProductId(), response.reservationId());
-
-        } catch (Exception e) {
-            // Update saga with error information
-            saga.setErrorMessage("Stock reservation failed: " + e.getMessage());
-            saga.setUpdatedAt(LocalDateTime.now());
-            sagaExecutionRepository.save(saga);
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.ERROR,
-                    "Stock reservation failed: " + e.getMessage());
-
-            // Record failure metrics if not already recorded
-            if (stockReservationTimer != null) {
-                sagaMetrics.incrementStockReservation(false);
-                sagaMetrics.recordStockReservationDuration(stockReservationTimer);
-                sagaMetrics.recordError(e.getClass().getSimpleName(), "stock_reservation");
-            }
-
-            logger.error("Stock reservation failed: sagaId={}, error={}",
-                    saga.getSagaId(), e.getMessage());
-
-            throw e;
+        SagaState previousState = saga.getCurrentState();
+        sagaStepStore.beginStep(sagaId, SagaState.STOCK_RESERVING,
+                "Starting stock reservation call to inventory service");
+        sagaEventLogger.logStateTransition(sagaId, previousState, SagaState.STOCK_RESERVING, "stock_reservation");
+
+        // Log structured service call start
+        Map<String, Object> requestData = new HashMap<>();
+        requestData.put("productId", saga.getProductId());
+        requestData.put("quantity", saga.getQuantity());
+        if (saga.isCart()) {
+            requestData.put("lines", saga.getLines().size());
         }
+        sagaEventLogger.logServiceCallStarted(sagaId, "inventory-service", "reserveStock",
+                "stock_reservation", requestData);
+
+        // Call inventory service to reserve stock if available; the result is handled on a step thread
+        long serviceCallStart = System.currentTimeMillis();
+        CompletableFuture<CartStockReservationResponse> reservation = saga.isCart()
+                ? serviceClientWrapper.reserveCartStock(saleLines(saga), sagaId, saga.getCustomerId())
+                : serviceClientWrapper.reserveStock(saga.getProductId(), saga.getQuantity(), sagaId,
+                        saga.getCustomerId()).thenApply(response -> asCartReservation(sagaId, response));
+        return reservation
+                .handleAsync((response, error) -> {
+                    long serviceCallDuration = System.currentTimeMillis() - serviceCallStart;
+                    sagaMetrics.recordStockReservationDuration(stockReservationTimer);
+
+                    if (error != null || !response.success()) {
+                        String message = "Stock reservation service call failed: " +
+                                (error != null ? unwrap(error).getMessage() : response.message());
+                        sagaEventLogger.logServiceCallFailed(sagaId, "inventory-service", "reserveStock",
+                                "stock_reservation", message, serviceCallDuration);
+                        sagaMetrics.incrementStockReservation(false);
+                        throw stepFailure(sagaId, "stock_reservation", "ServiceCallFailed",
+                                SagaEventType.SERVICE_CALL_FAILED, "Stock reservation failed: ", message);
+                    }
+
+                    // Record success metrics
+                    sagaMetrics.incrementStockReservation(true);
+
+                    String reservationIds = response.reservations().stream()
+                            .map(StockReservationResponse::reservationId)
+                            .collect(Collectors.joining(", "));
+
+                    // Log structured service call success
+                    Map<String, Object> responseData = new HashMap<>();
+                    responseData.put("reservationId", reservationIds);
+                    sagaEventLogger.logServiceCallCompleted(sagaId, "inventory-service", "reserveStock",
+                            "stock_reservation", responseData, serviceCallDuration);
+                    logger.info("Stock reservation completed successfully: sagaId={}, productId={}, reservationId={}",
+                            sagaId, saga.getProductId(), reservationIds);
+
+                    // Store reservation IDs for later compensation if needed; a saga that timed out meanwhile
+                    // no longer owns them, so they are released here
+                    return completeStep(sagaId, s -> applyReservations(s, response),
+                            "Stock reservation completed successfully - reservationId: " + reservationIds,
+                            () -> releaseLateReservation(saga, response));
+                }, stepExecutor);
     }
 
     /**
@@ -429,202 +414,169 @@ public class SagaOrchestrator {
      * Stores payment transaction ID for audit and potential reversal.
      * 
      * @param saga The saga execution context
-     * @throws RuntimeException if payment processing fails
+     * @return future completed with the saga once the payment transaction ID is persisted
      */
-    private void executePaymentProcessing(SagaExecution saga) {
+    private CompletableFuture<SagaExecution> executePaymentProcessing(SagaExecution saga) {
+        String sagaId = saga.getSagaId();
         logger.info("Executing payment processing: sagaId={}, customerId={}, amount={}",
-                saga.getSagaId(), saga.getCustomerId(), saga.getAmount());
+                sagaId, saga.getCustomerId(), saga.getAmount());
 
         // Start payment processing timer
         Timer.Sample paymentProcessingTimer = sagaMetrics.startPaymentProcessingTimer();
 
-        try {
-            // Transition to PAYMENT_PROCESSING state
-            SagaState previousState = saga.getCurrentState();
-            saga.transitionTo(SagaState.PAYMENT_PROCESSING);
-            sagaExecutionRepository.save(saga);
-
-            // Record state transition
-            sagaMetrics.recordStateTransition(previousState, SagaState.PAYMENT_PROCESSING);
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.STATE_TRANSITION,
-                    "Transitioned to PAYMENT_PROCESSING");
-
-            // Get payment details from the original request (stored in saga context)
-            // Note: In a real implementation, payment details would be securely stored or
-            // retrieved
-            PaymentRequest request = new PaymentRequest(
-                    saga.getCustomerId(),
-                    saga.getAmount(),
-                    "CREDIT_CARD", // Default payment method - in real scenario this would come from request
-                    null, // Card details would be securely handled
-                    null,
-                    null,
-                    null,
-                    null,
-                    saga.getSagaId(),
-                    saga.getProductId(),
-                    saga.getQuantity(),
-                    "Purchase for product: " + saga.getProductId());
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_STARTED,
-                    "Starting payment processing call to transaction service");
-
-            // Call transaction service to process payment with circuit breaker
-            PaymentResponse response = serviceClientWrapper.processPaymentSync(
-                    request.customerId(), request.amount(), request.paymentMethod(),
-                    request.cardNumber(),
-                    request.expiryMonth() != null ? request.expiryMonth().toString() : null,
-                    request.expiryYear() != null ? request.expiryYear().toString() : null,
-                    request.cvv(), request.billingAddress(), request.sagaId(),
-                    request.productId(), request.quantity());
-
-            if (!response.success()) {
-                logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_FAILED,
-                        "Payment processing service call failed: " + response.message());
-
-                // Record failure metrics
-                sagaMetrics.incrementPaymentProcessing(false);
-                sagaMetrics.recordPaymentProcessingDuration(paymentProcessingTimer);
-                sagaMetrics.recordError("ServiceCallFailed", "payment_processing");
-
-                throw new RuntimeException("Payment processing failed: " + response.message());
-            }
-
-            // Store payment transaction ID for audit and potential reversal
-            saga.setPaymentTransactionId(response.transactionId());
-            saga.setUpdatedAt(LocalDateTime.now());
-            sagaExecutionRepository.save(saga);
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_COMPLETED,
-                    "Payment processing completed successfully - transactionId: " + response.transactionId());
-
-            // Record success metrics
-            sagaMetrics.incrementPaymentProcessing(true);
-            sagaMetrics.recordPaymentProcessingDuration(paymentProcessingTimer);
-
-            logger.info("Payment processing completed successfully: sagaId={}, customerId={}, transactionId={}",
-                    saga.getSagaId(), saga.getCustomerId(), response.transactionId());
-
-        } catch (Exception e) {
-            // Update saga with error information
-            saga.setErrorMessage("Payment processing failed: " + e.getMessage());
-            saga.setUpdatedAt(LocalDateTime.now());
-            sagaExecutionRepository.save(saga);
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.ERROR,
-                    "Payment processing failed: " + e.getMessage());
-
-            // Record failure metrics if not already recorded
-            if (paymentProcessingTimer != null) {
-                sagaMetrics.incrementPaymentProcessing(false);
-                sagaMetrics.recordPaymentProcessingDuration(paymentProcessingTimer);
-                sagaMetrics.recordError(e.getClass().getSimpleName(), "payment_processing");
-            }
-
-            logger.error("Payment processing failed: sagaId={}, error={}",
-                    saga.getSagaId(), e.getMessage());
-
-            throw e;
-        }
+        sagaStepStore.beginStep(sagaId, SagaState.PAYMENT_PROCESSING,
+                "Starting payment processing call to transaction service");
+
+        // Get payment details from the original request (stored in saga context)
+        // Note: In a real implementation, payment details would be securely stored or
+        // retrieved
+        PaymentRequest request = new PaymentRequest(
+                saga.getCustomerId(),
+                saga.getAmount(),
+                "CREDIT_CARD", // Default payment method - in real scenario this would come from request
+                null, // Card details would be securely handled
+                null,
+                null,
+                null,
+                null,
+                sagaId,
+                saga.getProductId(),
+                saga.getQuantity(),
+                saga.isCart()
+                        ? "Purchase for cart of " + saga.getLines().size() + " lines"
+                        : "Purchase for product: " + saga.getProductId());
+
+        // Call transaction service to process payment with circuit breaker
+        return serviceClientWrapper.processPayment(
+                        request.customerId(), request.amount(), request.paymentMethod(),
+                        request.cardNumber(),
+                        request.expiryMonth() != null ? request.expiryMonth().toString() : null,
+                        request.expiryYear() != null ? request.expiryYear().toString() : null,
+                        request.cvv(), request.billingAddress(), request.sagaId(),
+                        request.productId(), request.quantity())
+                .handleAsync((response, error) -> {
+                    sagaMetrics.recordPaymentProcessingDuration(paymentProcessingTimer);
+
+                    if (error != null || !response.success()) {
+                        sagaMetrics.incrementPaymentProcessing(false);
+                        throw stepFailure(sagaId, "payment_processing", "ServiceCallFailed",
+                                SagaEventType.SERVICE_CALL_FAILED, "Payment processing failed: ",
+                                "Payment processing failed: " +
+                                        (error != null ? unwrap(error).getMessage() : response.message()));
+                    }
+
+                    // Record success metrics
+                    sagaMetrics.incrementPaymentProcessing(true);
+
+                    logger.info("Payment processing completed successfully: sagaId={}, customerId={}, transactionId={}",
+                            sagaId, saga.getCustomerId(), response.transactionId());
+
+                    // Store payment transaction ID for audit and potential reversal
+                    return completeStep(sagaId, s -> s.setPaymentTransactionId(response.transactionId()),
+                            "Payment processing completed successfully - transactionId: " + response.transactionId(),
+                            () -> logLateResult(sagaId, "Payment reversal may be required - manual intervention " +
+                                    "needed for transactionId: " + response.transactionId()));
+                }, stepExecutor);
     }
 
     /**
      * Executes order confirmation step of the saga.
      * Transitions from PAYMENT_PROCESSING to ORDER_CONFIRMING state.
-     * Handles successful completion with SALE_CONFIRMED state.
      * 
      * @param saga The saga execution context
-     * @throws RuntimeException if order confirmation fails
+     * @return future completed with the saga once the order ID is persisted
      */
-    private void executeOrderConfirmation(SagaExecution saga) {
+    private CompletableFuture<SagaExecution> executeOrderConfirmation(SagaExecution saga) {
+        String sagaId = saga.getSagaId();
         logger.info("Executing order confirmation: sagaId={}, customerId={}, productId={}",
-                saga.getSagaId(), saga.getCustomerId(), saga.getProductId());
+                sagaId, saga.getCustomerId(), saga.getProductId());
 
         // Start order confirmation timer
         Timer.Sample orderConfirmationTimer = sagaMetrics.startOrderConfirmationTimer();
 
-        try {
-            // Transition to ORDER_CONFIRMING state
-            SagaState previousState = saga.getCurrentState();
-            saga.transitionTo(SagaState.ORDER_CONFIRMING);
-            sagaExecutionRepository.save(saga);
-
-            // Record state transition
-            sagaMetrics.recordStateTransition(previousState, SagaState.ORDER_CONFIRMING);
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.STATE_TRANSITION,
-                    "Transitioned to ORDER_CONFIRMING");
-
-            // Create order request with all saga context
-            OrderRequest request = new OrderRequest(
-                    saga.getCustomerId(),
-                    saga.getProductId(),
-                    saga.getQuantity(),
-                    saga.getAmount(),
-                    saga.getSagaId(),
-                    saga.getStockReservationId(),
-                    saga.getPaymentTransactionId(),
-                    null, // Shipping address would come from customer profile or request
-                    "Order created via saga orchestration");
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_STARTED,
-                    "Starting order creation call to store service");
-
-            // Call store service to create order with circuit breaker
-            OrderResponse response = serviceClientWrapper.createOrderSync(
-                    request.customerId(), request.productId(), request.quantity(),
-                    request.amount(), request.sagaId(), request.stockReservationId(),
-                    request.paymentTransactionId(), request.shippingAddress());
-
-            if (!response.success()) {
-                logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_FAILED,
-                        "Order creation service call failed: " + response.message());
-
-                // Record failure metrics
-                sagaMetrics.incrementOrderConfirmation(false);
-                sagaMetrics.recordOrderConfirmationDuration(orderConfirmationTimer);
-                sagaMetrics.recordError("ServiceCallFailed", "order_confirmation");
-
-                throw new RuntimeException("Order creation failed: " + response.message());
-            }
-
-            // Store order ID for reference
-            saga.setOrderId(response.orderId());
-            saga.setUpdatedAt(LocalDateTime.now());
-            sagaExecutionRepository.save(saga);
+        sagaStepStore.beginStep(sagaId, SagaState.ORDER_CONFIRMING,
+                "Starting order creation call to store service");
+
+        // Create order request with all saga context
+        OrderRequest request = new OrderRequest(
+                sagaId,
+                saga.getCustomerId(),
+                sagaExecutionProperties.getOrderStoreId(),
+                orderItems(saga),
+                saga.getAmount(),
+                saga.getPaymentTransactionId(),
+                saga.getStockReservationId());
+
+        // Call store service to create order with circuit breaker
+        return serviceClientWrapper.createOrder(request)
+                .handleAsync((response, error) -> {
+                    sagaMetrics.recordOrderConfirmationDuration(orderConfirmationTimer);
+
+                    if (error != null || !response.success()) {
+                        sagaMetrics.incrementOrderConfirmation(false);
+                        throw stepFailure(sagaId, "order_confirmation", "ServiceCallFailed",
+                                SagaEventType.SERVICE_CALL_FAILED, "Order confirmation failed: ",
+                                "Order creation failed: " +
+                                        (error != null ? unwrap(error).getMessage() : response.message()));
+                    }
+
+                    // Record success metrics
+                    sagaMetrics.incrementOrderConfirmation(true);
+
+                    logger.info("Order confirmation completed successfully: sagaId={}, customerId={}, orderId={}",
+                            sagaId, saga.getCustomerId(), response.orderId());
+
+                    // Store order ID for reference
+                    return completeStep(sagaId, s -> s.setOrderId(response.orderId()),
+                            "Order confirmation completed successfully - orderId: " + response.orderId(),
+                            () -> logLateResult(sagaId, "Order cancellation may be required - manual " +
+                                    "intervention needed for orderId: " + response.orderId()));
+                }, stepExecutor);
+    }
 
-            logSagaEvent(saga.getSagaId(), SagaEventType.SERVICE_CALL_COMPLETED,
-                    "Order confirmation completed successfully - orderId: " + response.orderId());
+    /**
+     * Persists a step result, or undoes it when the saga was taken over by its timeout meanwhile.
+     */
+    private SagaExecution completeStep(String sagaId, Consumer<SagaExecution> update, String message,
+                                       Runnable undo) {
+        try {
+            return sagaStepStore.completeStep(sagaId, update, message);
+        } catch (SagaStateConflictException e) {
+            undo.run();
+            throw e;
+        }
+    }
 
-            // Record success metrics
-            sagaMetrics.incrementOrderConfirmation(true);
-            sagaMetrics.recordOrderConfirmationDuration(orderConfirmationTimer);
+    /**
+     * Releases a reservation that completed after its saga timed out.
+     */
+    private void releaseLateReservation(SagaExecution saga, CartStockReservationResponse response) {
+        String sagaId = saga.getSagaId();
+        logger.warn("Releasing stock reserved after the saga timed out: sagaId={}", sagaId);
+        CompletableFuture<Void> release = saga.isCart()
+                ? serviceClientWrapper.releaseCartStock(sagaId)
+                : serviceClientWrapper.releaseStock(response.reservations().get(0).reservationId());
+        release.whenComplete((ignored, error) -> logLateResult(sagaId, error == null
+                ? "Stock reserved after the timeout released"
+                : "Release of stock reserved after the timeout failed: " + unwrap(error).getMessage()));
+    }
 
-            logger.info("Order confirmation completed successfully: sagaId={}, customerId={}, orderId={}",
-                    saga.getSagaId(), saga.getCustomerId(), response.orderId());
+    private void logLateResult(String sagaId, String message) {
+        logger.warn("Step completed after the saga timed out: sagaId={}, {}", sagaId, message);
+        sagaStepStore.logSagaEvent(sagaId, SagaEventType.CUSTOM, message);
+    }
 
-        } catch (Exception e) {
-            // Update saga with error information
-            saga.setErrorMessage("Order confirmation failed: " + e.getMessage());
-            saga.setUpdatedAt(LocalDateTime.now());
-            sagaExecutionRepository.save(saga);
-
-            logSagaEvent(saga.getSagaId(), SagaEventType.ERROR,
-                    "Order confirmation failed: " + e.getMessage());
-
-            // Record failure metrics if not already recorded
-            if (orderConfirmationTimer != null) {
-                sagaMetrics.incrementOrderConfirmation(false);
-                sagaMetrics.recordOrderConfirmationDuration(orderConfirmationTimer);
-                sagaMetrics.recordError(e.getClass().getSimpleName(), "order_confirmation");
-            }
+    /**
+     * Persists a step failure and returns the exception that aborts the step chain.
+     */
+    private RuntimeException stepFailure(String sagaId, String step, String errorType,
+                                         SagaEventType eventType, String errorPrefix, String message) {
+        sagaMetrics.recordError(errorType, step);
+        sagaStepStore.failStep(sagaId, eventType, errorPrefix + message);
 
-            logger.error("Order confirmation failed: sagaId={}, error={}",
-                    saga.getSagaId(), e.getMessage());
+        logger.error("{} failed: sagaId={}, error={}", step, sagaId, message);
 
-            throw e;
-        }
+        return new RuntimeException(message);
     }
 
     /**
@@ -634,8 +586,9 @@ public class SagaOrchestrator {
      * 
      * @param sagaId       The saga identifier
      * @param errorMessage The error that triggered compensation
+     * @return future completed once the saga is in SALE_FAILED state
      */
-    private void executeCompensation(String sagaId, String errorMessage) {
+    private CompletableFuture<Void> executeCompensation(String sagaId, String errorMessage) {
         logger.warn("Starting compensation for sagaId={}, error={}", sagaId, errorMessage);
 
         // Increment compensation counter
@@ -644,55 +597,63 @@ public class SagaOrchestrator {
         // Log structured compensation start
         sagaEventLogger.logCompensationStarted(sagaId, errorMessage, "compensation", errorMessage);
 
+        SagaExecution saga;
         try {
-            // Retrieve saga execution to determine what needs to be compensated
-            SagaExecution saga = sagaExecutionRepository.findById(sagaId)
-                    .orElseThrow(() -> new RuntimeException("Saga not found for compensation: " + sagaId));
-
-            logSagaEvent(sagaId, SagaEventType.COMPENSATION_STARTED,
-                    "Starting compensation due to: " + errorMessage);
-
-            // Determine compensation actions based on current state
-            boolean compensationSuccessful = true;
-            StringBuilder compensationLog = new StringBuilder("Compensation actions: ");
-
-            // If we have a stock reservation, release it
-            if (saga.getStockReservationId() != null && !saga.getStockReservationId().isEmpty()) {
-                try {
-                    logger.info("Releasing stock reservation: sagaId={}, reservationId={}",
-                            sagaId, saga.getStockReservationId());
-
-                    serviceClientWrapper.releaseStockReservationSync(saga.getStockReservationId(), sagaId);
-
-                    compensationLog.append("Stock released (reservationId: ")
-                            .append(saga.getStockReservationId())
-                            .append("); ");
-
-                    // Log structured compensation success
-                    sagaEventLogger.logCompensationCompleted(sagaId, "stock_release",
-                            "Released reservation: " + saga.getStockReservationId(),
-                            true);
-
-                    logSagaEvent(sagaId, SagaEventType.SERVICE_CALL_COMPLETED,
-                            "Stock reservation released successfully");
-
-                } catch (Exception e) {
-                    compensationSuccessful = false;
-                    compensationLog.append("Stock release failed: ").append(e.getMessage()).append("; ");
-
-                    // Log structured compensation failure
-                    sagaEventLogger.logCompensationCompleted(sagaId, "stock_release",
-                            "Failed to release reservation: " + e.getMessage(),
-                            false);
-
-                    logSagaEvent(sagaId, SagaEventType.SERVICE_CALL_FAILED,
-                            "Stock reservation release failed: " + e.getMessage());
+            // Persist the compensation step before calling the inventory service
+            saga = sagaStepStore.beginCompensation(sagaId, errorMessage);
+        } catch (SagaStateConflictException e) {
+            // The timeout handler is already compensating the saga
+            logger.warn("Compensation left to the timeout handler: sagaId={}, error={}", sagaId, e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        } catch (Exception e) {
+            return CompletableFuture.runAsync(() -> handleCompensationFailure(sagaId, errorMessage, e), stepExecutor);
+        }
 
-                    logger.error("Failed to release stock reservation: sagaId={}, reservationId={}, error={}",
-                            sagaId, saga.getStockReservationId(), e.getMessage());
-                }
-            }
+        StringBuilder compensationLog = new StringBuilder("Compensation actions: ");
+
+        // If we have a stock reservation, release it
+        CompletableFuture<Boolean> stockRelease = CompletableFuture.completedFuture(true);
+        String reservationId = saga.getStockReservationId();
+        if (reservationId != null && !reservationId.isEmpty()) {
+            logger.info("Releasing stock reservation: sagaId={}, reservationId={}", sagaId, reservationId);
+
+            // A cart releases all of its reservations in one call
+            CompletableFuture<Void> release = saga.isCart()
+                    ? serviceClientWrapper.releaseCartStock(sagaId)
+                    : serviceClientWrapper.releaseStock(reservationId);
+            stockRelease = release
+                    .handleAsync((ignored, error) -> {
+                        if (error == null) {
+                            compensationLog.append("Stock released (reservationId: ")
+                                    .append(reservationId)
+                                    .append("); ");
+
+                            // Log structured compensation success
+                            sagaEventLogger.logCompensationCompleted(sagaId, "stock_release",
+                                    "Released reservation: " + reservationId, true);
+
+                            sagaStepStore.logSagaEvent(sagaId, SagaEventType.SERVICE_CALL_COMPLETED,
+                                    "Stock reservation released successfully");
+                            return true;
+                        }
+
+                        String releaseError = unwrap(error).getMessage();
+                        compensationLog.append("Stock release failed: ").append(releaseError).append("; ");
+
+                        // Log structured compensation failure
+                        sagaEventLogger.logCompensationCompleted(sagaId, "stock_release",
+                                "Failed to release reservation: " + releaseError, false);
+
+                        sagaStepStore.logSagaEvent(sagaId, SagaEventType.SERVICE_CALL_FAILED,
+                                "Stock reservation release failed: " + releaseError);
+
+                        logger.error("Failed to release stock reservation: sagaId={}, reservationId={}, error={}",
+                                sagaId, reservationId, releaseError);
+                        return false;
+                    }, stepExecutor);
+        }
 
+        return stockRelease.thenAcceptAsync(compensationSuccessful -> {
             // Note: Payment reversal would be implemented here if business rules require it
             // For now, we log that payment was processed but order failed
             if (saga.getPaymentTransactionId() != null && !saga.getPaymentTransactionId().isEmpty()) {
@@ -700,7 +661,7 @@ public class SagaOrchestrator {
                         .append(saga.getPaymentTransactionId())
                         .append("); ");
 
-                logSagaEvent(sagaId, SagaEventType.CUSTOM,
+                sagaStepStore.logSagaEvent(sagaId, SagaEventType.CUSTOM,
                         "Payment reversal may be required - manual intervention needed for transactionId: " +
                                 saga.getPaymentTransactionId());
 
@@ -710,39 +671,116 @@ public class SagaOrchestrator {
             }
 
             // Transition saga to SALE_FAILED state
-            saga.transitionTo(SagaState.SALE_FAILED);
-            saga.setErrorMessage(errorMessage);
-            saga.setUpdatedAt(LocalDateTime.now());
-            sagaExecutionRepository.save(saga);
-
-            // Log compensation completion
             String compensationResult = compensationSuccessful ? "successful" : "partial";
-            logSagaEvent(sagaId, SagaEventType.COMPENSATION_COMPLETED,
-                    "Compensation " + compensationResult + ": " + compensationLog.toString());
+            sagaStepStore.failSale(sagaId, errorMessage, compensationLog.toString(), compensationResult);
 
             logger.warn("Compensation completed ({}): sagaId={}, actions={}",
-                    compensationResult, sagaId, compensationLog.toString());
+                    compensationResult, sagaId, compensationLog);
+        }, stepExecutor).exceptionally(e -> {
+            handleCompensationFailure(sagaId, errorMessage, unwrap(e));
+            return null;
+        });
+    }
 
-        } catch (Exception e) {
-            logger.error("Compensation execution failed: sagaId={}, compensationError={}",
-                    sagaId, e.getMessage(), e);
+    /**
+     * Even if compensation fails, the saga still needs to be marked as failed.
+     */
+    private void handleCompensationFailure(String sagaId, String errorMessage, Throwable e) {
+        if (e instanceof SagaStateConflictException) {
+            logger.warn("Saga was failed concurrently during compensation: sagaId={}, error={}",
+                    sagaId, e.getMessage());
+            return;
+        }
+        logger.error("Compensation execution failed: sagaId={}, compensationError={}",
+                sagaId, e.getMessage(), e);
 
-            logSagaEvent(sagaId, SagaEventType.ERROR,
+        try {
+            sagaStepStore.logSagaEvent(sagaId, SagaEventType.ERROR,
                     "Compensation execution failed: " + e.getMessage());
+            sagaStepStore.failSale(sagaId,
+                    "Original error: " + errorMessage + "; Compensation error: " + e.getMessage(),
+                    "Compensation aborted: " + e.getMessage(), "failed");
+        } catch (Exception saveException) {
+            logger.error("Failed to save saga state after compensation failure: sagaId={}",
+                    sagaId, saveException);
+        }
+    }
 
-            // Even if compensation fails, we still need to mark the saga as failed
-            try {
-                SagaExecution saga = sagaExecutionRepository.findById(sagaId).orElse(null);
-                if (saga != null) {
-                    saga.transitionTo(SagaState.SALE_FAILED);
-                    saga.setErrorMessage("Original error: " + errorMessage + "; Compensation error: " + e.getMessage());
-                    saga.setUpdatedAt(LocalDateTime.now());
-                    sagaExecutionRepository.save(saga);
-                }
-            } catch (Exception saveException) {
-                logger.error("Failed to save saga state after compensation failure: sagaId={}",
-                        sagaId, saveException);
-            }
+    private static List<SaleRequest.SaleLine> saleLines(SagaExecution saga) {
+        return saga.getLines().stream()
+                .map(line -> new SaleRequest.SaleLine(line.getProductId(), line.getQuantity()))
+                .toList();
+    }
+
+    /**
+     * The lines of the order. A sale only carries its total, so every unit is priced at the total divided
+     * by the number of units sold, to the cent; the order keeps the exact total.
+     */
+    private static List<OrderRequest.OrderItem> orderItems(SagaExecution saga) {
+        List<SaleRequest.SaleLine> lines = saga.isCart()
+                ? saleLines(saga)
+                : List.of(new SaleRequest.SaleLine(saga.getProductId(), saga.getQuantity()));
+        int units = lines.stream().mapToInt(SaleRequest.SaleLine::quantity).sum();
+        BigDecimal unitPrice = saga.getAmount().divide(BigDecimal.valueOf(units), 2, RoundingMode.HALF_UP)
+                .max(MINIMUM_UNIT_PRICE);
+        return lines.stream()
+                .map(line -> new OrderRequest.OrderItem(line.productId(), line.quantity(), unitPrice))
+                .toList();
+    }
+
+    private static CartStockReservationResponse asCartReservation(String sagaId, StockReservationResponse response) {
+        return response.success()
+                ? CartStockReservationResponse.success(sagaId, List.of(response))
+                : CartStockReservationResponse.failure(sagaId, response.message());
+    }
+
+    /**
+     * Copies the reservation IDs onto the saga; the first one marks the saga as holding stock.
+     */
+    private static void applyReservations(SagaExecution saga, CartStockReservationResponse response) {
+        Map<String, String> reservationByProduct = response.reservations().stream()
+                .collect(Collectors.toMap(StockReservationResponse::productId,
+                        StockReservationResponse::reservationId, (first, second) -> first));
+        saga.getLines().forEach(line -> line.setStockReservationId(reservationByProduct.get(line.getProductId())));
+        saga.setStockReservationId(response.reservations().get(0).reservationId());
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+                && cause.getCause() != null) {
+            cause = cause.getCause();
         }
+        return cause;
+    }
+
+    private static ExecutorService createStepExecutor(SagaConfiguration.SagaExecutionProperties properties) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                properties.getStepPoolSize(), properties.getStepPoolSize(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getStepQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "saga-step-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // A step transition must not be dropped: when saturated, the completing thread persists it itself
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static ThreadPoolExecutor createSagaWorkers(SagaConfiguration.SagaExecutionProperties properties) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                properties.getAsyncWorkers(), properties.getAsyncWorkers(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getAsyncQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "saga-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // Overflow is reported to the client as 429 instead of being run on the request thread
+                new ThreadPoolExecutor.AbortPolicy());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,425 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
+import com.log430.tp7.sagaorchestrator.dto.SagaResponse;
+import com.log430.tp7.sagaorchestrator.exception.SagaStateConflictException;
+import com.log430.tp7.sagaorchestrator.dto.SaleRequest;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaEvent;
+import com.log430.tp7.sagaorchestrator.model.SagaEventType;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaLine;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Persists the saga step state machine.
+ * Every method is its own short transaction so no JDBC connection is held while
+ * {@link SagaOrchestrator} waits on a remote service; the current state of a saga
+ * always reflects the step in progress and survives a restart.
+ * Each transition also persists the deadline of the new step and hands it to {@link SagaTimeoutManager}.
+ * Transitions are a single compare-and-set on the state and version the store read, so a saga moved on
+ * concurrently (e.g. by the timeout handler) is reported as a {@link SagaStateConflictException}
+ * instead of being overwritten.
+ * Saga events go through the write-behind {@link SagaEventJournal}; only the event ending a saga waits for its write,
+ * after the final state is committed.
+ * Every transition into a final state, whoever drives it, pushes that state to the subscribers of
+ * {@link SagaCompletionNotifier} once it is committed.
+ */
+@Service
+public class SagaStepStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SagaStepStore.class);
+
+    private final SagaExecutionRepository sagaExecutionRepository;
+    private final SagaEventJournal sagaEventJournal;
+    private final SagaMetrics sagaMetrics;
+    private final SagaTimeoutManager sagaTimeoutManager;
+    private final SagaCompletionNotifier sagaCompletionNotifier;
+
+    public SagaStepStore(SagaExecutionRepository sagaExecutionRepository,
+                         SagaEventJournal sagaEventJournal,
+                         SagaMetrics sagaMetrics,
+                         SagaTimeoutManager sagaTimeoutManager,
+                         SagaCompletionNotifier sagaCompletionNotifier) {
+        this.sagaExecutionRepository = sagaExecutionRepository;
+        this.sagaEventJournal = sagaEventJournal;
+        this.sagaMetrics = sagaMetrics;
+        this.sagaTimeoutManager = sagaTimeoutManager;
+        this.sagaCompletionNotifier = sagaCompletionNotifier;
+    }
+
+    /**
+     * Persists a new saga in SALE_INITIATED state.
+     *
+     * @param sagaId  The unique saga identifier
+     * @param request The sale request details
+     * @return the persisted saga
+     */
+    @Transactional
+    public SagaExecution createSaga(String sagaId, SaleRequest request) {
+        SagaExecution saga = new SagaExecution();
+        saga.setSagaId(sagaId);
+        saga.setCurrentState(SagaState.SALE_INITIATED);
+        saga.setCustomerId(request.customerId());
+        if (request.isCart()) {
+            List<SagaLine> lines = request.lines().stream()
+                    .map(line -> new SagaLine(line.productId(), line.quantity()))
+                    .toList();
+            saga.setLines(new ArrayList<>(lines));
+            saga.setProductId(lines.get(0).getProductId());
+            saga.setQuantity(lines.stream().mapToInt(SagaLine::getQuantity).sum());
+        } else {
+            saga.setProductId(request.productId());
+            saga.setQuantity(request.quantity());
+        }
+        saga.setAmount(request.amount());
+        saga.setCreatedAt(LocalDateTime.now());
+        saga.setUpdatedAt(LocalDateTime.now());
+        saga.setDeadlineAt(sagaTimeoutManager.deadlineFor(SagaState.SALE_INITIATED, saga.getUpdatedAt()));
+        SagaExecution saved = sagaExecutionRepository.save(saga);
+        sagaTimeoutManager.track(sagaId, saved.getDeadlineAt());
+
+        logSagaEvent(sagaId, SagaEventType.SAGA_STARTED,
+                "Saga initiated for customer: " + request.customerId() +
+                        (request.isCart() ? " (cart of " + request.lines().size() + " lines)" : ""));
+        return saved;
+    }
+
+    /**
+     * Fails a saga that was persisted but could not be queued for execution.
+     *
+     * @param sagaId The saga identifier
+     * @param reason Why the saga was rejected
+     */
+    @Transactional
+    public void rejectSale(String sagaId, String reason) {
+        SagaExecution saga = load(sagaId);
+        finish(saga, SagaState.SALE_FAILED, reason);
+        sagaTimeoutManager.track(sagaId, null);
+
+        sagaMetrics.recordStateTransition(SagaState.SALE_INITIATED, SagaState.SALE_FAILED);
+        endAfterCommit(sagaId, SagaEventType.ERROR, reason,
+                SagaResponse.failure(sagaId, SagaState.SALE_FAILED, reason));
+    }
+
+    /**
+     * Moves the saga into the state of the step about to call a remote service.
+     *
+     * @param sagaId      The saga identifier
+     * @param stepState   The step state to enter
+     * @param callMessage Description of the remote call, logged as SERVICE_CALL_STARTED
+     * @return the saga in its new state
+     */
+    @Transactional
+    public SagaExecution beginStep(String sagaId, SagaState stepState, String callMessage) {
+        SagaExecution saga = load(sagaId);
+        SagaState previousState = saga.getCurrentState();
+        advance(saga, stepState);
+        sagaTimeoutManager.track(sagaId, saga.getDeadlineAt());
+
+        sagaMetrics.recordStateTransition(previousState, stepState);
+        logSagaEvent(sagaId, SagaEventType.STATE_TRANSITION, "Transitioned to " + stepState);
+        logSagaEvent(sagaId, SagaEventType.SERVICE_CALL_STARTED, callMessage);
+        return saga;
+    }
+
+    /**
+     * Records the successful result of the step in progress.
+     * Rejected with a {@link SagaStateConflictException} once the saga is being compensated or is final,
+     * e.g. when its timeout fired while the remote call was in flight; the caller then undoes the step.
+     *
+     * @param sagaId  The saga identifier
+     * @param update  Copies the remote result (reservation, payment or order ID) onto the saga
+     * @param message Description logged as SERVICE_CALL_COMPLETED
+     * @return the updated saga
+     */
+    @Transactional
+    public SagaExecution completeStep(String sagaId, Consumer<SagaExecution> update, String message) {
+        SagaExecution saga = loadInStep(sagaId);
+        update.accept(saga);
+        saga.setUpdatedAt(LocalDateTime.now());
+        SagaExecution saved = saveInStep(saga);
+
+        logSagaEvent(sagaId, SagaEventType.SERVICE_CALL_COMPLETED, message);
+        return saved;
+    }
+
+    /**
+     * Records a failed step without changing state; compensation decides the next state.
+     * Rejected like {@link #completeStep} once the saga is being compensated or is final.
+     *
+     * @param sagaId       The saga identifier
+     * @param eventType    SERVICE_CALL_FAILED, SERVICE_CALL_COMPLETED for a negative business answer, or ERROR
+     * @param errorMessage The failure description
+     */
+    @Transactional
+    public void failStep(String sagaId, SagaEventType eventType, String errorMessage) {
+        SagaExecution saga = loadInStep(sagaId);
+        saga.setErrorMessage(errorMessage);
+        saveInStep(saga);
+
+        if (eventType != SagaEventType.ERROR) {
+            logSagaEvent(sagaId, eventType, errorMessage);
+        }
+        logSagaEvent(sagaId, SagaEventType.ERROR, errorMessage);
+    }
+
+    /**
+     * Marks the saga as SALE_CONFIRMED.
+     *
+     * @param sagaId The saga identifier
+     * @return the confirmed saga
+     */
+    @Transactional
+    public SagaExecution confirmSale(String sagaId) {
+        SagaExecution saga = load(sagaId);
+        SagaState previousState = saga.getCurrentState();
+        finish(saga, SagaState.SALE_CONFIRMED, saga.getErrorMessage());
+        sagaTimeoutManager.track(sagaId, null);
+
+        sagaMetrics.recordStateTransition(previousState, SagaState.SALE_CONFIRMED);
+        endAfterCommit(sagaId, SagaEventType.SAGA_COMPLETED, "Saga completed successfully",
+                SagaResponse.success(sagaId, SagaState.SALE_CONFIRMED, "Sale completed successfully"));
+        return saga;
+    }
+
+    /**
+     * Starts compensation: sagas that reserved stock move to STOCK_RELEASING first,
+     * so a crash during the release leaves a visible compensation step behind.
+     * Other sagas stay in their state but still take a new version, so a concurrent
+     * timeout cannot compensate them a second time.
+     * The error message is recorded by {@link #failStep} and {@link #failSale}.
+     *
+     * @param sagaId       The saga identifier
+     * @param errorMessage The error that triggered compensation
+     * @return the saga in its compensation state
+     */
+    @Transactional
+    public SagaExecution beginCompensation(String sagaId, String errorMessage) {
+        return beginCompensation(sagaId, null, errorMessage);
+    }
+
+    /**
+     * Starts compensation only if the saga is still at the version the caller observed,
+     * so a timeout cannot take over a saga whose step has completed in the meantime.
+     *
+     * @param sagaId          The saga identifier
+     * @param expectedVersion The observed version, or null for the current one
+     * @param errorMessage    The error that triggered compensation
+     * @return the saga in its compensation state
+     */
+    @Transactional
+    public SagaExecution beginCompensation(String sagaId, Long expectedVersion, String errorMessage) {
+        SagaExecution saga = load(sagaId, expectedVersion);
+        SagaState previousState = saga.getCurrentState();
+        SagaState compensationState = previousState.getCompensationState();
+        if (compensationState == SagaState.STOCK_RELEASING && saga.canTransitionTo(compensationState)) {
+            advance(saga, compensationState);
+            sagaMetrics.recordStateTransition(previousState, compensationState);
+        } else {
+            advance(saga, previousState);
+        }
+        sagaTimeoutManager.track(sagaId, saga.getDeadlineAt());
+
+        logSagaEvent(sagaId, SagaEventType.COMPENSATION_STARTED,
+                "Starting compensation due to: " + errorMessage);
+        return saga;
+    }
+
+    /**
+     * Marks the saga as SALE_FAILED once compensation has run.
+     *
+     * @param sagaId            The saga identifier
+     * @param errorMessage      The final error message
+     * @param compensationLog   Summary of the compensation actions
+     * @param compensationState "successful" or "partial"
+     */
+    @Transactional
+    public void failSale(String sagaId, String errorMessage, String compensationLog, String compensationState) {
+        failSale(sagaId, null, errorMessage, compensationLog, compensationState);
+    }
+
+    /**
+     * Marks the saga as SALE_FAILED only if it is still at the version the caller observed.
+     *
+     * @param sagaId            The saga identifier
+     * @param expectedVersion   The observed version, or null for the current one
+     * @param errorMessage      The final error message
+     * @param compensationLog   Summary of the compensation actions
+     * @param compensationState "successful" or "partial"
+     */
+    @Transactional
+    public void failSale(String sagaId, Long expectedVersion, String errorMessage, String compensationLog,
+                         String compensationState) {
+        SagaExecution saga = load(sagaId, expectedVersion);
+        SagaState previousState = saga.getCurrentState();
+        if (!previousState.isFinalState() && !saga.canTransitionTo(SagaState.SALE_FAILED)) {
+            // Compensation never started; the timeout handler compensates the saga once its deadline passes
+            logger.warn("Saga cannot move from {} to SALE_FAILED: sagaId={}", previousState, sagaId);
+            sagaExecutionRepository.updateErrorMessage(sagaId, errorMessage);
+            return;
+        }
+        finish(saga, SagaState.SALE_FAILED, errorMessage);
+        sagaTimeoutManager.track(sagaId, null);
+        sagaMetrics.recordStateTransition(previousState, SagaState.SALE_FAILED);
+
+        endAfterCommit(sagaId, SagaEventType.COMPENSATION_COMPLETED,
+                "Compensation " + compensationState + ": " + compensationLog,
+                SagaResponse.failure(sagaId, SagaState.SALE_FAILED, "Sale failed: " + errorMessage));
+    }
+
+    /**
+     * Logs saga events for audit trail and observability.
+     * The event is written behind by the journal, independently of the caller's transaction.
+     *
+     * @param sagaId    The saga identifier
+     * @param eventType The type of event
+     * @param eventData Additional event details
+     */
+    public void logSagaEvent(String sagaId, SagaEventType eventType, String eventData) {
+        journal(sagaId, eventType, eventData, false);
+    }
+
+    /**
+     * Journals the event ending a saga and pushes its final state to the subscribers once the transaction
+     * that wrote that state has committed: the wait for the journal flush no longer holds the transaction open,
+     * a rolled back transition leaves no terminal event behind, and a subscriber reading the saga back never
+     * sees the previous state.
+     */
+    private void endAfterCommit(String sagaId, SagaEventType eventType, String eventData, SagaResponse response) {
+        Runnable end = () -> {
+            journal(sagaId, eventType, eventData, true);
+            sagaCompletionNotifier.publishFinalState(response);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            end.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                end.run();
+            }
+        });
+    }
+
+    private void journal(String sagaId, SagaEventType eventType, String eventData, boolean terminal) {
+        SagaEvent event = new SagaEvent();
+        event.setEventId(TimeOrderedUuidGenerator.nextString());
+        event.setSagaId(sagaId);
+        event.setEventType(eventType);
+        event.setEventData(Map.of("message", eventData));
+        event.setCreatedAt(LocalDateTime.now());
+
+        sagaEventJournal.append(event, terminal);
+
+        logger.info("Saga event logged: sagaId={}, eventType={}, data={}",
+                sagaId, eventType, eventData);
+    }
+
+    /**
+     * Moves a loaded saga to a step state, or keeps its state while taking a new version, with the deadline
+     * of that state. The saga is detached by the update and mirrors the new row.
+     */
+    private void advance(SagaExecution saga, SagaState newState) {
+        SagaState expectedState = saga.getCurrentState();
+        if (saga.isInFinalState() || (newState != expectedState && !saga.canTransitionTo(newState))) {
+            throw conflict(saga.getSagaId(), expectedState, newState);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime deadlineAt = sagaTimeoutManager.deadlineFor(newState, now);
+        if (sagaExecutionRepository.compareAndSetState(saga.getSagaId(), expectedState, saga.getVersion(),
+                newState, deadlineAt, now) == 0) {
+            throw conflict(saga.getSagaId(), expectedState, newState);
+        }
+        saga.setCurrentState(newState);
+        saga.setVersion(saga.getVersion() + 1);
+        saga.setUpdatedAt(now);
+        saga.setDeadlineAt(deadlineAt);
+    }
+
+    /**
+     * Moves a loaded saga to a final state with its error message. The saga is detached by the update
+     * and mirrors the new row.
+     */
+    private void finish(SagaExecution saga, SagaState finalState, String errorMessage) {
+        SagaState expectedState = saga.getCurrentState();
+        if (!saga.canTransitionTo(finalState)) {
+            throw conflict(saga.getSagaId(), expectedState, finalState);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (sagaExecutionRepository.compareAndSetFinalState(saga.getSagaId(), expectedState, saga.getVersion(),
+                finalState, errorMessage, now) == 0) {
+            throw conflict(saga.getSagaId(), expectedState, finalState);
+        }
+        saga.setCurrentState(finalState);
+        saga.setVersion(saga.getVersion() + 1);
+        saga.setErrorMessage(errorMessage);
+        saga.setUpdatedAt(now);
+        saga.setDeadlineAt(null);
+    }
+
+    private SagaStateConflictException conflict(String sagaId, SagaState expectedState, SagaState newState) {
+        logger.warn("Saga transition lost to a concurrent update: sagaId={}, from={}, to={}",
+                sagaId, expectedState, newState);
+        sagaMetrics.recordError("StateTransitionConflict", "concurrent_update");
+        return new SagaStateConflictException(sagaId, expectedState, newState);
+    }
+
+    private SagaExecution load(String sagaId, Long expectedVersion) {
+        SagaExecution saga = load(sagaId);
+        if (expectedVersion != null && !expectedVersion.equals(saga.getVersion())) {
+            throw conflict(sagaId, saga.getCurrentState(), saga.getCurrentState());
+        }
+        return saga;
+    }
+
+    /**
+     * Loads a saga whose step result is about to be recorded, rejecting it once compensation has taken over.
+     */
+    private SagaExecution loadInStep(String sagaId) {
+        SagaExecution saga = load(sagaId);
+        if (saga.isInFinalState() || saga.getCurrentState().isCompensationState()) {
+            logger.warn("Step result for a saga already in {} rejected: sagaId={}", saga.getCurrentState(), sagaId);
+            sagaMetrics.recordError("StateTransitionConflict", "concurrent_update");
+            throw new SagaStateConflictException(sagaId, saga.getCurrentState());
+        }
+        return saga;
+    }
+
+    /**
+     * Writes a step result now, so a saga moved on since it was loaded fails here as a conflict.
+     */
+    private SagaExecution saveInStep(SagaExecution saga) {
+        try {
+            return sagaExecutionRepository.saveAndFlush(saga);
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Step result lost to a concurrent update: sagaId={}", saga.getSagaId());
+            sagaMetrics.recordError("StateTransitionConflict", "concurrent_update");
+            throw new SagaStateConflictException(saga.getSagaId(), saga.getCurrentState());
+        }
+    }
+
+    private SagaExecution load(String sagaId) {
+        SagaExecution saga = sagaExecutionRepository.findById(sagaId)
+                .orElseThrow(() -> new IllegalStateException("Saga not found: " + sagaId));
+        // Steps read the cart lines after this transaction has ended
+        Hibernate.initialize(saga.getLines());
+        return saga;
+    }
+}
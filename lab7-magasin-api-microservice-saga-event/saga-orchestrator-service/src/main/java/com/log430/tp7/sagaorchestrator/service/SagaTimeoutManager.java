@@ -7,18 +7,26 @@ import com.log430.tp7.sagaorchestrator.model.SagaState;
 import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Service responsible for managing saga timeouts and executing automatic compensation.
- * Runs scheduled cleanup tasks to detect and handle timed-out sagas.
+ *
+ * Every active saga has a deadline_at, set by {@link SagaStepStore} on each step transition and
+ * mirrored in a {@link SagaTimeoutWheel} that is rebuilt from the database on startup, so a timeout
+ * fires within one wheel tick without scanning the active sagas. A coarse sweep over overdue
+ * deadlines catches anything the wheel missed, such as sagas left by another instance.
  */
 @Service
 public class SagaTimeoutManager {
@@ -46,9 +54,24 @@ public class SagaTimeoutManager {
     @Value("${saga.timeout.order-confirmation:30000}") // 30 seconds
     private long orderConfirmationTimeoutMs;
     
+    @Value("${saga.timeout.wheel-tick:100}") // timeouts fire at most one tick late
+    private long wheelTickMs;
+    
+    @Value("${saga.timeout.wheel-size:512}")
+    private int wheelSize;
+    
     // State-specific timeout mapping
     private Map<SagaState, Long> stateTimeouts;
     
+    private SagaTimeoutWheel timeoutWheel;
+    
+    // Expired sagas are compensated here, off the wheel thread
+    private final ExecutorService timeoutExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "saga-timeout-handler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
     public SagaTimeoutManager(
             SagaExecutionRepository sagaExecutionRepository,
             SagaCompensationService sagaCompensationService,
@@ -71,6 +94,8 @@ public class SagaTimeoutManager {
             SagaState.PAYMENT_PROCESSING, paymentProcessingTimeoutMs,
             SagaState.ORDER_CONFIRMING, orderConfirmationTimeoutMs
         );
+        timeoutWheel = new SagaTimeoutWheel("saga-timeout-wheel", wheelTickMs, wheelSize,
+            sagaId -> timeoutExecutor.execute(() -> handleExpiredSaga(sagaId)));
         
         logger.info("Saga timeout manager initialized with timeouts: " +
                    "default={}ms, stock-verification={}ms, stock-reservation={}ms, " +
@@ -79,35 +104,90 @@ public class SagaTimeoutManager {
                    paymentProcessingTimeoutMs, orderConfirmationTimeoutMs);
     }
     
+    @PreDestroy
+    public void shutdown() {
+        timeoutWheel.shutdown();
+        timeoutExecutor.shutdown();
+    }
+    
+    /**
+     * Computes when a saga entering the given state times out.
+     * 
+     * @param state the state being entered
+     * @param from when the state was entered
+     * @return the deadline, or null for final states
+     */
+    public LocalDateTime deadlineFor(SagaState state, LocalDateTime from) {
+        if (state.isFinalState()) {
+            return null;
+        }
+        long timeoutMs = stateTimeouts.getOrDefault(state, defaultTimeoutMs);
+        return from.plusNanos(timeoutMs * 1_000_000);
+    }
+    
+    /**
+     * Mirrors a persisted deadline in the timeout wheel.
+     * 
+     * @param sagaId the saga identifier
+     * @param deadlineAt the saga's deadline, or null once it is final
+     */
+    public void track(String sagaId, LocalDateTime deadlineAt) {
+        if (deadlineAt == null) {
+            timeoutWheel.cancel(sagaId);
+        } else {
+            timeoutWheel.schedule(sagaId, deadlineAt);
+        }
+    }
+    
+    /**
+     * Loads the deadlines of active sagas into the timeout wheel on startup.
+     * Active sagas recorded before deadlines were persisted get one from their last update.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadDeadlines() {
+        try {
+            List<SagaExecution> untracked = sagaExecutionRepository.findActiveSagasWithoutDeadline();
+            for (SagaExecution saga : untracked) {
+                sagaExecutionRepository.updateDeadline(saga.getSagaId(),
+                    deadlineFor(saga.getCurrentState(), saga.getUpdatedAt()));
+            }
+            
+            List<Object[]> deadlines = sagaExecutionRepository.findPendingDeadlines();
+            for (Object[] row : deadlines) {
+                timeoutWheel.schedule((String) row[0], (LocalDateTime) row[1]);
+            }
+            
+            logger.info("Saga timeout wheel loaded: {} active sagas ({} given a deadline)",
+                       deadlines.size(), untracked.size());
+            
+        } catch (Exception e) {
+            // The sweep still finds overdue sagas
+            logger.error("Failed to load saga deadlines into the timeout wheel", e);
+            sagaMetrics.recordError("TimeoutWheelLoadError", "timeout_management");
+        }
+    }
+    
     /**
-     * Scheduled task that runs every 30 seconds to detect and handle timed-out sagas.
+     * Safety-net sweep over overdue deadlines, for sagas the wheel does not hold
+     * (another instance, a failed load, a deadline scheduled while its tick was being expired).
      * Uses fixed delay to ensure previous execution completes before starting next one.
      */
-    @Scheduled(fixedDelay = 30000) // Every 30 seconds
-    @Transactional
+    @Scheduled(fixedDelayString = "${saga.timeout.sweep-interval:300000}") // Every 5 minutes
     public void handleTimeouts() {
-        logger.debug("Starting saga timeout detection and cleanup");
+        logger.debug("Starting saga timeout sweep");
         
         try {
-            // Find all active sagas that might be timed out
-            List<SagaExecution> activeSagas = sagaExecutionRepository.findActiveSagas();
+            List<String> overdueSagaIds = sagaExecutionRepository.findSagaIdsPastDeadline(LocalDateTime.now());
             
             int timeoutCount = 0;
-            LocalDateTime now = LocalDateTime.now();
-            
-            for (SagaExecution saga : activeSagas) {
-                if (isSagaTimedOut(saga, now)) {
-                    logger.warn("Detected timed-out saga: sagaId={}, state={}, lastUpdated={}", 
-                               saga.getSagaId(), saga.getCurrentState(), saga.getUpdatedAt());
-                    
-                    executeTimeoutCompensation(saga);
+            for (String sagaId : overdueSagaIds) {
+                if (handleExpiredSaga(sagaId)) {
                     timeoutCount++;
                 }
             }
             
             if (timeoutCount > 0) {
-                logger.info("Processed {} timed-out sagas", timeoutCount);
-                sagaMetrics.recordTimeoutCleanup(timeoutCount);
+                logger.info("Timeout sweep processed {} timed-out sagas", timeoutCount);
             }
             
         } catch (Exception e) {
@@ -116,6 +196,45 @@ public class SagaTimeoutManager {
         }
     }
     
+    /**
+     * Handles a saga whose deadline has passed, from the wheel or the sweep.
+     * The saga is re-read first: if it has moved on since the deadline was set, the deadline
+     * is pushed back to match its current state instead of compensating it.
+     * 
+     * @param sagaId the saga identifier
+     * @return true if the saga was timed out and compensated
+     */
+    public boolean handleExpiredSaga(String sagaId) {
+        try {
+            SagaExecution saga = sagaExecutionRepository.findById(sagaId).orElse(null);
+            if (saga == null || saga.isInFinalState()) {
+                timeoutWheel.cancel(sagaId);
+                return false;
+            }
+            
+            LocalDateTime now = LocalDateTime.now();
+            if (!isSagaTimedOut(saga, now)) {
+                LocalDateTime deadline = deadlineFor(saga.getCurrentState(), saga.getUpdatedAt());
+                sagaExecutionRepository.updateDeadline(sagaId, deadline);
+                timeoutWheel.schedule(sagaId, deadline);
+                return false;
+            }
+            
+            logger.warn("Detected timed-out saga: sagaId={}, state={}, lastUpdated={}", 
+                       saga.getSagaId(), saga.getCurrentState(), saga.getUpdatedAt());
+            if (!executeTimeoutCompensation(saga)) {
+                return false;
+            }
+            sagaMetrics.recordTimeoutCleanup(1);
+            return true;
+            
+        } catch (Exception e) {
+            logger.error("Error handling expired saga: sagaId={}", sagaId, e);
+            sagaMetrics.recordError("TimeoutHandlingError", "timeout_management");
+            return false;
+        }
+    }
+    
     /**
      * Determines if a saga has timed out based on its current state and last update time.
      * 
@@ -147,12 +266,14 @@ public class SagaTimeoutManager {
     
     /**
      * Executes timeout compensation for a timed-out saga.
-     * Logs the timeout event and delegates to the compensation service.
+     * Logs the timeout event and delegates to the compensation service, which only compensates
+     * if the saga is still in the state and version observed here; a step that completed in the
+     * meantime wins, and its saga is handled again at its next deadline.
      * 
      * @param saga the timed-out saga
+     * @return true if the saga was compensated
      */
-    @Transactional
-    public void executeTimeoutCompensation(SagaExecution saga) {
+    public boolean executeTimeoutCompensation(SagaExecution saga) {
         String sagaId = saga.getSagaId();
         SagaState currentState = saga.getCurrentState();
         
@@ -169,29 +290,25 @@ public class SagaTimeoutManager {
                                          timeoutMessage, getTimeoutMinutes(currentState));
             
             // Execute compensation based on current state
-            sagaCompensationService.executeCompensation(saga, "TIMEOUT");
+            if (!sagaCompensationService.executeCompensation(saga, "TIMEOUT")) {
+                logger.info("Saga moved on before its timeout compensation: sagaId={}", sagaId);
+                return false;
+            }
             
             // Record timeout metrics
             sagaMetrics.incrementSagaTimeout(currentState.toString());
             
             logger.info("Timeout compensation completed for saga: sagaId={}", sagaId);
+            return true;
             
         } catch (Exception e) {
+            // The saga keeps its deadline and is compensated again when it next expires
             logger.error("Failed to execute timeout compensation for saga: sagaId={}, error={}", 
                         sagaId, e.getMessage(), e);
             
             // Record compensation failure
             sagaMetrics.recordError("TimeoutCompensationFailed", "timeout_management");
-            
-            // Ensure saga is marked as failed even if compensation fails
-            try {
-                saga.transitionTo(SagaState.SALE_FAILED);
-                saga.setErrorMessage("Timeout compensation failed: " + e.getMessage());
-                sagaExecutionRepository.save(saga);
-            } catch (Exception saveError) {
-                logger.error("Failed to save saga after timeout compensation failure: sagaId={}", 
-                           sagaId, saveError);
-            }
+            return false;
         }
     }
     
@@ -207,7 +324,7 @@ public class SagaTimeoutManager {
     }
     
     /**
-     * Manually triggers timeout detection and cleanup.
+     * Manually triggers timeout detection and cleanup over every active saga.
      * Useful for testing or manual intervention.
      * 
      * @return number of sagas that were timed out and compensated
@@ -220,8 +337,7 @@ public class SagaTimeoutManager {
         int timeoutCount = 0;
         
         for (SagaExecution saga : activeSagas) {
-            if (isSagaTimedOut(saga, now)) {
-                executeTimeoutCompensation(saga);
+            if (isSagaTimedOut(saga, now) && executeTimeoutCompensation(saga)) {
                 timeoutCount++;
             }
         }
@@ -241,10 +357,18 @@ public class SagaTimeoutManager {
             "stock-verification", stockVerificationTimeoutMs,
             "stock-reservation", stockReservationTimeoutMs,
             "payment-processing", paymentProcessingTimeoutMs,
-            "order-confirmation", orderConfirmationTimeoutMs
+            "order-confirmation", orderConfirmationTimeoutMs,
+            "wheel-tick", wheelTickMs
         );
     }
     
+    /**
+     * @return number of sagas with a pending deadline in the timeout wheel
+     */
+    public int getTrackedSagaCount() {
+        return timeoutWheel.size();
+    }
+    
     /**
      * Finds sagas that are approaching timeout (within 80% of timeout duration).
      * Useful for proactive monitoring and alerting.
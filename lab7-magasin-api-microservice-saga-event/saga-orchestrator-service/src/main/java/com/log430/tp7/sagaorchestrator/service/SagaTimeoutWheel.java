@@ -0,0 +1,179 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel holding one deadline per saga.
+ * Scheduling, rescheduling and cancelling a deadline are O(1): it goes into the bucket of its tick,
+ * and a single thread advances the wheel one tick at a time, expiring the entries of that bucket whose
+ * deadline has been reached. Deadlines further than one revolution away wait in their bucket for their round.
+ * A deadline is bucketed under the same lock the wheel thread holds while it moves to a tick, so it can never
+ * land in a bucket that was just passed and wait a whole revolution.
+ *
+ * Expired saga IDs are handed to the expiry handler on the wheel thread, so the handler should only
+ * queue the work. An entry may still expire after its saga has moved on; the handler re-checks the saga.
+ */
+public class SagaTimeoutWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(SagaTimeoutWheel.class);
+
+    private final long tickMillis;
+    private final int mask;
+    private final Set<Timeout>[] buckets;
+    private final Map<String, Timeout> timeouts = new HashMap<>();
+    private final Object lock = new Object();
+    private final Consumer<String> expiryHandler;
+    private final ScheduledExecutorService ticker;
+    private final long startMillis;
+    private long currentTick;
+
+    /**
+     * @param name          Name of the wheel thread
+     * @param tickMillis    Resolution of the wheel; deadlines fire at most one tick late
+     * @param wheelSize     Number of buckets, rounded up to a power of two
+     * @param expiryHandler Receives the ID of each saga whose deadline has passed
+     */
+    @SuppressWarnings("unchecked")
+    public SagaTimeoutWheel(String name, long tickMillis, int wheelSize, Consumer<String> expiryHandler) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.buckets = new Set[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new HashSet<>();
+        }
+        this.expiryHandler = expiryHandler;
+        this.startMillis = System.currentTimeMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the deadline of a saga, replacing the previous one.
+     *
+     * @param sagaId   The saga identifier
+     * @param deadline When the saga times out; a past deadline expires on the next tick
+     */
+    public void schedule(String sagaId, LocalDateTime deadline) {
+        long deadlineMillis = deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long deadlineTick = Math.ceilDiv(deadlineMillis - startMillis, tickMillis);
+
+        synchronized (lock) {
+            Timeout timeout = new Timeout(sagaId, Math.max(deadlineTick, currentTick + 1));
+            Timeout previous = timeouts.put(sagaId, timeout);
+            if (previous != null) {
+                bucket(previous.tick).remove(previous);
+            }
+            bucket(timeout.tick).add(timeout);
+        }
+    }
+
+    /**
+     * Removes the deadline of a saga, typically once it has reached a final state.
+     *
+     * @param sagaId The saga identifier
+     */
+    public void cancel(String sagaId) {
+        synchronized (lock) {
+            Timeout previous = timeouts.remove(sagaId);
+            if (previous != null) {
+                bucket(previous.tick).remove(previous);
+            }
+        }
+    }
+
+    /**
+     * @return number of sagas with a pending deadline
+     */
+    public int size() {
+        synchronized (lock) {
+            return timeouts.size();
+        }
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+        synchronized (lock) {
+            timeouts.clear();
+        }
+    }
+
+    private void advance() {
+        // Catch up on ticks missed while the thread was not scheduled
+        long targetTick = (System.currentTimeMillis() - startMillis) / tickMillis;
+        while (true) {
+            List<String> expired;
+            synchronized (lock) {
+                if (currentTick >= targetTick) {
+                    return;
+                }
+                currentTick++;
+                expired = expire(currentTick);
+            }
+            // The handler runs outside the lock so scheduling never waits on it
+            for (String sagaId : expired) {
+                try {
+                    expiryHandler.accept(sagaId);
+                } catch (Exception e) {
+                    logger.error("Saga timeout handler failed: sagaId={}", sagaId, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the entries of a tick whose deadline is reached; called with the lock held.
+     */
+    private List<String> expire(long tick) {
+        List<String> expired = new ArrayList<>();
+        for (Iterator<Timeout> iterator = bucket(tick).iterator(); iterator.hasNext(); ) {
+            Timeout timeout = iterator.next();
+            if (timeout.tick > tick) {
+                continue; // due in a later round
+            }
+            iterator.remove();
+            timeouts.remove(timeout.sagaId, timeout);
+            expired.add(timeout.sagaId);
+        }
+        return expired;
+    }
+
+    private Set<Timeout> bucket(long tick) {
+        return buckets[(int) (tick & mask)];
+    }
+
+    /**
+     * A pending deadline; compared by identity so a rescheduled saga never matches its old entry.
+     */
+    private static final class Timeout {
+        private final String sagaId;
+        private final long tick;
+
+        private Timeout(String sagaId, long tick) {
+            this.sagaId = sagaId;
+            this.tick = tick;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.dto.SagaResponse;
+import com.log430.tp7.sagaorchestrator.dto.SaleRequest;
+import com.log430.tp7.sagaorchestrator.exception.IdempotencyKeyMismatchException;
+import com.log430.tp7.sagaorchestrator.exception.SagaException;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import com.log430.tp7.sagaorchestrator.model.SaleIdempotencyKey;
+import com.log430.tp7.sagaorchestrator.repository.SaleIdempotencyKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Collapses client retries of a sale onto one saga through the {@code Idempotency-Key} header.
+ *
+ * Keys are scoped to the customer of the sale. The first sale with a key claims it in
+ * {@code sale_idempotency_keys} under a fresh saga ID, together with a hash of the request, before the saga
+ * starts; a later sale with the same key and request gets that saga's current state instead of starting a
+ * duplicate, and one with a different request is rejected with {@link IdempotencyKeyMismatchException}.
+ * Duplicates arriving while the first request is still running on this instance wait for it and share its
+ * response. Recently used keys are kept in a bounded in-memory cache so replays skip the mapping table.
+ */
+@Service
+public class SaleIdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SaleIdempotencyService.class);
+
+    private final SagaOrchestrator sagaOrchestrator;
+    private final SagaArchiveService sagaArchiveService;
+    private final SaleIdempotencyKeyRepository keyRepository;
+    private final SagaMetrics sagaMetrics;
+    private final SagaConfiguration.SagaIdempotencyProperties properties;
+
+    // Requests currently starting a saga, by customer and key
+    private final Map<ScopedKey, InFlight> inFlight = new ConcurrentHashMap<>();
+    // Least recently used mappings beyond cache-size are evicted
+    private final Map<ScopedKey, SaleIdempotencyKey> recentKeys;
+
+    public SaleIdempotencyService(SagaOrchestrator sagaOrchestrator,
+                                  SagaArchiveService sagaArchiveService,
+                                  SaleIdempotencyKeyRepository keyRepository,
+                                  SagaMetrics sagaMetrics,
+                                  SagaConfiguration.SagaIdempotencyProperties properties) {
+        this.sagaOrchestrator = sagaOrchestrator;
+        this.sagaArchiveService = sagaArchiveService;
+        this.keyRepository = keyRepository;
+        this.sagaMetrics = sagaMetrics;
+        this.properties = properties;
+        this.recentKeys = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ScopedKey, SaleIdempotencyKey> eldest) {
+                return size() > properties.getCacheSize();
+            }
+        });
+    }
+
+    /**
+     * Executes a sale saga once per idempotency key and waits for its final state.
+     *
+     * @param idempotencyKey the client's idempotency key
+     * @param request The sale request containing customer and product details
+     * @return the final state of the new saga, or the current state of the saga already started for the key
+     * @throws IdempotencyKeyMismatchException if the customer used the key for a different request
+     */
+    public SagaResponse executeSale(String idempotencyKey, SaleRequest request) {
+        return startOnce(idempotencyKey, request, sagaId -> sagaOrchestrator.startSale(sagaId, request).join());
+    }
+
+    /**
+     * Queues a sale saga once per idempotency key.
+     *
+     * @param idempotencyKey the client's idempotency key
+     * @param request The sale request containing customer and product details
+     * @return the new saga in SALE_INITIATED state, or the current state of the saga already started for the key
+     * @throws IdempotencyKeyMismatchException if the customer used the key for a different request
+     */
+    public SagaResponse submitSale(String idempotencyKey, SaleRequest request) {
+        return startOnce(idempotencyKey, request, sagaId -> sagaOrchestrator.submitSale(sagaId, request));
+    }
+
+    /**
+     * Deletes expired key mappings from the table and the cache.
+     *
+     * @return number of purged mappings
+     */
+    @Scheduled(fixedDelayString = "${saga.idempotency.purge-interval:600000}")
+    public int purgeExpiredKeys() {
+        LocalDateTime now = LocalDateTime.now();
+        synchronized (recentKeys) {
+            recentKeys.values().removeIf(mapping -> !mapping.getExpiresAt().isAfter(now));
+        }
+
+        int purged = keyRepository.deleteExpired(now);
+        if (purged > 0) {
+            logger.info("Purged {} expired idempotency keys", purged);
+        }
+        return purged;
+    }
+
+    /**
+     * Runs the sale unless a request with the same key is running or has already started a saga.
+     */
+    private SagaResponse startOnce(String idempotencyKey, SaleRequest request, Function<String, SagaResponse> sale) {
+        ScopedKey scopedKey = new ScopedKey(request.customerId(), idempotencyKey);
+        String requestHash = requestHash(request);
+        InFlight mine = new InFlight(requestHash, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(scopedKey, mine);
+        if (running != null) {
+            if (!running.requestHash().equals(requestHash)) {
+                throw mismatch(scopedKey, null);
+            }
+            sagaMetrics.incrementIdempotentReplay("coalesced");
+            logger.info("Sale coalesced onto the running request: idempotencyKey={}", idempotencyKey);
+            try {
+                return running.response().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            SagaResponse response = claimAndRun(scopedKey, requestHash, sale);
+            mine.response().complete(response);
+            return response;
+        } catch (Throwable t) {
+            // Duplicates waiting on this request fail the same way
+            mine.response().completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(scopedKey, mine);
+        }
+    }
+
+    private SagaResponse claimAndRun(ScopedKey scopedKey, String requestHash, Function<String, SagaResponse> sale) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<SaleIdempotencyKey> existing = findMapping(scopedKey, now);
+        if (existing.isPresent()) {
+            return replay(existing.get(), requestHash);
+        }
+
+        String sagaId = TimeOrderedUuidGenerator.nextString();
+        LocalDateTime expiresAt = now.plusHours(properties.getTtlHours());
+        if (keyRepository.claim(scopedKey.customerId(), scopedKey.idempotencyKey(), requestHash, sagaId, now,
+                expiresAt) == 0) {
+            // Another instance claimed the key since the lookup
+            SaleIdempotencyKey mapping = keyRepository.findByCustomerIdAndIdempotencyKeyAndExpiresAtAfter(
+                    scopedKey.customerId(), scopedKey.idempotencyKey(), now)
+                .orElseThrow(() -> new SagaException("Idempotency key is held by an expired saga mapping"));
+            recentKeys.put(scopedKey, mapping);
+            return replay(mapping, requestHash);
+        }
+        recentKeys.put(scopedKey, new SaleIdempotencyKey(scopedKey.customerId(), scopedKey.idempotencyKey(),
+            requestHash, sagaId, now, expiresAt));
+
+        try {
+            return sale.apply(sagaId);
+        } catch (SagaException e) {
+            // The saga was shed or could not be persisted: free the key for the client's retry
+            recentKeys.remove(scopedKey);
+            keyRepository.release(scopedKey.customerId(), scopedKey.idempotencyKey(), sagaId);
+            throw e;
+        }
+    }
+
+    private Optional<SaleIdempotencyKey> findMapping(ScopedKey scopedKey, LocalDateTime now) {
+        SaleIdempotencyKey cached = recentKeys.get(scopedKey);
+        if (cached != null && cached.getExpiresAt().isAfter(now)) {
+            return Optional.of(cached);
+        }
+
+        Optional<SaleIdempotencyKey> stored = keyRepository.findByCustomerIdAndIdempotencyKeyAndExpiresAtAfter(
+            scopedKey.customerId(), scopedKey.idempotencyKey(), now);
+        stored.ifPresent(mapping -> recentKeys.put(scopedKey, mapping));
+        return stored;
+    }
+
+    /**
+     * Answers a retried sale with the current state of the saga started for its key,
+     * provided the retry carries the same request as the sale that claimed the key.
+     */
+    private SagaResponse replay(SaleIdempotencyKey mapping, String requestHash) {
+        String sagaId = mapping.getSagaId();
+        if (!mapping.getRequestHash().equals(requestHash)) {
+            throw mismatch(new ScopedKey(mapping.getCustomerId(), mapping.getIdempotencyKey()), sagaId);
+        }
+        sagaMetrics.incrementIdempotentReplay("replayed");
+        logger.info("Sale replayed from its idempotency key: idempotencyKey={}, sagaId={}",
+                mapping.getIdempotencyKey(), sagaId);
+
+        return sagaArchiveService.findById(sagaId)
+            .map(saga -> saga.getCurrentState() == SagaState.SALE_FAILED
+                ? SagaResponse.failure(sagaId, SagaState.SALE_FAILED, "Sale failed: " + saga.getErrorMessage())
+                : SagaResponse.success(sagaId, saga.getCurrentState(), "Sale already submitted with this idempotency key"))
+            // Claimed but not persisted yet, by a request still starting on another instance
+            .orElseGet(() -> SagaResponse.success(sagaId, SagaState.SALE_INITIATED,
+                "Sale already submitted with this idempotency key"));
+    }
+
+    private IdempotencyKeyMismatchException mismatch(ScopedKey scopedKey, String sagaId) {
+        sagaMetrics.incrementIdempotentReplay("rejected");
+        logger.warn("Idempotency key reused for a different sale: customerId={}, idempotencyKey={}, sagaId={}",
+                scopedKey.customerId(), scopedKey.idempotencyKey(), sagaId);
+        return new IdempotencyKeyMismatchException(sagaId);
+    }
+
+    /**
+     * SHA-256 of what the sale buys and how it is paid for: the customer, the lines, the amount and the
+     * payment method. Card details are left out so the table never holds a digest of them.
+     */
+    static String requestHash(SaleRequest request) {
+        StringBuilder canonical = new StringBuilder(request.customerId());
+        for (SaleRequest.SaleLine line : request.saleLines()) {
+            canonical.append('\n').append(line.productId()).append('x').append(line.quantity());
+        }
+        BigDecimal amount = request.amount();
+        canonical.append('\n').append(amount == null ? "" : amount.stripTrailingZeros().toPlainString())
+            .append('\n').append(request.paymentDetails() == null ? "" : request.paymentDetails().paymentMethod());
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record ScopedKey(String customerId, String idempotencyKey) {}
+
+    private record InFlight(String requestHash, CompletableFuture<SagaResponse> response) {}
+}
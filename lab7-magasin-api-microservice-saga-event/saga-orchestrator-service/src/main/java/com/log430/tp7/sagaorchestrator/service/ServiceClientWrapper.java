@@ -14,14 +14,23 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
+import static com.log430.tp7.sagaorchestrator.service.DownstreamClientExecutor.INVENTORY_SERVICE;
+import static com.log430.tp7.sagaorchestrator.service.DownstreamClientExecutor.STORE_SERVICE;
+import static com.log430.tp7.sagaorchestrator.service.DownstreamClientExecutor.TRANSACTION_SERVICE;
+
 /**
  * Service wrapper that implements circuit breaker patterns, retry logic, and
  * fallback methods
  * for all external service calls. Provides resilience mechanisms for service
  * unavailability
  * and transient failures.
+ * Blocking client calls run on virtual threads behind a per-service bulkhead ({@link DownstreamClientExecutor}).
+ * Stock verification, a read without side effects behind the stock preview endpoint, is hedged on a second
+ * inventory instance ({@link HedgedRequestExecutor}). The saga steps themselves reserve, charge and order,
+ * so none of them is hedged.
  */
 @Service
 public class ServiceClientWrapper {
@@ -33,18 +42,24 @@ public class ServiceClientWrapper {
     private final StoreServiceClient storeServiceClient;
     private final SagaMetrics sagaMetrics;
     private final SagaEventLogger sagaEventLogger;
+    private final DownstreamClientExecutor clientExecutor;
+    private final HedgedRequestExecutor hedgedRequestExecutor;
 
     public ServiceClientWrapper(
             InventoryServiceClient inventoryServiceClient,
             TransactionServiceClient transactionServiceClient,
             StoreServiceClient storeServiceClient,
             SagaMetrics sagaMetrics,
-            SagaEventLogger sagaEventLogger) {
+            SagaEventLogger sagaEventLogger,
+            DownstreamClientExecutor clientExecutor,
+            HedgedRequestExecutor hedgedRequestExecutor) {
         this.inventoryServiceClient = inventoryServiceClient;
         this.transactionServiceClient = transactionServiceClient;
         this.storeServiceClient = storeServiceClient;
         this.sagaMetrics = sagaMetrics;
         this.sagaEventLogger = sagaEventLogger;
+        this.clientExecutor = clientExecutor;
+        this.hedgedRequestExecutor = hedgedRequestExecutor;
     }
 
     // Inventory Service Calls with Circuit Breaker
@@ -64,14 +79,10 @@ public class ServiceClientWrapper {
         logger.debug("Calling inventory service to verify stock: productId={}, quantity={}, sagaId={}",
                 productId, quantity, sagaId);
 
-        return CompletableFuture.supplyAsync(() -> {
+        CompletableFuture<StockVerificationResponse> verification = hedgedRequestExecutor.supply(INVENTORY_SERVICE,
+                inventoryServiceClient.getInventoryServiceUrl(), baseUrl -> {
             try {
-                StockVerificationResponse response = inventoryServiceClient.verifyStock(productId, quantity, sagaId);
-
-                // Record successful call metrics
-                sagaMetrics.incrementStockVerification(true);
-
-                return response;
+                return inventoryServiceClient.verifyStock(baseUrl, productId, quantity, sagaId);
             } catch (Exception e) {
                 logger.error("Error calling inventory service for stock verification: sagaId={}, error={}",
                         sagaId, e.getMessage());
@@ -83,6 +94,11 @@ public class ServiceClientWrapper {
                 throw new RuntimeException("Inventory service call failed", e);
             }
         });
+
+        // Record successful call metrics once, whichever instance answered; the future itself is returned
+        // so that a timeout cancelling it also cancels the calls in flight
+        verification.thenAccept(response -> sagaMetrics.incrementStockVerification(true));
+        return verification;
     }
 
     /**
@@ -125,7 +141,7 @@ public class ServiceClientWrapper {
         logger.debug("Calling inventory service to reserve stock: productId={}, quantity={}, sagaId={}",
                 productId, quantity, sagaId);
 
-        return CompletableFuture.supplyAsync(() -> {
+        return clientExecutor.supply(INVENTORY_SERVICE, () -> {
             try {
                 StockReservationResponse response = inventoryServiceClient.reserveStock(productId, quantity, sagaId,
                         customerId);
@@ -181,7 +197,7 @@ public class ServiceClientWrapper {
     public CompletableFuture<Void> releaseStock(String reservationId) {
         logger.debug("Calling inventory service to release stock: reservationId={}", reservationId);
 
-        return CompletableFuture.runAsync(() -> {
+        return clientExecutor.run(INVENTORY_SERVICE, () -> {
             try {
                 inventoryServiceClient.releaseStock(reservationId, "saga-compensation");
 
@@ -216,6 +232,158 @@ public class ServiceClientWrapper {
         return CompletableFuture.completedFuture(null);
     }
 
+    /**
+     * Verifies stock for every line of a cart in one call, with circuit breaker and retry patterns.
+     * 
+     * @param lines  the cart lines
+     * @param sagaId the saga correlation ID
+     * @return cart stock verification response
+     */
+    @CircuitBreaker(name = "inventory-service", fallbackMethod = "verifyCartStockFallback")
+    @Retry(name = "inventory-service")
+    @TimeLimiter(name = "inventory-service")
+    public CompletableFuture<CartStockVerificationResponse> verifyCartStock(List<SaleRequest.SaleLine> lines,
+            String sagaId) {
+        logger.debug("Calling inventory service to verify cart stock: lines={}, sagaId={}", lines.size(), sagaId);
+
+        return clientExecutor.supply(INVENTORY_SERVICE, () -> {
+            try {
+                CartStockVerificationResponse response = inventoryServiceClient.verifyCartStock(lines, sagaId);
+
+                // Record successful call metrics
+                sagaMetrics.incrementStockVerification(true);
+
+                return response;
+            } catch (Exception e) {
+                logger.error("Error calling inventory service for cart stock verification: sagaId={}, error={}",
+                        sagaId, e.getMessage());
+
+                // Record failure metrics
+                sagaMetrics.incrementStockVerification(false);
+                sagaMetrics.recordError("ServiceCallException", "stock_verification");
+
+                throw new RuntimeException("Inventory service call failed", e);
+            }
+        });
+    }
+
+    /**
+     * Fallback method for cart stock verification when circuit breaker is open or
+     * service fails.
+     */
+    public CompletableFuture<CartStockVerificationResponse> verifyCartStockFallback(List<SaleRequest.SaleLine> lines,
+            String sagaId, Exception ex) {
+        logger.warn("Cart stock verification fallback triggered: lines={}, sagaId={}, error={}",
+                lines.size(), sagaId, ex.getMessage());
+
+        // Log fallback event
+        sagaEventLogger.logSagaError(sagaId, "CircuitBreakerFallback", "stock_verification",
+                "Inventory service unavailable - fallback triggered", ex);
+
+        // Record circuit breaker fallback metrics
+        sagaMetrics.incrementStockVerification(false);
+        sagaMetrics.recordError("CircuitBreakerFallback", "stock_verification");
+
+        // Return failure response to trigger saga compensation
+        return CompletableFuture.completedFuture(
+                CartStockVerificationResponse.failure(sagaId,
+                        "Inventory service unavailable - circuit breaker open"));
+    }
+
+    /**
+     * Reserves stock for every line of a cart in one call, with circuit breaker and retry patterns.
+     * 
+     * @param lines      the cart lines
+     * @param sagaId     the saga correlation ID
+     * @param customerId the customer identifier
+     * @return cart stock reservation response
+     */
+    @CircuitBreaker(name = "inventory-service", fallbackMethod = "reserveCartStockFallback")
+    @Retry(name = "inventory-service")
+    @TimeLimiter(name = "inventory-service")
+    public CompletableFuture<CartStockReservationResponse> reserveCartStock(List<SaleRequest.SaleLine> lines,
+            String sagaId, String customerId) {
+        logger.debug("Calling inventory service to reserve cart stock: lines={}, sagaId={}", lines.size(), sagaId);
+
+        return clientExecutor.supply(INVENTORY_SERVICE, () -> {
+            try {
+                CartStockReservationResponse response = inventoryServiceClient.reserveCartStock(lines, sagaId,
+                        customerId);
+
+                // Record successful call metrics
+                sagaMetrics.incrementStockReservation(true);
+
+                return response;
+            } catch (Exception e) {
+                logger.error("Error calling inventory service for cart stock reservation: sagaId={}, error={}",
+                        sagaId, e.getMessage());
+
+                // Record failure metrics
+                sagaMetrics.incrementStockReservation(false);
+                sagaMetrics.recordError("ServiceCallException", "stock_reservation");
+
+                throw new RuntimeException("Inventory service call failed", e);
+            }
+        });
+    }
+
+    /**
+     * Fallback method for cart stock reservation when circuit breaker is open or
+     * service fails.
+     */
+    public CompletableFuture<CartStockReservationResponse> reserveCartStockFallback(List<SaleRequest.SaleLine> lines,
+            String sagaId, String customerId, Exception ex) {
+        logger.warn("Cart stock reservation fallback triggered: lines={}, sagaId={}, error={}",
+                lines.size(), sagaId, ex.getMessage());
+
+        // Log fallback event
+        sagaEventLogger.logSagaError(sagaId, "CircuitBreakerFallback", "stock_reservation",
+                "Inventory service unavailable - fallback triggered", ex);
+
+        // Record circuit breaker fallback metrics
+        sagaMetrics.incrementStockReservation(false);
+        sagaMetrics.recordError("CircuitBreakerFallback", "stock_reservation");
+
+        // Return failure response to trigger saga compensation
+        return CompletableFuture.completedFuture(
+                CartStockReservationResponse.failure(sagaId,
+                        "Inventory service unavailable - circuit breaker open"));
+    }
+
+    /**
+     * Releases every stock reservation of a cart saga in one call, with circuit breaker and retry patterns.
+     * 
+     * @param sagaId the saga whose reservations are released
+     */
+    @CircuitBreaker(name = "inventory-service", fallbackMethod = "releaseCartStockFallback")
+    @Retry(name = "inventory-service")
+    @TimeLimiter(name = "inventory-service")
+    public CompletableFuture<Void> releaseCartStock(String sagaId) {
+        logger.debug("Calling inventory service to release cart stock: sagaId={}", sagaId);
+
+        return clientExecutor.run(INVENTORY_SERVICE, () -> {
+            if (!inventoryServiceClient.releaseSagaReservations(sagaId)) {
+                sagaMetrics.recordError("ServiceCallException", "stock_release");
+                throw new RuntimeException("Inventory service call failed");
+            }
+        });
+    }
+
+    /**
+     * Fallback method for cart stock release when circuit breaker is open or service
+     * fails.
+     */
+    public CompletableFuture<Void> releaseCartStockFallback(String sagaId, Exception ex) {
+        logger.warn("Cart stock release fallback triggered: sagaId={}, error={}", sagaId, ex.getMessage());
+
+        // Record circuit breaker fallback metrics
+        sagaMetrics.recordError("CircuitBreakerFallback", "stock_release");
+
+        // Unlike single releases, report the failure: the saga is marked partially compensated
+        // and the reservations expire on the inventory side
+        return CompletableFuture.failedFuture(ex);
+    }
+
     // Transaction Service Calls with Circuit Breaker
 
     /**
@@ -244,10 +412,13 @@ public class ServiceClientWrapper {
         logger.debug("Calling transaction service to process payment: customerId={}, amount={}, sagaId={}",
                 customerId, amount, sagaId);
 
-        return CompletableFuture.supplyAsync(() -> {
+        return clientExecutor.supply(TRANSACTION_SERVICE, () -> {
             try {
+                // Card details are optional: the orchestrator does not keep them once the saga is persisted
                 PaymentResponse response = transactionServiceClient.processPayment(
-                        customerId, amount, paymentMethod, cardNumber, Integer.parseInt(expiryMonth), Integer.parseInt(expiryYear),
+                        customerId, amount, paymentMethod, cardNumber,
+                        expiryMonth != null ? Integer.valueOf(expiryMonth) : null,
+                        expiryYear != null ? Integer.valueOf(expiryYear) : null,
                         cvv, billingAddress, sagaId, productId, quantity);
 
                 // Record successful call metrics
@@ -298,30 +469,20 @@ public class ServiceClientWrapper {
     /**
      * Creates order with circuit breaker and retry patterns.
      * 
-     * @param customerId           the customer identifier
-     * @param productId            the product identifier
-     * @param quantity             the product quantity
-     * @param amount               the order amount
-     * @param sagaId               the saga correlation ID
-     * @param stockReservationId   the stock reservation ID
-     * @param paymentTransactionId the payment transaction ID
-     * @param shippingAddress      the shipping address
+     * @param request the order, with every product, quantity and unit price of the sale
      * @return order response
      */
     @CircuitBreaker(name = "store-service", fallbackMethod = "createOrderFallback")
     @Retry(name = "store-service")
     @TimeLimiter(name = "store-service")
-    public CompletableFuture<OrderResponse> createOrder(String customerId, String productId, Integer quantity,
-            BigDecimal amount, String sagaId, String stockReservationId,
-            String paymentTransactionId, String shippingAddress) {
-        logger.debug("Calling store service to create order: customerId={}, productId={}, sagaId={}",
-                customerId, productId, sagaId);
+    public CompletableFuture<OrderResponse> createOrder(OrderRequest request) {
+        String sagaId = request.sagaId();
+        logger.debug("Calling store service to create order: customerId={}, storeId={}, sagaId={}",
+                request.customerId(), request.storeId(), sagaId);
 
-        return CompletableFuture.supplyAsync(() -> {
+        return clientExecutor.supply(STORE_SERVICE, () -> {
             try {
-                OrderResponse response = storeServiceClient.createOrder(
-                        customerId, productId, quantity, amount, sagaId,
-                        stockReservationId, paymentTransactionId, shippingAddress);
+                OrderResponse response = storeServiceClient.createOrder(request);
 
                 // Record successful call metrics
                 sagaMetrics.incrementOrderConfirmation(true);
@@ -344,11 +505,10 @@ public class ServiceClientWrapper {
      * Fallback method for order creation when circuit breaker is open or service
      * fails.
      */
-    public CompletableFuture<OrderResponse> createOrderFallback(String customerId, String productId, Integer quantity,
-            BigDecimal amount, String sagaId, String stockReservationId,
-            String paymentTransactionId, String shippingAddress, Exception ex) {
-        logger.warn("Order creation fallback triggered: customerId={}, productId={}, sagaId={}, error={}",
-                customerId, productId, sagaId, ex.getMessage());
+    public CompletableFuture<OrderResponse> createOrderFallback(OrderRequest request, Exception ex) {
+        String sagaId = request.sagaId();
+        logger.warn("Order creation fallback triggered: customerId={}, storeId={}, sagaId={}, error={}",
+                request.customerId(), request.storeId(), sagaId, ex.getMessage());
 
         // Log fallback event
         sagaEventLogger.logSagaError(sagaId, "CircuitBreakerFallback", "order_confirmation",
@@ -360,7 +520,7 @@ public class ServiceClientWrapper {
 
         // Return failure response to trigger saga compensation
         return CompletableFuture.completedFuture(
-                OrderResponse.failure(customerId, productId, sagaId,
+                OrderResponse.failure(request.customerId(), request.firstProductId(), sagaId,
                         "Store service unavailable - circuit breaker open"));
     }
 
@@ -423,14 +583,11 @@ public class ServiceClientWrapper {
     /**
      * Synchronous wrapper for order creation with circuit breaker.
      */
-    public OrderResponse createOrderSync(String customerId, String productId, Integer quantity,
-            BigDecimal amount, String sagaId, String stockReservationId,
-            String paymentTransactionId, String shippingAddress) {
+    public OrderResponse createOrderSync(OrderRequest request) {
         try {
-            return createOrder(customerId, productId, quantity, amount, sagaId,
-                    stockReservationId, paymentTransactionId, shippingAddress).get();
+            return createOrder(request).get();
         } catch (Exception e) {
-            logger.error("Error in synchronous order creation: sagaId={}, error={}", sagaId, e.getMessage());
+            logger.error("Error in synchronous order creation: sagaId={}, error={}", request.sagaId(), e.getMessage());
             throw new RuntimeException("Order creation failed", e);
         }
     }
@@ -0,0 +1,72 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JVM-local locks striped over a fixed array, so memory stays constant whatever the number of keys.
+ * Two keys hashing to the same stripe share a lock; with enough stripes that only costs some waiting.
+ * Protects a single orchestrator instance only.
+ */
+@Component
+@ConditionalOnProperty(name = "saga.lock.provider", havingValue = "striped", matchIfMissing = true)
+public class StripedSagaLockProvider implements SagaLockProvider {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    /**
+     * @param stripeCount Number of locks, rounded up to a power of two
+     */
+    public StripedSagaLockProvider(@Value("${saga.lock.stripes:256}") int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public boolean tryLock(String key, long timeoutMillis) throws InterruptedException {
+        return stripe(key).tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean unlock(String key) {
+        ReentrantLock lock = stripe(key);
+        if (!lock.isHeldByCurrentThread()) {
+            return false;
+        }
+        lock.unlock();
+        return true;
+    }
+
+    @Override
+    public int getHeldLockCount() {
+        int held = 0;
+        for (ReentrantLock lock : stripes) {
+            if (lock.isLocked()) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    @Override
+    public String getName() {
+        return "striped";
+    }
+
+    private ReentrantLock stripe(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+}
@@ -0,0 +1,217 @@
+package com.log430.tp7.sagaorchestrator.choreography.compensation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaRepository;
+import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaStepRepository;
+import com.log430.tp7.sagaorchestrator.choreography.repository.CompensationActionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CompensationCoordinatorTest {
+
+    private final CompensationActionRepository actionRepository = mock(CompensationActionRepository.class);
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private CompensationCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        coordinator = new CompensationCoordinator(mock(ChoreographedSagaRepository.class), actionRepository,
+            mock(ChoreographedSagaStepRepository.class), restTemplate, new ObjectMapper(),
+            mock(PlatformTransactionManager.class), 100, 2, 60000, 5000, 300000,
+            "http://inventory-service:8081", "http://transaction-service:8082", "http://store-service:8083");
+        when(actionRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(actionRepository.save(any(CompensationAction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.shutdown();
+    }
+
+    @Test
+    void testDueActionsRunInParallelWithinTheServiceLimit() {
+        List<CompensationAction> due = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            due.add(action("inventory-" + i, "saga-" + i, "inventory-service", 1));
+        }
+        due.add(action("store-0", "saga-6", "store-service", 1));
+        // Two slots per service: never more than two actions are claimed at once
+        when(actionRepository.lockDueActions(any(LocalDateTime.class), eq(2))).thenReturn(
+            due.subList(0, 2), due.subList(2, 4), due.subList(4, 6), due.subList(6, 7), List.of());
+
+        Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> peak = new ConcurrentHashMap<>();
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+            .thenAnswer(invocation -> {
+                String service = invocation.<String>getArgument(0).contains("inventory") ? "inventory" : "store";
+                int now = running.computeIfAbsent(service, key -> new AtomicInteger()).incrementAndGet();
+                peak.computeIfAbsent(service, key -> new AtomicInteger()).accumulateAndGet(now, Math::max);
+                Thread.sleep(50);
+                running.get(service).decrementAndGet();
+                return ResponseEntity.ok("compensated");
+            });
+
+        assertEquals(7, coordinator.processCompensationActions());
+
+        assertEquals(2, peak.get("inventory").get());
+        assertTrue(due.stream().allMatch(action -> action.getStatus() == CompensationStatus.COMPLETED));
+        verify(actionRepository, times(7)).save(any(CompensationAction.class));
+        // Claimed actions are leased before any call is made
+        verify(actionRepository, times(5)).saveAll(anyList());
+        verify(actionRepository, never()).lockDueActions(any(LocalDateTime.class), intThat(limit -> limit > 2));
+    }
+
+    @Test
+    void testActionsOfASagaRunOneAtATimeInPlanOrder() {
+        CompensationAction order = action("order", "saga-1", "store-service", 1);
+        CompensationAction payment = action("payment", "saga-1", "payment-service", 2);
+        CompensationAction other = action("other", "saga-2", "store-service", 1);
+        when(actionRepository.lockDueActions(any(LocalDateTime.class), anyInt()))
+            .thenReturn(List.of(payment, other, order), List.of());
+
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger runningForSaga1 = new AtomicInteger();
+        AtomicInteger peakForSaga1 = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+            .thenAnswer(invocation -> {
+                HttpEntity<?> request = invocation.getArgument(2);
+                boolean saga1 = "saga-1".equals(request.getHeaders().getFirst("X-Saga-ID"));
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                if (saga1) {
+                    peakForSaga1.accumulateAndGet(runningForSaga1.incrementAndGet(), Math::max);
+                    calls.add(invocation.getArgument(0));
+                }
+                Thread.sleep(50);
+                if (saga1) {
+                    runningForSaga1.decrementAndGet();
+                }
+                running.decrementAndGet();
+                return ResponseEntity.ok("compensated");
+            });
+
+        assertEquals(3, coordinator.processCompensationActions());
+
+        assertEquals(List.of("http://store-service:8083/api/compensate",
+            "http://transaction-service:8082/api/compensate"), calls);
+        assertEquals(1, peakForSaga1.get());
+        assertEquals(2, peak.get(), "different sagas should be compensated in parallel");
+    }
+
+    @Test
+    void testActionWaitingForItsRetryHoldsBackTheRestOfItsSaga() {
+        CompensationAction order = action("order", "saga-1", "store-service", 1);
+        CompensationAction payment = action("payment", "saga-1", "payment-service", 2);
+        when(actionRepository.lockDueActions(any(LocalDateTime.class), anyInt()))
+            .thenReturn(List.of(order, payment), List.of());
+        when(restTemplate.exchange(contains("store-service"), eq(HttpMethod.POST), any(HttpEntity.class),
+            eq(String.class))).thenThrow(new ResourceAccessException("store service down"));
+
+        coordinator.processCompensationActions();
+
+        assertEquals(CompensationStatus.PENDING, order.getStatus());
+        assertEquals(CompensationStatus.PENDING, payment.getStatus());
+        assertEquals(0, payment.getRetryCount());
+        assertEquals(order.getExecuteAfter(), payment.getExecuteAfter());
+        verify(restTemplate, never()).exchange(contains("transaction-service"), any(HttpMethod.class),
+            any(HttpEntity.class), eq(String.class));
+    }
+
+    @Test
+    void testInterruptedWaitForAServiceSlotStopsTheSagaSequence() throws Exception {
+        CompensationAction busy1 = action("busy-1", "saga-2", "store-service", 1);
+        CompensationAction busy2 = action("busy-2", "saga-3", "store-service", 1);
+        CompensationAction order = action("order", "saga-1", "store-service", 1);
+        CompensationAction payment = action("payment", "saga-1", "payment-service", 2);
+        when(actionRepository.lockDueActions(any(LocalDateTime.class), anyInt()))
+            .thenReturn(new ArrayList<>(List.of(busy1, busy2, order, payment)), List.of());
+        // The two other sagas take both store-service slots until the workers are interrupted
+        CountDownLatch slotsTaken = new CountDownLatch(2);
+        CountDownLatch never = new CountDownLatch(1);
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+            .thenAnswer(invocation -> {
+                slotsTaken.countDown();
+                never.await();
+                return ResponseEntity.ok("compensated");
+            });
+
+        Thread processing = new Thread(coordinator::processCompensationActions);
+        processing.start();
+        assertTrue(slotsTaken.await(5, TimeUnit.SECONDS));
+        coordinator.shutdown();
+        processing.join(5000);
+
+        assertFalse(processing.isAlive());
+        // Saga-1 was waiting for a store-service slot: it stays claimed and its next action never runs
+        assertEquals(CompensationStatus.IN_PROGRESS, order.getStatus());
+        assertEquals(CompensationStatus.IN_PROGRESS, payment.getStatus());
+        verify(restTemplate, never()).exchange(contains("transaction-service"), any(HttpMethod.class),
+            any(HttpEntity.class), eq(String.class));
+    }
+
+    @Test
+    void testFailedActionIsRequeuedWithBackoffThenGivesUp() {
+        CompensationAction action = action("payment-0", "payment-service");
+        when(actionRepository.lockDueActions(any(LocalDateTime.class), anyInt()))
+            .thenReturn(List.of(action), List.of());
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.POST), any(HttpEntity.class), eq(String.class)))
+            .thenThrow(new ResourceAccessException("payment service down"));
+
+        LocalDateTime before = LocalDateTime.now();
+        coordinator.processCompensationActions();
+
+        assertEquals(CompensationStatus.PENDING, action.getStatus());
+        assertEquals(1, action.getRetryCount());
+        // First retry after 2.5 to 5 seconds
+        assertTrue(action.getExecuteAfter().isAfter(before.plusSeconds(2)));
+        assertFalse(action.getExecuteAfter().isAfter(LocalDateTime.now().plusSeconds(5)));
+
+        for (int attempt = 2; attempt <= 3; attempt++) {
+            when(actionRepository.lockDueActions(any(LocalDateTime.class), anyInt()))
+                .thenReturn(List.of(action), List.of());
+            coordinator.processCompensationActions();
+        }
+
+        assertEquals(CompensationStatus.FAILED, action.getStatus());
+        assertEquals(3, action.getRetryCount());
+    }
+
+    private static CompensationAction action(String actionId, String serviceName) {
+        return action(actionId, "saga-1", serviceName, 1);
+    }
+
+    private static CompensationAction action(String actionId, String sagaId, String serviceName, int priority) {
+        return CompensationAction.builder()
+            .actionId(actionId)
+            .sagaId(sagaId)
+            .correlationId("correlation-1")
+            .stepName("InventoryReserved")
+            .serviceName(serviceName)
+            .compensationEndpoint("/api/compensate")
+            .compensationPayload("{}")
+            .priority(priority)
+            .build();
+    }
+}
@@ -0,0 +1,97 @@
+package com.log430.tp7.sagaorchestrator.choreography.monitoring;
+
+import com.log430.tp7.sagaorchestrator.choreography.compensation.CompensationCoordinator;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaState;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStatus;
+import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SagaDashboardStatisticsTest {
+
+    private final ChoreographedSagaRepository sagaRepository = mock(ChoreographedSagaRepository.class);
+    private final CompensationCoordinator compensationCoordinator = mock(CompensationCoordinator.class);
+    private final SagaDashboardStatistics statistics = new SagaDashboardStatistics(sagaRepository, compensationCoordinator);
+
+    @Test
+    void testTransitionsMoveCountersAndWindowWithoutQueries() {
+        ChoreographedSagaState completed = saga("saga-1");
+        ChoreographedSagaState failed = saga("saga-2");
+        statistics.recordSagaStarted(completed);
+        statistics.recordSagaStarted(failed);
+
+        completed.setStatus(ChoreographedSagaStatus.IN_PROGRESS);
+        statistics.recordStatusChange(ChoreographedSagaStatus.STARTED, completed);
+        completed.setCreatedAt(LocalDateTime.now().minusSeconds(90));
+        completed.markCompleted();
+        statistics.recordStatusChange(ChoreographedSagaStatus.IN_PROGRESS, completed);
+
+        failed.setStatus(ChoreographedSagaStatus.TIMED_OUT);
+        statistics.recordStatusChange(ChoreographedSagaStatus.STARTED, failed);
+        failed.markCompensationCompleted();
+        statistics.recordStatusChange(ChoreographedSagaStatus.TIMED_OUT, failed);
+
+        assertEquals(2, statistics.getTotalCount());
+        assertEquals(0, statistics.getActiveCount());
+        assertEquals(1, statistics.getCount(ChoreographedSagaStatus.COMPLETED));
+        assertEquals(1, statistics.getCount(ChoreographedSagaStatus.COMPENSATED));
+
+        SagaDashboardStatistics.WindowSnapshot lastHour = statistics.getLastHour();
+        assertEquals(2, lastHour.started());
+        assertEquals(1, lastHour.completed());
+        // Timed out then compensated is a single failure
+        assertEquals(1, lastHour.failed());
+        assertTrue(lastHour.averageDurationMillis() >= 90_000);
+        // 90 seconds falls in the bucket of durations below 128 seconds
+        assertEquals(lastHour.durationMaxMillis(), statistics.getLastDay().durationPercentileMillis(0.95));
+        verifyNoInteractions(sagaRepository, compensationCoordinator);
+    }
+
+    @Test
+    void testTransitionIsAppliedOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            statistics.recordSagaStarted(saga("saga-1"));
+            assertEquals(0, statistics.getTotalCount());
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+            assertEquals(1, statistics.getCount(ChoreographedSagaStatus.STARTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testReconcileReplacesCountersWithTheDatabaseCounts() {
+        statistics.recordSagaStarted(saga("saga-1"));
+        when(sagaRepository.countSagasByStatus()).thenReturn(List.of(
+            new Object[] {ChoreographedSagaStatus.COMPLETED, 40L},
+            new Object[] {ChoreographedSagaStatus.IN_PROGRESS, 3L}));
+        when(sagaRepository.countActiveCreatedBefore(any(LocalDateTime.class))).thenReturn(2L);
+        when(sagaRepository.countSagasRequiringCompensation()).thenReturn(1L);
+        when(compensationCoordinator.getPendingActionsCount()).thenReturn(5);
+
+        statistics.reconcile();
+
+        assertEquals(0, statistics.getCount(ChoreographedSagaStatus.STARTED));
+        assertEquals(43, statistics.getTotalCount());
+        assertEquals(3, statistics.getActiveCount());
+        assertEquals(2, statistics.getStuckSagas());
+        assertEquals(1, statistics.getSagasRequiringCompensation());
+        assertEquals(5, statistics.getPendingCompensations());
+    }
+
+    private static ChoreographedSagaState saga(String sagaId) {
+        return new ChoreographedSagaState(sagaId, "correlation-" + sagaId, "ORDER_PROCESSING");
+    }
+}
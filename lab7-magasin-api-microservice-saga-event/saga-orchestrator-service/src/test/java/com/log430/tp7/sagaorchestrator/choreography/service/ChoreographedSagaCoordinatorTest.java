@@ -0,0 +1,82 @@
+package com.log430.tp7.sagaorchestrator.choreography.service;
+
+import com.log430.tp7.sagaorchestrator.choreography.compensation.CompensationCoordinator;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaState;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStatus;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStep;
+import com.log430.tp7.sagaorchestrator.choreography.monitoring.SagaDashboardStatistics;
+import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaRepository;
+import com.log430.tp7.sagaorchestrator.choreography.repository.ChoreographedSagaStepRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChoreographedSagaCoordinatorTest {
+
+    private static final String CORRELATION_ID = "correlation-1";
+
+    private final ChoreographedSagaRepository sagaRepository = mock(ChoreographedSagaRepository.class);
+    private final ChoreographedSagaStepRepository stepRepository = mock(ChoreographedSagaStepRepository.class);
+    private final CompensationCoordinator compensationCoordinator = mock(CompensationCoordinator.class);
+    private ChoreographedSagaCoordinator coordinator;
+    private ChoreographedSagaState saga;
+
+    @BeforeEach
+    void setUp() {
+        coordinator = new ChoreographedSagaCoordinator(sagaRepository, stepRepository, compensationCoordinator,
+            mock(SagaDashboardStatistics.class));
+        saga = new ChoreographedSagaState("saga-1", CORRELATION_ID, "ORDER_PROCESSING");
+        when(sagaRepository.findByCorrelationId(CORRELATION_ID)).thenReturn(Optional.of(saga));
+        when(sagaRepository.save(any(ChoreographedSagaState.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.shutdown();
+    }
+
+    @Test
+    void testIntermediateStepIsOneInsertIntoTheStepLog() {
+        coordinator.recordStepCompleted(CORRELATION_ID, "InventoryReserved", null);
+        assertEquals(ChoreographedSagaStatus.IN_PROGRESS, saga.getStatus());
+        verify(sagaRepository).save(saga);
+
+        coordinator.recordStepCompleted(CORRELATION_ID, "PaymentProcessed", null);
+
+        ArgumentCaptor<ChoreographedSagaStep> steps = ArgumentCaptor.forClass(ChoreographedSagaStep.class);
+        verify(stepRepository, times(2)).save(steps.capture());
+        assertEquals("PaymentProcessed", steps.getValue().getStepName());
+        assertEquals(ChoreographedSagaStep.Outcome.COMPLETED, steps.getValue().getOutcome());
+        // The saga row is not saved again while its status stays the same, only its current step is set
+        verify(sagaRepository, times(1)).save(any(ChoreographedSagaState.class));
+        verify(sagaRepository).recordStepProgress(eq("saga-1"), eq("PaymentProcessed"), any());
+        assertEquals("PaymentProcessed", saga.getCurrentStep());
+        assertNull(saga.getCompletedSteps());
+    }
+
+    @Test
+    void testFailureAfterACompletedStepStartsCompensation() {
+        when(stepRepository.existsBySagaIdAndOutcome("saga-1", ChoreographedSagaStep.Outcome.COMPLETED)).thenReturn(true);
+
+        coordinator.recordStepFailed(CORRELATION_ID, "PaymentProcessed", "card declined");
+
+        assertEquals(ChoreographedSagaStatus.COMPENSATING, saga.getStatus());
+        verify(stepRepository).save(argThat(step -> step.getOutcome() == ChoreographedSagaStep.Outcome.FAILED));
+        verify(compensationCoordinator).triggerCompensation("saga-1", CORRELATION_ID, "PaymentProcessed", "card declined");
+    }
+
+    @Test
+    void testFailureWithoutCompletedStepsIsRetried() {
+        coordinator.recordStepFailed(CORRELATION_ID, "InventoryReserved", "timeout");
+
+        assertEquals(ChoreographedSagaStatus.RETRYING, saga.getStatus());
+        verifyNoInteractions(compensationCoordinator);
+    }
+}
@@ -0,0 +1,135 @@
+package com.log430.tp7.sagaorchestrator.controller;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.dto.SagaResponse;
+import com.log430.tp7.sagaorchestrator.exception.GlobalExceptionHandler;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import com.log430.tp7.sagaorchestrator.service.InventoryConcurrencyManager;
+import com.log430.tp7.sagaorchestrator.service.SagaArchiveService;
+import com.log430.tp7.sagaorchestrator.service.SagaCompletionNotifier;
+import com.log430.tp7.sagaorchestrator.service.SagaOrchestrator;
+import com.log430.tp7.sagaorchestrator.service.SaleIdempotencyService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The saga event stream of {@link SagaController} with a real {@link SagaCompletionNotifier}:
+ * the terminal state reaches the subscribers and every way a stream ends releases its subscription.
+ */
+class SagaEventStreamTest {
+
+    private static final String SAGA_ID = "saga-1";
+
+    private final SagaArchiveService sagaArchiveService = mock(SagaArchiveService.class);
+    private final SagaCompletionNotifier sagaCompletionNotifier = new SagaCompletionNotifier();
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        SagaController controller = new SagaController(mock(SagaOrchestrator.class), mock(SaleIdempotencyService.class),
+            sagaArchiveService, sagaCompletionNotifier, new SagaConfiguration.SagaExecutionProperties(),
+            mock(InventoryConcurrencyManager.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+    }
+
+    @Test
+    void testSubscriberBeforeCompletionReceivesTheFinalState() throws Exception {
+        givenSagaIn(SagaState.PAYMENT_PROCESSING);
+
+        MvcResult result = openStream();
+        assertEquals(1, sagaCompletionNotifier.getSubscriberCount());
+        assertTrue(result.getResponse().getContentAsString().contains("\"state\":\"PAYMENT_PROCESSING\""));
+
+        sagaCompletionNotifier.publishFinalState(SagaResponse.success(SAGA_ID, SagaState.SALE_CONFIRMED, "confirmed"));
+
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.contains("event:saga-state"));
+        assertTrue(body.contains("\"state\":\"SALE_CONFIRMED\""));
+        assertEquals(0, sagaCompletionNotifier.getSubscriberCount());
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    void testAlreadyFinalSagaSendsItsStateAndClosesTheStream() throws Exception {
+        SagaExecution saga = givenSagaIn(SagaState.SALE_FAILED);
+        saga.setErrorMessage("Insufficient stock");
+
+        MvcResult result = openStream();
+
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.contains("\"state\":\"SALE_FAILED\""));
+        assertTrue(body.contains("Insufficient stock"));
+        assertEquals(0, sagaCompletionNotifier.getSubscriberCount());
+    }
+
+    @Test
+    void testTimedOutStreamIsUnsubscribed() throws Exception {
+        givenSagaIn(SagaState.STOCK_RESERVING);
+        MvcResult result = openStream();
+        assertEquals(1, sagaCompletionNotifier.getSubscriberCount());
+
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        assertEquals(0, sagaCompletionNotifier.getSubscriberCount());
+    }
+
+    @Test
+    void testClosedStreamIsUnsubscribed() throws Exception {
+        givenSagaIn(SagaState.STOCK_RESERVING);
+        MvcResult result = openStream();
+
+        // The client went away before the saga completed
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onComplete(new AsyncEvent(asyncContext));
+        }
+
+        assertEquals(0, sagaCompletionNotifier.getSubscriberCount());
+    }
+
+    @Test
+    void testUnknownSagaLeavesNoSubscription() throws Exception {
+        when(sagaArchiveService.findById(SAGA_ID)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/api/v1/saga/sales/{sagaId}/events", SAGA_ID))
+            .andExpect(status().isNotFound());
+
+        assertEquals(0, sagaCompletionNotifier.getSubscriberCount());
+    }
+
+    private SagaExecution givenSagaIn(SagaState state) {
+        SagaExecution saga = new SagaExecution(SAGA_ID, "customer-1", "product-1", 1, BigDecimal.TEN);
+        saga.setCurrentState(state);
+        when(sagaArchiveService.findById(SAGA_ID)).thenReturn(Optional.of(saga));
+        return saga;
+    }
+
+    private MvcResult openStream() throws Exception {
+        return mockMvc.perform(get("/api/v1/saga/sales/{sagaId}/events", SAGA_ID))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    }
+}
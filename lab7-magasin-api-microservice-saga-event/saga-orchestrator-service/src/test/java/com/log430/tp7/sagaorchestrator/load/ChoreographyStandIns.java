@@ -0,0 +1,252 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.log430.tp7.event.InMemoryEventBus;
+import com.log430.tp7.event.InMemoryMessageListenerContainer;
+import com.log430.tp7.sagaorchestrator.choreography.model.ChoreographedSagaStatus;
+import com.log430.tp7.sagaorchestrator.load.OpenLoopLoadGenerator.Outcome;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Stand-ins for the participants of a choreographed sale, exchanging events over the in-memory bus and reporting
+ * each step to the service's {@code ChoreographedSagaCoordinator} over its REST API, as the real services would.
+ *
+ * A sale is initiated with the coordinator and announced with {@code SaleRequested}. Inventory reserves the stock
+ * ({@code StockReserved}), transaction takes the payment ({@code PaymentProcessed}) and store fulfils the order,
+ * which completes the saga. A declined payment ({@code PaymentDeclined}) makes inventory release the stock and
+ * report the compensation; a stock-out ({@code StockUnavailable}) ends the sale at the store.
+ * Each participant takes the latency of its {@link ServiceProfile}, on a virtual thread so consumers never block.
+ */
+class ChoreographyStandIns implements AutoCloseable {
+
+    static final String SAGA_TYPE = "ORDER_PROCESSING";
+
+    private static final String EXCHANGE = "sale.events";
+    private static final String INVENTORY_QUEUE = "load.inventory.sale.queue";
+    private static final String TRANSACTION_QUEUE = "load.transaction.sale.queue";
+    private static final String STORE_QUEUE = "load.store.sale.queue";
+
+    private static final String SALE_REQUESTED = "SaleRequested";
+    private static final String STOCK_RESERVED = "StockReserved";
+    private static final String STOCK_UNAVAILABLE = "StockUnavailable";
+    private static final String PAYMENT_PROCESSED = "PaymentProcessed";
+    private static final String PAYMENT_DECLINED = "PaymentDeclined";
+    private static final String ORDER_FULFILLED = "OrderFulfilled";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final URI coordinator;
+    private final ServiceProfile inventory;
+    private final ServiceProfile transaction;
+    private final ServiceProfile store;
+    private final InMemoryEventBus bus;
+    private final List<InMemoryMessageListenerContainer> containers = new ArrayList<>();
+    private final ExecutorService participants = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client = HttpClient.newBuilder().executor(participants).build();
+    private final Map<String, CompletableFuture<Outcome>> sales = new ConcurrentHashMap<>();
+    private final AtomicLong coordinatorCalls = new AtomicLong();
+
+    /**
+     * @param baseUrl base URL of the service hosting the coordinator
+     */
+    ChoreographyStandIns(String baseUrl, ServiceProfile inventory, ServiceProfile transaction, ServiceProfile store) {
+        this.coordinator = URI.create(baseUrl + "/api/saga/choreographed/");
+        this.inventory = inventory;
+        this.transaction = transaction;
+        this.store = store;
+
+        TopicExchange exchange = new TopicExchange(EXCHANGE);
+        Queue inventoryQueue = new Queue(INVENTORY_QUEUE);
+        Queue transactionQueue = new Queue(TRANSACTION_QUEUE);
+        Queue storeQueue = new Queue(STORE_QUEUE);
+        DefaultListableBeanFactory topology = new DefaultListableBeanFactory();
+        topology.registerSingleton("saleTopology", new Declarables(exchange, inventoryQueue, transactionQueue,
+            storeQueue,
+            bind(inventoryQueue, exchange, SALE_REQUESTED), bind(inventoryQueue, exchange, PAYMENT_DECLINED),
+            bind(transactionQueue, exchange, STOCK_RESERVED),
+            bind(storeQueue, exchange, PAYMENT_PROCESSED), bind(storeQueue, exchange, STOCK_UNAVAILABLE)));
+        this.bus = new InMemoryEventBus(topology.getBeanProvider(Declarable.class),
+            topology.getBeanProvider(Declarables.class), 65536);
+
+        listen(INVENTORY_QUEUE, this::onInventoryEvent);
+        listen(TRANSACTION_QUEUE, this::onTransactionEvent);
+        listen(STORE_QUEUE, this::onStoreEvent);
+    }
+
+    /**
+     * Starts a choreographed sale.
+     *
+     * @return completed with the outcome once the last participant has reported to the coordinator
+     */
+    CompletableFuture<Outcome> submit(String correlationId, SaleScenario scenario) {
+        CompletableFuture<Outcome> sale = new CompletableFuture<>();
+        sales.put(correlationId, sale);
+        participants.execute(() -> {
+            if (report("initiate", Map.of("correlationId", correlationId, "sagaType", SAGA_TYPE,
+                    "sagaData", scenario.name())) != null) {
+                publish(SALE_REQUESTED, correlationId, scenario);
+            }
+        });
+        return sale;
+    }
+
+    long publishedMessages() {
+        return bus.getPublishedCount();
+    }
+
+    long coordinatorCalls() {
+        return coordinatorCalls.get();
+    }
+
+    @Override
+    public void close() {
+        containers.forEach(InMemoryMessageListenerContainer::stop);
+        participants.shutdownNow();
+    }
+
+    private void onInventoryEvent(Event event) {
+        pause(inventory);
+        if (PAYMENT_DECLINED.equals(event.type())) {
+            // Release the reservation taken for the sale
+            if (report("compensation/completed", Map.of("correlationId", event.correlationId(),
+                    "stepName", STOCK_RESERVED)) != null) {
+                finish(event.correlationId(), Outcome.FAILED);
+            }
+        } else if (event.scenario() == SaleScenario.STOCK_OUT) {
+            if (report("step/failed", Map.of("correlationId", event.correlationId(), "stepName", STOCK_RESERVED,
+                    "errorMessage", "Insufficient stock")) != null) {
+                publish(STOCK_UNAVAILABLE, event.correlationId(), event.scenario());
+            }
+        } else if (report("step/completed", Map.of("correlationId", event.correlationId(),
+                "stepName", STOCK_RESERVED, "stepData", "{}")) != null) {
+            publish(STOCK_RESERVED, event.correlationId(), event.scenario());
+        }
+    }
+
+    private void onTransactionEvent(Event event) {
+        pause(transaction);
+        if (event.scenario() == SaleScenario.PAYMENT_DECLINED) {
+            if (report("step/failed", Map.of("correlationId", event.correlationId(), "stepName", PAYMENT_PROCESSED,
+                    "errorMessage", "Card declined")) != null) {
+                publish(PAYMENT_DECLINED, event.correlationId(), event.scenario());
+            }
+        } else if (report("step/completed", Map.of("correlationId", event.correlationId(),
+                "stepName", PAYMENT_PROCESSED, "stepData", "{}")) != null) {
+            publish(PAYMENT_PROCESSED, event.correlationId(), event.scenario());
+        }
+    }
+
+    private void onStoreEvent(Event event) {
+        pause(store);
+        if (STOCK_UNAVAILABLE.equals(event.type())) {
+            // The customer is told the sale failed; there is nothing to report to the coordinator
+            finish(event.correlationId(), Outcome.FAILED);
+            return;
+        }
+        JsonNode saga = report("step/completed", Map.of("correlationId", event.correlationId(),
+            "stepName", ORDER_FULFILLED, "stepData", "{}"));
+        if (saga != null) {
+            boolean completed = ChoreographedSagaStatus.COMPLETED.name().equals(saga.path("status").asText());
+            finish(event.correlationId(), completed ? Outcome.CONFIRMED : Outcome.ERROR);
+        }
+    }
+
+    /**
+     * Posts to the coordinator and returns the saga it answers with, or null after ending the sale in error.
+     */
+    private JsonNode report(String path, Map<String, String> body) {
+        coordinatorCalls.incrementAndGet();
+        String correlationId = body.get("correlationId");
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(coordinator.resolve(path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                finish(correlationId, Outcome.ERROR);
+                return null;
+            }
+            return objectMapper.readTree(response.body());
+        } catch (IOException e) {
+            finish(correlationId, Outcome.ERROR);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            finish(correlationId, Outcome.ERROR);
+            return null;
+        }
+    }
+
+    private void finish(String correlationId, Outcome outcome) {
+        CompletableFuture<Outcome> sale = sales.remove(correlationId);
+        if (sale != null) {
+            sale.complete(outcome);
+        }
+    }
+
+    private void publish(String type, String correlationId, SaleScenario scenario) {
+        MessageProperties properties = new MessageProperties();
+        properties.setType(type);
+        properties.setCorrelationId(correlationId);
+        properties.setContentType(MessageProperties.CONTENT_TYPE_TEXT_PLAIN);
+        Message message = MessageBuilder.withBody(scenario.name().getBytes()).andProperties(properties).build();
+        bus.publish(EXCHANGE, type, message);
+    }
+
+    private void listen(String queue, Consumer<Event> participant) {
+        InMemoryMessageListenerContainer container = new InMemoryMessageListenerContainer(bus);
+        container.setListenerId(queue);
+        container.setQueueNames(queue);
+        container.setupMessageListener(message -> {
+            Event event = new Event(message.getMessageProperties().getType(),
+                message.getMessageProperties().getCorrelationId(),
+                SaleScenario.valueOf(new String(message.getBody())));
+            participants.execute(() -> participant.accept(event));
+        });
+        container.start();
+        containers.add(container);
+    }
+
+    private static Binding bind(Queue queue, TopicExchange exchange, String type) {
+        return BindingBuilder.bind(queue).to(exchange).with(type);
+    }
+
+    private static void pause(ServiceProfile profile) {
+        try {
+            Thread.sleep(profile.nextLatencyMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Event(String type, String correlationId, SaleScenario scenario) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import org.hibernate.dialect.H2Dialect;
+
+/**
+ * H2 has no shared row lock, so pessimistic reads are taken as {@code FOR UPDATE} when the harness runs on the
+ * in-memory database. Stricter than PostgreSQL's {@code FOR SHARE}, which only makes the H2 numbers conservative.
+ */
+public class H2LoadDialect extends H2Dialect {
+
+    @Override
+    public String getReadLockString(int timeout) {
+        return getWriteLockString(timeout);
+    }
+
+    @Override
+    public String getReadLockString(String aliases, int timeout) {
+        return getWriteLockString(aliases, timeout);
+    }
+}
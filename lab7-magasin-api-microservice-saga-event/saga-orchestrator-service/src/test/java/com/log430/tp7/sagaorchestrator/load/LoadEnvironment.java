@@ -0,0 +1,74 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Environment shared by the load tests: the downstream stand-ins and the properties pointing the service at them.
+ *
+ * Per service, {@code load.<inventory|transaction|store>.latencyMs / .jitterMs / .errorRate} set the stand-in
+ * profile. The datasource defaults to in-memory H2 in PostgreSQL mode and can be pointed at PostgreSQL with
+ * {@code load.datasource.url/username/password}.
+ */
+final class LoadEnvironment {
+
+    private LoadEnvironment() {
+    }
+
+    /**
+     * Starts the inventory, transaction and store stand-ins and registers their URLs and the datasource.
+     *
+     * @return the started stand-ins, to be closed after the tests
+     */
+    static List<ServiceStandIn> start(DynamicPropertyRegistry registry) throws IOException {
+        ServiceStandIn inventory = ServiceStandIn.inventory(
+            ServiceProfile.fromSystemProperties("inventory", new ServiceProfile(5, 5, 0))).start();
+        ServiceStandIn transaction = ServiceStandIn.transaction(
+            ServiceProfile.fromSystemProperties("transaction", new ServiceProfile(20, 10, 0))).start();
+        ServiceStandIn store = ServiceStandIn.store(
+            ServiceProfile.fromSystemProperties("store", new ServiceProfile(10, 5, 0))).start();
+
+        registry.add("services.inventory.url", inventory::baseUrl);
+        registry.add("services.transaction.url", transaction::baseUrl);
+        registry.add("services.store.url", store::baseUrl);
+
+        String datasourceUrl = System.getProperty("load.datasource.url",
+            "jdbc:h2:mem:load;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE");
+        registry.add("spring.datasource.url", () -> datasourceUrl);
+        registry.add("spring.datasource.username", () -> System.getProperty("load.datasource.username", "sa"));
+        registry.add("spring.datasource.password", () -> System.getProperty("load.datasource.password", ""));
+        if (datasourceUrl.startsWith("jdbc:h2:")) {
+            registry.add("spring.jpa.properties.hibernate.dialect", H2LoadDialect.class::getName);
+        }
+        registry.add("eureka.client.enabled", () -> "false");
+        registry.add("logging.level.com.log430", () -> "WARN");
+        return List.of(inventory, transaction, store);
+    }
+
+    /**
+     * Profile and call counts of each stand-in, for the report.
+     */
+    static Map<String, Object> describe(List<ServiceStandIn> standIns) {
+        Map<String, Object> services = new LinkedHashMap<>();
+        for (ServiceStandIn standIn : standIns) {
+            Map<String, Object> service = new LinkedHashMap<>();
+            service.put("latencyMs", standIn.profile().latencyMs());
+            service.put("jitterMs", standIn.profile().jitterMs());
+            service.put("errorRate", standIn.profile().errorRate());
+            service.put("calls", standIn.calls());
+            service.put("injectedErrors", standIn.errors());
+            services.put(standIn.name(), service);
+        }
+        return services;
+    }
+
+    static void stop(List<ServiceStandIn> standIns) {
+        if (standIns != null) {
+            standIns.forEach(ServiceStandIn::close);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.log430.tp7.sagaorchestrator.load.OpenLoopLoadGenerator.Outcome;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes load test results as JSON under {@code load.output} (default {@code target/load-results}),
+ * one timestamped file per run, so that runs can be compared.
+ */
+final class LoadReport {
+
+    private static final Path OUTPUT = Path.of(System.getProperty("load.output", "target/load-results"));
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private LoadReport() {
+    }
+
+    /**
+     * Writes the report to {@code <prefix>-<timestamp>.json}.
+     *
+     * @return the written file
+     */
+    static Path write(String prefix, Map<String, Object> report) throws IOException {
+        Files.createDirectories(OUTPUT);
+        Path file = OUTPUT.resolve(prefix + "-"
+            + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+        return file;
+    }
+
+    /**
+     * Latency summary of each outcome.
+     */
+    static Map<String, Object> outcomes(Map<Outcome, Histogram> latencies) {
+        Map<String, Object> outcomes = new LinkedHashMap<>();
+        latencies.forEach((outcome, histogram) -> outcomes.put(outcome.name(), summary(histogram)));
+        return outcomes;
+    }
+
+    /**
+     * Percentiles in milliseconds, plus the full histogram compressed and Base64-encoded for later merging.
+     */
+    static Map<String, Object> summary(Histogram histogram) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        if (histogram.getTotalCount() > 0) {
+            summary.put("meanMs", millis(histogram.getMean()));
+            for (double percentile : PERCENTILES) {
+                summary.put("p" + String.valueOf(percentile).replace(".0", "").replace(".", "_") + "Ms",
+                    millis(histogram.getValueAtPercentile(percentile)));
+            }
+            summary.put("maxMs", millis(histogram.getMaxValue()));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        histogram.encodeIntoCompressedByteBuffer(buffer);
+        summary.put("histogram", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), buffer.position())));
+        return summary;
+    }
+
+    /**
+     * One line per outcome seen: count, p50, p99 and max.
+     */
+    static void print(Map<Outcome, Histogram> latencies) {
+        latencies.forEach((outcome, histogram) -> {
+            if (histogram.getTotalCount() > 0) {
+                System.out.printf("  %-9s %,7d  p50 %,8.1f ms  p99 %,8.1f ms  max %,8.1f ms%n", outcome,
+                    histogram.getTotalCount(), millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getMaxValue()));
+            }
+        });
+    }
+
+    static double millis(double micros) {
+        return micros / 1000.0;
+    }
+}
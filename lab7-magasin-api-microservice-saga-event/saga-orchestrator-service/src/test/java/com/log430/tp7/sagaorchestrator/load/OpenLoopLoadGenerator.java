@@ -0,0 +1,114 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Sends requests at a fixed arrival rate, whether or not earlier ones have completed.
+ * Latency is measured from each request's scheduled send time rather than from when it was actually sent, so a
+ * stalled system is charged for the requests queued behind the stall (no coordinated omission).
+ */
+class OpenLoopLoadGenerator {
+
+    /**
+     * How a sale ended, as seen by the client.
+     */
+    enum Outcome {
+        CONFIRMED, // 201
+        FAILED,    // 400, the saga was compensated
+        SHED,      // 429, rejected by admission control
+        ERROR      // any other status, or no response
+    }
+
+    // Latencies from 1 µs to 10 minutes with 3 significant digits
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final double requestsPerSecond;
+    private final Map<Outcome, Recorder> recorders = new EnumMap<>(Outcome.class);
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+
+    OpenLoopLoadGenerator(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        for (Outcome outcome : Outcome.values()) {
+            recorders.put(outcome, new Recorder(HIGHEST_TRACKABLE_MICROS, 3));
+        }
+    }
+
+    /**
+     * Sends requests for the given duration, then waits for the outstanding ones.
+     *
+     * @param durationMillis how long requests are sent
+     * @param drainMillis how long outstanding requests are awaited afterwards
+     * @param request sends the request of the given index and completes with its outcome
+     * @return latency histograms by outcome, in microseconds
+     */
+    Result run(long durationMillis, long drainMillis, IntFunction<CompletableFuture<Outcome>> request) {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[(int) (durationMillis * requestsPerSecond / 1000) + 1];
+        int index = 0;
+        for (long scheduled = start; scheduled < end && index < requests.length; scheduled += intervalNanos) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            long scheduledAt = scheduled;
+            sent.incrementAndGet();
+            CompletableFuture<Outcome> response;
+            try {
+                response = request.apply(index);
+            } catch (RuntimeException e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+            requests[index] = response
+                .exceptionally(error -> Outcome.ERROR)
+                .thenAccept(outcome -> {
+                    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledAt);
+                    recorders.get(outcome).recordValue(Math.min(Math.max(micros, 1), HIGHEST_TRACKABLE_MICROS));
+                    completed.incrementAndGet();
+                });
+            index++;
+        }
+        long sendingNanos = System.nanoTime() - start;
+
+        try {
+            CompletableFuture.allOf(Arrays.copyOf(requests, index))
+                .get(drainMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Requests still outstanding are reported as not completed
+        }
+
+        Map<Outcome, Histogram> histograms = new EnumMap<>(Outcome.class);
+        recorders.forEach((outcome, recorder) -> histograms.put(outcome, recorder.getIntervalHistogram()));
+        return new Result(requestsPerSecond, sent.get(), completed.get(), sendingNanos, histograms);
+    }
+
+    /**
+     * Outcome of a run.
+     *
+     * @param targetRate requested arrival rate, per second
+     * @param sent requests sent
+     * @param completed requests that completed before the drain timeout
+     * @param sendingNanos time spent sending
+     * @param latencies latency histograms by outcome, in microseconds
+     */
+    record Result(double targetRate, long sent, long completed, long sendingNanos, Map<Outcome, Histogram> latencies) {
+
+        double achievedRate() {
+            return sent / (sendingNanos / 1_000_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import com.log430.tp7.sagaorchestrator.load.OpenLoopLoadGenerator.Outcome;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the orchestrated sale end to end in process: the service boots on a random port against local stand-ins
+ * for inventory, transaction and store, and an open-loop generator posts sales at a fixed arrival rate.
+ * Sale latency is recorded per outcome in HDR histograms and written as JSON to {@code load.output}
+ * (default {@code target/load-results}) so runs can be compared. Runs only with -Dbenchmark=true.
+ *
+ * Knobs: {@code load.rate} (sales/s), {@code load.durationSeconds}, {@code load.warmupSeconds}, plus the stand-in
+ * and datasource properties of {@link LoadEnvironment}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SagaLoadHarnessTest {
+
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "50"));
+    private static final long DURATION_SECONDS = Long.getLong("load.durationSeconds", 30);
+    private static final long WARMUP_SECONDS = Long.getLong("load.warmupSeconds", 5);
+    private static final long DRAIN_SECONDS = Long.getLong("load.drainSeconds", 60);
+
+    private static final String SALE_TEMPLATE = "{\"customerId\":\"load-customer-%d\",\"productId\":\"%d\","
+        + "\"quantity\":1,\"amount\":10.00,\"paymentDetails\":{\"paymentMethod\":\"CREDIT_CARD\","
+        + "\"cardNumber\":\"4111111111111111\",\"expiryMonth\":12,\"expiryYear\":2030,\"cvv\":\"123\","
+        + "\"billingAddress\":\"1 rue de la Charge\"}}";
+
+    private static List<ServiceStandIn> standIns;
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void standIns(DynamicPropertyRegistry registry) throws IOException {
+        standIns = LoadEnvironment.start(registry);
+    }
+
+    @AfterAll
+    static void stopStandIns() {
+        LoadEnvironment.stop(standIns);
+    }
+
+    @Test
+    void measureSaleThroughputAndLatency() throws Exception {
+        URI sales = URI.create("http://localhost:" + port + "/api/v1/saga/sales");
+        try (HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build()) {
+
+            // Warm up the JIT, connection pools and circuit breakers, then measure on a fresh generator
+            new OpenLoopLoadGenerator(RATE).run(TimeUnit.SECONDS.toMillis(WARMUP_SECONDS),
+                TimeUnit.SECONDS.toMillis(DRAIN_SECONDS), index -> postSale(client, sales, -1 - index));
+            OpenLoopLoadGenerator.Result result = new OpenLoopLoadGenerator(RATE).run(
+                TimeUnit.SECONDS.toMillis(DURATION_SECONDS), TimeUnit.SECONDS.toMillis(DRAIN_SECONDS),
+                index -> postSale(client, sales, index));
+
+            Path report = writeReport(result);
+            System.out.printf("%nSaga load: %.0f sales/s target, %.1f achieved, %d sent, %d completed -> %s%n",
+                result.targetRate(), result.achievedRate(), result.sent(), result.completed(), report);
+            LoadReport.print(result.latencies());
+
+            assertTrue(result.completed() > 0, "No sale completed");
+        }
+    }
+
+    private static CompletableFuture<Outcome> postSale(HttpClient client, URI sales, int index) {
+        // A customer per sale, so the per customer-product concurrency guard does not serialize the load
+        String body = String.format(SALE_TEMPLATE, index, Math.floorMod(index, 50) + 1);
+        HttpRequest request = HttpRequest.newBuilder(sales)
+            .timeout(Duration.ofSeconds(DRAIN_SECONDS))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .thenApply(response -> switch (response.statusCode()) {
+                case 201 -> Outcome.CONFIRMED;
+                case 400 -> Outcome.FAILED;
+                case 429 -> Outcome.SHED;
+                default -> Outcome.ERROR;
+            });
+    }
+
+    private static Path writeReport(OpenLoopLoadGenerator.Result result) throws IOException {
+        Map<String, Object> scenario = new LinkedHashMap<>();
+        scenario.put("targetRate", result.targetRate());
+        scenario.put("durationSeconds", DURATION_SECONDS);
+        scenario.put("warmupSeconds", WARMUP_SECONDS);
+        scenario.put("services", LoadEnvironment.describe(standIns));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", LocalDateTime.now().toString());
+        report.put("scenario", scenario);
+        report.put("sent", result.sent());
+        report.put("completed", result.completed());
+        report.put("achievedRate", result.achievedRate());
+        report.put("outcomes", LoadReport.outcomes(result.latencies()));
+        return LoadReport.write("saga-load", report);
+    }
+}
@@ -0,0 +1,231 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import com.log430.tp7.sagaorchestrator.load.OpenLoopLoadGenerator.Outcome;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same sale mixes through the orchestrated saga ({@code POST /api/v1/saga/sales}) and through the
+ * choreographed one ({@link ChoreographyStandIns} reporting to the {@code ChoreographedSagaCoordinator}), at the
+ * same open-loop arrival rate and against the same downstream latency profiles.
+ * For each mode and mix it reports throughput, latency percentiles by outcome, and per sale the database statements
+ * executed by the service, the HTTP calls between the service and the other services, and the broker messages.
+ * Results are written as JSON to {@code load.output} (default {@code target/load-results}).
+ * Runs only with -Dbenchmark=true.
+ *
+ * Knobs: {@code load.rate} (sales/s), {@code load.durationSeconds} per run, {@code load.warmupSeconds}, and
+ * {@code load.mixes}, semicolon-separated success/declined/stockOut percentages (default
+ * {@code 100/0/0;0/100/0;0/0/100;80/10/10}), plus the stand-in and datasource properties of {@link LoadEnvironment}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class SagaModeComparisonBenchmarkTest {
+
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "10"));
+    private static final long DURATION_SECONDS = Long.getLong("load.durationSeconds", 20);
+    private static final long WARMUP_SECONDS = Long.getLong("load.warmupSeconds", 5);
+    private static final long DRAIN_SECONDS = Long.getLong("load.drainSeconds", 60);
+    private static final List<SaleScenario.Mix> MIXES = Arrays.stream(
+            System.getProperty("load.mixes", "100/0/0;0/100/0;0/0/100;80/10/10").split(";"))
+        .map(SaleScenario.Mix::parse)
+        .toList();
+
+    private static final String SALE_TEMPLATE = "{\"customerId\":\"%s\",\"productId\":\"%s\","
+        + "\"quantity\":1,\"amount\":10.00,\"paymentDetails\":{\"paymentMethod\":\"CREDIT_CARD\","
+        + "\"cardNumber\":\"4111111111111111\",\"expiryMonth\":12,\"expiryYear\":2030,\"cvv\":\"123\","
+        + "\"billingAddress\":\"1 rue de la Charge\"}}";
+
+    private static List<ServiceStandIn> standIns;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @TestConfiguration
+    static class StatementCounting {
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource target && !(bean instanceof StatementCountingDataSource)
+                        ? new StatementCountingDataSource(target)
+                        : bean;
+                }
+            };
+        }
+    }
+
+    @DynamicPropertySource
+    static void standIns(DynamicPropertyRegistry registry) throws IOException {
+        standIns = LoadEnvironment.start(registry);
+    }
+
+    @AfterAll
+    static void stopStandIns() {
+        LoadEnvironment.stop(standIns);
+    }
+
+    private enum Mode {
+        ORCHESTRATION, CHOREOGRAPHY
+    }
+
+    @Test
+    void compareOrchestrationAndChoreography() throws Exception {
+        StatementCountingDataSource statements = (StatementCountingDataSource) dataSource;
+        String baseUrl = "http://localhost:" + port;
+        List<Map<String, Object>> runs = new ArrayList<>();
+
+        try (HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+             ChoreographyStandIns choreography = new ChoreographyStandIns(baseUrl,
+                 standIns.get(0).profile(), standIns.get(1).profile(), standIns.get(2).profile())) {
+
+            URI sales = URI.create(baseUrl + "/api/v1/saga/sales");
+            SaleScenario.Mix warmupMix = new SaleScenario.Mix(80, 10, 10);
+            for (Mode mode : Mode.values()) {
+                new OpenLoopLoadGenerator(RATE).run(TimeUnit.SECONDS.toMillis(WARMUP_SECONDS),
+                    TimeUnit.SECONDS.toMillis(DRAIN_SECONDS),
+                    sale(mode, "warmup-" + mode.ordinal(), warmupMix, client, sales, choreography));
+            }
+
+            System.out.printf("%n%-13s %-9s %8s %8s %9s %9s %9s %8s %8s %8s%n", "mode", "mix", "sales/s",
+                "shed", "p50 ms", "p99 ms", "p999 ms", "db/sale", "http/sale", "msg/sale");
+            for (int i = 0; i < MIXES.size(); i++) {
+                SaleScenario.Mix mix = MIXES.get(i);
+                for (Mode mode : Mode.values()) {
+                    long statementsBefore = statements.executed();
+                    long httpBefore = httpCalls(choreography);
+                    long messagesBefore = choreography.publishedMessages();
+
+                    long start = System.nanoTime();
+                    OpenLoopLoadGenerator.Result result = new OpenLoopLoadGenerator(RATE).run(
+                        TimeUnit.SECONDS.toMillis(DURATION_SECONDS), TimeUnit.SECONDS.toMillis(DRAIN_SECONDS),
+                        sale(mode, "run" + i + "-" + mode.ordinal(), mix, client, sales, choreography));
+                    double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+                    runs.add(describe(mode, mix, result, elapsedSeconds,
+                        statements.executed() - statementsBefore,
+                        httpCalls(choreography) - httpBefore,
+                        choreography.publishedMessages() - messagesBefore));
+                }
+            }
+        }
+
+        Path report = writeReport(runs);
+        System.out.println("-> " + report);
+        assertTrue(runs.stream().allMatch(run -> (long) run.get("completed") > 0), "A run completed no sale");
+    }
+
+    private static IntFunction<CompletableFuture<Outcome>> sale(Mode mode, String run, SaleScenario.Mix mix,
+            HttpClient client, URI sales, ChoreographyStandIns choreography) {
+        return index -> {
+            SaleScenario scenario = mix.scenario(index);
+            if (mode == Mode.CHOREOGRAPHY) {
+                return choreography.submit(run + "-" + index, scenario);
+            }
+            String body = String.format(SALE_TEMPLATE, scenario.customerId(run, index), scenario.productId(index));
+            HttpRequest request = HttpRequest.newBuilder(sales)
+                .timeout(Duration.ofSeconds(DRAIN_SECONDS))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+            return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> switch (response.statusCode()) {
+                    case 201 -> Outcome.CONFIRMED;
+                    case 400 -> Outcome.FAILED;
+                    case 429 -> Outcome.SHED;
+                    default -> Outcome.ERROR;
+                });
+        };
+    }
+
+    /**
+     * Calls to the downstream stand-ins plus, in choreography, the participants' calls to the coordinator.
+     */
+    private static long httpCalls(ChoreographyStandIns choreography) {
+        return standIns.stream().mapToLong(ServiceStandIn::calls).sum() + choreography.coordinatorCalls();
+    }
+
+    private static Map<String, Object> describe(Mode mode, SaleScenario.Mix mix, OpenLoopLoadGenerator.Result result,
+            double elapsedSeconds, long statements, long httpCalls, long messages) {
+        Map<Outcome, Histogram> latencies = result.latencies();
+        long finished = latencies.get(Outcome.CONFIRMED).getTotalCount() + latencies.get(Outcome.FAILED).getTotalCount();
+        Histogram all = new Histogram(3);
+        latencies.values().forEach(all::add);
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("mode", mode.name());
+        run.put("mix", mix.toString());
+        run.put("sent", result.sent());
+        run.put("completed", result.completed());
+        run.put("achievedRate", result.achievedRate());
+        run.put("throughput", finished / elapsedSeconds);
+        run.put("dbStatementsPerSale", perSale(statements, result.sent()));
+        run.put("httpCallsPerSale", perSale(httpCalls, result.sent()));
+        run.put("brokerMessagesPerSale", perSale(messages, result.sent()));
+        run.put("all", LoadReport.summary(all));
+        run.put("outcomes", LoadReport.outcomes(latencies));
+
+        System.out.printf("%-13s %-9s %8.1f %8d %9.1f %9.1f %9.1f %8.1f %8.1f %8.1f%n", mode, mix,
+            finished / elapsedSeconds, latencies.get(Outcome.SHED).getTotalCount(),
+            LoadReport.millis(all.getValueAtPercentile(50)), LoadReport.millis(all.getValueAtPercentile(99)),
+            LoadReport.millis(all.getValueAtPercentile(99.9)), perSale(statements, result.sent()),
+            perSale(httpCalls, result.sent()), perSale(messages, result.sent()));
+        return run;
+    }
+
+    private static double perSale(long count, long sales) {
+        return sales == 0 ? 0 : (double) count / sales;
+    }
+
+    private static Path writeReport(List<Map<String, Object>> runs) throws IOException {
+        Map<String, Object> scenario = new LinkedHashMap<>();
+        scenario.put("targetRate", RATE);
+        scenario.put("durationSeconds", DURATION_SECONDS);
+        scenario.put("warmupSeconds", WARMUP_SECONDS);
+        scenario.put("services", LoadEnvironment.describe(standIns));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", LocalDateTime.now().toString());
+        report.put("scenario", scenario);
+        report.put("runs", runs);
+        return LoadReport.write("saga-modes", report);
+    }
+}
@@ -0,0 +1,69 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+/**
+ * How a benchmark sale is meant to end. The stand-ins recognise the scenario from the customer and product IDs,
+ * so the same sale ends the same way in both saga modes.
+ */
+enum SaleScenario {
+    SUCCESS,
+    PAYMENT_DECLINED,
+    STOCK_OUT;
+
+    private static final int PRODUCTS = 50;
+
+    String customerId(String run, int index) {
+        String customerId = run + "-customer-" + index;
+        return this == PAYMENT_DECLINED ? ServiceStandIn.DECLINED_PREFIX + customerId : customerId;
+    }
+
+    String productId(int index) {
+        String productId = String.valueOf(Math.floorMod(index, PRODUCTS) + 1);
+        return this == STOCK_OUT ? ServiceStandIn.OUT_OF_STOCK_PREFIX + productId : productId;
+    }
+
+    /**
+     * Share of each scenario in a run, in percent.
+     *
+     * @param success sales that are confirmed
+     * @param declined sales whose payment is declined after the stock is reserved
+     * @param stockOut sales rejected for lack of stock
+     */
+    record Mix(int success, int declined, int stockOut) {
+
+        Mix {
+            if (success < 0 || declined < 0 || stockOut < 0 || success + declined + stockOut != 100) {
+                throw new IllegalArgumentException("Scenario shares must add up to 100: " + success + "/"
+                    + declined + "/" + stockOut);
+            }
+        }
+
+        /**
+         * Parses {@code success/declined/stockOut} percentages, e.g. {@code 80/10/10}.
+         */
+        static Mix parse(String shares) {
+            String[] parts = shares.split("/");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Expected success/declined/stockOut percentages: " + shares);
+            }
+            return new Mix(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                Integer.parseInt(parts[2].trim()));
+        }
+
+        /**
+         * Scenario of the sale of the given index. Scrambled so the scenarios interleave, but deterministic,
+         * so every mode runs the very same sequence.
+         */
+        SaleScenario scenario(int index) {
+            int bucket = Math.floorMod(index * 0x9E3779B1, 100);
+            if (bucket < success) {
+                return SUCCESS;
+            }
+            return bucket < success + declined ? PAYMENT_DECLINED : STOCK_OUT;
+        }
+
+        @Override
+        public String toString() {
+            return success + "/" + declined + "/" + stockOut;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency and error-rate profile of a service stand-in.
+ * Each call takes {@code latencyMs} plus an exponentially distributed delay of mean {@code jitterMs},
+ * which gives the long tail real services show, and fails with probability {@code errorRate}.
+ *
+ * @param latencyMs fixed part of every call
+ * @param jitterMs mean of the random part, 0 for a constant latency
+ * @param errorRate share of calls answered with a 500, between 0 and 1
+ */
+record ServiceProfile(long latencyMs, long jitterMs, double errorRate) {
+
+    ServiceProfile {
+        if (latencyMs < 0 || jitterMs < 0 || errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Invalid service profile: latencyMs=" + latencyMs
+                + ", jitterMs=" + jitterMs + ", errorRate=" + errorRate);
+        }
+    }
+
+    /**
+     * Reads {@code load.<service>.latencyMs}, {@code .jitterMs} and {@code .errorRate}, falling back to the defaults.
+     */
+    static ServiceProfile fromSystemProperties(String service, ServiceProfile defaults) {
+        String prefix = "load." + service + ".";
+        return new ServiceProfile(
+            Long.getLong(prefix + "latencyMs", defaults.latencyMs()),
+            Long.getLong(prefix + "jitterMs", defaults.jitterMs()),
+            Double.parseDouble(System.getProperty(prefix + "errorRate", String.valueOf(defaults.errorRate()))));
+    }
+
+    long nextLatencyMillis() {
+        if (jitterMs == 0) {
+            return latencyMs;
+        }
+        double jitter = -jitterMs * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return latencyMs + Math.round(jitter);
+    }
+}
@@ -0,0 +1,224 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.log430.tp7.sagaorchestrator.dto.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local HTTP stand-in for a downstream service, answering the orchestrator's calls after a latency drawn from
+ * its {@link ServiceProfile} and failing a share of them with a 500.
+ * Built on the JDK HTTP server with a virtual thread per exchange, so injected latency never runs out of threads.
+ */
+class ServiceStandIn implements AutoCloseable {
+
+    /** Products whose ID starts with this are out of stock. */
+    static final String OUT_OF_STOCK_PREFIX = "out-of-stock-";
+    /** Customers whose ID starts with this have their payment declined. */
+    static final String DECLINED_PREFIX = "declined-";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+        .findAndRegisterModules()
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final String name;
+    private final ServiceProfile profile;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // The first matching prefix answers, so more specific routes are declared first
+    private final Map<String, Function<byte[], Object>> routes = new LinkedHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private ServiceStandIn(String name, ServiceProfile profile) throws IOException {
+        this.name = name;
+        this.profile = profile;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+    }
+
+    /**
+     * Inventory service: stock verification, reservation and release, including the choreographed compensation.
+     */
+    static ServiceStandIn inventory(ServiceProfile profile) throws IOException {
+        return new ServiceStandIn("inventory-service", profile)
+            .route("POST /api/v1/inventory/verify-stock/cart", body -> {
+                CartStockRequest request = read(body, CartStockRequest.class);
+                List<StockVerificationResponse> lines = request.lines().stream()
+                    .map(line -> stock(line.productId(), line.quantity()))
+                    .toList();
+                boolean available = lines.stream().allMatch(StockVerificationResponse::available);
+                return new CartStockVerificationResponse(true, available, request.sagaId(), lines,
+                    available ? "Stock verification successful" : "Insufficient stock");
+            })
+            .route("POST /api/v1/inventory/verify-stock", body -> {
+                StockVerificationRequest request = read(body, StockVerificationRequest.class);
+                return stock(request.productId(), request.quantity());
+            })
+            .route("POST /api/v1/inventory/reserve-stock/cart", body -> {
+                CartStockRequest request = read(body, CartStockRequest.class);
+                if (request.lines().stream().anyMatch(line -> line.productId().startsWith(OUT_OF_STOCK_PREFIX))) {
+                    return CartStockReservationResponse.failure(request.sagaId(), "Insufficient stock");
+                }
+                return CartStockReservationResponse.success(request.sagaId(), request.lines().stream()
+                    .map(line -> StockReservationResponse.success(UUID.randomUUID().toString(),
+                        line.productId(), line.quantity(), request.sagaId(), LocalDateTime.now().plusMinutes(30)))
+                    .toList());
+            })
+            .route("POST /api/v1/inventory/reserve-stock", body -> {
+                StockReservationRequest request = read(body, StockReservationRequest.class);
+                if (request.productId().startsWith(OUT_OF_STOCK_PREFIX)) {
+                    return StockReservationResponse.failure(request.productId(), request.sagaId(), "Insufficient stock");
+                }
+                return StockReservationResponse.success(UUID.randomUUID().toString(), request.productId(),
+                    request.quantity(), request.sagaId(), LocalDateTime.now().plusMinutes(30));
+            })
+            .route("DELETE /api/v1/inventory/reservations", body -> null)
+            .route("POST /api/stock/release", body -> null)
+            .route("POST /api/inventory/release", body -> null);
+    }
+
+    private static StockVerificationResponse stock(String productId, int quantity) {
+        boolean inStock = !productId.startsWith(OUT_OF_STOCK_PREFIX);
+        return StockVerificationResponse.success(productId, quantity, inStock ? 1_000_000 : 0, inStock);
+    }
+
+    /**
+     * Transaction service: payment processing and reversal. Also answers the payment-service compensations.
+     */
+    static ServiceStandIn transaction(ServiceProfile profile) throws IOException {
+        return new ServiceStandIn("transaction-service", profile)
+            .route("POST /api/v1/transactions/process-payment", body -> {
+                PaymentRequest request = read(body, PaymentRequest.class);
+                if (request.customerId().startsWith(DECLINED_PREFIX)) {
+                    return PaymentResponse.failure(request.customerId(), request.amount(), request.sagaId(),
+                        "Card declined");
+                }
+                return PaymentResponse.success(UUID.randomUUID().toString(), request.customerId(), request.amount(),
+                    request.paymentMethod(), request.sagaId(), "AUTH-LOAD");
+            })
+            .route("POST /api/v1/transactions/", body -> null)
+            .route("POST /api/payment/", body -> null);
+    }
+
+    /**
+     * Store service: order creation and cancellation.
+     */
+    static ServiceStandIn store(ServiceProfile profile) throws IOException {
+        return new ServiceStandIn("store-service", profile)
+            .route("POST /api/v1/orders/create-order", body -> {
+                OrderRequest request = read(body, OrderRequest.class);
+                int quantity = request.items().stream().mapToInt(OrderRequest.OrderItem::quantity).sum();
+                return OrderResponse.success(UUID.randomUUID().toString(), request.customerId(),
+                    request.firstProductId(), quantity, request.totalAmount(), request.sagaId(),
+                    request.stockReservationId(), request.paymentTransactionId(), "ORD-" + request.sagaId(), null);
+            })
+            .route("POST /api/v1/orders/", body -> null)
+            .route("POST /api/orders/cancel", body -> null);
+    }
+
+    private ServiceStandIn route(String methodAndPathPrefix, Function<byte[], Object> answer) {
+        routes.put(methodAndPathPrefix, answer);
+        return this;
+    }
+
+    ServiceStandIn start() {
+        server.start();
+        return this;
+    }
+
+    String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    String name() {
+        return name;
+    }
+
+    ServiceProfile profile() {
+        return profile;
+    }
+
+    long calls() {
+        return calls.get();
+    }
+
+    long errors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            calls.incrementAndGet();
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String request = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+
+            Function<byte[], Object> answer = routes.entrySet().stream()
+                .filter(route -> request.startsWith(route.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+            if (answer == null) {
+                respond(exchange, 404, "{\"error\":\"Not Found\"}");
+                return;
+            }
+
+            Thread.sleep(profile.nextLatencyMillis());
+            if (ThreadLocalRandom.current().nextDouble() < profile.errorRate()) {
+                errors.incrementAndGet();
+                respond(exchange, 500, "{\"error\":\"Injected failure\"}");
+                return;
+            }
+
+            Object response = answer.apply(body);
+            if (response == null) {
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                respond(exchange, 200, objectMapper.writeValueAsString(response));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static <T> T read(byte[] body, Class<T> type) {
+        try {
+            return objectMapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unreadable " + type.getSimpleName(), e);
+        }
+    }
+}
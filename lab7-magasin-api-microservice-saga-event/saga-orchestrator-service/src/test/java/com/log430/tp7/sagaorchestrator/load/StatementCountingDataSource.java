@@ -0,0 +1,92 @@
+package com.log430.tp7.sagaorchestrator.load;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the statements executed through a data source, JPA and JdbcTemplate alike.
+ * A JDBC batch counts once, as it is one round trip to the database.
+ */
+class StatementCountingDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+        "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final AtomicLong executed = new AtomicLong();
+
+    StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    long executed() {
+        return executed.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countStatements(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countStatements(super.getConnection(username, password));
+    }
+
+    @Override
+    public void close() throws Exception {
+        // Spring infers the destroy method from this bean, so the pool is closed through it
+        if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Connection countStatements(Connection connection) {
+        return proxy(Connection.class, connection, (method, result) -> {
+            if (result instanceof CallableStatement statement) {
+                return proxy(CallableStatement.class, statement, this::countExecution);
+            }
+            if (result instanceof PreparedStatement statement) {
+                return proxy(PreparedStatement.class, statement, this::countExecution);
+            }
+            if (result instanceof Statement statement) {
+                return proxy(Statement.class, statement, this::countExecution);
+            }
+            return result;
+        });
+    }
+
+    private Object countExecution(Method method, Object result) {
+        if (EXECUTE_METHODS.contains(method.getName())) {
+            executed.incrementAndGet();
+        }
+        return result;
+    }
+
+    private interface AfterCall {
+        Object apply(Method method, Object result);
+    }
+
+    private static <T> T proxy(Class<T> type, T target, AfterCall afterCall) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return afterCall.apply(method, method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(StatementCountingDataSource.class.getClassLoader(),
+            new Class<?>[] {type}, handler));
+    }
+}
@@ -0,0 +1,141 @@
+package com.log430.tp7.sagaorchestrator.model;
+
+import com.log430.tp7.event.TimeOrderedUuidGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Time-ordered (UUIDv7) versus random (UUIDv4) primary keys for saga_executions.
+ * The benchmark only runs with -Dbenchmark=true; the other tests check the generated layout.
+ */
+class TimeOrderedKeyBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 200_000);
+    private static final int BATCH_SIZE = 1_000;
+
+    @Test
+    void testGeneratedIdsAreVersion7AndStrictlyIncreasing() {
+        UUID previous = TimeOrderedUuidGenerator.next();
+        for (int i = 0; i < 100_000; i++) {
+            UUID current = TimeOrderedUuidGenerator.next();
+            assertEquals(7, current.version());
+            assertEquals(2, current.variant());
+            assertTrue(current.toString().compareTo(previous.toString()) > 0,
+                "IDs must sort in generation order as strings: " + previous + " then " + current);
+            previous = current;
+        }
+    }
+
+    @Test
+    void testTimestampIsExtractable() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedUuidGenerator.next();
+        long timestamp = TimeOrderedUuidGenerator.timestampMillis(id);
+
+        // The sequence may borrow a few milliseconds under heavy generation
+        assertTrue(timestamp >= before && timestamp <= System.currentTimeMillis() + 1_000);
+        assertThrows(IllegalArgumentException.class,
+            () -> TimeOrderedUuidGenerator.timestampMillis(UUID.randomUUID()));
+    }
+
+    @Test
+    void testIdsAreUniqueAcrossThreads() throws InterruptedException {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 25_000; i++) {
+                    ids.add(TimeOrderedUuidGenerator.nextString());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100_000, ids.size());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkInsertThroughputAndIndexSize(@TempDir Path directory) throws SQLException {
+        // Warm up both code paths before measuring
+        insertRows(directory.resolve("warmup-v4"), 20_000, () -> UUID.randomUUID().toString());
+        insertRows(directory.resolve("warmup-v7"), 20_000, TimeOrderedUuidGenerator::nextString);
+
+        BenchmarkResult random = insertRows(directory.resolve("v4"), ROWS, () -> UUID.randomUUID().toString());
+        BenchmarkResult ordered = insertRows(directory.resolve("v7"), ROWS, TimeOrderedUuidGenerator::nextString);
+
+        System.out.printf("%nsaga_executions primary key benchmark (%d rows, batches of %d)%n", ROWS, BATCH_SIZE);
+        System.out.printf("  UUIDv4: %,10.0f inserts/s, table+index %,8d KB%n",
+            random.insertsPerSecond(), random.sizeBytes() / 1024);
+        System.out.printf("  UUIDv7: %,10.0f inserts/s, table+index %,8d KB%n",
+            ordered.insertsPerSecond(), ordered.sizeBytes() / 1024);
+        // H2's MVStore is copy-on-write, so its size does not reflect B-tree page fill;
+        // compare index bloat on PostgreSQL with pgstatindex('saga_executions_pkey')
+
+        assertEquals(ROWS, random.rows());
+        assertEquals(ROWS, ordered.rows());
+    }
+
+    private BenchmarkResult insertRows(Path database, int rows, Supplier<String> keys) throws SQLException {
+        String url = "jdbc:h2:file:" + database.toAbsolutePath() + ";DB_CLOSE_DELAY=0";
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE saga_executions (" +
+                    "saga_id VARCHAR(36) PRIMARY KEY, " +
+                    "current_state VARCHAR(50) NOT NULL, " +
+                    "customer_id VARCHAR(50), " +
+                    "product_id VARCHAR(50), " +
+                    "quantity INT, " +
+                    "created_at TIMESTAMP)");
+            }
+            connection.setAutoCommit(false);
+
+            long start = System.nanoTime();
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO saga_executions VALUES (?, 'SALE_INITIATED', ?, ?, ?, CURRENT_TIMESTAMP)")) {
+                for (int i = 1; i <= rows; i++) {
+                    insert.setString(1, keys.get());
+                    insert.setString(2, "CUST-" + (i % 1_000));
+                    insert.setString(3, "PROD-" + (i % 100));
+                    insert.setInt(4, 1 + i % 5);
+                    insert.addBatch();
+                    if (i % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                        connection.commit();
+                    }
+                }
+                insert.executeBatch();
+                connection.commit();
+            }
+            long elapsedNanos = System.nanoTime() - start;
+
+            try (Statement statement = connection.createStatement()) {
+                ResultSet count = statement.executeQuery("SELECT COUNT(*) FROM saga_executions");
+                count.next();
+                long storedRows = count.getLong(1);
+                ResultSet size = statement.executeQuery("CALL DISK_SPACE_USED('SAGA_EXECUTIONS')");
+                size.next();
+                return new BenchmarkResult(storedRows, rows / (elapsedNanos / 1_000_000_000.0), size.getLong(1));
+            }
+        }
+    }
+
+    private record BenchmarkResult(long rows, double insertsPerSecond, long sizeBytes) {}
+}
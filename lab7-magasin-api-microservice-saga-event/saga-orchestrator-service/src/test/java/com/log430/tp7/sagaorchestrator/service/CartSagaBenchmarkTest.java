@@ -0,0 +1,263 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.dto.*;
+import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaEventType;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaLine;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Per-line versus per-cart sagas for a 12-line checkout.
+ * Remote services are simulated with a fixed latency per call, so the comparison measures round trips
+ * and step transitions rather than the services themselves. Runs only with -Dbenchmark=true.
+ */
+class CartSagaBenchmarkTest {
+
+    private static final int LINES = 12;
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 16);
+    private static final int CHECKOUTS_PER_CLIENT = Integer.getInteger("benchmark.checkouts", 25);
+    private static final long REMOTE_LATENCY_MS = Long.getLong("benchmark.latencyMs", 5);
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkPerLineVersusPerCartCheckout() throws Exception {
+        // Warm up both code paths before measuring
+        run(false, 2);
+        run(true, 2);
+
+        BenchmarkResult perLine = run(false, CHECKOUTS_PER_CLIENT);
+        BenchmarkResult perCart = run(true, CHECKOUTS_PER_CLIENT);
+
+        System.out.printf("%n%d-line checkout, %d clients x %d checkouts, %d ms per remote call%n",
+            LINES, CLIENTS, CHECKOUTS_PER_CLIENT, REMOTE_LATENCY_MS);
+        System.out.printf("  per-line sagas: %,8.1f checkouts/s, p50 %,6d ms, p99 %,6d ms, %,6d remote calls%n",
+            perLine.checkoutsPerSecond(), perLine.p50Millis(), perLine.p99Millis(), perLine.remoteCalls());
+        System.out.printf("  per-cart saga:  %,8.1f checkouts/s, p50 %,6d ms, p99 %,6d ms, %,6d remote calls%n",
+            perCart.checkoutsPerSecond(), perCart.p50Millis(), perCart.p99Millis(), perCart.remoteCalls());
+
+        // 3 remote calls per saga (reserve, pay, order): 12 sagas per checkout against a single one
+        assertEquals((long) CLIENTS * CHECKOUTS_PER_CLIENT * LINES * 3, perLine.remoteCalls());
+        assertEquals((long) CLIENTS * CHECKOUTS_PER_CLIENT * 3, perCart.remoteCalls());
+    }
+
+    private BenchmarkResult run(boolean cart, int checkoutsPerClient) throws Exception {
+        SimulatedServices services = new SimulatedServices(REMOTE_LATENCY_MS);
+        SagaOrchestrator orchestrator = new SagaOrchestrator(new InMemorySagaStepStore(), services,
+            mock(ConcurrentSagaManager.class, withSettings().stubOnly().defaultAnswer(invocation ->
+                invocation.getMethod().getReturnType() == boolean.class ? true : null)),
+            mock(SagaMetrics.class, withSettings().stubOnly()),
+            mock(SagaEventLogger.class, withSettings().stubOnly()),
+            new SagaConfiguration.SagaExecutionProperties(),
+            mock(SagaAdmissionController.class, withSettings().stubOnly().defaultAnswer(invocation ->
+                invocation.getMethod().getReturnType() == boolean.class ? true : null)));
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long[] latencies = new long[CLIENTS * checkoutsPerClient];
+        AtomicInteger index = new AtomicInteger();
+        try {
+            long start = System.nanoTime();
+            List<CompletableFuture<Void>> runs = IntStream.range(0, CLIENTS)
+                .mapToObj(client -> CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < checkoutsPerClient; i++) {
+                        long checkoutStart = System.nanoTime();
+                        checkout(orchestrator, cart);
+                        latencies[index.getAndIncrement()] = System.nanoTime() - checkoutStart;
+                    }
+                }, clients))
+                .toList();
+            CompletableFuture.allOf(runs.toArray(CompletableFuture[]::new)).get(5, TimeUnit.MINUTES);
+            long elapsedNanos = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            return new BenchmarkResult(
+                latencies.length / (elapsedNanos / 1_000_000_000.0),
+                TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length / 2]),
+                TimeUnit.NANOSECONDS.toMillis(latencies[(int) Math.ceil(latencies.length * 0.99) - 1]),
+                services.calls.get());
+        } finally {
+            clients.shutdown();
+            orchestrator.shutdown();
+        }
+    }
+
+    private static void checkout(SagaOrchestrator orchestrator, boolean cart) {
+        List<SaleRequest.SaleLine> lines = IntStream.range(0, LINES)
+            .mapToObj(i -> new SaleRequest.SaleLine(String.valueOf(i + 1), 1))
+            .toList();
+
+        if (cart) {
+            SagaResponse response = orchestrator.startSale(
+                new SaleRequest("customer-1", null, null, new BigDecimal("120.00"), null, lines)).join();
+            assertEquals(SagaState.SALE_CONFIRMED, response.state());
+            return;
+        }
+
+        // Without carts every line is its own saga, started together and awaited together
+        List<CompletableFuture<SagaResponse>> sagas = lines.stream()
+            .map(line -> orchestrator.startSale(new SaleRequest("customer-1", line.productId(), line.quantity(),
+                new BigDecimal("10.00"), null)))
+            .toList();
+        sagas.forEach(saga -> assertEquals(SagaState.SALE_CONFIRMED, saga.join().state()));
+    }
+
+    private record BenchmarkResult(double checkoutsPerSecond, long p50Millis, long p99Millis, long remoteCalls) {}
+
+    /**
+     * Remote services answering after a fixed latency, without blocking a thread while waiting.
+     */
+    private static class SimulatedServices extends ServiceClientWrapper {
+
+        private final Executor delayed;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        SimulatedServices(long latencyMs) {
+            super(null, null, null, null, null, null, null);
+            this.delayed = CompletableFuture.delayedExecutor(latencyMs, TimeUnit.MILLISECONDS);
+        }
+
+        private <T> CompletableFuture<T> remote(Supplier<T> answer) {
+            calls.incrementAndGet();
+            return CompletableFuture.supplyAsync(answer, delayed);
+        }
+
+        @Override
+        public CompletableFuture<StockVerificationResponse> verifyStock(String productId, Integer quantity,
+                                                                       String sagaId) {
+            return remote(() -> StockVerificationResponse.success(productId, quantity, 1_000, true));
+        }
+
+        @Override
+        public CompletableFuture<StockReservationResponse> reserveStock(String productId, Integer quantity,
+                                                                       String sagaId, String customerId) {
+            return remote(() -> StockReservationResponse.success(sagaId + ":" + productId, productId, quantity,
+                sagaId, LocalDateTime.now().plusMinutes(30)));
+        }
+
+        @Override
+        public CompletableFuture<CartStockVerificationResponse> verifyCartStock(List<SaleRequest.SaleLine> lines,
+                                                                               String sagaId) {
+            return remote(() -> new CartStockVerificationResponse(true, true, sagaId, List.of(),
+                "Stock verification successful"));
+        }
+
+        @Override
+        public CompletableFuture<CartStockReservationResponse> reserveCartStock(List<SaleRequest.SaleLine> lines,
+                                                                               String sagaId, String customerId) {
+            return remote(() -> CartStockReservationResponse.success(sagaId, lines.stream()
+                .map(line -> StockReservationResponse.success(sagaId + ":" + line.productId(), line.productId(),
+                    line.quantity(), sagaId, LocalDateTime.now().plusMinutes(30)))
+                .toList()));
+        }
+
+        @Override
+        public CompletableFuture<PaymentResponse> processPayment(String customerId, BigDecimal amount,
+                String paymentMethod, String cardNumber, String expiryMonth, String expiryYear, String cvv,
+                String billingAddress, String sagaId, String productId, Integer quantity) {
+            return remote(() -> PaymentResponse.success("payment-" + sagaId, customerId, amount, paymentMethod,
+                sagaId, "AUTH"));
+        }
+
+        @Override
+        public CompletableFuture<OrderResponse> createOrder(OrderRequest request) {
+            return remote(() -> orderCreated(request));
+        }
+
+        private static OrderResponse orderCreated(OrderRequest request) {
+            int quantity = request.items().stream().mapToInt(OrderRequest.OrderItem::quantity).sum();
+            return OrderResponse.success("order-" + request.sagaId(), request.customerId(), request.firstProductId(),
+                quantity, request.totalAmount(), request.sagaId(), request.stockReservationId(),
+                request.paymentTransactionId(), "ORD-" + request.sagaId(), null);
+        }
+    }
+
+    /**
+     * Step store keeping sagas in memory, so the benchmark measures orchestration only.
+     */
+    private static class InMemorySagaStepStore extends SagaStepStore {
+
+        private final Map<String, SagaExecution> sagas = new ConcurrentHashMap<>();
+
+        InMemorySagaStepStore() {
+            super(null, null, null, null, null);
+        }
+
+        @Override
+        public SagaExecution createSaga(String sagaId, SaleRequest request) {
+            SagaExecution saga = new SagaExecution(sagaId, request.customerId(), request.saleLines().get(0).productId(),
+                request.saleLines().stream().mapToInt(SaleRequest.SaleLine::quantity).sum(), request.amount());
+            if (request.isCart()) {
+                saga.setLines(new ArrayList<>(request.lines().stream()
+                    .map(line -> new SagaLine(line.productId(), line.quantity()))
+                    .toList()));
+            }
+            sagas.put(sagaId, saga);
+            return saga;
+        }
+
+        @Override
+        public SagaExecution beginStep(String sagaId, SagaState stepState, String callMessage) {
+            return update(sagaId, saga -> saga.transitionTo(stepState));
+        }
+
+        @Override
+        public SagaExecution completeStep(String sagaId, Consumer<SagaExecution> update, String message) {
+            return update(sagaId, update);
+        }
+
+        @Override
+        public SagaExecution confirmSale(String sagaId) {
+            return update(sagaId, saga -> saga.transitionTo(SagaState.SALE_CONFIRMED));
+        }
+
+        @Override
+        public void failStep(String sagaId, SagaEventType eventType, String errorMessage) {
+            update(sagaId, saga -> saga.setErrorMessage(errorMessage));
+        }
+
+        @Override
+        public SagaExecution beginCompensation(String sagaId, String errorMessage) {
+            return sagas.get(sagaId);
+        }
+
+        @Override
+        public void failSale(String sagaId, String errorMessage, String compensationLog, String compensationState) {
+            update(sagaId, saga -> saga.setErrorMessage(errorMessage));
+        }
+
+        @Override
+        public void logSagaEvent(String sagaId, SagaEventType eventType, String eventData) {
+        }
+
+        private SagaExecution update(String sagaId, Consumer<SagaExecution> update) {
+            return sagas.computeIfPresent(sagaId, (id, saga) -> {
+                update.accept(saga);
+                return saga;
+            });
+        }
+    }
+}
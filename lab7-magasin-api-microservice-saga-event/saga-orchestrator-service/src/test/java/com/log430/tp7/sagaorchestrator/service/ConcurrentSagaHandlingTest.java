@@ -3,6 +3,7 @@ package com.log430.tp7.sagaorchestrator.service;
 import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
 import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
 import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaLine;
 import com.log430.tp7.sagaorchestrator.model.SagaState;
 import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
 import jakarta.persistence.OptimisticLockException;
@@ -55,7 +56,7 @@ class ConcurrentSagaHandlingTest {
     @BeforeEach
     void setUp() {
         concurrentSagaManager = new ConcurrentSagaManager(
-            sagaExecutionRepository, sagaMetrics, sagaEventLogger);
+            sagaExecutionRepository, sagaMetrics, sagaEventLogger, new StripedSagaLockProvider(16));
         
         inventoryConcurrencyManager = new InventoryConcurrencyManager(
             sagaExecutionRepository, serviceClientWrapper, sagaMetrics, sagaEventLogger);
@@ -135,15 +136,8 @@ class ConcurrentSagaHandlingTest {
     @Test
     void testConcurrentSagaDetection() {
         // Given
-        SagaExecution concurrentSaga = new SagaExecution();
-        concurrentSaga.setSagaId("test-saga-2");
-        concurrentSaga.setCustomerId("customer-1");
-        concurrentSaga.setProductId("product-1");
-        concurrentSaga.setCurrentState(SagaState.STOCK_VERIFYING);
-        concurrentSaga.setCreatedAt(LocalDateTime.now().minusMinutes(1));
-        
-        when(sagaExecutionRepository.findActiveSagas())
-            .thenReturn(Arrays.asList(testSaga, concurrentSaga));
+        when(sagaExecutionRepository.existsConcurrentActiveSaga("customer-1", "product-1", "test-saga-1"))
+            .thenReturn(true);
         
         // When
         boolean hasConcurrent = concurrentSagaManager.hasConcurrentSagas(
@@ -178,6 +172,66 @@ class ConcurrentSagaHandlingTest {
         verify(sagaMetrics).recordError("StockReservationRaceCondition", "race_condition_handling");
     }
     
+    @Test
+    void testCartBlockedByAConflictOnItsSecondProduct() {
+        // Given
+        testSaga.setLines(List.of(new SagaLine("product-1", 2), new SagaLine("product-2", 1)));
+        testSaga.setCreatedAt(LocalDateTime.now().minusMinutes(1));
+        
+        SagaExecution earlierSaga = new SagaExecution();
+        earlierSaga.setSagaId("earlier-saga");
+        earlierSaga.setCustomerId("customer-1");
+        earlierSaga.setProductId("product-2");
+        earlierSaga.setCurrentState(SagaState.STOCK_RESERVING);
+        earlierSaga.setCreatedAt(LocalDateTime.now().minusMinutes(2));
+        
+        when(sagaExecutionRepository.findActiveByCustomerAndProductWithLock("customer-1", "product-1"))
+            .thenReturn(List.of(testSaga));
+        when(sagaExecutionRepository.findActiveByCustomerAndProductWithLock("customer-1", "product-2"))
+            .thenReturn(Arrays.asList(earlierSaga, testSaga));
+        
+        // When
+        boolean canProceed = concurrentSagaManager.handleStockReservationRaceCondition(
+            "customer-1", ConcurrentSagaManager.productIds(testSaga), "test-saga-1");
+        
+        // Then
+        assertFalse(canProceed);
+        verify(sagaMetrics).recordError("StockReservationRaceCondition", "race_condition_handling");
+    }
+    
+    @Test
+    void testCartProductLocksTakenInProductOrder() {
+        // Given
+        testSaga.setLines(List.of(new SagaLine("product-3", 1), new SagaLine("product-1", 1),
+            new SagaLine("product-3", 2)));
+        
+        // When
+        List<String> lockKeys = concurrentSagaManager.acquireCustomerProductLocks(
+            "customer-1", ConcurrentSagaManager.productIds(testSaga), "test-saga-1");
+        
+        // Then
+        assertEquals(List.of("customer-1:product-1", "customer-1:product-3"), lockKeys);
+        
+        // Cleanup
+        concurrentSagaManager.releaseCustomerProductLocks(lockKeys, "test-saga-1");
+    }
+    
+    @Test
+    void testCartValidationChecksEveryProduct() {
+        // Given
+        testSaga.setLines(List.of(new SagaLine("product-1", 2), new SagaLine("product-2", 1)));
+        when(sagaExecutionRepository.existsConcurrentActiveSaga("customer-1", "product-1", "test-saga-1"))
+            .thenReturn(false);
+        when(sagaExecutionRepository.existsConcurrentActiveSaga("customer-1", "product-2", "test-saga-1"))
+            .thenReturn(true);
+        
+        // When
+        boolean canProceed = concurrentSagaManager.validateSagaCanProceed(testSaga);
+        
+        // Then
+        assertFalse(canProceed);
+    }
+    
     @Test
     void testCustomerProductLockingMechanism() {
         // Given
@@ -244,6 +298,48 @@ class ConcurrentSagaHandlingTest {
         executor.shutdown();
     }
     
+    @Test
+    void testStripedLockTimesOutWhileAnotherThreadHoldsTheKey() throws Exception {
+        // Given
+        StripedSagaLockProvider lockProvider = new StripedSagaLockProvider(16);
+        assertTrue(lockProvider.tryLock("customer-1:product-1", 0));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        
+        try {
+            // When
+            boolean acquiredElsewhere = executor.submit(() -> lockProvider.tryLock("customer-1:product-1", 50))
+                .get(5, TimeUnit.SECONDS);
+            
+            // Then
+            assertFalse(acquiredElsewhere);
+            assertEquals(1, lockProvider.getHeldLockCount());
+        } finally {
+            assertTrue(lockProvider.unlock("customer-1:product-1"));
+            executor.shutdown();
+        }
+        assertEquals(0, lockProvider.getHeldLockCount());
+        assertFalse(lockProvider.unlock("customer-1:product-1"));
+    }
+    
+    @Test
+    void testLockWaitTimeoutIsRecordedAndReported() throws Exception {
+        // Given
+        SagaLockProvider lockProvider = mock(SagaLockProvider.class);
+        when(lockProvider.getName()).thenReturn("advisory");
+        when(lockProvider.tryLock(eq("customer-1:product-1"), anyLong())).thenReturn(false);
+        ConcurrentSagaManager manager = new ConcurrentSagaManager(
+            sagaExecutionRepository, sagaMetrics, sagaEventLogger, lockProvider);
+        
+        // When
+        RuntimeException exception = assertThrows(RuntimeException.class, () ->
+            manager.acquireCustomerProductLock("customer-1", "product-1", "test-saga-1"));
+        
+        // Then
+        assertTrue(exception.getMessage().contains("Timed out"));
+        verify(sagaMetrics).recordLockWait(eq("advisory"), anyLong(), eq(false));
+        verify(sagaMetrics).recordError("LockAcquisitionTimeout", "race_condition_prevention");
+    }
+    
     @Test
     void testConcurrencyValidationResult() {
         // Given
@@ -298,8 +394,8 @@ class ConcurrentSagaHandlingTest {
     @Test
     void testSagaValidationCanProceed() {
         // Given
-        when(sagaExecutionRepository.countConcurrentActiveSagas("customer-1", "product-1", "test-saga-1"))
-            .thenReturn(0L);
+        when(sagaExecutionRepository.existsConcurrentActiveSaga("customer-1", "product-1", "test-saga-1"))
+            .thenReturn(false);
         
         // When
         boolean canProceed = concurrentSagaManager.validateSagaCanProceed(testSaga);
@@ -0,0 +1,101 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DownstreamClientExecutorTest {
+
+    private final SagaMetrics sagaMetrics = mock(SagaMetrics.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private DownstreamClientExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        SagaConfiguration.Bulkhead bulkhead = new SagaConfiguration.Bulkhead();
+        bulkhead.setMaxConcurrent(2);
+        bulkhead.setMaxQueue(1);
+        bulkhead.setMaxWaitMs(5000);
+        SagaConfiguration.SagaClientProperties properties = new SagaConfiguration.SagaClientProperties();
+        properties.getBulkhead().put(DownstreamClientExecutor.TRANSACTION_SERVICE, bulkhead);
+
+        executor = new DownstreamClientExecutor(sagaMetrics, mock(SagaAdmissionController.class), properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void testSlowServiceFillsItsOwnBulkheadOnly() throws Exception {
+        // Two calls in flight, one queued: the bulkhead of the transaction service is full
+        CompletableFuture<String> first = executor.supply(DownstreamClientExecutor.TRANSACTION_SERVICE, this::slowCall);
+        CompletableFuture<String> second = executor.supply(DownstreamClientExecutor.TRANSACTION_SERVICE, this::slowCall);
+        CompletableFuture<String> queued = executor.supply(DownstreamClientExecutor.TRANSACTION_SERVICE, this::slowCall);
+        awaitCondition(() -> executor.getInFlight(DownstreamClientExecutor.TRANSACTION_SERVICE) == 2
+            && executor.getQueued(DownstreamClientExecutor.TRANSACTION_SERVICE) == 1);
+
+        CompletableFuture<String> rejected = executor.supply(DownstreamClientExecutor.TRANSACTION_SERVICE, () -> "late");
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+        verify(sagaMetrics).recordError("BulkheadFull", DownstreamClientExecutor.TRANSACTION_SERVICE);
+
+        // Other services keep their own capacity
+        assertEquals("stock", executor.supply(DownstreamClientExecutor.INVENTORY_SERVICE, () -> "stock")
+            .get(1, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertEquals("done", first.get(5, TimeUnit.SECONDS));
+        assertEquals("done", second.get(5, TimeUnit.SECONDS));
+        assertEquals("done", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getInFlight(DownstreamClientExecutor.TRANSACTION_SERVICE));
+        verify(sagaMetrics, times(3)).recordDownstreamCall(eq(DownstreamClientExecutor.TRANSACTION_SERVICE),
+            anyLong(), eq(true));
+    }
+
+    @Test
+    void testCallsRunOnVirtualThreadsAndReportFailures() {
+        CompletableFuture<Boolean> virtual = executor.supply(DownstreamClientExecutor.STORE_SERVICE,
+            () -> Thread.currentThread().isVirtual());
+        assertTrue(virtual.join());
+
+        CompletableFuture<Void> failed = executor.run(DownstreamClientExecutor.STORE_SERVICE, () -> {
+            throw new IllegalStateException("store down");
+        });
+        assertThrows(Exception.class, failed::join);
+        verify(sagaMetrics).recordDownstreamCall(eq(DownstreamClientExecutor.STORE_SERVICE), anyLong(), eq(false));
+        verify(sagaMetrics).registerDownstreamGauges(eq(DownstreamClientExecutor.STORE_SERVICE), any(), any());
+    }
+
+    private String slowCall() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.client.InventoryServiceClient;
+import com.log430.tp7.sagaorchestrator.client.StoreServiceClient;
+import com.log430.tp7.sagaorchestrator.client.TransactionServiceClient;
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.dto.StockVerificationResponse;
+import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HedgedRequestExecutorTest {
+
+    private static final String SERVICE = DownstreamClientExecutor.INVENTORY_SERVICE;
+
+    private final SagaMetrics sagaMetrics = mock(SagaMetrics.class);
+    private final DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+    private DownstreamClientExecutor clientExecutor;
+    private HedgedRequestExecutor hedgedRequestExecutor;
+
+    @BeforeEach
+    void setUp() {
+        clientExecutor = new DownstreamClientExecutor(sagaMetrics, mock(SagaAdmissionController.class),
+            new SagaConfiguration.SagaClientProperties());
+        when(discoveryClient.getInstances(SERVICE)).thenReturn(List.of(
+            instance("inventory-1", 8081), instance("inventory-2", 8082)));
+        hedgedRequestExecutor = createExecutor(10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        hedgedRequestExecutor.shutdown();
+        clientExecutor.shutdown();
+    }
+
+    @Test
+    void testSlowCallIsHedgedOnAnotherInstanceAndCancelled() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<String> result = hedgedRequestExecutor.supply(SERVICE, "http://default",
+            baseUrl -> calls.getAndIncrement() == 0 ? slowCall(baseUrl) : baseUrl);
+
+        String answeredBy = result.get(5, TimeUnit.SECONDS);
+
+        assertNotEquals("http://default", answeredBy);
+        assertEquals(2, calls.get());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "losing call should be interrupted");
+        verify(sagaMetrics).incrementHedgedRequest(SERVICE, "sent");
+        verify(sagaMetrics, timeout(1000)).incrementHedgedRequest(SERVICE, "won");
+    }
+
+    @Test
+    void testSlowPrimaryStockVerificationIsAnsweredByTheHedge() throws Exception {
+        // The primary instance stalls; the instance the call is hedged on answers at once
+        AtomicInteger calls = new AtomicInteger();
+        InventoryServiceClient inventoryServiceClient = mock(InventoryServiceClient.class);
+        when(inventoryServiceClient.getInventoryServiceUrl()).thenReturn("http://inventory-service:8081");
+        when(inventoryServiceClient.verifyStock(anyString(), eq("product-1"), eq(2), eq("preview-1")))
+            .thenAnswer(invocation -> {
+                if (calls.getAndIncrement() == 0) {
+                    slowCall(invocation.getArgument(0));
+                    return StockVerificationResponse.failure("product-1", "primary answered too late");
+                }
+                return StockVerificationResponse.success("product-1", 2, 7, true);
+            });
+        ServiceClientWrapper serviceClientWrapper = new ServiceClientWrapper(inventoryServiceClient,
+            mock(TransactionServiceClient.class), mock(StoreServiceClient.class), sagaMetrics,
+            mock(SagaEventLogger.class), clientExecutor, hedgedRequestExecutor);
+
+        StockVerificationResponse response = serviceClientWrapper.verifyStock("product-1", 2, "preview-1")
+            .get(5, TimeUnit.SECONDS);
+
+        assertTrue(response.available());
+        assertEquals(7, response.availableQuantity());
+        assertEquals(2, calls.get());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "slow primary should be interrupted");
+        verify(sagaMetrics, timeout(1000)).incrementHedgedRequest(SERVICE, "won");
+        verify(sagaMetrics, timeout(1000)).incrementStockVerification(true);
+        verify(sagaMetrics, never()).incrementStockVerification(false);
+    }
+
+    @Test
+    void testHedgesStopWhenTheBudgetIsSpent() throws Exception {
+        hedgedRequestExecutor.shutdown();
+        hedgedRequestExecutor = createExecutor(1);
+
+        AtomicInteger calls = new AtomicInteger();
+        assertNotNull(hedgedRequestExecutor.supply(SERVICE, "http://default",
+            baseUrl -> calls.getAndIncrement() == 0 ? slowCall(baseUrl) : baseUrl).get(5, TimeUnit.SECONDS));
+
+        // The only token is spent: the next slow call waits for its own instance
+        CompletableFuture<String> unhedged = hedgedRequestExecutor.supply(SERVICE, "http://default", this::blockedCall);
+        verify(sagaMetrics, timeout(2000)).incrementHedgedRequest(SERVICE, "budget_exhausted");
+        assertFalse(unhedged.isDone());
+
+        release.countDown();
+        assertNotNull(unhedged.get(5, TimeUnit.SECONDS));
+        verify(sagaMetrics, times(1)).incrementHedgedRequest(SERVICE, "sent");
+    }
+
+    @Test
+    void testSingleInstanceIsCalledWithoutHedging() throws Exception {
+        when(discoveryClient.getInstances(SERVICE)).thenReturn(List.of(instance("inventory-1", 8081)));
+
+        assertEquals("http://default",
+            hedgedRequestExecutor.supply(SERVICE, "http://default", baseUrl -> baseUrl).get(5, TimeUnit.SECONDS));
+        verify(sagaMetrics, never()).incrementHedgedRequest(anyString(), anyString());
+    }
+
+    private HedgedRequestExecutor createExecutor(int budgetBurst) {
+        SagaConfiguration.SagaHedgingProperties properties = new SagaConfiguration.SagaHedgingProperties();
+        properties.setMinDelayMs(20);
+        properties.setBudgetBurst(budgetBurst);
+        properties.setBudgetRatio(0);
+        @SuppressWarnings("unchecked")
+        ObjectProvider<DiscoveryClient> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(discoveryClient);
+        return new HedgedRequestExecutor(clientExecutor, provider, sagaMetrics, properties);
+    }
+
+    private String slowCall(String baseUrl) {
+        try {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            interrupted.countDown();
+        }
+        return baseUrl;
+    }
+
+    private String blockedCall(String baseUrl) {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return baseUrl;
+    }
+
+    private static ServiceInstance instance(String instanceId, int port) {
+        return new DefaultServiceInstance(instanceId, SERVICE, "localhost", port, false);
+    }
+}
@@ -0,0 +1,98 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.dto.StockVerificationResponse;
+import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InventoryConcurrencyManagerTest {
+
+    private final ServiceClientWrapper serviceClientWrapper = mock(ServiceClientWrapper.class);
+    private final SagaMetrics sagaMetrics = mock(SagaMetrics.class);
+    private InventoryConcurrencyManager inventoryConcurrencyManager;
+
+    @BeforeEach
+    void setUp() {
+        inventoryConcurrencyManager = new InventoryConcurrencyManager(mock(SagaExecutionRepository.class),
+            serviceClientWrapper, sagaMetrics, mock(SagaEventLogger.class));
+    }
+
+    @Test
+    void testConcurrentVerificationsShareOneInventoryCall() throws Exception {
+        CompletableFuture<StockVerificationResponse> inventoryCall = new CompletableFuture<>();
+        when(serviceClientWrapper.verifyStock(eq("product-1"), anyInt(), anyString())).thenReturn(inventoryCall);
+
+        CompletableFuture<StockVerificationResponse> small = CompletableFuture.supplyAsync(
+            () -> inventoryConcurrencyManager.verifyStockWithConcurrencyProtection("product-1", 3, "saga-1"));
+        verify(serviceClientWrapper, timeout(5000)).verifyStock(eq("product-1"), anyInt(), eq("saga-1"));
+        CompletableFuture<StockVerificationResponse> large = CompletableFuture.supplyAsync(
+            () -> inventoryConcurrencyManager.verifyStockWithConcurrencyProtection("product-1", 8, "saga-2"));
+        verify(sagaMetrics, timeout(5000)).incrementCoalescedStockVerification();
+
+        inventoryCall.complete(StockVerificationResponse.success("product-1", 1, 5, true));
+
+        // Each saga compares its own quantity with the shared available quantity
+        StockVerificationResponse smallAnswer = small.get(5, TimeUnit.SECONDS);
+        assertTrue(smallAnswer.available());
+        assertEquals(3, smallAnswer.requestedQuantity());
+        StockVerificationResponse largeAnswer = large.get(5, TimeUnit.SECONDS);
+        assertFalse(largeAnswer.available());
+        assertEquals(5, largeAnswer.availableQuantity());
+        verify(serviceClientWrapper, times(1)).verifyStock(anyString(), anyInt(), anyString());
+    }
+
+    @Test
+    void testManyConcurrentPreviewsSendOneInventoryCall() throws Exception {
+        int callers = 16;
+        CompletableFuture<StockVerificationResponse> inventoryCall = new CompletableFuture<>();
+        when(serviceClientWrapper.verifyStock(eq("product-1"), anyInt(), anyString())).thenReturn(inventoryCall);
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<CompletableFuture<StockVerificationResponse>> previews = IntStream.rangeClosed(1, callers)
+                .mapToObj(quantity -> CompletableFuture.supplyAsync(() -> inventoryConcurrencyManager
+                    .verifyStockWithConcurrencyProtection("product-1", quantity, "preview-" + quantity), executor))
+                .toList();
+            // Every caller but the first joins the call in flight
+            verify(sagaMetrics, timeout(5000).times(callers - 1)).incrementCoalescedStockVerification();
+
+            inventoryCall.complete(StockVerificationResponse.success("product-1", 1, 10, true));
+
+            for (int quantity = 1; quantity <= callers; quantity++) {
+                StockVerificationResponse answer = previews.get(quantity - 1).get(5, TimeUnit.SECONDS);
+                assertEquals(quantity <= 10, answer.available());
+                assertEquals(quantity, answer.requestedQuantity());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(serviceClientWrapper, times(1)).verifyStock(anyString(), anyInt(), anyString());
+        verify(serviceClientWrapper, never()).verifyStockSync(anyString(), anyInt(), anyString());
+    }
+
+    @Test
+    void testFailedVerificationIsNotReused() {
+        when(serviceClientWrapper.verifyStock(eq("product-1"), anyInt(), anyString()))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("connection reset")))
+            .thenReturn(CompletableFuture.completedFuture(StockVerificationResponse.success("product-1", 1, 10, true)));
+
+        assertThrows(RuntimeException.class,
+            () -> inventoryConcurrencyManager.verifyStockWithConcurrencyProtection("product-1", 2, "saga-1"));
+
+        assertTrue(inventoryConcurrencyManager.verifyStockWithConcurrencyProtection("product-1", 2, "saga-2").available());
+        verify(serviceClientWrapper, times(2)).verifyStock(anyString(), anyInt(), anyString());
+    }
+}
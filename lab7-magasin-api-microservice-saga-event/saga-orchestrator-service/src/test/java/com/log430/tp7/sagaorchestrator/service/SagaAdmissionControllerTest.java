@@ -0,0 +1,99 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SagaAdmissionControllerTest {
+
+    private static final long NO_LOAD_RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final SagaMetrics sagaMetrics = mock(SagaMetrics.class);
+
+    @Test
+    void testLimitShrinksWhenDownstreamLatencyGrows() {
+        SagaAdmissionController controller = new SagaAdmissionController(properties(20, 4, 256, 10, 50), sagaMetrics);
+
+        // Latency stays at the no-load level: the limit grows
+        for (int i = 0; i < 10; i++) {
+            controller.onDownstreamSample(DownstreamClientExecutor.INVENTORY_SERVICE, NO_LOAD_RTT,
+                controller.getLimit(), true);
+        }
+        int grown = controller.getLimit();
+        assertTrue(grown > 20, "limit should grow without queueing, was " + grown);
+
+        // Latency five times higher at the same concurrency: calls are queueing in the service
+        for (int i = 0; i < 20; i++) {
+            controller.onDownstreamSample(DownstreamClientExecutor.INVENTORY_SERVICE, 5 * NO_LOAD_RTT,
+                controller.getLimit(), true);
+        }
+        int shrunk = controller.getLimit();
+        assertTrue(shrunk < grown, "limit should shrink under queueing, was " + shrunk);
+
+        // Failures cut the limit, down to the configured minimum
+        for (int i = 0; i < 50; i++) {
+            controller.onDownstreamSample(DownstreamClientExecutor.INVENTORY_SERVICE, NO_LOAD_RTT, 1, false);
+        }
+        assertEquals(4, controller.getLimit());
+        verify(sagaMetrics).registerDownstreamLimitGauge(eq(DownstreamClientExecutor.INVENTORY_SERVICE), any());
+    }
+
+    @Test
+    void testSalesBeyondTheLimitWaitThenAreShed() throws Exception {
+        SagaAdmissionController controller = new SagaAdmissionController(properties(2, 1, 10, 1, 50), sagaMetrics);
+        assertTrue(controller.tryAcquire());
+        assertTrue(controller.tryAcquire());
+
+        // No slot frees up within max-wait-ms
+        assertFalse(controller.tryAcquire());
+        verify(sagaMetrics).incrementAdmissionRejected("timeout");
+
+        // One sale waits for a slot, the next finds the queue full
+        SagaAdmissionController patient = new SagaAdmissionController(properties(2, 1, 10, 1, 5000), sagaMetrics);
+        assertTrue(patient.tryAcquire());
+        assertTrue(patient.tryAcquire());
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(patient::tryAcquire);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (patient.getWaiting() == 0) {
+            assertTrue(System.nanoTime() < deadline, "waiting sale never queued");
+            Thread.sleep(10);
+        }
+        assertFalse(patient.tryAcquire());
+        verify(sagaMetrics).incrementAdmissionRejected("queue_full");
+
+        patient.release();
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+        assertEquals(2, patient.getInFlight());
+    }
+
+    @Test
+    void testDisabledControllerAdmitsEverySale() {
+        SagaConfiguration.SagaAdmissionProperties properties = properties(1, 1, 1, 0, 0);
+        properties.setEnabled(false);
+        SagaAdmissionController controller = new SagaAdmissionController(properties, sagaMetrics);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(controller.tryAcquire());
+        }
+        verify(sagaMetrics, never()).registerAdmissionGauges(any(), any());
+        verify(sagaMetrics, never()).incrementAdmissionRejected(anyString());
+    }
+
+    private static SagaConfiguration.SagaAdmissionProperties properties(int initialLimit, int minLimit, int maxLimit,
+                                                                        int maxQueue, long maxWaitMs) {
+        SagaConfiguration.SagaAdmissionProperties properties = new SagaConfiguration.SagaAdmissionProperties();
+        properties.setInitialLimit(initialLimit);
+        properties.setMinLimit(minLimit);
+        properties.setMaxLimit(maxLimit);
+        properties.setMaxQueue(maxQueue);
+        properties.setMaxWaitMs(maxWaitMs);
+        return properties;
+    }
+}
@@ -0,0 +1,81 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.model.ArchivedSagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import com.log430.tp7.sagaorchestrator.repository.ArchivedSagaExecutionRepository;
+import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SagaArchiveServiceTest {
+
+    private final SagaExecutionRepository sagaExecutionRepository = mock(SagaExecutionRepository.class);
+    private final ArchivedSagaExecutionRepository archivedSagaExecutionRepository = mock(ArchivedSagaExecutionRepository.class);
+    private final SagaConfiguration.SagaArchiveProperties properties = new SagaConfiguration.SagaArchiveProperties();
+    private SagaArchiveService archiveService;
+
+    @BeforeEach
+    void setUp() {
+        properties.setBatchSize(2);
+        properties.setMaxBatchesPerRun(5);
+        archiveService = new SagaArchiveService(sagaExecutionRepository, archivedSagaExecutionRepository,
+            mock(PlatformTransactionManager.class), properties);
+        when(sagaExecutionRepository.deleteBySagaIds(anyCollection()))
+            .thenAnswer(invocation -> invocation.<List<String>>getArgument(0).size());
+    }
+
+    @Test
+    void testFinalSagasAreMovedInBatchesUntilAShortBatch() {
+        List<String> first = List.of("saga-1", "saga-2");
+        List<String> second = List.of("saga-3");
+        when(sagaExecutionRepository.lockArchivableSagaIds(any(LocalDateTime.class), eq(2))).thenReturn(first, second);
+
+        assertEquals(3, archiveService.archiveFinalSagas());
+
+        verify(sagaExecutionRepository, times(2)).lockArchivableSagaIds(any(LocalDateTime.class), eq(2));
+        // Copied before being deleted, lines before their saga
+        var inOrder = inOrder(archivedSagaExecutionRepository, sagaExecutionRepository);
+        inOrder.verify(archivedSagaExecutionRepository).copyFromSagaExecutions(eq(first), any(LocalDateTime.class));
+        inOrder.verify(archivedSagaExecutionRepository).copyLinesFromSagaExecutions(first);
+        inOrder.verify(sagaExecutionRepository).deleteLinesBySagaIds(first);
+        inOrder.verify(sagaExecutionRepository).deleteBySagaIds(first);
+        verify(sagaExecutionRepository).deleteBySagaIds(second);
+    }
+
+    @Test
+    void testFailedBatchStopsTheRun() {
+        when(sagaExecutionRepository.lockArchivableSagaIds(any(LocalDateTime.class), anyInt()))
+            .thenReturn(List.of("saga-1", "saga-2"), List.of("saga-3", "saga-4"));
+        when(archivedSagaExecutionRepository.copyFromSagaExecutions(eq(List.of("saga-3", "saga-4")), any()))
+            .thenThrow(new QueryTimeoutException("statement timeout"));
+
+        assertEquals(2, archiveService.archiveFinalSagas());
+        verify(sagaExecutionRepository, never()).deleteBySagaIds(List.of("saga-3", "saga-4"));
+    }
+
+    @Test
+    void testLookupFallsBackToTheArchive() {
+        SagaExecution saga = new SagaExecution("saga-1", "customer-1", "product-1", 1, BigDecimal.TEN);
+        saga.setCurrentState(SagaState.SALE_CONFIRMED);
+        ArchivedSagaExecution archived = mock(ArchivedSagaExecution.class);
+        when(archived.toSagaExecution()).thenReturn(saga);
+        when(sagaExecutionRepository.findById("saga-1")).thenReturn(Optional.empty());
+        when(archivedSagaExecutionRepository.findById("saga-1")).thenReturn(Optional.of(archived));
+
+        assertEquals(Optional.of(saga), archiveService.findById("saga-1"));
+        assertTrue(archiveService.findById("saga-unknown").isEmpty());
+    }
+}
@@ -0,0 +1,91 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.exception.SagaStateConflictException;
+import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaLine;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SagaCompensationServiceTest {
+
+    private final ServiceClientWrapper serviceClientWrapper = mock(ServiceClientWrapper.class);
+    private final SagaStepStore sagaStepStore = mock(SagaStepStore.class);
+    private SagaCompensationService compensationService;
+    private SagaExecution saga;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<SagaStepStore> sagaStepStoreProvider = mock(ObjectProvider.class);
+        when(sagaStepStoreProvider.getObject()).thenReturn(sagaStepStore);
+        compensationService = new SagaCompensationService(mock(SagaExecutionRepository.class), serviceClientWrapper,
+                mock(SagaMetrics.class), mock(SagaEventLogger.class), sagaStepStoreProvider);
+
+        saga = new SagaExecution("saga-1", "customer-1", "product-1", 2, new BigDecimal("20.00"));
+        saga.setCurrentState(SagaState.PAYMENT_PROCESSING);
+        saga.setStockReservationId("reservation-1");
+        saga.setVersion(4L);
+    }
+
+    @Test
+    void testTimeoutTakesOverTheObservedVersionBeforeReleasing() {
+        assertTrue(compensationService.executeCompensation(saga, "TIMEOUT"));
+
+        InOrder inOrder = inOrder(sagaStepStore, serviceClientWrapper);
+        inOrder.verify(sagaStepStore).beginCompensation(eq("saga-1"), eq(4L), anyString());
+        inOrder.verify(serviceClientWrapper).releaseStockSync("reservation-1");
+        inOrder.verify(sagaStepStore).failSale(eq("saga-1"), anyString(), contains("reservation-1"),
+                eq("successful"));
+    }
+
+    @Test
+    void testTimeoutLosingToTheRunningStepReleasesNothing() {
+        when(sagaStepStore.beginCompensation(eq("saga-1"), eq(4L), anyString()))
+                .thenThrow(new SagaStateConflictException("saga-1", SagaState.PAYMENT_PROCESSING,
+                        SagaState.STOCK_RELEASING));
+
+        assertFalse(compensationService.executeCompensation(saga, "TIMEOUT"));
+
+        verifyNoInteractions(serviceClientWrapper);
+        verify(sagaStepStore, never()).failSale(anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void testCartCompensationReleasesEveryLineBySaga() {
+        saga.setLines(new ArrayList<>(List.of(new SagaLine("product-1", 2), new SagaLine("product-2", 3))));
+        when(serviceClientWrapper.releaseCartStock("saga-1")).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertTrue(compensationService.executeCompensation(saga, "TIMEOUT"));
+
+        verify(serviceClientWrapper).releaseCartStock("saga-1");
+        verify(serviceClientWrapper, never()).releaseStockSync(anyString());
+        verify(sagaStepStore).failSale(eq("saga-1"), anyString(), anyString(), eq("successful"));
+    }
+
+    @Test
+    void testTimeoutBeforePaymentFailsTheSagaBeforeReleasing() {
+        saga.setCurrentState(SagaState.STOCK_RESERVING);
+
+        assertTrue(compensationService.executeCompensation(saga, "TIMEOUT"));
+
+        InOrder inOrder = inOrder(sagaStepStore, serviceClientWrapper);
+        inOrder.verify(sagaStepStore).failSale(eq("saga-1"), eq(4L), anyString(), anyString(), eq("successful"));
+        inOrder.verify(serviceClientWrapper).releaseStockSync("reservation-1");
+        verify(sagaStepStore, never()).beginCompensation(anyString(), any(), anyString());
+    }
+}
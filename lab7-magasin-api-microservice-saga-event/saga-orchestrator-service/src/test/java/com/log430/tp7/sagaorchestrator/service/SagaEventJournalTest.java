@@ -0,0 +1,148 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaEvent;
+import com.log430.tp7.sagaorchestrator.model.SagaEventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SagaEventJournalTest {
+
+    private final SagaMetrics sagaMetrics = mock(SagaMetrics.class);
+    private final RecordingJdbcTemplate jdbcTemplate = new RecordingJdbcTemplate();
+    private SagaEventJournal journal;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.release.countDown();
+        journal.shutdown();
+    }
+
+    @Test
+    void testEventsAreWrittenInBatchesBehindTheCaller() {
+        jdbcTemplate.release.countDown();
+        journal = new SagaEventJournal(jdbcTemplate, sagaMetrics, 100, 50, 20, 10, "terminal");
+
+        for (int i = 0; i < 10; i++) {
+            journal.append(event("saga-1", SagaEventType.STATE_TRANSITION), false);
+        }
+        // The terminal event returns only once it has been written, after the events queued before it
+        journal.append(event("saga-1", SagaEventType.SAGA_COMPLETED), true);
+
+        assertEquals(11, jdbcTemplate.written.size());
+        assertEquals(SagaEventType.SAGA_COMPLETED.name(), jdbcTemplate.written.get(10));
+        assertTrue(jdbcTemplate.batches.size() < 11, "events were not batched: " + jdbcTemplate.batches);
+        verify(sagaMetrics, atLeastOnce()).recordJournalFlush(anyInt(), anyLong());
+    }
+
+    @Test
+    void testFullBufferDropsProgressEventsButWaitsForTerminalOnes() throws Exception {
+        journal = new SagaEventJournal(jdbcTemplate, sagaMetrics, 2, 50, 1, 10, "terminal");
+
+        journal.append(event("saga-1", SagaEventType.STATE_TRANSITION), false);
+        assertTrue(jdbcTemplate.flushing.await(5, TimeUnit.SECONDS));
+        // The writer is stuck on the first batch: two events fill the buffer, the next one is dropped
+        journal.append(event("saga-1", SagaEventType.SERVICE_CALL_STARTED), false);
+        journal.append(event("saga-1", SagaEventType.SERVICE_CALL_COMPLETED), false);
+        journal.append(event("saga-1", SagaEventType.RETRY), false);
+        CompletableFuture<Void> terminal = CompletableFuture.runAsync(() ->
+            journal.append(event("saga-1", SagaEventType.SAGA_COMPLETED), true));
+
+        verify(sagaMetrics).incrementJournalDropped();
+        assertThrows(Exception.class, () -> terminal.get(100, TimeUnit.MILLISECONDS));
+
+        jdbcTemplate.release.countDown();
+        terminal.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("STATE_TRANSITION", "SERVICE_CALL_STARTED", "SERVICE_CALL_COMPLETED", "SAGA_COMPLETED"),
+            jdbcTemplate.written);
+        verify(sagaMetrics, times(2)).incrementJournalBlocked();
+    }
+
+    @Test
+    void testAlwaysDurabilityWaitsForEveryEvent() {
+        jdbcTemplate.release.countDown();
+        journal = new SagaEventJournal(jdbcTemplate, sagaMetrics, 100, 50, 1, 10, "always");
+
+        journal.append(event("saga-1", SagaEventType.STATE_TRANSITION), false);
+        assertEquals(1, jdbcTemplate.written.size());
+
+        journal.append(event("saga-1", SagaEventType.SERVICE_CALL_STARTED), false);
+        assertEquals(2, jdbcTemplate.written.size());
+    }
+
+    @Test
+    void testUnserializableEventDataDoesNotLoseTheBatch() {
+        jdbcTemplate.release.countDown();
+        journal = new SagaEventJournal(jdbcTemplate, sagaMetrics, 100, 50, 20, 10, "terminal");
+
+        journal.append(event("saga-1", SagaEventType.STATE_TRANSITION), false);
+        // Jackson cannot serialize a bare Object
+        journal.append(new SagaEvent("saga-1", SagaEventType.ERROR, Map.of("cause", new Object())), false);
+        journal.append(event("saga-1", SagaEventType.SAGA_COMPLETED), true);
+
+        assertEquals(List.of("STATE_TRANSITION", "ERROR", "SAGA_COMPLETED"), jdbcTemplate.written);
+        assertEquals("{\"message\":\"STATE_TRANSITION\"}", jdbcTemplate.data.get(0));
+        assertEquals("{\"error\":\"Failed to serialize event data\"}", jdbcTemplate.data.get(1));
+        verify(sagaMetrics, never()).recordError(anyString(), anyString());
+    }
+
+    private static SagaEvent event(String sagaId, SagaEventType eventType) {
+        return new SagaEvent(sagaId, eventType, Map.of("message", eventType.name()));
+    }
+
+    /**
+     * Records the event types of each batch instead of writing them; blocks until released.
+     */
+    private static class RecordingJdbcTemplate extends JdbcTemplate {
+
+        private final List<String> written = new CopyOnWriteArrayList<>();
+        private final List<Object> data = new CopyOnWriteArrayList<>();
+        private final List<Integer> batches = new CopyOnWriteArrayList<>();
+        private final CountDownLatch flushing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public int[] batchUpdate(String sql, BatchPreparedStatementSetter setter) {
+            flushing.countDown();
+            try {
+                release.await();
+                PreparedStatement statement = mock(PreparedStatement.class);
+                for (int i = 0; i < setter.getBatchSize(); i++) {
+                    setter.setValues(statement, i);
+                    written.add(mockingDetails(statement).getInvocations().stream()
+                        .filter(invocation -> invocation.getMethod().getName().equals("setString")
+                            && invocation.getArgument(0).equals(3))
+                        .reduce((first, second) -> second)
+                        .orElseThrow()
+                        .getArgument(1));
+                    data.add(mockingDetails(statement).getInvocations().stream()
+                        .filter(invocation -> invocation.getMethod().getName().equals("setObject")
+                            && invocation.getArgument(0).equals(4))
+                        .reduce((first, second) -> second)
+                        .orElseThrow()
+                        .getArgument(1));
+                }
+            } catch (InterruptedException | SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            batches.add(setter.getBatchSize());
+            return new int[setter.getBatchSize()];
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.dto.*;
+import com.log430.tp7.sagaorchestrator.exception.SagaCapacityExceededException;
+import com.log430.tp7.sagaorchestrator.exception.SagaStateConflictException;
+import com.log430.tp7.sagaorchestrator.logging.SagaEventLogger;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaEventType;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaLine;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test class for the asynchronous saga step state machine.
+ * Verifies that each step is persisted on its own and that a failed step triggers compensation.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SagaOrchestratorStepTest {
+
+    @Mock
+    private SagaStepStore sagaStepStore;
+
+    @Mock
+    private ServiceClientWrapper serviceClientWrapper;
+
+    @Mock
+    private ConcurrentSagaManager concurrentSagaManager;
+
+    @Mock
+    private SagaMetrics sagaMetrics;
+
+    @Mock
+    private SagaEventLogger sagaEventLogger;
+
+    @Mock
+    private SagaAdmissionController sagaAdmissionController;
+
+    private SagaOrchestrator sagaOrchestrator;
+    private SagaExecution saga;
+    private SaleRequest request;
+
+    @BeforeEach
+    void setUp() {
+        sagaOrchestrator = createOrchestrator(new SagaConfiguration.SagaExecutionProperties());
+
+        request = new SaleRequest("customer-1", "product-1", 2, new BigDecimal("20.00"), null);
+        saga = new SagaExecution();
+        saga.setCustomerId("customer-1");
+        saga.setProductId("product-1");
+        saga.setQuantity(2);
+        saga.setAmount(new BigDecimal("20.00"));
+        saga.setCurrentState(SagaState.SALE_INITIATED);
+
+        when(sagaStepStore.createSaga(anyString(), eq(request))).thenAnswer(invocation -> {
+            saga.setSagaId(invocation.getArgument(0));
+            return saga;
+        });
+        when(sagaStepStore.beginStep(anyString(), any(SagaState.class), anyString())).thenAnswer(invocation -> {
+            saga.setCurrentState(invocation.getArgument(1));
+            return saga;
+        });
+        when(sagaStepStore.completeStep(anyString(), any(), anyString())).thenAnswer(invocation -> {
+            Consumer<SagaExecution> update = invocation.getArgument(1);
+            update.accept(saga);
+            return saga;
+        });
+        when(sagaStepStore.beginCompensation(anyString(), anyString())).thenReturn(saga);
+        when(sagaAdmissionController.tryAcquire()).thenReturn(true);
+        when(concurrentSagaManager.handleStockReservationRaceCondition(anyString(), anyList(), anyString()))
+                .thenReturn(true);
+
+        when(serviceClientWrapper.reserveStock(eq("product-1"), eq(2), anyString(), eq("customer-1"))).thenReturn(
+                CompletableFuture.completedFuture(StockReservationResponse.success("reservation-1", "product-1", 2,
+                        "saga", LocalDateTime.now().plusMinutes(30))));
+        when(serviceClientWrapper.releaseStock("reservation-1")).thenReturn(CompletableFuture.completedFuture(null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sagaOrchestrator.shutdown();
+    }
+
+    @Test
+    void testSuccessfulSaleRunsEveryStepInOrder() throws Exception {
+        stubPayment(CompletableFuture.completedFuture(PaymentResponse.success("payment-1", "customer-1",
+                new BigDecimal("20.00"), "CREDIT_CARD", "saga", "AUTH")));
+        stubOrder(CompletableFuture.completedFuture(OrderResponse.success("order-1", "customer-1", "product-1", 2,
+                new BigDecimal("20.00"), "saga", "reservation-1", "payment-1", "ORD-1", null)));
+
+        SagaResponse response = sagaOrchestrator.startSale(request).get(5, TimeUnit.SECONDS);
+
+        assertEquals(SagaState.SALE_CONFIRMED, response.state());
+        assertEquals("reservation-1", saga.getStockReservationId());
+        assertEquals("payment-1", saga.getPaymentTransactionId());
+        assertEquals("order-1", saga.getOrderId());
+
+        InOrder inOrder = inOrder(sagaStepStore);
+        inOrder.verify(sagaStepStore).beginStep(anyString(), eq(SagaState.STOCK_RESERVING), anyString());
+        inOrder.verify(sagaStepStore).beginStep(anyString(), eq(SagaState.PAYMENT_PROCESSING), anyString());
+        inOrder.verify(sagaStepStore).beginStep(anyString(), eq(SagaState.ORDER_CONFIRMING), anyString());
+        inOrder.verify(sagaStepStore).confirmSale(response.sagaId());
+        verify(sagaStepStore, never()).beginCompensation(anyString(), anyString());
+        verify(sagaStepStore, never()).beginStep(anyString(), eq(SagaState.STOCK_VERIFYING), anyString());
+        verify(serviceClientWrapper, never()).verifyStock(any(), any(), any());
+        verify(sagaAdmissionController).release();
+    }
+
+    @Test
+    void testSaleShedByAdmissionLimiterIsNeverPersisted() {
+        when(sagaAdmissionController.tryAcquire()).thenReturn(false);
+
+        assertThrows(SagaCapacityExceededException.class, () -> sagaOrchestrator.startSale(request));
+        assertThrows(SagaCapacityExceededException.class, () -> sagaOrchestrator.submitSale(request));
+
+        verify(sagaStepStore, never()).createSaga(anyString(), any());
+        verify(sagaAdmissionController, never()).release();
+        verify(sagaMetrics, times(2)).recordError("SagaCapacityExceeded", "saga_admission");
+    }
+
+    @Test
+    void testInsufficientStockFailsAtReservationWithoutPayment() throws Exception {
+        when(serviceClientWrapper.reserveStock(eq("product-1"), eq(2), anyString(), eq("customer-1"))).thenReturn(
+                CompletableFuture.completedFuture(StockReservationResponse.failure("product-1", "saga",
+                        "Insufficient stock")));
+
+        SagaResponse response = sagaOrchestrator.startSale(request).get(5, TimeUnit.SECONDS);
+
+        assertEquals(SagaState.SALE_FAILED, response.state());
+        assertTrue(response.message().contains("Insufficient stock"));
+        verify(serviceClientWrapper, never()).verifyStock(any(), any(), any());
+        verify(serviceClientWrapper, never()).processPayment(any(), any(), any(), any(), any(), any(), any(), any(),
+                any(), any(), any());
+        verify(serviceClientWrapper, never()).releaseStock(any());
+    }
+
+    @Test
+    void testNextStepWaitsForRemoteCompletion() throws Exception {
+        CompletableFuture<PaymentResponse> payment = new CompletableFuture<>();
+        stubPayment(payment);
+        stubOrder(CompletableFuture.completedFuture(OrderResponse.success("order-1", "customer-1", "product-1", 2,
+                new BigDecimal("20.00"), "saga", "reservation-1", "payment-1", "ORD-1", null)));
+
+        CompletableFuture<SagaResponse> result = sagaOrchestrator.startSale(request);
+
+        // The caller is released while the payment is outstanding; order confirmation has not started
+        verify(sagaStepStore, timeout(2000)).beginStep(anyString(), eq(SagaState.PAYMENT_PROCESSING), anyString());
+        assertFalse(result.isDone());
+        verify(sagaStepStore, never()).beginStep(anyString(), eq(SagaState.ORDER_CONFIRMING), anyString());
+
+        payment.complete(PaymentResponse.success("payment-1", "customer-1", new BigDecimal("20.00"),
+                "CREDIT_CARD", "saga", "AUTH"));
+
+        assertEquals(SagaState.SALE_CONFIRMED, result.get(5, TimeUnit.SECONDS).state());
+    }
+
+    @Test
+    void testPaymentFailureReleasesStockAndFailsSale() throws Exception {
+        stubPayment(CompletableFuture.completedFuture(PaymentResponse.failure("customer-1",
+                new BigDecimal("20.00"), "saga", "Card declined")));
+
+        SagaResponse response = sagaOrchestrator.startSale(request).get(5, TimeUnit.SECONDS);
+
+        assertEquals(SagaState.SALE_FAILED, response.state());
+        assertTrue(response.message().contains("Card declined"));
+        verify(sagaStepStore).failStep(anyString(), eq(SagaEventType.SERVICE_CALL_FAILED), contains("Card declined"));
+        verify(sagaStepStore).beginCompensation(anyString(), contains("Card declined"));
+        verify(serviceClientWrapper).releaseStock("reservation-1");
+        verify(sagaStepStore).failSale(anyString(), contains("Card declined"), anyString(), eq("successful"));
+        verify(serviceClientWrapper, never()).createOrder(any());
+    }
+
+    @Test
+    void testRemoteExceptionIsCompensated() throws Exception {
+        stubPayment(CompletableFuture.failedFuture(new RuntimeException("Transaction service down")));
+        when(serviceClientWrapper.releaseStock("reservation-1"))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Inventory service down")));
+
+        SagaResponse response = sagaOrchestrator.startSale(request).get(5, TimeUnit.SECONDS);
+
+        assertEquals(SagaState.SALE_FAILED, response.state());
+        verify(sagaStepStore).failSale(anyString(), contains("Transaction service down"), contains("Inventory service down"),
+                eq("partial"));
+    }
+
+    @Test
+    void testReservationCompletingAfterTimeoutIsReleasedWithoutSecondCompensation() throws Exception {
+        // The timeout handler failed the saga while the reservation call was in flight
+        doAnswer(invocation -> {
+            throw new SagaStateConflictException(invocation.getArgument(0), SagaState.SALE_FAILED);
+        }).when(sagaStepStore).completeStep(anyString(), any(), anyString());
+
+        SagaResponse response = sagaOrchestrator.startSale(request).get(5, TimeUnit.SECONDS);
+
+        assertEquals(SagaState.SALE_FAILED, response.state());
+        verify(serviceClientWrapper, timeout(2000)).releaseStock("reservation-1");
+        verify(sagaStepStore, never()).beginStep(anyString(), eq(SagaState.PAYMENT_PROCESSING), anyString());
+        verify(sagaStepStore, never()).beginCompensation(anyString(), anyString());
+        verify(sagaStepStore, never()).failSale(anyString(), anyString(), anyString(), anyString());
+        verify(sagaAdmissionController).release();
+    }
+
+    @Test
+    void testSubmittedSaleReturnsBeforeExecutionAndCompletesInTheBackground() throws Exception {
+        CompletableFuture<PaymentResponse> payment = new CompletableFuture<>();
+        stubPayment(payment);
+        stubOrder(CompletableFuture.completedFuture(OrderResponse.success("order-1", "customer-1", "product-1", 2,
+                new BigDecimal("20.00"), "saga", "reservation-1", "payment-1", "ORD-1", null)));
+
+        SagaResponse accepted = sagaOrchestrator.submitSale(request);
+
+        assertEquals(SagaState.SALE_INITIATED, accepted.state());
+        assertNotNull(accepted.sagaId());
+        verify(sagaStepStore).createSaga(accepted.sagaId(), request);
+        verify(sagaStepStore, never()).confirmSale(anyString());
+
+        payment.complete(PaymentResponse.success("payment-1", "customer-1", new BigDecimal("20.00"),
+                "CREDIT_CARD", "saga", "AUTH"));
+
+        verify(sagaStepStore, timeout(5000)).confirmSale(accepted.sagaId());
+        verify(sagaAdmissionController, timeout(5000)).release();
+    }
+
+    @Test
+    void testSubmitSaleRejectsWhenWorkerQueueIsFull() {
+        sagaOrchestrator.shutdown();
+        SagaConfiguration.SagaExecutionProperties properties = new SagaConfiguration.SagaExecutionProperties();
+        properties.setAsyncWorkers(1);
+        properties.setAsyncQueueCapacity(1);
+        properties.setRetryAfterSeconds(3);
+        sagaOrchestrator = createOrchestrator(properties);
+
+        // The first saga occupies the only worker, the second fills the queue
+        stubPayment(new CompletableFuture<>());
+        sagaOrchestrator.submitSale(request);
+        verify(sagaStepStore, timeout(2000)).beginStep(anyString(), eq(SagaState.PAYMENT_PROCESSING), anyString());
+        sagaOrchestrator.submitSale(request);
+
+        SagaCapacityExceededException exception = assertThrows(SagaCapacityExceededException.class,
+                () -> sagaOrchestrator.submitSale(request));
+
+        assertEquals(3, exception.getRetryAfterSeconds());
+        verify(sagaStepStore, times(2)).createSaga(anyString(), eq(request));
+        verify(sagaMetrics).recordError("SagaCapacityExceeded", "saga_submission");
+    }
+
+    @Test
+    void testCartIsReservedChargedAndOrderedOnce() throws Exception {
+        SaleRequest cart = cartRequest();
+        stubPayment(CompletableFuture.completedFuture(PaymentResponse.success("payment-1", "customer-1",
+                new BigDecimal("45.00"), "CREDIT_CARD", "saga", "AUTH")));
+        stubOrder(CompletableFuture.completedFuture(OrderResponse.success("order-1", "customer-1", "product-1", 5,
+                new BigDecimal("45.00"), "saga", "reservation-1", "payment-1", "ORD-1", null)));
+        when(serviceClientWrapper.reserveCartStock(eq(cart.lines()), anyString(), eq("customer-1"))).thenAnswer(
+                invocation -> CompletableFuture.completedFuture(CartStockReservationResponse.success(
+                        invocation.getArgument(1), List.of(
+                                StockReservationResponse.success("reservation-1", "product-1", 2, "saga", null),
+                                StockReservationResponse.success("reservation-2", "product-2", 3, "saga", null)))));
+
+        SagaResponse response = sagaOrchestrator.startSale(cart).get(5, TimeUnit.SECONDS);
+
+        assertEquals(SagaState.SALE_CONFIRMED, response.state());
+        assertEquals("reservation-1", saga.getStockReservationId());
+        assertEquals("reservation-1", saga.getLines().get(0).getStockReservationId());
+        assertEquals("reservation-2", saga.getLines().get(1).getStockReservationId());
+        verify(serviceClientWrapper).reserveCartStock(eq(cart.lines()), anyString(), eq("customer-1"));
+        verify(serviceClientWrapper, times(1)).processPayment(any(), eq(new BigDecimal("45.00")), any(), any(), any(),
+                any(), any(), any(), any(), any(), any());
+        // The order carries every line of the cart, each unit priced from the sale total
+        verify(serviceClientWrapper, times(1)).createOrder(argThat(order ->
+                order.items().equals(List.of(
+                        new OrderRequest.OrderItem("product-1", 2, new BigDecimal("9.00")),
+                        new OrderRequest.OrderItem("product-2", 3, new BigDecimal("9.00"))))
+                        && order.totalAmount().equals(new BigDecimal("45.00"))
+                        && order.storeId() == 1L));
+        verify(serviceClientWrapper, never()).verifyCartStock(any(), any());
+        verify(serviceClientWrapper, never()).verifyStock(any(), any(), any());
+        verify(serviceClientWrapper, never()).reserveStock(any(), any(), any(), any());
+    }
+
+    @Test
+    void testCartPaymentFailureReleasesEveryLineInOneCall() throws Exception {
+        SaleRequest cart = cartRequest();
+        stubPayment(CompletableFuture.completedFuture(PaymentResponse.failure("customer-1",
+                new BigDecimal("45.00"), "saga", "Card declined")));
+        when(serviceClientWrapper.reserveCartStock(eq(cart.lines()), anyString(), eq("customer-1"))).thenReturn(
+                CompletableFuture.completedFuture(CartStockReservationResponse.success("saga", List.of(
+                        StockReservationResponse.success("reservation-1", "product-1", 2, "saga", null),
+                        StockReservationResponse.success("reservation-2", "product-2", 3, "saga", null)))));
+        when(serviceClientWrapper.releaseCartStock(anyString())).thenReturn(CompletableFuture.completedFuture(null));
+
+        SagaResponse response = sagaOrchestrator.startSale(cart).get(5, TimeUnit.SECONDS);
+
+        assertEquals(SagaState.SALE_FAILED, response.state());
+        verify(serviceClientWrapper).releaseCartStock(response.sagaId());
+        verify(serviceClientWrapper, never()).releaseStock(any());
+        verify(sagaStepStore).failSale(anyString(), contains("Card declined"), anyString(), eq("successful"));
+    }
+
+    private SaleRequest cartRequest() {
+        SaleRequest cart = new SaleRequest("customer-1", null, null, new BigDecimal("45.00"), null, List.of(
+                new SaleRequest.SaleLine("product-1", 2),
+                new SaleRequest.SaleLine("product-2", 3)));
+        when(sagaStepStore.createSaga(anyString(), eq(cart))).thenAnswer(invocation -> {
+            saga.setSagaId(invocation.getArgument(0));
+            saga.setLines(new ArrayList<>(List.of(new SagaLine("product-1", 2), new SagaLine("product-2", 3))));
+            saga.setQuantity(5);
+            saga.setAmount(new BigDecimal("45.00"));
+            return saga;
+        });
+        return cart;
+    }
+
+    private SagaOrchestrator createOrchestrator(SagaConfiguration.SagaExecutionProperties properties) {
+        return new SagaOrchestrator(sagaStepStore, serviceClientWrapper, concurrentSagaManager,
+                sagaMetrics, sagaEventLogger, properties, sagaAdmissionController);
+    }
+
+    private void stubPayment(CompletableFuture<PaymentResponse> result) {
+        when(serviceClientWrapper.processPayment(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(),
+                any())).thenReturn(result);
+    }
+
+    private void stubOrder(CompletableFuture<OrderResponse> result) {
+        when(serviceClientWrapper.createOrder(any()))
+                .thenReturn(result);
+    }
+}
@@ -0,0 +1,250 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read-modify-write with retries ({@link ConcurrentSagaManager#updateSagaStateWithRetry}) versus a single
+ * compare-and-set UPDATE (as in {@link SagaStepStore}) on a few hot sagas.
+ * Both paths issue the statements their JPA counterparts produce, over JDBC on H2, so the comparison
+ * measures round trips and back-off rather than the persistence layer. Runs only with -Dbenchmark=true.
+ */
+class SagaStateTransitionBenchmarkTest {
+
+    private static final int THREADS = Integer.getInteger("benchmark.threads", 16);
+    private static final int HOT_SAGAS = Integer.getInteger("benchmark.sagas", 8);
+    private static final long DURATION_MS = Long.getLong("benchmark.durationMs", 3_000);
+    private static final int MAX_RETRY_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 100;
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkRetryLoopVersusCompareAndSet() throws Exception {
+        // Warm up both code paths before measuring
+        run("warmup-retry", false, 500);
+        run("warmup-cas", true, 500);
+
+        BenchmarkResult retry = run("retry", false, DURATION_MS);
+        BenchmarkResult cas = run("cas", true, DURATION_MS);
+
+        System.out.printf("%nSaga state transitions, %d threads on %d hot sagas, %d ms%n",
+            THREADS, HOT_SAGAS, DURATION_MS);
+        print("retry loop:    ", retry);
+        print("compare-and-set:", cas);
+
+        assertTrue(retry.transitions() > 0 && cas.transitions() > 0);
+    }
+
+    private static void print(String label, BenchmarkResult result) {
+        System.out.printf("  %s %,9.0f transitions/s, %5.2f statements/transition, p99 %,5d ms, %,7d conflicts%n",
+            label, result.transitionsPerSecond(), result.statementsPerTransition(), result.p99Millis(),
+            result.conflicts());
+    }
+
+    private BenchmarkResult run(String database, boolean compareAndSet, long durationMs) throws Exception {
+        String url = "jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+        try (Connection setup = DriverManager.getConnection(url, "sa", "")) {
+            try (Statement statement = setup.createStatement()) {
+                statement.execute("CREATE TABLE saga_executions (" +
+                    "saga_id VARCHAR(36) PRIMARY KEY, " +
+                    "current_state VARCHAR(50) NOT NULL, " +
+                    "version BIGINT NOT NULL, " +
+                    "updated_at TIMESTAMP)");
+                for (int i = 0; i < HOT_SAGAS; i++) {
+                    statement.execute("INSERT INTO saga_executions VALUES ('saga-" + i + "', 'SALE_INITIATED', 0, " +
+                        "CURRENT_TIMESTAMP)");
+                }
+            }
+
+            AtomicLong transitions = new AtomicLong();
+            AtomicLong statements = new AtomicLong();
+            AtomicLong conflicts = new AtomicLong();
+            List<long[]> latencies = new ArrayList<>();
+            ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+            long start = System.nanoTime();
+            try {
+                List<CompletableFuture<long[]>> runs = IntStream.range(0, THREADS)
+                    .mapToObj(worker -> CompletableFuture.supplyAsync(() -> {
+                        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+                            Worker driver = new Worker(connection, statements);
+                            long[] workerLatencies = new long[1 << 16];
+                            int count = 0;
+                            while (System.nanoTime() < deadline) {
+                                String sagaId = "saga-" + ThreadLocalRandom.current().nextInt(HOT_SAGAS);
+                                long callStart = System.nanoTime();
+                                Outcome outcome = compareAndSet ? driver.compareAndSet(sagaId) : driver.retry(sagaId);
+                                if (count < workerLatencies.length) {
+                                    workerLatencies[count++] = System.nanoTime() - callStart;
+                                }
+                                if (outcome == Outcome.APPLIED) {
+                                    transitions.incrementAndGet();
+                                } else if (outcome == Outcome.CONFLICT) {
+                                    conflicts.incrementAndGet();
+                                }
+                            }
+                            return Arrays.copyOf(workerLatencies, count);
+                        } catch (SQLException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }, workers))
+                    .toList();
+                for (CompletableFuture<long[]> run : runs) {
+                    latencies.add(run.get(durationMs + 60_000, TimeUnit.MILLISECONDS));
+                }
+            } finally {
+                workers.shutdown();
+            }
+            long elapsedNanos = System.nanoTime() - start;
+
+            // Every applied transition bumped exactly one version
+            try (Statement statement = setup.createStatement();
+                 ResultSet versions = statement.executeQuery("SELECT SUM(version) FROM saga_executions")) {
+                versions.next();
+                assertEquals(transitions.get(), versions.getLong(1));
+                statement.execute("DROP ALL OBJECTS");
+            }
+
+            long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            return new BenchmarkResult(
+                transitions.get() / (elapsedNanos / 1_000_000_000.0),
+                (double) statements.get() / Math.max(1, transitions.get()),
+                all.length == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(all[(int) Math.ceil(all.length * 0.99) - 1]),
+                transitions.get(),
+                conflicts.get());
+        }
+    }
+
+    private enum Outcome { APPLIED, CONFLICT, SKIPPED }
+
+    private record BenchmarkResult(double transitionsPerSecond, double statementsPerTransition, long p99Millis,
+                                   long transitions, long conflicts) {}
+
+    /**
+     * Drives one connection; each call advances a saga one step along the happy path.
+     * A confirmed saga is put back to SALE_INITIATED (outside the measured transitions) so the load never runs dry.
+     */
+    private static final class Worker {
+
+        private final AtomicLong statements;
+        private final PreparedStatement select;
+        private final PreparedStatement versionedUpdate;
+        private final PreparedStatement compareAndSet;
+        private final PreparedStatement restart;
+
+        Worker(Connection connection, AtomicLong statements) throws SQLException {
+            this.statements = statements;
+            this.select = connection.prepareStatement(
+                "SELECT current_state, version FROM saga_executions WHERE saga_id = ?");
+            // What Hibernate issues when saving a @Version entity
+            this.versionedUpdate = connection.prepareStatement(
+                "UPDATE saga_executions SET current_state = ?, updated_at = ?, version = ? " +
+                "WHERE saga_id = ? AND version = ?");
+            this.compareAndSet = connection.prepareStatement(
+                "UPDATE saga_executions SET current_state = ?, version = version + 1, updated_at = ? " +
+                "WHERE saga_id = ? AND current_state = ? AND version = ?");
+            this.restart = connection.prepareStatement(
+                "UPDATE saga_executions SET current_state = 'SALE_INITIATED' " +
+                "WHERE saga_id = ? AND current_state = 'SALE_CONFIRMED'");
+        }
+
+        /**
+         * The caller read the saga and picked its next state, then calls updateSagaStateWithRetry.
+         */
+        Outcome retry(String sagaId) throws SQLException {
+            Snapshot snapshot = read(sagaId);
+            SagaState target = next(sagaId, snapshot);
+            if (target == null) {
+                return Outcome.SKIPPED;
+            }
+
+            for (int attempts = 1; attempts <= MAX_RETRY_ATTEMPTS; attempts++) {
+                // findById, then transitionTo validates, then save
+                Snapshot current = read(sagaId);
+                if (!current.state().canTransitionTo(target)) {
+                    return Outcome.CONFLICT;
+                }
+                versionedUpdate.setString(1, target.name());
+                versionedUpdate.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+                versionedUpdate.setLong(3, current.version() + 1);
+                versionedUpdate.setString(4, sagaId);
+                versionedUpdate.setLong(5, current.version());
+                statements.incrementAndGet();
+                if (versionedUpdate.executeUpdate() == 1) {
+                    return Outcome.APPLIED;
+                }
+                sleep(RETRY_DELAY_MS * attempts);
+            }
+            return Outcome.CONFLICT;
+        }
+
+        /**
+         * The caller read the saga and picked its next state, then calls compareAndSetState.
+         */
+        Outcome compareAndSet(String sagaId) throws SQLException {
+            Snapshot snapshot = read(sagaId);
+            SagaState target = next(sagaId, snapshot);
+            if (target == null) {
+                return Outcome.SKIPPED;
+            }
+
+            compareAndSet.setString(1, target.name());
+            compareAndSet.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+            compareAndSet.setString(3, sagaId);
+            compareAndSet.setString(4, snapshot.state().name());
+            compareAndSet.setLong(5, snapshot.version());
+            statements.incrementAndGet();
+            return compareAndSet.executeUpdate() == 1 ? Outcome.APPLIED : Outcome.CONFLICT;
+        }
+
+        private SagaState next(String sagaId, Snapshot snapshot) throws SQLException {
+            if (snapshot.state() == SagaState.SALE_CONFIRMED) {
+                restart.setString(1, sagaId);
+                restart.executeUpdate();
+                return null;
+            }
+            return snapshot.state().getNextHappyPathState();
+        }
+
+        private Snapshot read(String sagaId) throws SQLException {
+            select.setString(1, sagaId);
+            statements.incrementAndGet();
+            try (ResultSet row = select.executeQuery()) {
+                row.next();
+                return new Snapshot(SagaState.valueOf(row.getString(1)), row.getLong(2));
+            }
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private record Snapshot(SagaState state, long version) {}
+}
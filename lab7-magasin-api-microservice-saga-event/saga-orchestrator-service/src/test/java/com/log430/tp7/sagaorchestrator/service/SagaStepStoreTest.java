@@ -0,0 +1,169 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.exception.SagaStateConflictException;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import com.log430.tp7.sagaorchestrator.repository.SagaExecutionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SagaStepStoreTest {
+
+    private final SagaExecutionRepository sagaExecutionRepository = mock(SagaExecutionRepository.class);
+    private final SagaEventJournal sagaEventJournal = mock(SagaEventJournal.class);
+    private final SagaMetrics sagaMetrics = mock(SagaMetrics.class);
+    private final SagaTimeoutManager sagaTimeoutManager = mock(SagaTimeoutManager.class);
+    private final SagaCompletionNotifier sagaCompletionNotifier = mock(SagaCompletionNotifier.class);
+    private final LocalDateTime deadline = LocalDateTime.now().plusSeconds(60);
+    private SagaStepStore sagaStepStore;
+    private SagaExecution saga;
+
+    @BeforeEach
+    void setUp() {
+        saga = new SagaExecution("saga-1", "customer-1", "product-1", 2, new BigDecimal("20.00"));
+        saga.setCurrentState(SagaState.STOCK_RESERVING);
+        saga.setVersion(3L);
+        when(sagaExecutionRepository.findById("saga-1")).thenReturn(Optional.of(saga));
+        when(sagaTimeoutManager.deadlineFor(any(), any())).thenReturn(deadline);
+        sagaStepStore = new SagaStepStore(sagaExecutionRepository, sagaEventJournal, sagaMetrics, sagaTimeoutManager,
+                sagaCompletionNotifier);
+    }
+
+    @Test
+    void testBeginStepComparesAndSetsTheStateItRead() {
+        when(sagaExecutionRepository.compareAndSetState(eq("saga-1"), eq(SagaState.STOCK_RESERVING), eq(3L),
+                eq(SagaState.PAYMENT_PROCESSING), eq(deadline), any())).thenReturn(1);
+
+        SagaExecution updated = sagaStepStore.beginStep("saga-1", SagaState.PAYMENT_PROCESSING, "payment");
+
+        assertEquals(SagaState.PAYMENT_PROCESSING, updated.getCurrentState());
+        assertEquals(4L, updated.getVersion());
+        assertEquals(deadline, updated.getDeadlineAt());
+        verify(sagaTimeoutManager).track("saga-1", deadline);
+        verify(sagaExecutionRepository, never()).save(any());
+    }
+
+    @Test
+    void testBeginStepLosingTheCompareAndSetIsAConflict() {
+        when(sagaExecutionRepository.compareAndSetState(any(), any(), any(), any(), any(), any())).thenReturn(0);
+
+        SagaStateConflictException exception = assertThrows(SagaStateConflictException.class,
+                () -> sagaStepStore.beginStep("saga-1", SagaState.PAYMENT_PROCESSING, "payment"));
+
+        assertEquals(SagaState.STOCK_RESERVING, exception.getExpectedState());
+        verify(sagaTimeoutManager, never()).track(anyString(), any());
+        verify(sagaMetrics).recordError("StateTransitionConflict", "concurrent_update");
+    }
+
+    @Test
+    void testConfirmSaleComparesAndSetsTheFinalState() {
+        saga.setCurrentState(SagaState.ORDER_CONFIRMING);
+        when(sagaExecutionRepository.compareAndSetFinalState(eq("saga-1"), eq(SagaState.ORDER_CONFIRMING), eq(3L),
+                eq(SagaState.SALE_CONFIRMED), isNull(), any())).thenReturn(1);
+
+        SagaExecution confirmed = sagaStepStore.confirmSale("saga-1");
+
+        assertEquals(SagaState.SALE_CONFIRMED, confirmed.getCurrentState());
+        assertNull(confirmed.getDeadlineAt());
+        verify(sagaTimeoutManager).track("saga-1", null);
+        verify(sagaCompletionNotifier).publishFinalState(argThat(response -> response.sagaId().equals("saga-1")
+                && response.state() == SagaState.SALE_CONFIRMED));
+    }
+
+    @Test
+    void testFinalEventIsJournaledOnlyOnceTheTransactionCommits() {
+        saga.setCurrentState(SagaState.ORDER_CONFIRMING);
+        when(sagaExecutionRepository.compareAndSetFinalState(any(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            sagaStepStore.confirmSale("saga-1");
+
+            verify(sagaEventJournal, never()).append(any(), eq(true));
+            verify(sagaCompletionNotifier, never()).publishFinalState(any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(sagaEventJournal).append(argThat(event -> event.getSagaId().equals("saga-1")), eq(true));
+        verify(sagaCompletionNotifier).publishFinalState(any());
+    }
+
+    @Test
+    void testRolledBackFinalTransitionLeavesNoFinalEvent() {
+        saga.setCurrentState(SagaState.ORDER_CONFIRMING);
+        when(sagaExecutionRepository.compareAndSetFinalState(any(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            sagaStepStore.confirmSale("saga-1");
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(synchronization ->
+                    synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(sagaEventJournal, never()).append(any(), eq(true));
+        verify(sagaCompletionNotifier, never()).publishFinalState(any());
+    }
+
+    @Test
+    void testFailSaleOfAnAlreadyFailedSagaIsAConflict() {
+        saga.setCurrentState(SagaState.SALE_FAILED);
+
+        assertThrows(SagaStateConflictException.class,
+                () -> sagaStepStore.failSale("saga-1", "Card declined", "none", "successful"));
+
+        verify(sagaExecutionRepository, never()).compareAndSetFinalState(any(), any(), any(), any(), any(), any());
+        verify(sagaEventJournal, never()).append(any(), anyBoolean());
+        verify(sagaCompletionNotifier, never()).publishFinalState(any());
+    }
+
+    @Test
+    void testFailSaleFromAnyCallerPublishesTheFinalState() {
+        // The timeout handler fails a saga that timed out before payment directly
+        when(sagaExecutionRepository.compareAndSetFinalState(eq("saga-1"), eq(SagaState.STOCK_RESERVING), eq(3L),
+                eq(SagaState.SALE_FAILED), eq("Saga timed out"), any())).thenReturn(1);
+
+        sagaStepStore.failSale("saga-1", 3L, "Saga timed out", "none", "successful");
+
+        verify(sagaCompletionNotifier).publishFinalState(argThat(response -> response.sagaId().equals("saga-1")
+                && response.state() == SagaState.SALE_FAILED
+                && response.message().contains("Saga timed out")));
+    }
+
+    @Test
+    void testStepResultOfASagaTakenOverByItsTimeoutIsRejected() {
+        saga.setCurrentState(SagaState.STOCK_RELEASING);
+
+        assertThrows(SagaStateConflictException.class,
+                () -> sagaStepStore.completeStep("saga-1", s -> s.setStockReservationId("reservation-1"), "reserved"));
+
+        assertNull(saga.getStockReservationId());
+        verify(sagaExecutionRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void testCompensationFromAnOutdatedVersionIsAConflict() {
+        saga.setCurrentState(SagaState.PAYMENT_PROCESSING);
+
+        assertThrows(SagaStateConflictException.class,
+                () -> sagaStepStore.beginCompensation("saga-1", 2L, "Saga timed out"));
+
+        verify(sagaExecutionRepository, never()).compareAndSetState(any(), any(), any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,110 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SagaTimeoutWheelTest {
+
+    private final BlockingQueue<String> expired = new LinkedBlockingQueue<>();
+    private SagaTimeoutWheel wheel;
+
+    @AfterEach
+    void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    void testDeadlineFiresOnceWithinATick() throws Exception {
+        wheel = new SagaTimeoutWheel("test-wheel", 10, 8, expired::add);
+        long start = System.nanoTime();
+
+        wheel.schedule("saga-1", LocalDateTime.now().plusNanos(200_000_000));
+
+        assertEquals("saga-1", expired.poll(2, TimeUnit.SECONDS));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMs >= 190, "fired early after " + elapsedMs + " ms");
+        assertNull(expired.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testDeadlinesBeyondOneRevolutionWaitForTheirRound() throws Exception {
+        // 8 buckets of 10 ms: one revolution is 80 ms
+        wheel = new SagaTimeoutWheel("test-wheel", 10, 8, expired::add);
+
+        wheel.schedule("late", LocalDateTime.now().plusNanos(250_000_000));
+        wheel.schedule("early", LocalDateTime.now().plusNanos(30_000_000));
+
+        assertEquals("early", expired.poll(2, TimeUnit.SECONDS));
+        assertNull(expired.poll(150, TimeUnit.MILLISECONDS));
+        assertEquals("late", expired.poll(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testRescheduleAndCancelReplaceThePendingDeadline() throws Exception {
+        wheel = new SagaTimeoutWheel("test-wheel", 10, 64, expired::add);
+
+        wheel.schedule("rescheduled", LocalDateTime.now().plusNanos(50_000_000));
+        wheel.schedule("rescheduled", LocalDateTime.now().plusNanos(300_000_000));
+        wheel.schedule("cancelled", LocalDateTime.now().plusNanos(50_000_000));
+        wheel.cancel("cancelled");
+        wheel.schedule("past", LocalDateTime.now().minusMinutes(1));
+
+        assertEquals("past", expired.poll(2, TimeUnit.SECONDS));
+        assertNull(expired.poll(150, TimeUnit.MILLISECONDS));
+        assertEquals("rescheduled", expired.poll(2, TimeUnit.SECONDS));
+        assertNull(expired.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(), List.copyOf(expired));
+    }
+
+    @Test
+    void testDeadlinesScheduledWhileTheWheelTicksNeverWaitARevolution() throws Exception {
+        // 1 ms ticks over 1024 buckets: an entry put in a bucket just passed would fire about 1 s late
+        int schedulers = 4;
+        int sagasPerScheduler = 500;
+        Map<String, Long> scheduledAt = new ConcurrentHashMap<>();
+        Map<String, Long> expiredAt = new ConcurrentHashMap<>();
+        CountDownLatch allExpired = new CountDownLatch(schedulers * sagasPerScheduler);
+        wheel = new SagaTimeoutWheel("test-wheel", 1, 1024, sagaId -> {
+            expiredAt.put(sagaId, System.nanoTime());
+            allExpired.countDown();
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(schedulers);
+        try {
+            for (int s = 0; s < schedulers; s++) {
+                int scheduler = s;
+                executor.execute(() -> {
+                    for (int i = 0; i < sagasPerScheduler; i++) {
+                        String sagaId = "saga-" + scheduler + "-" + i;
+                        scheduledAt.put(sagaId, System.nanoTime());
+                        wheel.schedule(sagaId, LocalDateTime.now());
+                    }
+                });
+            }
+            assertTrue(allExpired.await(10, TimeUnit.SECONDS), "not every deadline fired");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long latestMs = scheduledAt.entrySet().stream()
+                .mapToLong(entry -> TimeUnit.NANOSECONDS.toMillis(expiredAt.get(entry.getKey()) - entry.getValue()))
+                .max()
+                .orElseThrow();
+        assertTrue(latestMs < 500, "a deadline fired " + latestMs + " ms late");
+        assertEquals(0, wheel.size());
+    }
+}
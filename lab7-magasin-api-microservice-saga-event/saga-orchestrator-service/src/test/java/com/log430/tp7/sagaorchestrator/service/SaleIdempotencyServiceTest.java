@@ -0,0 +1,151 @@
+package com.log430.tp7.sagaorchestrator.service;
+
+import com.log430.tp7.sagaorchestrator.config.SagaConfiguration;
+import com.log430.tp7.sagaorchestrator.dto.SagaResponse;
+import com.log430.tp7.sagaorchestrator.dto.SaleRequest;
+import com.log430.tp7.sagaorchestrator.exception.IdempotencyKeyMismatchException;
+import com.log430.tp7.sagaorchestrator.exception.SagaCapacityExceededException;
+import com.log430.tp7.sagaorchestrator.metrics.SagaMetrics;
+import com.log430.tp7.sagaorchestrator.model.SagaExecution;
+import com.log430.tp7.sagaorchestrator.model.SagaState;
+import com.log430.tp7.sagaorchestrator.model.SaleIdempotencyKey;
+import com.log430.tp7.sagaorchestrator.repository.SaleIdempotencyKeyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SaleIdempotencyServiceTest {
+
+    private static final String KEY = "order-42-attempt";
+
+    private final SagaOrchestrator sagaOrchestrator = mock(SagaOrchestrator.class);
+    private final SagaArchiveService sagaArchiveService = mock(SagaArchiveService.class);
+    private final SaleIdempotencyKeyRepository keyRepository = mock(SaleIdempotencyKeyRepository.class);
+    private final SagaMetrics sagaMetrics = mock(SagaMetrics.class);
+    private final SaleRequest request = new SaleRequest("customer-1", "product-1", 1, BigDecimal.TEN, null);
+    private SaleIdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = new SaleIdempotencyService(sagaOrchestrator, sagaArchiveService, keyRepository,
+            sagaMetrics, new SagaConfiguration.SagaIdempotencyProperties());
+        when(keyRepository.findByCustomerIdAndIdempotencyKeyAndExpiresAtAfter(anyString(), eq(KEY),
+                any(LocalDateTime.class)))
+            .thenReturn(Optional.empty());
+        when(keyRepository.claim(anyString(), eq(KEY), anyString(), anyString(), any(LocalDateTime.class),
+                any(LocalDateTime.class)))
+            .thenReturn(1);
+    }
+
+    @Test
+    void testRetryReturnsTheExistingSaga() {
+        when(sagaOrchestrator.submitSale(anyString(), eq(request)))
+            .thenAnswer(invocation -> SagaResponse.success(invocation.getArgument(0), SagaState.SALE_INITIATED, "accepted"));
+
+        SagaResponse first = idempotencyService.submitSale(KEY, request);
+
+        SagaExecution saga = new SagaExecution(first.sagaId(), "customer-1", "product-1", 1, BigDecimal.TEN);
+        saga.setCurrentState(SagaState.PAYMENT_PROCESSING);
+        when(sagaArchiveService.findById(first.sagaId())).thenReturn(Optional.of(saga));
+
+        SagaResponse retry = idempotencyService.submitSale(KEY, request);
+
+        assertEquals(first.sagaId(), retry.sagaId());
+        assertEquals(SagaState.PAYMENT_PROCESSING, retry.state());
+        verify(sagaOrchestrator, times(1)).submitSale(anyString(), any());
+        // The mapping is served from memory after the claim
+        verify(keyRepository, times(1)).findByCustomerIdAndIdempotencyKeyAndExpiresAtAfter(eq("customer-1"), eq(KEY), any());
+    }
+
+    @Test
+    void testConcurrentDuplicateJoinsTheRunningSaga() throws Exception {
+        CompletableFuture<SagaResponse> outcome = new CompletableFuture<>();
+        when(sagaOrchestrator.startSale(anyString(), eq(request))).thenReturn(outcome);
+
+        CompletableFuture<SagaResponse> first = CompletableFuture.supplyAsync(() -> idempotencyService.executeSale(KEY, request));
+        verify(sagaOrchestrator, timeout(5000)).startSale(anyString(), eq(request));
+        CompletableFuture<SagaResponse> duplicate = CompletableFuture.supplyAsync(() -> idempotencyService.executeSale(KEY, request));
+        verify(sagaMetrics, timeout(5000)).incrementIdempotentReplay("coalesced");
+
+        SagaResponse confirmed = SagaResponse.success("saga-1", SagaState.SALE_CONFIRMED, "confirmed");
+        outcome.complete(confirmed);
+
+        assertEquals(confirmed, first.get(5, TimeUnit.SECONDS));
+        assertEquals(confirmed, duplicate.get(5, TimeUnit.SECONDS));
+        verify(sagaOrchestrator, times(1)).startSale(anyString(), any());
+    }
+
+    @Test
+    void testShedSaleReleasesTheKey() {
+        when(sagaOrchestrator.submitSale(anyString(), eq(request)))
+            .thenThrow(new SagaCapacityExceededException(null, 1))
+            .thenAnswer(invocation -> SagaResponse.success(invocation.getArgument(0), SagaState.SALE_INITIATED, "accepted"));
+
+        assertThrows(SagaCapacityExceededException.class, () -> idempotencyService.submitSale(KEY, request));
+
+        ArgumentCaptor<String> sagaId = ArgumentCaptor.forClass(String.class);
+        verify(keyRepository).release(eq("customer-1"), eq(KEY), sagaId.capture());
+
+        // The client's retry with the same key starts a new saga
+        SagaResponse retry = idempotencyService.submitSale(KEY, request);
+        assertEquals(SagaState.SALE_INITIATED, retry.state());
+        assertNotEquals(sagaId.getValue(), retry.sagaId());
+        verify(sagaOrchestrator, times(2)).submitSale(anyString(), any());
+    }
+
+    @Test
+    void testSameKeyWithADifferentRequestIsRejected() {
+        when(sagaOrchestrator.submitSale(anyString(), any()))
+            .thenAnswer(invocation -> SagaResponse.success(invocation.getArgument(0), SagaState.SALE_INITIATED, "accepted"));
+        idempotencyService.submitSale(KEY, request);
+
+        SaleRequest otherAmount = new SaleRequest("customer-1", "product-1", 1, new BigDecimal("11"), null);
+        assertThrows(IdempotencyKeyMismatchException.class, () -> idempotencyService.submitSale(KEY, otherAmount));
+
+        // The same request written differently is still a retry
+        SaleRequest sameAmount = new SaleRequest("customer-1", "product-1", 1, new BigDecimal("10.00"), null);
+        idempotencyService.submitSale(KEY, sameAmount);
+        verify(sagaOrchestrator, times(1)).submitSale(anyString(), any());
+        verify(sagaMetrics).incrementIdempotentReplay("rejected");
+    }
+
+    @Test
+    void testKeyClaimedElsewhereForADifferentRequestIsRejected() {
+        when(keyRepository.claim(anyString(), eq(KEY), anyString(), anyString(), any(), any())).thenReturn(0);
+        SaleIdempotencyKey mapping = new SaleIdempotencyKey("customer-1", KEY, "another-request", "saga-1",
+            LocalDateTime.now(), LocalDateTime.now().plusHours(1));
+        when(keyRepository.findByCustomerIdAndIdempotencyKeyAndExpiresAtAfter(eq("customer-1"), eq(KEY), any()))
+            .thenReturn(Optional.empty(), Optional.of(mapping));
+
+        IdempotencyKeyMismatchException exception = assertThrows(IdempotencyKeyMismatchException.class,
+            () -> idempotencyService.submitSale(KEY, request));
+
+        assertEquals("saga-1", exception.getSagaId());
+        verifyNoInteractions(sagaOrchestrator);
+    }
+
+    @Test
+    void testKeysAreScopedPerCustomer() {
+        when(sagaOrchestrator.submitSale(anyString(), any()))
+            .thenAnswer(invocation -> SagaResponse.success(invocation.getArgument(0), SagaState.SALE_INITIATED, "accepted"));
+
+        SagaResponse first = idempotencyService.submitSale(KEY, request);
+        SagaResponse other = idempotencyService.submitSale(KEY,
+            new SaleRequest("customer-2", "product-1", 1, BigDecimal.TEN, null));
+
+        assertNotEquals(first.sagaId(), other.sagaId());
+        verify(keyRepository).claim(eq("customer-1"), eq(KEY), anyString(), eq(first.sagaId()), any(), any());
+        verify(keyRepository).claim(eq("customer-2"), eq(KEY), anyString(), eq(other.sagaId()), any(), any());
+        verify(sagaOrchestrator, times(2)).submitSale(anyString(), any());
+    }
+}